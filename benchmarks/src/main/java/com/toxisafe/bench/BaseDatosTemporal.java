@@ -0,0 +1,212 @@
+package com.toxisafe.bench;
+
+import com.toxisafe.util.ConnectionPool;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * SQLite en un directorio temporal con el esquema de la aplicación y un brote sintético.
+ * - Mismo pool y mismo schema.sql que la aplicación (WAL, caché de sentencias...)
+ * - Brote {@link #BROTE} con N expuestos, {@link #COMIDAS} ingestas de {@link #ALIMENTOS_POR_COMIDA}
+ *   alimentos, asistencia aleatoria y un alimento "culpable" con tasa de ataque alta
+ * - Semilla fija: las mismas tablas en cada ejecución
+ */
+public final class BaseDatosTemporal implements AutoCloseable {
+
+    public static final String BROTE = "BROTE-BENCH";
+    public static final String ADMIN = "USR-ADMIN";
+    public static final int COMIDAS = 10;
+    public static final int ALIMENTOS_POR_COMIDA = 10;
+
+    private static final String[] SINTOMAS = {"Diarrea", "Fiebre", "Vómitos", "Dolor o calambres abdominales", "Náuseas"};
+    private static final String[] GRUPOS = {"Adultos", "Niños", "Personal de cocina", null};
+
+    private final Path dir;
+    private final ConnectionPool pool;
+
+    private BaseDatosTemporal(Path dir, ConnectionPool pool) {
+        this.dir = dir;
+        this.pool = pool;
+    }
+
+    /** Base vacía con el esquema aplicado (caché de sentencias por defecto del pool). */
+    public static BaseDatosTemporal crear() throws IOException, SQLException {
+        Path dir = Files.createTempDirectory("toxisafe-bench");
+        return crear(dir, ConnectionPool.open("jdbc:sqlite:" + dir.resolve("bench.db"), 2));
+    }
+
+    /** Base vacía con hasta {@code sentencias} PreparedStatement en caché por conexión (0 = sin caché). */
+    public static BaseDatosTemporal crear(int sentencias) throws IOException, SQLException {
+        Path dir = Files.createTempDirectory("toxisafe-bench");
+        return crear(dir, ConnectionPool.open("jdbc:sqlite:" + dir.resolve("bench.db"), 2, sentencias));
+    }
+
+    private static BaseDatosTemporal crear(Path dir, ConnectionPool pool) throws IOException, SQLException {
+        try (Connection c = pool.writer(); Statement st = c.createStatement()) {
+            st.executeUpdate(esquema());
+        }
+        return new BaseDatosTemporal(dir, pool);
+    }
+
+    /** Base con el brote sintético de {@code personas} expuestos. */
+    public static BaseDatosTemporal conBrote(int personas) throws IOException, SQLException {
+        BaseDatosTemporal db = crear();
+        db.poblar(personas);
+        return db;
+    }
+
+    /** Igual, con la caché de sentencias fijada a {@code sentencias} por conexión. */
+    public static BaseDatosTemporal conBrote(int personas, int sentencias) throws IOException, SQLException {
+        BaseDatosTemporal db = crear(sentencias);
+        db.poblar(personas);
+        return db;
+    }
+
+    public ConnectionPool pool() { return pool; }
+
+    public Path directorio() { return dir; }
+
+    /* ===================== Datos sintéticos ===================== */
+
+    private void poblar(int personas) throws SQLException {
+        Random rnd = new Random(20240601L);
+        try (Connection c = pool.writer()) {
+            boolean auto = c.getAutoCommit();
+            c.setAutoCommit(false);
+            try {
+                ejecutar(c, "INSERT INTO USUARIO VALUES ('" + ADMIN + "', 'Admin', 'ADMIN', 'admin', 'x')");
+                ejecutar(c, "INSERT INTO BROTE (id_brote, creador_brote, responsable_brote, fech_ini_brote, nombre_brote) " +
+                        "VALUES ('" + BROTE + "', '" + ADMIN + "', '" + ADMIN + "', '2024-06-01', 'Brote sintético')");
+                ejecutar(c, "INSERT INTO GRUPO_SINTOMA VALUES ('GS-1', 'Gastrointestinales')");
+                try (PreparedStatement ps = c.prepareStatement("INSERT INTO SINTOMA VALUES (?, 'GS-1', ?)")) {
+                    for (int s = 0; s < SINTOMAS.length; s++) {
+                        ps.setString(1, "SIN-" + s);
+                        ps.setString(2, SINTOMAS[s]);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+
+                // Comidas y alimentos
+                try (PreparedStatement pi = c.prepareStatement("INSERT INTO INGESTA VALUES (?, ?, ?)");
+                     PreparedStatement pa = c.prepareStatement("INSERT INTO ALIMENTO VALUES (?, ?, ?, NULL)")) {
+                    for (int m = 0; m < COMIDAS; m++) {
+                        pi.setString(1, "ING-" + m);
+                        pi.setString(2, String.format("2024-06-%02d %02d:30:00", 1 + m / 3, 8 + (m % 3) * 6));
+                        pi.setString(3, "Comedor " + (m % 2 == 0 ? "A" : "B"));
+                        pi.addBatch();
+                        for (int f = 0; f < ALIMENTOS_POR_COMIDA; f++) {
+                            pa.setString(1, "ALI-" + m + "-" + f);
+                            pa.setString(2, "ING-" + m);
+                            pa.setString(3, "Alimento " + (m * ALIMENTOS_POR_COMIDA + f));
+                            pa.addBatch();
+                        }
+                    }
+                    pi.executeBatch();
+                    pa.executeBatch();
+                }
+
+                // Expuestos, asistencia, síntomas
+                try (PreparedStatement pp = c.prepareStatement(
+                             "INSERT INTO PERSONA_EXPUESTA (id_expuesto, id_brote, nombre_expuesto, apellido_expuesto, " +
+                             "sexo_expuesto, edad_expuesto, grupo_expuesto) VALUES (?, ?, ?, ?, ?, ?, ?)");
+                     PreparedStatement pipe = c.prepareStatement("INSERT INTO INGESTA_PERSONA_EXPUESTA VALUES (?, ?, ?, 0)");
+                     PreparedStatement psg = c.prepareStatement("INSERT INTO SINTOMAS_GENERALES_EXPUESTO VALUES (?, ?, ?, NULL, NULL)");
+                     PreparedStatement pes = c.prepareStatement("INSERT INTO EXPOSICION_SINTOMA VALUES (?, ?, ?)")) {
+                    for (int i = 0; i < personas; i++) {
+                        String id = "EXP-" + i;
+                        pp.setString(1, id);
+                        pp.setString(2, BROTE);
+                        pp.setString(3, "Nombre" + i);
+                        pp.setString(4, "Apellido" + (i % 97));
+                        pp.setString(5, rnd.nextBoolean() ? "H" : "M");
+                        pp.setInt(6, 5 + rnd.nextInt(80));
+                        pp.setString(7, GRUPOS[rnd.nextInt(GRUPOS.length)]);
+                        pp.addBatch();
+
+                        // La comida 0 (culpable) la toma ~60%; el resto ~35% cada una
+                        boolean culpable = false;
+                        for (int m = 0; m < COMIDAS; m++) {
+                            if (rnd.nextDouble() < (m == 0 ? 0.60 : 0.35)) {
+                                pipe.setString(1, "IPE-" + m + "-" + i);
+                                pipe.setString(2, "ING-" + m);
+                                pipe.setString(3, id);
+                                pipe.addBatch();
+                                if (m == 0) culpable = true;
+                            }
+                        }
+
+                        if (rnd.nextDouble() < (culpable ? 0.55 : 0.08)) {
+                            String sg = "SG-" + i;
+                            psg.setString(1, sg);
+                            psg.setString(2, id);
+                            psg.setString(3, String.format("2024-06-%02d %02d:00:00", 1 + rnd.nextInt(3), rnd.nextInt(24)));
+                            psg.addBatch();
+                            int n = 1 + rnd.nextInt(3);
+                            for (int k = 0; k < n; k++) {
+                                pes.setString(1, "ES-" + i + "-" + k);
+                                pes.setString(2, sg);
+                                pes.setString(3, "SIN-" + ((i + k) % SINTOMAS.length));
+                                pes.addBatch();
+                            }
+                        }
+                        if (i % 1000 == 999) {
+                            pp.executeBatch(); pipe.executeBatch(); psg.executeBatch(); pes.executeBatch();
+                        }
+                    }
+                    pp.executeBatch(); pipe.executeBatch(); psg.executeBatch(); pes.executeBatch();
+                }
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(auto);
+            }
+        }
+    }
+
+    private static void ejecutar(Connection c, String sql) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.executeUpdate(sql);
+        }
+    }
+
+    private static String esquema() throws IOException {
+        String recurso = "com/toxisafe/db/schema.sql";
+        InputStream is = BaseDatosTemporal.class.getClassLoader().getResourceAsStream(recurso);
+        if (is == null) throw new IllegalStateException("No se encontró " + recurso + " en el classpath");
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+            return br.lines().collect(Collectors.joining("\n"));
+        }
+    }
+
+    /* ===================== Limpieza ===================== */
+
+    @Override
+    public void close() throws IOException {
+        pool.close();
+        borrar(dir);
+    }
+
+    static void borrar(Path dir) throws IOException {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> s = Files.walk(dir)) {
+            for (Path p : s.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.toxisafe.bench;
+
+import com.toxisafe.dao.impl.PersonaExpuestaDaoImpl;
+import com.toxisafe.dao.impl.SintomaDaoImpl;
+import com.toxisafe.model.PersonaExpuesta;
+import com.toxisafe.model.Sintoma;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste por consulta corta con y sin la caché de PreparedStatement del pool
+ * (sentencias = 0 prepara cada vez; 128 es el valor por defecto de la aplicación).
+ * Búsquedas por clave primaria: la preparación pesa más que la propia lectura.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheSentenciasBenchmark {
+
+    private static final int PERSONAS = 1_000;
+
+    @Param({"0", "128"})
+    public int sentencias;
+
+    private BaseDatosTemporal db;
+    private SintomaDaoImpl sintomas;
+    private PersonaExpuestaDaoImpl personas;
+    private int siguiente;
+
+    @Setup(Level.Trial)
+    public void preparar() throws Exception {
+        db = BaseDatosTemporal.conBrote(PERSONAS, sentencias);
+        sintomas = new SintomaDaoImpl(db.pool());
+        personas = new PersonaExpuestaDaoImpl(db.pool());
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws Exception {
+        db.close();
+    }
+
+    @Benchmark
+    public Optional<Sintoma> sintomaFindById() throws Exception {
+        return sintomas.findById("SIN-" + (siguiente++ % 5));
+    }
+
+    @Benchmark
+    public Optional<PersonaExpuesta> personaExpuestaFindById() throws Exception {
+        return personas.findById("EXP-" + (siguiente++ % PERSONAS));
+    }
+}
@@ -0,0 +1,79 @@
+package com.toxisafe.bench;
+
+import com.toxisafe.dao.impl.*;
+import com.toxisafe.model.Usuario;
+import com.toxisafe.service.*;
+import com.toxisafe.util.ConnectionPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estadística del brote sobre una instantánea ya cargada (lo que se repite al cambiar de pestaña,
+ * de estratificación o de definición de caso) y la carga de la instantánea desde SQLite.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EstadisticaBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int personas;
+
+    private BaseDatosTemporal db;
+    private EstadisticaService estadistica;
+    private BroteSnapshot snapshot;
+    private final Usuario admin = new Usuario(BaseDatosTemporal.ADMIN, "Admin", "ADMIN", "admin", "x");
+
+    @Setup(Level.Trial)
+    public void preparar() throws Exception {
+        db = BaseDatosTemporal.conBrote(personas);
+        ConnectionPool pool = db.pool();
+
+        var encuestadores = new BroteEncuestadorService(new BroteEncuestadorDaoImpl(pool), new BroteDaoImpl(pool),
+                new UsuarioDaoImpl(pool), null);
+        var sintomas = new SintomasGeneralesExpuestoService(new SintomasGeneralesExpuestoDaoImpl(pool),
+                new ExposicionSintomaDaoImpl(pool), new SintomaDaoImpl(pool), new PersonaExpuestaDaoImpl(pool),
+                new BroteDaoImpl(pool), encuestadores, null);
+        var personasSrv = new PersonaExpuestaService(new PersonaExpuestaDaoImpl(pool), new BroteDaoImpl(pool), encuestadores);
+        var ingestas = new IngestaService(new IngestaDaoImpl(pool), new IngestaPersonaExpuestaDaoImpl(pool),
+                new PersonaExpuestaDaoImpl(pool), new BroteDaoImpl(pool), encuestadores, null);
+        // Solo se usa al escribir; la estadística no lo necesita
+        AlimentoService.IngestaLookup lookup = idIngesta -> Optional.empty();
+        var alimentos = new AlimentoService(new AlimentoDaoImpl(pool), lookup, new BroteDaoImpl(pool), encuestadores,
+                new AlimentoCatalogoDaoImpl(pool), new AlimentoCatalogoAliasDaoImpl(pool), null);
+        var catalogoSintomas = new SintomaService(new SintomaDaoImpl(pool), new GrupoSintomaDaoImpl(pool));
+
+        estadistica = new EstadisticaService(personasSrv, sintomas, ingestas, alimentos, catalogoSintomas);
+        snapshot = estadistica.cargarSnapshot(BaseDatosTemporal.BROTE, admin);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws Exception {
+        db.close();
+    }
+
+    /** Tablas 2x2 por alimento (Fisher, RR, IC) sobre la instantánea. */
+    @Benchmark
+    public List<EstadisticaService.FoodAttackRow> computeAttackByFood() {
+        return estadistica.computeAttackByFood(snapshot);
+    }
+
+    /** Curva epidémica diaria sobre la instantánea. */
+    @Benchmark
+    public List<EstadisticaService.EpiBin> buildEpiCurveDaily() {
+        return estadistica.buildEpiCurveDaily(snapshot);
+    }
+
+    /** Carga completa desde SQLite (expuestos, síntomas, consumos, comidas). */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public BroteSnapshot cargarSnapshot() throws Exception {
+        return estadistica.cargarSnapshot(BaseDatosTemporal.BROTE, admin);
+    }
+}
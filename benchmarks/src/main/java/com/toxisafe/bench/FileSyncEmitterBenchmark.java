@@ -0,0 +1,53 @@
+package com.toxisafe.bench;
+
+import com.toxisafe.sync.util.FileSyncEmitter;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Emisión de cambios a la carpeta compartida: un JSON por cambio con escritura atómica (tmp + move). */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileSyncEmitterBenchmark {
+
+    private Path dir;
+    private FileSyncEmitter emisor;
+    private final AtomicLong secuencia = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void preparar() throws Exception {
+        dir = Files.createTempDirectory("toxisafe-bench-sync");
+        emisor = new FileSyncEmitter(dir, "instancia-bench");
+    }
+
+    // Vaciar entre iteraciones: el tamaño del directorio no debe sesgar las siguientes
+    @TearDown(Level.Iteration)
+    public void vaciar() throws Exception {
+        BaseDatosTemporal.borrar(dir);
+        Files.createDirectories(dir);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws Exception {
+        BaseDatosTemporal.borrar(dir);
+    }
+
+    @Benchmark
+    public void emitInsert() {
+        String id = "ING-" + secuencia.incrementAndGet();
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("id_ingesta", id);
+        datos.put("fecha_consumo", "2024-06-01 14:00:00");
+        datos.put("lugar_consumo", "Comedor A");
+        emisor.emitInsert("INGESTA", id, datos);
+    }
+}
@@ -0,0 +1,55 @@
+package com.toxisafe.bench;
+
+import com.toxisafe.dao.impl.PersonaExpuestaDaoImpl;
+import com.toxisafe.model.PersonaExpuesta;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Lectura del listado de expuestos de un brote e inserción individual, contra un SQLite temporal. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersonaExpuestaDaoBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int personas;
+
+    private BaseDatosTemporal db;
+    private PersonaExpuestaDaoImpl dao;
+    private final AtomicLong secuencia = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void preparar() throws Exception {
+        db = BaseDatosTemporal.conBrote(personas);
+        dao = new PersonaExpuestaDaoImpl(db.pool());
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws Exception {
+        db.close();
+    }
+
+    @Benchmark
+    public List<PersonaExpuesta> findByBroteId() throws Exception {
+        return dao.findByBroteId(BaseDatosTemporal.BROTE);
+    }
+
+    /** Un INSERT con su commit (el brote crece durante la medición, como en una encuesta real). */
+    @Benchmark
+    public void insert() throws Exception {
+        long n = secuencia.incrementAndGet();
+        PersonaExpuesta p = new PersonaExpuesta();
+        p.setIdExpuesto("NUEVO-" + n);
+        p.setIdBrote(BaseDatosTemporal.BROTE);
+        p.setNombreExpuesto("Nombre" + n);
+        p.setApellidoExpuesto("Apellido" + n);
+        p.setSexoExpuesto(n % 2 == 0 ? "H" : "M");
+        dao.insert(p);
+    }
+}
@@ -0,0 +1,35 @@
+package com.toxisafe.bench;
+
+import com.toxisafe.service.Tablas2x2;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Prueba exacta de Fisher (bilateral y mid-p) en una tabla pequeña y en una de un brote grande. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Tablas2x2Benchmark {
+
+    // Campos no finales: el JIT no puede plegar la llamada como constante
+    public int a = 3, b = 1, c = 1, d = 3;
+    public int ga = 2_950, gb = 3_050, gc = 310, gd = 3_690;
+
+    @Benchmark
+    public Tablas2x2.Fisher fisherPequena() {
+        return Tablas2x2.fisher(a, b, c, d);
+    }
+
+    @Benchmark
+    public Tablas2x2.Fisher fisherGrande() {
+        return Tablas2x2.fisher(ga, gb, gc, gd);
+    }
+
+    @Benchmark
+    public Tablas2x2.ChiCuadrado chiCuadradoYates() {
+        return Tablas2x2.chiCuadradoYates(ga, gb, gc, gd);
+    }
+}
@@ -0,0 +1,70 @@
+package com.toxisafe.bench;
+
+import com.toxisafe.util.Texto;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Normalización de texto: {@link Texto} frente a la versión que tenía cada servicio
+ * (NFD + replaceAll("\\p{M}") en cada llamada).
+ * - repetidos: pocos valores distintos, como sexo/grupo/síntomas en el bucle por expuesto
+ * - distintos: más valores que ranuras de la memo (todo fallos de caché)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextoBenchmark {
+
+    private static final String[] BASE = {"Vómitos", "Diarrea", "Dolor o calambres abdominales", "Fiebre",
+            "Náuseas", "Niños", "Adultos", "Mujer", "Hombre", "  Tortilla  de patata ", "ENSALADA MIXTA", "Epidemiólogo"};
+
+    private String[] repetidos;
+    private String[] distintos;
+
+    @Setup
+    public void preparar() {
+        repetidos = new String[1_024];
+        for (int i = 0; i < repetidos.length; i++) repetidos[i] = BASE[i % BASE.length];
+        distintos = new String[16_384];
+        for (int i = 0; i < distintos.length; i++) distintos[i] = BASE[i % BASE.length] + " " + i;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1_024)
+    public void anteriorRepetidos(Blackhole bh) {
+        for (String s : repetidos) bh.consume(anterior(s));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1_024)
+    public void textoRepetidos(Blackhole bh) {
+        for (String s : repetidos) bh.consume(Texto.codigo(s));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(16_384)
+    public void anteriorDistintos(Blackhole bh) {
+        for (String s : distintos) bh.consume(anterior(s));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(16_384)
+    public void textoDistintos(Blackhole bh) {
+        for (String s : distintos) bh.consume(Texto.codigo(s));
+    }
+
+    // Copia de la normalización que había en EstadisticaService/CasoDefinicionService
+    private static String anterior(String s) {
+        if (s == null) return "";
+        String t = Normalizer.normalize(s, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "");
+        return t.trim().toUpperCase(Locale.ROOT);
+    }
+}
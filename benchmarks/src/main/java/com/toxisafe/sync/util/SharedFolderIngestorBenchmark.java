@@ -0,0 +1,70 @@
+package com.toxisafe.sync.util;
+
+import com.toxisafe.bench.BaseDatosTemporal;
+import com.toxisafe.dao.impl.*;
+import com.toxisafe.util.ConnectionPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consumo del inbox: una pasada de {@code consumeOnce} sobre {@link #CAMBIOS} archivos JSON
+ * recién escritos por otra instancia (lectura, deduplicación y aplicación por lotes en SQLite).
+ * En el paquete de la clase medida porque consumeOnce es de paquete.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class SharedFolderIngestorBenchmark {
+
+    public static final int CAMBIOS = 200;
+
+    @Param({"1", "200"})
+    public int tamanoLote;
+
+    private BaseDatosTemporal db;
+    private SharedFolderIngestor ingestor;
+    private FileSyncEmitter remoto;
+    private long secuencia;
+
+    @Setup(Level.Trial)
+    public void preparar() throws Exception {
+        db = BaseDatosTemporal.crear();
+        ConnectionPool pool = db.pool();
+        ingestor = new SharedFolderIngestor(pool, db.directorio().resolve("compartida"), "instancia-local",
+                new BroteDaoImpl(pool), new PersonaExpuestaDaoImpl(pool), new IngestaDaoImpl(pool),
+                new AlimentoDaoImpl(pool), new SintomasGeneralesExpuestoDaoImpl(pool), new ExposicionSintomaDaoImpl(pool),
+                new BroteEncuestadorDaoImpl(pool), new InformeDaoImpl(pool), new IngestaPersonaExpuestaDaoImpl(pool));
+        ingestor.setTamanoLote(tamanoLote);
+        remoto = new FileSyncEmitter(ingestor.inboxDir(), "instancia-remota");
+    }
+
+    /** Fuera de la medición: cambios nuevos en el inbox (los de la pasada anterior ya se consumieron). */
+    @Setup(Level.Invocation)
+    public void escribirInbox() {
+        for (int i = 0; i < CAMBIOS; i++) {
+            String id = "ING-" + (++secuencia);
+            Map<String, Object> datos = new LinkedHashMap<>();
+            datos.put("id_ingesta", id);
+            datos.put("fecha_consumo", "2024-06-01 14:00:00");
+            datos.put("lugar_consumo", "Comedor A");
+            remoto.emitInsert("INGESTA", id, datos);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws Exception {
+        ingestor.close();
+        db.close();
+    }
+
+    @Benchmark
+    public int consumeOnce() throws Exception {
+        return ingestor.consumeOnce();
+    }
+}
@@ -4,8 +4,10 @@ import com.toxisafe.dao.*;
 import com.toxisafe.dao.impl.*; // si usas *Impl concretas
 import com.toxisafe.service.*;
 import com.toxisafe.sync.SyncEmitter;
+import com.toxisafe.sync.util.SyncEvents;
 import com.toxisafe.sync.util.SyncService;
 import com.toxisafe.ui.controller.LoginController;
+import com.toxisafe.util.ConnectionPool;
 import com.toxisafe.util.DBConnection;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
@@ -15,12 +17,11 @@ import javafx.stage.Stage;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.sql.Connection;
 import java.util.Optional;
 
 public class MainApplication extends Application {
 
-    private Connection connection;
+    private ConnectionPool pool;
 
     // DAOs (ajusta a tus nombres/paquetes reales)
     private BroteDao broteDao;
@@ -54,23 +55,23 @@ public class MainApplication extends Application {
 
     @Override
     public void start(Stage primaryStage) throws Exception {
-        // 1) BD
-        connection = DBConnection.getConnection();
+        // 1) BD (pool WAL: una escritora y varias lectoras)
+        pool = DBConnection.getPool();
 
         // 2) DAOs (usa tus implementaciones reales)
-        UsuarioDao usuarioDao = new UsuarioDaoImpl(connection);
-        broteDao               = new BroteDaoImpl(connection);
-        personaExpuestaDao     = new PersonaExpuestaDaoImpl(connection);
-        ingestaDao             = new IngestaDaoImpl(connection);
-        alimentoDao            = new AlimentoDaoImpl(connection);
-        sintomasGeneralesDao   = new SintomasGeneralesExpuestoDaoImpl(connection);
-        exposicionSintomaDao   = new ExposicionSintomaDaoImpl(connection);
-        broteEncuestadorDao    = new BroteEncuestadorDaoImpl(connection);
-        informeDao             = new InformeDaoImpl(connection);
-        SintomaDao sintomaDao = new SintomaDaoImpl(connection);
-        alimentoCatalogoAliasDao = new AlimentoCatalogoAliasDaoImpl(connection);
-        alimentoCatalogoDao    = new AlimentoCatalogoDaoImpl(connection);
-        ingestaPersonaExpuestaDao = new IngestaPersonaExpuestaDaoImpl(connection);
+        UsuarioDao usuarioDao = new UsuarioDaoImpl(pool);
+        broteDao               = new BroteDaoImpl(pool);
+        personaExpuestaDao     = new PersonaExpuestaDaoImpl(pool);
+        ingestaDao             = new IngestaDaoImpl(pool);
+        alimentoDao            = new AlimentoDaoImpl(pool);
+        sintomasGeneralesDao   = new SintomasGeneralesExpuestoDaoImpl(pool);
+        exposicionSintomaDao   = new ExposicionSintomaDaoImpl(pool);
+        broteEncuestadorDao    = new BroteEncuestadorDaoImpl(pool);
+        informeDao             = new InformeDaoImpl(pool);
+        SintomaDao sintomaDao = new SintomaDaoImpl(pool);
+        alimentoCatalogoAliasDao = new AlimentoCatalogoAliasDaoImpl(pool);
+        alimentoCatalogoDao    = new AlimentoCatalogoDaoImpl(pool);
+        ingestaPersonaExpuestaDao = new IngestaPersonaExpuestaDaoImpl(pool);
         AlimentoService.IngestaLookup ingestaLookup = (String idIngesta) -> {
             var enlaces = ingestaPersonaExpuestaDao.findByIngestaId(idIngesta);
             if (enlaces.isEmpty()) return Optional.empty();
@@ -83,7 +84,7 @@ public class MainApplication extends Application {
         broteEncuestadorService      = new BroteEncuestadorService(broteEncuestadorDao, broteDao, usuarioDao);
         broteService                 = new BroteService(broteDao, broteEncuestadorDao, usuarioDao, syncEmitter);
         personaExpuestaService       = new PersonaExpuestaService(personaExpuestaDao, broteDao, broteEncuestadorService);
-        ingestaService               = new IngestaService(ingestaDao, new IngestaPersonaExpuestaDaoImpl(connection),
+        ingestaService               = new IngestaService(ingestaDao, new IngestaPersonaExpuestaDaoImpl(pool),
                 personaExpuestaDao, broteDao, broteEncuestadorService, syncEmitter);
         alimentoService              = new AlimentoService(alimentoDao,ingestaLookup, broteDao, broteEncuestadorService,
                 alimentoCatalogoDao, alimentoCatalogoAliasDao, syncEmitter);
@@ -98,13 +99,13 @@ public class MainApplication extends Application {
         // 4) Sync (emisor + ingestor) — carpeta de sincronización
         Path sharedRoot = resolveSharedRoot(); // %TOXISAFE_SYNC_DIR% o ./sync-shared
         sync = SyncService.createDefault(
-                connection, sharedRoot,
+                pool, sharedRoot,
                 broteDao, personaExpuestaDao, ingestaDao, alimentoDao,
                 sintomasGeneralesDao, exposicionSintomaDao,
                 broteEncuestadorDao, informeDao, ingestaPersonaExpuestaDao
         );
         // 4.1) Inyección del emitter en los servicios que sincronizan
-        SyncEmitter emitter = sync.emitter();
+        SyncEmitter emitter = SyncEvents.notificando(sync.emitter()); // además avisa a cachés locales
         broteService.setSyncEmitter(emitter);
         personaExpuestaService.setSyncEmitter(emitter);
         ingestaService.setSyncEmitter(emitter);
@@ -113,8 +114,9 @@ public class MainApplication extends Application {
         broteEncuestadorService.setSyncEmitter(emitter);
         informeService.setSyncEmitter(emitter);
         // (añade más si los tienes)
+        SyncEvents.addListener(broteEncuestadorService); // asignaciones en caché: locales y remotas
 
-        // 4.2) Arrancar ingestión periódica (cada 5–10 s)
+        // 4.2) Arrancar ingestión (por eventos de carpeta; sondeo de respaldo como mucho cada 7 s)
         sync.start(7);
         // 5) A partir de aquí, tu flujo normal (login, cargar ventanas, etc.)
 
@@ -144,7 +146,7 @@ public class MainApplication extends Application {
     @Override
     public void stop() throws Exception {
         if (sync != null) sync.close();
-        if (connection != null) connection.close();
+        DBConnection.close();
         super.stop();
     }
 
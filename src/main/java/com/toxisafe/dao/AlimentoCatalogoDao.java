@@ -14,4 +14,7 @@ public interface AlimentoCatalogoDao extends GenericDao<AlimentoCatalogo, String
     List<String> findAllNombres() throws SQLException;
     List<String> findByPrefix(String prefix) throws SQLException;
     boolean existsNombreExacto(String nombre) throws SQLException;
+
+    /** Borra la entrada y sus alias en una sola transacción. */
+    void deleteConAlias(String idCatalogo) throws SQLException;
 }
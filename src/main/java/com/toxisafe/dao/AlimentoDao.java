@@ -4,6 +4,7 @@ import com.toxisafe.model.Alimento;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 
 public interface AlimentoDao extends GenericDao<Alimento, String> {
     List<Alimento> findByIngestaId(String ingestaId) throws SQLException;
@@ -12,4 +13,18 @@ public interface AlimentoDao extends GenericDao<Alimento, String> {
 
     /** Borra todos los alimentos de una ingesta (si no tienes ON DELETE CASCADE). */
     void deleteByIngestaId(String ingestaId) throws SQLException;
+
+    /**
+     * Alimentos consumidos por cada expuesto del brote (una sola consulta con JOIN).
+     * Clave = id_expuesto; valores en orden de enlace de ingesta y nombre de alimento.
+     */
+    Map<String, List<Alimento>> findConsumidosByBroteId(String broteId) throws SQLException;
+
+    /**
+     * Alimentos sin id_catalogo (o con uno que ya no existe en el catálogo), con el brote de su
+     * ingesta y su estado (null si la ingesta no está enlazada a ningún expuesto).
+     */
+    List<AlimentoSinCatalogo> findSinCatalogo() throws SQLException;
+
+    record AlimentoSinCatalogo(Alimento alimento, String idBrote, String estadoBrote) { }
 }
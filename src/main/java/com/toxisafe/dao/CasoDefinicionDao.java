@@ -0,0 +1,11 @@
+package com.toxisafe.dao;
+
+import com.toxisafe.model.CasoDefinicion;
+
+import java.sql.SQLException;
+import java.util.List;
+
+public interface CasoDefinicionDao extends GenericDao<CasoDefinicion, String> {
+    /** Definiciones del brote más las plantillas comunes (id_brote NULL), por nombre. */
+    List<CasoDefinicion> findByBroteIdConPlantillas(String broteId) throws SQLException;
+}
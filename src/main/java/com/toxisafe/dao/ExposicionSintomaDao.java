@@ -8,4 +8,16 @@ import java.util.Optional;
 public interface ExposicionSintomaDao extends GenericDao<ExposicionSintoma, String> {
     List<ExposicionSintoma> findBySintomasGeneralesId(String sintomasGeneralesId) throws SQLException;
     Optional<ExposicionSintoma> findByPar(String idSintomasGenerales, String idSintoma) throws SQLException;
+
+    /** Todas las exposiciones de síntomas de los expuestos de un brote (una sola consulta). */
+    List<ExposicionSintoma> findByBroteId(String broteId) throws SQLException;
+
+    /**
+     * Síntomas de todos los expuestos de un brote con su nombre de catálogo (una sola consulta).
+     * Hay al menos una fila por expuesto: idSintoma null si no tiene síntomas registrados.
+     */
+    List<SintomaDeExpuesto> findSintomasDeExpuestosByBroteId(String broteId) throws SQLException;
+
+    /** Fila de {@link #findSintomasDeExpuestosByBroteId}; nombreSintoma null si el id no está en SINTOMA. */
+    record SintomaDeExpuesto(String idExpuesto, String idSintoma, String nombreSintoma) { }
 }
@@ -1,6 +1,7 @@
 package com.toxisafe.dao;
 
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -10,4 +11,11 @@ public interface GenericDao<T, ID> {
     void update(T entity) throws SQLException;
     void delete(ID id) throws SQLException;
     List<T> findAll() throws SQLException;
+
+    // Lotes: una sola transacción (o la ya abierta en el hilo) y executeBatch
+    void insertAll(Collection<? extends T> entities) throws SQLException;
+    void updateAll(Collection<? extends T> entities) throws SQLException;
+    void deleteAllById(Collection<? extends ID> ids) throws SQLException;
+    /** Actualiza los que existen e inserta el resto. */
+    void upsertAll(Collection<? extends T> entities) throws SQLException;
 }
@@ -13,4 +13,11 @@ public interface IngestaPersonaExpuestaDao extends GenericDao<IngestaPersonaExpu
     List<IngestaPersonaExpuesta> findSospechosasByExpuestoId(String expuestoId) throws SQLException;
     void deleteByIngestaAndExpuesto(String ingestaId, String expuestoId) throws SQLException;
     void deleteByIngestaId(String ingestaId) throws SQLException;
+
+    /** Ingestas de todos los expuestos de un brote con su fecha y lugar (una sola consulta). */
+    List<ConsumoDeExpuesto> findConsumosByBroteId(String broteId) throws SQLException;
+
+    /** Fila de {@link #findConsumosByBroteId}: un enlace ingesta-expuesto con los datos de la ingesta. */
+    record ConsumoDeExpuesto(String idIngesta, String fechaConsumo, String lugarConsumo,
+                             String idExpuesto, boolean sospechosa) { }
 }
@@ -2,8 +2,12 @@ package com.toxisafe.dao;
 
 import com.toxisafe.model.SintomasGeneralesExpuesto;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.Optional;
 
 public interface SintomasGeneralesExpuestoDao extends GenericDao<SintomasGeneralesExpuesto, String> {
     Optional<SintomasGeneralesExpuesto> findByExpuestoId(String expuestoId) throws SQLException;
+
+    /** Registros generales de todos los expuestos de un brote (JOIN con PERSONA_EXPUESTA). */
+    List<SintomasGeneralesExpuesto> findByBroteId(String broteId) throws SQLException;
 }
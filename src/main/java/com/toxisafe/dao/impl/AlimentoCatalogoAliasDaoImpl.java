@@ -2,28 +2,32 @@ package com.toxisafe.dao.impl;
 
 import com.toxisafe.dao.AlimentoCatalogoAliasDao;
 import com.toxisafe.model.AlimentoCatalogoAlias;
+import com.toxisafe.util.ConnectionPool;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Locale;
 
 
 public class AlimentoCatalogoAliasDaoImpl implements AlimentoCatalogoAliasDao {
-    private final Connection connection;
+    private final ConnectionPool pool;
 
-    public AlimentoCatalogoAliasDaoImpl(Connection connection) {
-        this.connection = connection;
+    private static final String SQL_INSERT = "INSERT INTO ALIMENTO_CATALOGO_ALIAS (alias, alias_norm, id_catalogo) VALUES (?,?,?)";
+    private static final String SQL_UPDATE = "UPDATE ALIMENTO_CATALOGO_ALIAS SET alias_norm=?, id_catalogo=? WHERE alias=?";
+    private static final String SQL_DELETE = "DELETE FROM ALIMENTO_CATALOGO_ALIAS WHERE alias=?";
+
+    public AlimentoCatalogoAliasDaoImpl(ConnectionPool pool) {
+        this.pool = pool;
     }
 
     @Override
     public void insert(AlimentoCatalogoAlias a) throws SQLException {
-        String sql = "INSERT INTO ALIMENTO_CATALOGO_ALIAS (alias, alias_norm, id_catalogo) VALUES (?,?,?)";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, a.getAlias());
-            ps.setString(2, a.getAliasNorm());
-            ps.setString(3, a.getIdCatalogo());
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_INSERT)) {
+            bindInsert(ps, a);
             ps.executeUpdate();
         }
     }
@@ -35,27 +39,61 @@ public class AlimentoCatalogoAliasDaoImpl implements AlimentoCatalogoAliasDao {
 
     @Override
     public void update(AlimentoCatalogoAlias a) throws SQLException {
-        String sql = "UPDATE ALIMENTO_CATALOGO_ALIAS SET alias_norm=?, id_catalogo=? WHERE alias=?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, a.getAliasNorm());
-            ps.setString(2, a.getIdCatalogo());
-            ps.setString(3, a.getAlias());
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_UPDATE)) {
+            bindUpdate(ps, a);
             ps.executeUpdate();
         }
     }
 
     @Override
     public void delete(String alias) throws SQLException {
-        try (PreparedStatement ps = connection.prepareStatement("DELETE FROM ALIMENTO_CATALOGO_ALIAS WHERE alias=?")) {
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_DELETE)) {
             ps.setString(1, alias);
             ps.executeUpdate();
         }
     }
 
+    // ===== Lotes (una transacción, executeBatch) =====
+
+    @Override
+    public void insertAll(Collection<? extends AlimentoCatalogoAlias> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_INSERT, items, AlimentoCatalogoAliasDaoImpl::bindInsert);
+    }
+
+    @Override
+    public void updateAll(Collection<? extends AlimentoCatalogoAlias> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_UPDATE, items, AlimentoCatalogoAliasDaoImpl::bindUpdate);
+    }
+
+    @Override
+    public void deleteAllById(Collection<? extends String> ids) throws SQLException {
+        Lotes.ejecutar(pool, SQL_DELETE, ids, (ps, id) -> ps.setString(1, id));
+    }
+
+    @Override
+    public void upsertAll(Collection<? extends AlimentoCatalogoAlias> items) throws SQLException {
+        Lotes.upsert(pool, items, SQL_UPDATE, AlimentoCatalogoAliasDaoImpl::bindUpdate, SQL_INSERT, AlimentoCatalogoAliasDaoImpl::bindInsert);
+    }
+
+    private static void bindInsert(PreparedStatement ps, AlimentoCatalogoAlias a) throws SQLException {
+        ps.setString(1, a.getAlias());
+        ps.setString(2, a.getAliasNorm());
+        ps.setString(3, a.getIdCatalogo());
+    }
+
+    private static void bindUpdate(PreparedStatement ps, AlimentoCatalogoAlias a) throws SQLException {
+        ps.setString(1, a.getAliasNorm());
+        ps.setString(2, a.getIdCatalogo());
+        ps.setString(3, a.getAlias());
+    }
+
     @Override
     public List<AlimentoCatalogoAlias> findAll() throws SQLException {
         List<AlimentoCatalogoAlias> out = new ArrayList<>();
-        try (Statement st = connection.createStatement();
+        try (Connection conn = pool.reader();
+             Statement st = conn.createStatement();
              ResultSet rs = st.executeQuery("SELECT * FROM ALIMENTO_CATALOGO_ALIAS")) {
             while (rs.next()) out.add(map(rs));
         }
@@ -65,7 +103,8 @@ public class AlimentoCatalogoAliasDaoImpl implements AlimentoCatalogoAliasDao {
     @Override
     public Optional<AlimentoCatalogoAlias> findByAlias(String alias) throws SQLException {
         String sql = "SELECT * FROM ALIMENTO_CATALOGO_ALIAS WHERE alias = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, alias);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) return Optional.of(map(rs));
@@ -76,7 +115,8 @@ public class AlimentoCatalogoAliasDaoImpl implements AlimentoCatalogoAliasDao {
     @Override
     public Optional<AlimentoCatalogoAlias> findByAliasNorm(String aliasNorm) throws SQLException {
         String sql = "SELECT * FROM ALIMENTO_CATALOGO_ALIAS WHERE alias_norm = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, aliasNorm);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) return Optional.of(map(rs));
@@ -88,7 +128,8 @@ public class AlimentoCatalogoAliasDaoImpl implements AlimentoCatalogoAliasDao {
     public List<AlimentoCatalogoAlias> findByCatalogoId(String idCatalogo) throws SQLException {
         List<AlimentoCatalogoAlias> out = new ArrayList<>();
         String sql = "SELECT * FROM ALIMENTO_CATALOGO_ALIAS WHERE id_catalogo = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, idCatalogo);
             ResultSet rs = ps.executeQuery();
             while (rs.next()) out.add(map(rs));
@@ -110,7 +151,8 @@ public class AlimentoCatalogoAliasDaoImpl implements AlimentoCatalogoAliasDao {
                 "FROM ALIMENTO_CATALOGO_ALIAS a " +
                 "JOIN ALIMENTO_CATALOGO c ON c.id_catalogo = a.id_catalogo " +
                 "WHERE a.alias = ? LIMIT 1";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, aliasExacto);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) return Optional.ofNullable(rs.getString(1));
@@ -125,7 +167,8 @@ public class AlimentoCatalogoAliasDaoImpl implements AlimentoCatalogoAliasDao {
                 "JOIN ALIMENTO_CATALOGO c ON c.id_catalogo = a.id_catalogo " +
                 "WHERE a.alias_norm LIKE ? " +
                 "ORDER BY c.nombre_canonico";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, prefix.toLowerCase(Locale.ROOT).trim() + "%");
             try (ResultSet rs = ps.executeQuery()) {
                 List<String> out = new ArrayList<>();
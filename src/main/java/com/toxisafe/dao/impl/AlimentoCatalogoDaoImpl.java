@@ -2,28 +2,32 @@ package com.toxisafe.dao.impl;
 
 import com.toxisafe.dao.AlimentoCatalogoDao;
 import com.toxisafe.model.AlimentoCatalogo;
+import com.toxisafe.util.ConnectionPool;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 
 public class AlimentoCatalogoDaoImpl implements AlimentoCatalogoDao {
-    private final Connection connection;
+    private final ConnectionPool pool;
 
-    public AlimentoCatalogoDaoImpl(Connection connection) {
-        this.connection = connection;
+    private static final String SQL_INSERT = "INSERT INTO ALIMENTO_CATALOGO (id_catalogo, nombre_canonico, nombre_norm, categoria) VALUES (?,?,?,?)";
+    private static final String SQL_UPDATE = "UPDATE ALIMENTO_CATALOGO SET nombre_canonico=?, nombre_norm=?, categoria=? WHERE id_catalogo=?";
+    private static final String SQL_DELETE = "DELETE FROM ALIMENTO_CATALOGO WHERE id_catalogo=?";
+    private static final String SQL_DELETE_ALIAS = "DELETE FROM ALIMENTO_CATALOGO_ALIAS WHERE id_catalogo=?";
+
+    public AlimentoCatalogoDaoImpl(ConnectionPool pool) {
+        this.pool = pool;
     }
 
     @Override
     public void insert(AlimentoCatalogo c) throws SQLException {
-        String sql = "INSERT INTO ALIMENTO_CATALOGO (id_catalogo, nombre_canonico, nombre_norm, categoria) VALUES (?,?,?,?)";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, c.getIdCatalogo());
-            ps.setString(2, c.getNombreCanonico());
-            ps.setString(3, c.getNombreNorm());
-            ps.setString(4, c.getCategoria());
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_INSERT)) {
+            bindInsert(ps, c);
             ps.executeUpdate();
         }
     }
@@ -31,7 +35,8 @@ public class AlimentoCatalogoDaoImpl implements AlimentoCatalogoDao {
     @Override
     public Optional<AlimentoCatalogo> findById(String id) throws SQLException {
         String sql = "SELECT * FROM ALIMENTO_CATALOGO WHERE id_catalogo = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, id);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
@@ -43,28 +48,77 @@ public class AlimentoCatalogoDaoImpl implements AlimentoCatalogoDao {
 
     @Override
     public void update(AlimentoCatalogo c) throws SQLException {
-        String sql = "UPDATE ALIMENTO_CATALOGO SET nombre_canonico=?, nombre_norm=?, categoria=? WHERE id_catalogo=?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, c.getNombreCanonico());
-            ps.setString(2, c.getNombreNorm());
-            ps.setString(3, c.getCategoria());
-            ps.setString(4, c.getIdCatalogo());
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_UPDATE)) {
+            bindUpdate(ps, c);
             ps.executeUpdate();
         }
     }
 
     @Override
     public void delete(String id) throws SQLException {
-        try (PreparedStatement ps = connection.prepareStatement("DELETE FROM ALIMENTO_CATALOGO WHERE id_catalogo=?")) {
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_DELETE)) {
             ps.setString(1, id);
             ps.executeUpdate();
         }
     }
 
+    @Override
+    public void deleteConAlias(String id) throws SQLException {
+        Lotes.enTransaccion(pool, conn -> {
+            try (PreparedStatement alias = conn.prepareStatement(SQL_DELETE_ALIAS);
+                 PreparedStatement catalogo = conn.prepareStatement(SQL_DELETE)) {
+                alias.setString(1, id);
+                alias.executeUpdate();
+                catalogo.setString(1, id);
+                catalogo.executeUpdate();
+            }
+            return null;
+        });
+    }
+
+    // ===== Lotes (una transacción, executeBatch) =====
+
+    @Override
+    public void insertAll(Collection<? extends AlimentoCatalogo> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_INSERT, items, AlimentoCatalogoDaoImpl::bindInsert);
+    }
+
+    @Override
+    public void updateAll(Collection<? extends AlimentoCatalogo> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_UPDATE, items, AlimentoCatalogoDaoImpl::bindUpdate);
+    }
+
+    @Override
+    public void deleteAllById(Collection<? extends String> ids) throws SQLException {
+        Lotes.ejecutar(pool, SQL_DELETE, ids, (ps, id) -> ps.setString(1, id));
+    }
+
+    @Override
+    public void upsertAll(Collection<? extends AlimentoCatalogo> items) throws SQLException {
+        Lotes.upsert(pool, items, SQL_UPDATE, AlimentoCatalogoDaoImpl::bindUpdate, SQL_INSERT, AlimentoCatalogoDaoImpl::bindInsert);
+    }
+
+    private static void bindInsert(PreparedStatement ps, AlimentoCatalogo c) throws SQLException {
+        ps.setString(1, c.getIdCatalogo());
+        ps.setString(2, c.getNombreCanonico());
+        ps.setString(3, c.getNombreNorm());
+        ps.setString(4, c.getCategoria());
+    }
+
+    private static void bindUpdate(PreparedStatement ps, AlimentoCatalogo c) throws SQLException {
+        ps.setString(1, c.getNombreCanonico());
+        ps.setString(2, c.getNombreNorm());
+        ps.setString(3, c.getCategoria());
+        ps.setString(4, c.getIdCatalogo());
+    }
+
     @Override
     public List<AlimentoCatalogo> findAll() throws SQLException {
         List<AlimentoCatalogo> out = new ArrayList<>();
-        try (Statement st = connection.createStatement();
+        try (Connection conn = pool.reader();
+             Statement st = conn.createStatement();
              ResultSet rs = st.executeQuery("SELECT * FROM ALIMENTO_CATALOGO")) {
             while (rs.next()) out.add(map(rs));
         }
@@ -74,7 +128,8 @@ public class AlimentoCatalogoDaoImpl implements AlimentoCatalogoDao {
     @Override
     public Optional<AlimentoCatalogo> findByNombreCanonico(String nombreCanonico) throws SQLException {
         String sql = "SELECT * FROM ALIMENTO_CATALOGO WHERE nombre_canonico = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, nombreCanonico);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) return Optional.of(map(rs));
@@ -85,7 +140,8 @@ public class AlimentoCatalogoDaoImpl implements AlimentoCatalogoDao {
     @Override
     public Optional<AlimentoCatalogo> findByNombreNorm(String nombreNorm) throws SQLException {
         String sql = "SELECT * FROM ALIMENTO_CATALOGO WHERE nombre_norm = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, nombreNorm);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) return Optional.of(map(rs));
@@ -105,7 +161,8 @@ public class AlimentoCatalogoDaoImpl implements AlimentoCatalogoDao {
     @Override
     public List<String> findAllNombres() throws SQLException {
         String sql = "SELECT nombre_canonico FROM ALIMENTO_CATALOGO ORDER BY nombre_canonico";
-        try (PreparedStatement ps = connection.prepareStatement(sql);
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
             List<String> out = new ArrayList<>();
             while (rs.next()) out.add(rs.getString(1));
@@ -120,7 +177,8 @@ public class AlimentoCatalogoDaoImpl implements AlimentoCatalogoDao {
                 "FROM ALIMENTO_CATALOGO " +
                 "WHERE nombre_norm LIKE ? " +
                 "ORDER BY nombre_canonico";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, prefix.toLowerCase(Locale.ROOT).trim() + "%");
             try (ResultSet rs = ps.executeQuery()) {
                 List<String> out = new ArrayList<>();
@@ -133,7 +191,8 @@ public class AlimentoCatalogoDaoImpl implements AlimentoCatalogoDao {
     @Override
     public boolean existsNombreExacto(String nombre) throws SQLException {
         String sql = "SELECT 1 FROM ALIMENTO_CATALOGO WHERE nombre_canonico = ? LIMIT 1";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, nombre);
             try (ResultSet rs = ps.executeQuery()) {
                 return rs.next();
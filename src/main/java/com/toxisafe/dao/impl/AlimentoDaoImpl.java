@@ -2,31 +2,33 @@ package com.toxisafe.dao.impl;
 
 import com.toxisafe.dao.AlimentoDao;
 import com.toxisafe.model.Alimento;
+import com.toxisafe.util.ConnectionPool;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public class AlimentoDaoImpl implements AlimentoDao {
 
-    private final Connection connection;
+    private final ConnectionPool pool;
 
-    public AlimentoDaoImpl(Connection connection) {
-        this.connection = connection;
+    private static final String SQL_INSERT = "INSERT INTO ALIMENTO (id_alimento, id_ingesta, nombre, id_catalogo) VALUES (?, ?, ?, ?)";
+    private static final String SQL_UPDATE = "UPDATE ALIMENTO SET id_ingesta = ?, nombre = ?, id_catalogo = ? WHERE id_alimento = ?";
+    private static final String SQL_DELETE = "DELETE FROM ALIMENTO WHERE id_alimento = ?";
+
+    public AlimentoDaoImpl(ConnectionPool pool) {
+        this.pool = pool;
     }
 
     @Override
     public void insert(Alimento alimento) throws SQLException {
-        final String sql = "INSERT INTO ALIMENTO (id_alimento, id_ingesta, nombre, id_catalogo) VALUES (?, ?, ?, ?)";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, alimento.getIdAlimento());
-            ps.setString(2, alimento.getIdIngesta());
-            ps.setString(3, alimento.getNombre());
-            if (alimento.getIdCatalogo() == null || alimento.getIdCatalogo().isBlank())
-                ps.setNull(4, java.sql.Types.VARCHAR);
-            else
-                ps.setString(4, alimento.getIdCatalogo());
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_INSERT)) {
+            bindInsert(ps, alimento);
             ps.executeUpdate();
         }
     }
@@ -34,7 +36,8 @@ public class AlimentoDaoImpl implements AlimentoDao {
     @Override
     public Optional<Alimento> findById(String id) throws SQLException {
         final String sql = "SELECT id_alimento, id_ingesta, nombre, id_catalogo FROM ALIMENTO WHERE id_alimento = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, id);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -52,33 +55,70 @@ public class AlimentoDaoImpl implements AlimentoDao {
 
     @Override
     public void update(Alimento alimento) throws SQLException {
-        final String sql = "UPDATE ALIMENTO SET id_ingesta = ?, nombre = ?, id_catalogo = ? WHERE id_alimento = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, alimento.getIdIngesta());
-            ps.setString(2, alimento.getNombre());
-            if (alimento.getIdCatalogo() == null || alimento.getIdCatalogo().isBlank())
-                ps.setNull(3, java.sql.Types.VARCHAR);
-            else
-                ps.setString(3, alimento.getIdCatalogo());
-            ps.setString(4, alimento.getIdAlimento());
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_UPDATE)) {
+            bindUpdate(ps, alimento);
             ps.executeUpdate();
         }
     }
 
     @Override
     public void delete(String id) throws SQLException {
-        final String sql = "DELETE FROM ALIMENTO WHERE id_alimento = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_DELETE)) {
             ps.setString(1, id);
             ps.executeUpdate();
         }
     }
 
+    // ===== Lotes (una transacción, executeBatch) =====
+
+    @Override
+    public void insertAll(Collection<? extends Alimento> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_INSERT, items, AlimentoDaoImpl::bindInsert);
+    }
+
+    @Override
+    public void updateAll(Collection<? extends Alimento> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_UPDATE, items, AlimentoDaoImpl::bindUpdate);
+    }
+
+    @Override
+    public void deleteAllById(Collection<? extends String> ids) throws SQLException {
+        Lotes.ejecutar(pool, SQL_DELETE, ids, (ps, id) -> ps.setString(1, id));
+    }
+
+    @Override
+    public void upsertAll(Collection<? extends Alimento> items) throws SQLException {
+        Lotes.upsert(pool, items, SQL_UPDATE, AlimentoDaoImpl::bindUpdate, SQL_INSERT, AlimentoDaoImpl::bindInsert);
+    }
+
+    private static void bindInsert(PreparedStatement ps, Alimento alimento) throws SQLException {
+        ps.setString(1, alimento.getIdAlimento());
+        ps.setString(2, alimento.getIdIngesta());
+        ps.setString(3, alimento.getNombre());
+        if (alimento.getIdCatalogo() == null || alimento.getIdCatalogo().isBlank())
+            ps.setNull(4, java.sql.Types.VARCHAR);
+        else
+            ps.setString(4, alimento.getIdCatalogo());
+    }
+
+    private static void bindUpdate(PreparedStatement ps, Alimento alimento) throws SQLException {
+        ps.setString(1, alimento.getIdIngesta());
+        ps.setString(2, alimento.getNombre());
+        if (alimento.getIdCatalogo() == null || alimento.getIdCatalogo().isBlank())
+            ps.setNull(3, java.sql.Types.VARCHAR);
+        else
+            ps.setString(3, alimento.getIdCatalogo());
+        ps.setString(4, alimento.getIdAlimento());
+    }
+
     @Override
     public List<Alimento> findAll() throws SQLException {
         final String sql = "SELECT id_alimento, id_ingesta, nombre, id_catalogo FROM ALIMENTO";
         List<Alimento> out = new ArrayList<>();
-        try (Statement st = connection.createStatement();
+        try (Connection conn = pool.reader();
+             Statement st = conn.createStatement();
              ResultSet rs = st.executeQuery(sql)) {
             while (rs.next()) {
                 out.add(new Alimento(
@@ -96,7 +136,8 @@ public class AlimentoDaoImpl implements AlimentoDao {
     public List<Alimento> findByIngestaId(String ingestaId) throws SQLException {
         final String sql = "SELECT id_alimento, id_ingesta, nombre, id_catalogo FROM ALIMENTO WHERE id_ingesta = ? ORDER BY nombre";
         List<Alimento> out = new ArrayList<>();
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, ingestaId);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -116,7 +157,8 @@ public class AlimentoDaoImpl implements AlimentoDao {
     public boolean existsNombreEnIngesta(String ingestaId, String nombre) throws SQLException {
         // case-insensitive: lower(nombre)=lower(?) o confiar en UNIQUE INDEX con COLLATE NOCASE
         String sql = "SELECT 1 FROM ALIMENTO WHERE id_ingesta = ? AND LOWER(nombre) = LOWER(?) LIMIT 1";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, ingestaId);
             ps.setString(2, nombre);
             ResultSet rs = ps.executeQuery();
@@ -127,9 +169,66 @@ public class AlimentoDaoImpl implements AlimentoDao {
     @Override
     public void deleteByIngestaId(String ingestaId) throws SQLException {
         String sql = "DELETE FROM ALIMENTO WHERE id_ingesta = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, ingestaId);
             ps.executeUpdate();
         }
     }
+
+    @Override
+    public Map<String, List<Alimento>> findConsumidosByBroteId(String broteId) throws SQLException {
+        final String sql = "SELECT ipe.id_expuesto, a.id_alimento, a.id_ingesta, a.nombre, a.id_catalogo " +
+                "FROM PERSONA_EXPUESTA pe " +
+                "JOIN INGESTA_PERSONA_EXPUESTA ipe ON ipe.id_expuesto = pe.id_expuesto " +
+                "JOIN ALIMENTO a ON a.id_ingesta = ipe.id_ingesta " +
+                "WHERE pe.id_brote = ? " +
+                "ORDER BY pe.rowid, ipe.rowid, a.nombre";
+        Map<String, List<Alimento>> out = new LinkedHashMap<>();
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, broteId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.computeIfAbsent(rs.getString("id_expuesto"), k -> new ArrayList<>())
+                            .add(new Alimento(
+                                    rs.getString("id_alimento"),
+                                    rs.getString("id_ingesta"),
+                                    rs.getString("nombre"),
+                                    rs.getString("id_catalogo")
+                            ));
+                }
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public List<AlimentoSinCatalogo> findSinCatalogo() throws SQLException {
+        final String sql = "SELECT a.id_alimento, a.id_ingesta, a.nombre, a.id_catalogo, b.id_brote, b.estado_brote " +
+                "FROM ALIMENTO a " +
+                "LEFT JOIN BROTE b ON b.id_brote = (" +
+                "    SELECT pe.id_brote FROM INGESTA_PERSONA_EXPUESTA ipe " +
+                "    JOIN PERSONA_EXPUESTA pe ON pe.id_expuesto = ipe.id_expuesto " +
+                "    WHERE ipe.id_ingesta = a.id_ingesta LIMIT 1) " +
+                "WHERE a.id_catalogo IS NULL " +
+                "   OR NOT EXISTS (SELECT 1 FROM ALIMENTO_CATALOGO c WHERE c.id_catalogo = a.id_catalogo) " +
+                "ORDER BY a.nombre";
+        List<AlimentoSinCatalogo> out = new ArrayList<>();
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                out.add(new AlimentoSinCatalogo(
+                        new Alimento(
+                                rs.getString("id_alimento"),
+                                rs.getString("id_ingesta"),
+                                rs.getString("nombre"),
+                                rs.getString("id_catalogo")),
+                        rs.getString("id_brote"),
+                        rs.getString("estado_brote")));
+            }
+        }
+        return out;
+    }
 }
@@ -2,29 +2,31 @@ package com.toxisafe.dao.impl;
 
 import com.toxisafe.dao.BroteDao;
 import com.toxisafe.model.Brote;
+import com.toxisafe.util.ConnectionPool;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public class BroteDaoImpl implements BroteDao {
 
-    private final Connection connection;
+    private final ConnectionPool pool;
 
-    public BroteDaoImpl(Connection connection) {
-        this.connection = connection;
+    private static final String SQL_INSERT = "INSERT INTO BROTE (id_brote, creador_brote, responsable_brote, fech_ini_brote, nombre_brote) VALUES (?, ?, ?, ?, ?)";
+    private static final String SQL_UPDATE = "UPDATE BROTE SET creador_brote = ?, responsable_brote = ?, fech_ini_brote = ?, nombre_brote = ? WHERE id_brote = ?";
+    private static final String SQL_DELETE = "DELETE FROM BROTE WHERE id_brote = ?";
+
+    public BroteDaoImpl(ConnectionPool pool) {
+        this.pool = pool;
     }
 
     @Override
     public void insert(Brote brote) throws SQLException {
-        String sql = "INSERT INTO BROTE (id_brote, creador_brote, responsable_brote, fech_ini_brote, nombre_brote) VALUES (?, ?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, brote.getIdBrote());
-            pstmt.setString(2, brote.getCreadorBrote());
-            pstmt.setString(3, brote.getResponsableBrote());
-            pstmt.setString(4, brote.getFechIniBrote());
-            pstmt.setString(5, brote.getNombreBrote());
+        try (Connection conn = pool.writer();
+             PreparedStatement pstmt = conn.prepareStatement(SQL_INSERT)) {
+            bindInsert(pstmt, brote);
             pstmt.executeUpdate();
         }
     }
@@ -32,7 +34,8 @@ public class BroteDaoImpl implements BroteDao {
     @Override
     public Optional<Brote> findById(String id) throws SQLException {
         String sql = "SELECT * FROM BROTE WHERE id_brote = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, id);
             ResultSet rs = pstmt.executeQuery();
             if (rs.next()) {
@@ -44,31 +47,66 @@ public class BroteDaoImpl implements BroteDao {
 
     @Override
     public void update(Brote brote) throws SQLException {
-        String sql = "UPDATE BROTE SET creador_brote = ?, responsable_brote = ?, fech_ini_brote = ?, nombre_brote = ? WHERE id_brote = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, brote.getCreadorBrote());
-            pstmt.setString(2, brote.getResponsableBrote());
-            pstmt.setString(3, brote.getFechIniBrote());
-            pstmt.setString(4, brote.getNombreBrote());
-            pstmt.setString(5, brote.getIdBrote());
+        try (Connection conn = pool.writer();
+             PreparedStatement pstmt = conn.prepareStatement(SQL_UPDATE)) {
+            bindUpdate(pstmt, brote);
             pstmt.executeUpdate();
         }
     }
 
     @Override
     public void delete(String id) throws SQLException {
-        String sql = "DELETE FROM BROTE WHERE id_brote = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.writer();
+             PreparedStatement pstmt = conn.prepareStatement(SQL_DELETE)) {
             pstmt.setString(1, id);
             pstmt.executeUpdate();
         }
     }
 
+    // ===== Lotes (una transacción, executeBatch) =====
+
+    @Override
+    public void insertAll(Collection<? extends Brote> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_INSERT, items, BroteDaoImpl::bindInsert);
+    }
+
+    @Override
+    public void updateAll(Collection<? extends Brote> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_UPDATE, items, BroteDaoImpl::bindUpdate);
+    }
+
+    @Override
+    public void deleteAllById(Collection<? extends String> ids) throws SQLException {
+        Lotes.ejecutar(pool, SQL_DELETE, ids, (ps, id) -> ps.setString(1, id));
+    }
+
+    @Override
+    public void upsertAll(Collection<? extends Brote> items) throws SQLException {
+        Lotes.upsert(pool, items, SQL_UPDATE, BroteDaoImpl::bindUpdate, SQL_INSERT, BroteDaoImpl::bindInsert);
+    }
+
+    private static void bindInsert(PreparedStatement pstmt, Brote brote) throws SQLException {
+        pstmt.setString(1, brote.getIdBrote());
+        pstmt.setString(2, brote.getCreadorBrote());
+        pstmt.setString(3, brote.getResponsableBrote());
+        pstmt.setString(4, brote.getFechIniBrote());
+        pstmt.setString(5, brote.getNombreBrote());
+    }
+
+    private static void bindUpdate(PreparedStatement pstmt, Brote brote) throws SQLException {
+        pstmt.setString(1, brote.getCreadorBrote());
+        pstmt.setString(2, brote.getResponsableBrote());
+        pstmt.setString(3, brote.getFechIniBrote());
+        pstmt.setString(4, brote.getNombreBrote());
+        pstmt.setString(5, brote.getIdBrote());
+    }
+
     @Override
     public List<Brote> findAll() throws SQLException {
         List<Brote> brotes = new ArrayList<>();
         String sql = "SELECT * FROM BROTE";
-        try (Statement stmt = connection.createStatement();
+        try (Connection conn = pool.reader();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             while (rs.next()) {
                 brotes.add(mapRow(rs));
@@ -81,7 +119,8 @@ public class BroteDaoImpl implements BroteDao {
     public List<Brote> findByCreador(String creadorId) throws SQLException {
         List<Brote> brotes = new ArrayList<>();
         String sql = "SELECT * FROM BROTE WHERE creador_brote = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, creadorId);
             ResultSet rs = pstmt.executeQuery();
             while (rs.next()) {
@@ -95,7 +134,8 @@ public class BroteDaoImpl implements BroteDao {
     public List<Brote> findByResponsable(String responsableId) throws SQLException {
         List<Brote> brotes = new ArrayList<>();
         String sql = "SELECT * FROM BROTE WHERE responsable_brote = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, responsableId);
             ResultSet rs = pstmt.executeQuery();
             while (rs.next()) {
@@ -108,7 +148,8 @@ public class BroteDaoImpl implements BroteDao {
     @Override
     public boolean existsByNombre(String nombre) throws SQLException {
         final String sql = "SELECT 1 FROM BROTE WHERE LOWER(nombre_brote) = LOWER(?) LIMIT 1";
-        try (var ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             var ps = conn.prepareStatement(sql)) {
             ps.setString(1, nombre);
             try (var rs = ps.executeQuery()) { return rs.next(); }
         }
@@ -117,7 +158,8 @@ public class BroteDaoImpl implements BroteDao {
     @Override
     public boolean existsByNombreExceptoId(String nombre, String idExcluir) throws SQLException {
         final String sql = "SELECT 1 FROM BROTE WHERE LOWER(nombre_brote) = LOWER(?) AND id_brote <> ? LIMIT 1";
-        try (var ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             var ps = conn.prepareStatement(sql)) {
             ps.setString(1, nombre);
             ps.setString(2, idExcluir);
             try (var rs = ps.executeQuery()) { return rs.next(); }
@@ -141,7 +183,8 @@ public class BroteDaoImpl implements BroteDao {
     public List<Brote> findByEstado(String estado) throws SQLException {
         List<Brote> list = new ArrayList<>();
         final String sql = "SELECT * FROM BROTE WHERE estado_brote = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, estado);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) list.add(mapRow(rs));
@@ -153,7 +196,8 @@ public class BroteDaoImpl implements BroteDao {
     @Override
     public void actualizarEstado(String idBrote, String estado, String fechaCierreIso) throws SQLException {
         final String sql = "UPDATE BROTE SET estado_brote=?, fecha_cierre_brote=? WHERE id_brote=?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, estado);
             ps.setString(2, fechaCierreIso); // puede ser null
             ps.setString(3, idBrote);
@@ -2,27 +2,31 @@ package com.toxisafe.dao.impl;
 
 import com.toxisafe.dao.BroteEncuestadorDao;
 import com.toxisafe.model.BroteEncuestador;
+import com.toxisafe.util.ConnectionPool;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public class BroteEncuestadorDaoImpl implements BroteEncuestadorDao {
 
-    private final Connection connection;
+    private final ConnectionPool pool;
 
-    public BroteEncuestadorDaoImpl(Connection connection) {
-        this.connection = connection;
+    private static final String SQL_INSERT = "INSERT INTO BROTE_ENCUESTADOR (id_brote_encuestador, id_brote, id_usuario) VALUES (?, ?, ?)";
+    private static final String SQL_UPDATE = "UPDATE BROTE_ENCUESTADOR SET id_brote = ?, id_usuario = ? WHERE id_brote_encuestador = ?";
+    private static final String SQL_DELETE = "DELETE FROM BROTE_ENCUESTADOR WHERE id_brote_encuestador = ?";
+
+    public BroteEncuestadorDaoImpl(ConnectionPool pool) {
+        this.pool = pool;
     }
 
     @Override
     public void insert(BroteEncuestador broteEncuestador) throws SQLException {
-        String sql = "INSERT INTO BROTE_ENCUESTADOR (id_brote_encuestador, id_brote, id_usuario) VALUES (?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, broteEncuestador.getIdBroteEncuestador());
-            pstmt.setString(2, broteEncuestador.getIdBrote());
-            pstmt.setString(3, broteEncuestador.getIdUsuario());
+        try (Connection conn = pool.writer();
+             PreparedStatement pstmt = conn.prepareStatement(SQL_INSERT)) {
+            bindInsert(pstmt, broteEncuestador);
             pstmt.executeUpdate();
         }
     }
@@ -30,7 +34,8 @@ public class BroteEncuestadorDaoImpl implements BroteEncuestadorDao {
     @Override
     public Optional<BroteEncuestador> findById(String id) throws SQLException {
         String sql = "SELECT * FROM BROTE_ENCUESTADOR WHERE id_brote_encuestador = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, id);
             ResultSet rs = pstmt.executeQuery();
             if (rs.next()) {
@@ -42,29 +47,62 @@ public class BroteEncuestadorDaoImpl implements BroteEncuestadorDao {
 
     @Override
     public void update(BroteEncuestador broteEncuestador) throws SQLException {
-        String sql = "UPDATE BROTE_ENCUESTADOR SET id_brote = ?, id_usuario = ? WHERE id_brote_encuestador = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, broteEncuestador.getIdBrote());
-            pstmt.setString(2, broteEncuestador.getIdUsuario());
-            pstmt.setString(3, broteEncuestador.getIdBroteEncuestador());
+        try (Connection conn = pool.writer();
+             PreparedStatement pstmt = conn.prepareStatement(SQL_UPDATE)) {
+            bindUpdate(pstmt, broteEncuestador);
             pstmt.executeUpdate();
         }
     }
 
     @Override
     public void delete(String id) throws SQLException {
-        String sql = "DELETE FROM BROTE_ENCUESTADOR WHERE id_brote_encuestador = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.writer();
+             PreparedStatement pstmt = conn.prepareStatement(SQL_DELETE)) {
             pstmt.setString(1, id);
             pstmt.executeUpdate();
         }
     }
 
+    // ===== Lotes (una transacción, executeBatch) =====
+
+    @Override
+    public void insertAll(Collection<? extends BroteEncuestador> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_INSERT, items, BroteEncuestadorDaoImpl::bindInsert);
+    }
+
+    @Override
+    public void updateAll(Collection<? extends BroteEncuestador> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_UPDATE, items, BroteEncuestadorDaoImpl::bindUpdate);
+    }
+
+    @Override
+    public void deleteAllById(Collection<? extends String> ids) throws SQLException {
+        Lotes.ejecutar(pool, SQL_DELETE, ids, (ps, id) -> ps.setString(1, id));
+    }
+
+    @Override
+    public void upsertAll(Collection<? extends BroteEncuestador> items) throws SQLException {
+        Lotes.upsert(pool, items, SQL_UPDATE, BroteEncuestadorDaoImpl::bindUpdate, SQL_INSERT, BroteEncuestadorDaoImpl::bindInsert);
+    }
+
+    private static void bindInsert(PreparedStatement pstmt, BroteEncuestador broteEncuestador) throws SQLException {
+        pstmt.setString(1, broteEncuestador.getIdBroteEncuestador());
+        pstmt.setString(2, broteEncuestador.getIdBrote());
+        pstmt.setString(3, broteEncuestador.getIdUsuario());
+    }
+
+    private static void bindUpdate(PreparedStatement pstmt, BroteEncuestador broteEncuestador) throws SQLException {
+        pstmt.setString(1, broteEncuestador.getIdBrote());
+        pstmt.setString(2, broteEncuestador.getIdUsuario());
+        pstmt.setString(3, broteEncuestador.getIdBroteEncuestador());
+    }
+
     @Override
     public List<BroteEncuestador> findAll() throws SQLException {
         List<BroteEncuestador> encuestadores = new ArrayList<>();
         String sql = "SELECT * FROM BROTE_ENCUESTADOR";
-        try (Statement stmt = connection.createStatement();
+        try (Connection conn = pool.reader();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             while (rs.next()) {
                 encuestadores.add(mapRow(rs));
@@ -77,7 +115,8 @@ public class BroteEncuestadorDaoImpl implements BroteEncuestadorDao {
     public List<BroteEncuestador> findByBroteId(String broteId) throws SQLException {
         List<BroteEncuestador> encuestadores = new ArrayList<>();
         String sql = "SELECT * FROM BROTE_ENCUESTADOR WHERE id_brote = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, broteId);
             ResultSet rs = pstmt.executeQuery();
             while (rs.next()) {
@@ -91,7 +130,8 @@ public class BroteEncuestadorDaoImpl implements BroteEncuestadorDao {
     public List<BroteEncuestador> findByUsuarioId(String usuarioId) throws SQLException {
         List<BroteEncuestador> encuestadores = new ArrayList<>();
         String sql = "SELECT * FROM BROTE_ENCUESTADOR WHERE id_usuario = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, usuarioId);
             ResultSet rs = pstmt.executeQuery();
             while (rs.next()) {
@@ -104,7 +144,8 @@ public class BroteEncuestadorDaoImpl implements BroteEncuestadorDao {
     @Override
     public Optional<BroteEncuestador> findByBroteAndUsuario(String broteId, String usuarioId) throws SQLException {
         String sql = "SELECT * FROM BROTE_ENCUESTADOR WHERE id_brote = ? AND id_usuario = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, broteId);
             pstmt.setString(2, usuarioId);
             ResultSet rs = pstmt.executeQuery();
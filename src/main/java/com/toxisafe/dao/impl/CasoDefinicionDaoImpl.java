@@ -0,0 +1,161 @@
+package com.toxisafe.dao.impl;
+
+import com.toxisafe.dao.CasoDefinicionDao;
+import com.toxisafe.model.CasoDefinicion;
+import com.toxisafe.util.ConnectionPool;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public class CasoDefinicionDaoImpl implements CasoDefinicionDao {
+
+    private final ConnectionPool pool;
+
+    private static final String COLUMNAS = "id_definicion, id_brote, nombre_definicion, sintomas_todos, sintomas_alguno, " +
+            "minimo_sintomas, requiere_inicio, inicio_desde, inicio_hasta, criterio_laboratorio";
+
+    private static final String SQL_INSERT = "INSERT INTO CASO_DEFINICION (" + COLUMNAS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SQL_UPDATE = "UPDATE CASO_DEFINICION SET id_brote = ?, nombre_definicion = ?, sintomas_todos = ?, " +
+            "sintomas_alguno = ?, minimo_sintomas = ?, requiere_inicio = ?, inicio_desde = ?, inicio_hasta = ?, " +
+            "criterio_laboratorio = ? WHERE id_definicion = ?";
+    private static final String SQL_DELETE = "DELETE FROM CASO_DEFINICION WHERE id_definicion = ?";
+
+    public CasoDefinicionDaoImpl(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void insert(CasoDefinicion d) throws SQLException {
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_INSERT)) {
+            bindInsert(ps, d);
+            ps.executeUpdate();
+        }
+    }
+
+    @Override
+    public Optional<CasoDefinicion> findById(String id) throws SQLException {
+        final String sql = "SELECT " + COLUMNAS + " FROM CASO_DEFINICION WHERE id_definicion = ?";
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(map(rs));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public void update(CasoDefinicion d) throws SQLException {
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_UPDATE)) {
+            bindUpdate(ps, d);
+            ps.executeUpdate();
+        }
+    }
+
+    @Override
+    public void delete(String id) throws SQLException {
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_DELETE)) {
+            ps.setString(1, id);
+            ps.executeUpdate();
+        }
+    }
+
+    // ===== Lotes (una transacción, executeBatch) =====
+
+    @Override
+    public void insertAll(Collection<? extends CasoDefinicion> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_INSERT, items, CasoDefinicionDaoImpl::bindInsert);
+    }
+
+    @Override
+    public void updateAll(Collection<? extends CasoDefinicion> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_UPDATE, items, CasoDefinicionDaoImpl::bindUpdate);
+    }
+
+    @Override
+    public void deleteAllById(Collection<? extends String> ids) throws SQLException {
+        Lotes.ejecutar(pool, SQL_DELETE, ids, (ps, id) -> ps.setString(1, id));
+    }
+
+    @Override
+    public void upsertAll(Collection<? extends CasoDefinicion> items) throws SQLException {
+        Lotes.upsert(pool, items, SQL_UPDATE, CasoDefinicionDaoImpl::bindUpdate, SQL_INSERT, CasoDefinicionDaoImpl::bindInsert);
+    }
+
+    private static void bindInsert(PreparedStatement ps, CasoDefinicion d) throws SQLException {
+        ps.setString(1, d.getIdDefinicion());
+        bindCampos(ps, 2, d);
+    }
+
+    private static void bindUpdate(PreparedStatement ps, CasoDefinicion d) throws SQLException {
+        bindCampos(ps, 1, d);
+        ps.setString(10, d.getIdDefinicion());
+    }
+
+    private static void bindCampos(PreparedStatement ps, int i, CasoDefinicion d) throws SQLException {
+        ps.setString(i, d.getIdBrote());
+        ps.setString(i + 1, d.getNombreDefinicion());
+        ps.setString(i + 2, d.getSintomasTodos());
+        ps.setString(i + 3, d.getSintomasAlguno());
+        ps.setInt(i + 4, d.getMinimoSintomas());
+        ps.setInt(i + 5, d.isRequiereInicio() ? 1 : 0);
+        ps.setString(i + 6, d.getInicioDesde());
+        ps.setString(i + 7, d.getInicioHasta());
+        ps.setString(i + 8, d.getCriterioLaboratorio().name());
+    }
+
+    @Override
+    public List<CasoDefinicion> findAll() throws SQLException {
+        final String sql = "SELECT " + COLUMNAS + " FROM CASO_DEFINICION";
+        List<CasoDefinicion> out = new ArrayList<>();
+        try (Connection conn = pool.reader();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) out.add(map(rs));
+        }
+        return out;
+    }
+
+    @Override
+    public List<CasoDefinicion> findByBroteIdConPlantillas(String broteId) throws SQLException {
+        final String sql = "SELECT " + COLUMNAS + " FROM CASO_DEFINICION " +
+                "WHERE id_brote = ? OR id_brote IS NULL " +
+                "ORDER BY id_brote IS NULL, nombre_definicion COLLATE NOCASE";
+        List<CasoDefinicion> out = new ArrayList<>();
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, broteId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) out.add(map(rs));
+            }
+        }
+        return out;
+    }
+
+    /* ------------- mapper ------------- */
+
+    private CasoDefinicion map(ResultSet rs) throws SQLException {
+        String criterio = rs.getString("criterio_laboratorio");
+        return new CasoDefinicion(
+                rs.getString("id_definicion"),
+                rs.getString("id_brote"),
+                rs.getString("nombre_definicion"),
+                rs.getString("sintomas_todos"),
+                rs.getString("sintomas_alguno"),
+                rs.getInt("minimo_sintomas"),
+                rs.getInt("requiere_inicio") == 1,
+                rs.getString("inicio_desde"),
+                rs.getString("inicio_hasta"),
+                criterio == null ? null : CasoDefinicion.CriterioLaboratorio.valueOf(criterio)
+        );
+    }
+}
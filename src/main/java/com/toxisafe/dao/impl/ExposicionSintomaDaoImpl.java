@@ -2,25 +2,29 @@ package com.toxisafe.dao.impl;
 
 import com.toxisafe.dao.ExposicionSintomaDao;
 import com.toxisafe.model.ExposicionSintoma;
+import com.toxisafe.util.ConnectionPool;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public class ExposicionSintomaDaoImpl implements ExposicionSintomaDao {
 
-    private final Connection connection;
+    private final ConnectionPool pool;
 
-    public ExposicionSintomaDaoImpl(Connection connection) { this.connection = connection; }
+    private static final String SQL_INSERT = "INSERT INTO EXPOSICION_SINTOMA (id_exposicion_sintoma, id_sintomas_generales, id_sintoma) VALUES (?, ?, ?)";
+    private static final String SQL_UPDATE = "UPDATE EXPOSICION_SINTOMA SET id_sintomas_generales = ?, id_sintoma = ? WHERE id_exposicion_sintoma = ?";
+    private static final String SQL_DELETE = "DELETE FROM EXPOSICION_SINTOMA WHERE id_exposicion_sintoma = ?";
+
+    public ExposicionSintomaDaoImpl(ConnectionPool pool) { this.pool = pool; }
 
     @Override
     public void insert(ExposicionSintoma e) throws SQLException {
-        final String sql = "INSERT INTO EXPOSICION_SINTOMA (id_exposicion_sintoma, id_sintomas_generales, id_sintoma) VALUES (?, ?, ?)";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, e.getIdExposicionSintoma());
-            ps.setString(2, e.getIdSintomasGenerales());
-            ps.setString(3, e.getIdSintoma());
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_INSERT)) {
+            bindInsert(ps, e);
             ps.executeUpdate();
         }
     }
@@ -28,7 +32,8 @@ public class ExposicionSintomaDaoImpl implements ExposicionSintomaDao {
     @Override
     public Optional<ExposicionSintoma> findById(String id) throws SQLException {
         final String sql = "SELECT id_exposicion_sintoma, id_sintomas_generales, id_sintoma FROM EXPOSICION_SINTOMA WHERE id_exposicion_sintoma = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, id);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -45,29 +50,62 @@ public class ExposicionSintomaDaoImpl implements ExposicionSintomaDao {
 
     @Override
     public void update(ExposicionSintoma e) throws SQLException {
-        final String sql = "UPDATE EXPOSICION_SINTOMA SET id_sintomas_generales = ?, id_sintoma = ? WHERE id_exposicion_sintoma = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, e.getIdSintomasGenerales());
-            ps.setString(2, e.getIdSintoma());
-            ps.setString(3, e.getIdExposicionSintoma());
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_UPDATE)) {
+            bindUpdate(ps, e);
             ps.executeUpdate();
         }
     }
 
     @Override
     public void delete(String id) throws SQLException {
-        final String sql = "DELETE FROM EXPOSICION_SINTOMA WHERE id_exposicion_sintoma = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_DELETE)) {
             ps.setString(1, id);
             ps.executeUpdate();
         }
     }
 
+    // ===== Lotes (una transacción, executeBatch) =====
+
+    @Override
+    public void insertAll(Collection<? extends ExposicionSintoma> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_INSERT, items, ExposicionSintomaDaoImpl::bindInsert);
+    }
+
+    @Override
+    public void updateAll(Collection<? extends ExposicionSintoma> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_UPDATE, items, ExposicionSintomaDaoImpl::bindUpdate);
+    }
+
+    @Override
+    public void deleteAllById(Collection<? extends String> ids) throws SQLException {
+        Lotes.ejecutar(pool, SQL_DELETE, ids, (ps, id) -> ps.setString(1, id));
+    }
+
+    @Override
+    public void upsertAll(Collection<? extends ExposicionSintoma> items) throws SQLException {
+        Lotes.upsert(pool, items, SQL_UPDATE, ExposicionSintomaDaoImpl::bindUpdate, SQL_INSERT, ExposicionSintomaDaoImpl::bindInsert);
+    }
+
+    private static void bindInsert(PreparedStatement ps, ExposicionSintoma e) throws SQLException {
+        ps.setString(1, e.getIdExposicionSintoma());
+        ps.setString(2, e.getIdSintomasGenerales());
+        ps.setString(3, e.getIdSintoma());
+    }
+
+    private static void bindUpdate(PreparedStatement ps, ExposicionSintoma e) throws SQLException {
+        ps.setString(1, e.getIdSintomasGenerales());
+        ps.setString(2, e.getIdSintoma());
+        ps.setString(3, e.getIdExposicionSintoma());
+    }
+
     @Override
     public List<ExposicionSintoma> findAll() throws SQLException {
         final String sql = "SELECT id_exposicion_sintoma, id_sintomas_generales, id_sintoma FROM EXPOSICION_SINTOMA";
         List<ExposicionSintoma> out = new ArrayList<>();
-        try (PreparedStatement ps = connection.prepareStatement(sql);
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
             while (rs.next()) {
                 out.add(new ExposicionSintoma(
@@ -84,7 +122,8 @@ public class ExposicionSintomaDaoImpl implements ExposicionSintomaDao {
     public List<ExposicionSintoma> findBySintomasGeneralesId(String sintomasGeneralesId) throws SQLException {
         final String sql = "SELECT id_exposicion_sintoma, id_sintomas_generales, id_sintoma FROM EXPOSICION_SINTOMA WHERE id_sintomas_generales = ?";
         List<ExposicionSintoma> out = new ArrayList<>();
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, sintomasGeneralesId);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -102,7 +141,8 @@ public class ExposicionSintomaDaoImpl implements ExposicionSintomaDao {
     @Override
     public Optional<ExposicionSintoma> findByPar(String idSintomasGenerales, String idSintoma) throws SQLException {
         final String sql = "SELECT id_exposicion_sintoma, id_sintomas_generales, id_sintoma FROM EXPOSICION_SINTOMA WHERE id_sintomas_generales = ? AND id_sintoma = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, idSintomasGenerales);
             ps.setString(2, idSintoma);
             try (ResultSet rs = ps.executeQuery()) {
@@ -117,4 +157,55 @@ public class ExposicionSintomaDaoImpl implements ExposicionSintomaDao {
         }
         return Optional.empty();
     }
+
+    @Override
+    public List<ExposicionSintoma> findByBroteId(String broteId) throws SQLException {
+        final String sql = "SELECT e.id_exposicion_sintoma, e.id_sintomas_generales, e.id_sintoma " +
+                "FROM EXPOSICION_SINTOMA e " +
+                "JOIN SINTOMAS_GENERALES_EXPUESTO g ON g.id_sintomas_generales = e.id_sintomas_generales " +
+                "JOIN PERSONA_EXPUESTA pe ON pe.id_expuesto = g.id_expuesto " +
+                "WHERE pe.id_brote = ? " +
+                "ORDER BY e.id_sintomas_generales, e.rowid";
+        List<ExposicionSintoma> out = new ArrayList<>();
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, broteId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.add(new ExposicionSintoma(
+                            rs.getString("id_exposicion_sintoma"),
+                            rs.getString("id_sintomas_generales"),
+                            rs.getString("id_sintoma")
+                    ));
+                }
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public List<SintomaDeExpuesto> findSintomasDeExpuestosByBroteId(String broteId) throws SQLException {
+        final String sql = "SELECT pe.id_expuesto, e.id_sintoma, s.nombre_sintoma " +
+                "FROM PERSONA_EXPUESTA pe " +
+                "LEFT JOIN SINTOMAS_GENERALES_EXPUESTO g ON g.id_expuesto = pe.id_expuesto " +
+                "LEFT JOIN EXPOSICION_SINTOMA e ON e.id_sintomas_generales = g.id_sintomas_generales " +
+                "LEFT JOIN SINTOMA s ON s.id_sintoma = e.id_sintoma " +
+                "WHERE pe.id_brote = ? " +
+                "ORDER BY pe.rowid";
+        List<SintomaDeExpuesto> out = new ArrayList<>();
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, broteId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.add(new SintomaDeExpuesto(
+                            rs.getString(1),
+                            rs.getString(2),
+                            rs.getString(3)
+                    ));
+                }
+            }
+        }
+        return out;
+    }
 }
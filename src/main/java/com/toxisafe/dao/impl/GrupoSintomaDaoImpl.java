@@ -2,24 +2,29 @@ package com.toxisafe.dao.impl;
 
 import com.toxisafe.dao.GrupoSintomaDao;
 import com.toxisafe.model.GrupoSintoma;
+import com.toxisafe.util.ConnectionPool;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public class GrupoSintomaDaoImpl implements GrupoSintomaDao {
 
-    private final Connection connection;
+    private final ConnectionPool pool;
 
-    public GrupoSintomaDaoImpl(Connection connection) { this.connection = connection; }
+    private static final String SQL_INSERT = "INSERT INTO GRUPO_SINTOMA (id_grupo_sintomas, descripcion_grupo) VALUES (?, ?)";
+    private static final String SQL_UPDATE = "UPDATE GRUPO_SINTOMA SET descripcion_grupo = ? WHERE id_grupo_sintomas = ?";
+    private static final String SQL_DELETE = "DELETE FROM GRUPO_SINTOMA WHERE id_grupo_sintomas = ?";
+
+    public GrupoSintomaDaoImpl(ConnectionPool pool) { this.pool = pool; }
 
     @Override
     public void insert(GrupoSintoma g) throws SQLException {
-        final String sql = "INSERT INTO GRUPO_SINTOMA (id_grupo_sintomas, descripcion_grupo) VALUES (?, ?)";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, g.getIdGrupoSintomas());
-            ps.setString(2, g.getDescripcionGrupo());
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_INSERT)) {
+            bindInsert(ps, g);
             ps.executeUpdate();
         }
     }
@@ -27,7 +32,8 @@ public class GrupoSintomaDaoImpl implements GrupoSintomaDao {
     @Override
     public Optional<GrupoSintoma> findById(String id) throws SQLException {
         final String sql = "SELECT id_grupo_sintomas, descripcion_grupo FROM GRUPO_SINTOMA WHERE id_grupo_sintomas = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, id);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -43,28 +49,60 @@ public class GrupoSintomaDaoImpl implements GrupoSintomaDao {
 
     @Override
     public void update(GrupoSintoma g) throws SQLException {
-        final String sql = "UPDATE GRUPO_SINTOMA SET descripcion_grupo = ? WHERE id_grupo_sintomas = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, g.getDescripcionGrupo());
-            ps.setString(2, g.getIdGrupoSintomas());
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_UPDATE)) {
+            bindUpdate(ps, g);
             ps.executeUpdate();
         }
     }
 
     @Override
     public void delete(String id) throws SQLException {
-        final String sql = "DELETE FROM GRUPO_SINTOMA WHERE id_grupo_sintomas = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_DELETE)) {
             ps.setString(1, id);
             ps.executeUpdate();
         }
     }
 
+    // ===== Lotes (una transacción, executeBatch) =====
+
+    @Override
+    public void insertAll(Collection<? extends GrupoSintoma> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_INSERT, items, GrupoSintomaDaoImpl::bindInsert);
+    }
+
+    @Override
+    public void updateAll(Collection<? extends GrupoSintoma> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_UPDATE, items, GrupoSintomaDaoImpl::bindUpdate);
+    }
+
+    @Override
+    public void deleteAllById(Collection<? extends String> ids) throws SQLException {
+        Lotes.ejecutar(pool, SQL_DELETE, ids, (ps, id) -> ps.setString(1, id));
+    }
+
+    @Override
+    public void upsertAll(Collection<? extends GrupoSintoma> items) throws SQLException {
+        Lotes.upsert(pool, items, SQL_UPDATE, GrupoSintomaDaoImpl::bindUpdate, SQL_INSERT, GrupoSintomaDaoImpl::bindInsert);
+    }
+
+    private static void bindInsert(PreparedStatement ps, GrupoSintoma g) throws SQLException {
+        ps.setString(1, g.getIdGrupoSintomas());
+        ps.setString(2, g.getDescripcionGrupo());
+    }
+
+    private static void bindUpdate(PreparedStatement ps, GrupoSintoma g) throws SQLException {
+        ps.setString(1, g.getDescripcionGrupo());
+        ps.setString(2, g.getIdGrupoSintomas());
+    }
+
     @Override
     public List<GrupoSintoma> findAll() throws SQLException {
         final String sql = "SELECT id_grupo_sintomas, descripcion_grupo FROM GRUPO_SINTOMA ORDER BY descripcion_grupo";
         List<GrupoSintoma> out = new ArrayList<>();
-        try (PreparedStatement ps = connection.prepareStatement(sql);
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
             while (rs.next()) {
                 out.add(new GrupoSintoma(
@@ -79,7 +117,8 @@ public class GrupoSintomaDaoImpl implements GrupoSintomaDao {
     @Override
     public Optional<GrupoSintoma> findByDescripcion(String descripcion) throws SQLException {
         final String sql = "SELECT id_grupo_sintomas, descripcion_grupo FROM GRUPO_SINTOMA WHERE descripcion_grupo = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, descripcion);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -2,27 +2,31 @@ package com.toxisafe.dao.impl;
 
 import com.toxisafe.dao.InformeDao;
 import com.toxisafe.model.Informe;
+import com.toxisafe.util.ConnectionPool;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public class InformeDaoImpl implements InformeDao {
 
-    private final Connection connection;
+    private final ConnectionPool pool;
 
-    public InformeDaoImpl(Connection connection) {
-        this.connection = connection;
+    private static final String SQL_INSERT = "INSERT INTO INFORME (id_informe, id_brote, contenido_informe) VALUES (?, ?, ?)";
+    private static final String SQL_UPDATE = "UPDATE INFORME SET id_brote = ?, contenido_informe = ? WHERE id_informe = ?";
+    private static final String SQL_DELETE = "DELETE FROM INFORME WHERE id_informe = ?";
+
+    public InformeDaoImpl(ConnectionPool pool) {
+        this.pool = pool;
     }
 
     @Override
     public void insert(Informe informe) throws SQLException {
-        final String sql = "INSERT INTO INFORME (id_informe, id_brote, contenido_informe) VALUES (?, ?, ?)";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, informe.getIdInforme());
-            ps.setString(2, informe.getIdBrote());
-            ps.setString(3, informe.getContenidoInforme());
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_INSERT)) {
+            bindInsert(ps, informe);
             ps.executeUpdate();
         }
     }
@@ -30,7 +34,8 @@ public class InformeDaoImpl implements InformeDao {
     @Override
     public Optional<Informe> findById(String id) throws SQLException {
         final String sql = "SELECT id_informe, id_brote, contenido_informe FROM INFORME WHERE id_informe = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, id);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -43,29 +48,62 @@ public class InformeDaoImpl implements InformeDao {
 
     @Override
     public void update(Informe informe) throws SQLException {
-        final String sql = "UPDATE INFORME SET id_brote = ?, contenido_informe = ? WHERE id_informe = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, informe.getIdBrote());
-            ps.setString(2, informe.getContenidoInforme());
-            ps.setString(3, informe.getIdInforme());
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_UPDATE)) {
+            bindUpdate(ps, informe);
             ps.executeUpdate();
         }
     }
 
     @Override
     public void delete(String id) throws SQLException {
-        final String sql = "DELETE FROM INFORME WHERE id_informe = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_DELETE)) {
             ps.setString(1, id);
             ps.executeUpdate();
         }
     }
 
+    // ===== Lotes (una transacción, executeBatch) =====
+
+    @Override
+    public void insertAll(Collection<? extends Informe> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_INSERT, items, InformeDaoImpl::bindInsert);
+    }
+
+    @Override
+    public void updateAll(Collection<? extends Informe> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_UPDATE, items, InformeDaoImpl::bindUpdate);
+    }
+
+    @Override
+    public void deleteAllById(Collection<? extends String> ids) throws SQLException {
+        Lotes.ejecutar(pool, SQL_DELETE, ids, (ps, id) -> ps.setString(1, id));
+    }
+
+    @Override
+    public void upsertAll(Collection<? extends Informe> items) throws SQLException {
+        Lotes.upsert(pool, items, SQL_UPDATE, InformeDaoImpl::bindUpdate, SQL_INSERT, InformeDaoImpl::bindInsert);
+    }
+
+    private static void bindInsert(PreparedStatement ps, Informe informe) throws SQLException {
+        ps.setString(1, informe.getIdInforme());
+        ps.setString(2, informe.getIdBrote());
+        ps.setString(3, informe.getContenidoInforme());
+    }
+
+    private static void bindUpdate(PreparedStatement ps, Informe informe) throws SQLException {
+        ps.setString(1, informe.getIdBrote());
+        ps.setString(2, informe.getContenidoInforme());
+        ps.setString(3, informe.getIdInforme());
+    }
+
     @Override
     public List<Informe> findAll() throws SQLException {
         final String sql = "SELECT id_informe, id_brote, contenido_informe FROM INFORME";
         List<Informe> out = new ArrayList<>();
-        try (Statement st = connection.createStatement();
+        try (Connection conn = pool.reader();
+             Statement st = conn.createStatement();
              ResultSet rs = st.executeQuery(sql)) {
             while (rs.next()) out.add(map(rs));
         }
@@ -76,7 +114,8 @@ public class InformeDaoImpl implements InformeDao {
     public List<Informe> findByBroteId(String broteId) throws SQLException {
         final String sql = "SELECT id_informe, id_brote, contenido_informe FROM INFORME WHERE id_brote = ?";
         List<Informe> out = new ArrayList<>();
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, broteId);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) out.add(map(rs));
@@ -2,27 +2,31 @@ package com.toxisafe.dao.impl;
 
 import com.toxisafe.dao.IngestaDao;
 import com.toxisafe.model.Ingesta;
+import com.toxisafe.util.ConnectionPool;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public class IngestaDaoImpl implements IngestaDao {
 
-    private final Connection connection;
+    private final ConnectionPool pool;
 
-    public IngestaDaoImpl(Connection connection) {
-        this.connection = connection;
+    private static final String SQL_INSERT = "INSERT INTO INGESTA (id_ingesta, fecha_consumo, lugar_consumo) VALUES (?, ?, ?)";
+    private static final String SQL_UPDATE = "UPDATE INGESTA SET fecha_consumo = ?, lugar_consumo = ? WHERE id_ingesta = ?";
+    private static final String SQL_DELETE = "DELETE FROM INGESTA WHERE id_ingesta = ?";
+
+    public IngestaDaoImpl(ConnectionPool pool) {
+        this.pool = pool;
     }
 
     @Override
     public void insert(Ingesta ingesta) throws SQLException {
-        final String sql = "INSERT INTO INGESTA (id_ingesta, fecha_consumo, lugar_consumo) VALUES (?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, ingesta.getIdIngesta());
-            pstmt.setString(2, ingesta.getFechaConsumo());
-            pstmt.setString(3, ingesta.getLugarConsumo());
+        try (Connection conn = pool.writer();
+             PreparedStatement pstmt = conn.prepareStatement(SQL_INSERT)) {
+            bindInsert(pstmt, ingesta);
             pstmt.executeUpdate();
         }
     }
@@ -30,7 +34,8 @@ public class IngestaDaoImpl implements IngestaDao {
     @Override
     public Optional<Ingesta> findById(String id) throws SQLException {
         final String sql = "SELECT id_ingesta, fecha_consumo, lugar_consumo FROM INGESTA WHERE id_ingesta = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, id);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
@@ -47,29 +52,62 @@ public class IngestaDaoImpl implements IngestaDao {
 
     @Override
     public void update(Ingesta ingesta) throws SQLException {
-        final String sql = "UPDATE INGESTA SET fecha_consumo = ?, lugar_consumo = ? WHERE id_ingesta = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, ingesta.getFechaConsumo());
-            pstmt.setString(2, ingesta.getLugarConsumo());
-            pstmt.setString(3, ingesta.getIdIngesta());
+        try (Connection conn = pool.writer();
+             PreparedStatement pstmt = conn.prepareStatement(SQL_UPDATE)) {
+            bindUpdate(pstmt, ingesta);
             pstmt.executeUpdate();
         }
     }
 
     @Override
     public void delete(String id) throws SQLException {
-        final String sql = "DELETE FROM INGESTA WHERE id_ingesta = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.writer();
+             PreparedStatement pstmt = conn.prepareStatement(SQL_DELETE)) {
             pstmt.setString(1, id);
             pstmt.executeUpdate();
         }
     }
 
+    // ===== Lotes (una transacción, executeBatch) =====
+
+    @Override
+    public void insertAll(Collection<? extends Ingesta> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_INSERT, items, IngestaDaoImpl::bindInsert);
+    }
+
+    @Override
+    public void updateAll(Collection<? extends Ingesta> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_UPDATE, items, IngestaDaoImpl::bindUpdate);
+    }
+
+    @Override
+    public void deleteAllById(Collection<? extends String> ids) throws SQLException {
+        Lotes.ejecutar(pool, SQL_DELETE, ids, (ps, id) -> ps.setString(1, id));
+    }
+
+    @Override
+    public void upsertAll(Collection<? extends Ingesta> items) throws SQLException {
+        Lotes.upsert(pool, items, SQL_UPDATE, IngestaDaoImpl::bindUpdate, SQL_INSERT, IngestaDaoImpl::bindInsert);
+    }
+
+    private static void bindInsert(PreparedStatement pstmt, Ingesta ingesta) throws SQLException {
+        pstmt.setString(1, ingesta.getIdIngesta());
+        pstmt.setString(2, ingesta.getFechaConsumo());
+        pstmt.setString(3, ingesta.getLugarConsumo());
+    }
+
+    private static void bindUpdate(PreparedStatement pstmt, Ingesta ingesta) throws SQLException {
+        pstmt.setString(1, ingesta.getFechaConsumo());
+        pstmt.setString(2, ingesta.getLugarConsumo());
+        pstmt.setString(3, ingesta.getIdIngesta());
+    }
+
     @Override
     public List<Ingesta> findAll() throws SQLException {
         final String sql = "SELECT id_ingesta, fecha_consumo, lugar_consumo FROM INGESTA";
         List<Ingesta> list = new ArrayList<>();
-        try (Statement stmt = connection.createStatement();
+        try (Connection conn = pool.reader();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             while (rs.next()) {
                 list.add(new Ingesta(
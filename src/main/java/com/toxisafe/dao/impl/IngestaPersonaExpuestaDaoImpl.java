@@ -2,30 +2,34 @@ package com.toxisafe.dao.impl;
 
 import com.toxisafe.dao.IngestaPersonaExpuestaDao;
 import com.toxisafe.model.IngestaPersonaExpuesta;
+import com.toxisafe.util.ConnectionPool;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public class IngestaPersonaExpuestaDaoImpl implements IngestaPersonaExpuestaDao {
 
-    private final Connection connection;
+    private final ConnectionPool pool;
 
-    public IngestaPersonaExpuestaDaoImpl(Connection connection) {
-        this.connection = connection;
+    private static final String SQL_INSERT = "INSERT INTO INGESTA_PERSONA_EXPUESTA " +
+            "(id_ingesta_persona_expuesta, id_ingesta, id_expuesto, es_sospechosa_para_expuesto) " +
+            "VALUES (?, ?, ?, ?)";
+    private static final String SQL_UPDATE = "UPDATE INGESTA_PERSONA_EXPUESTA SET id_ingesta = ?, id_expuesto = ?, " +
+            "es_sospechosa_para_expuesto = ? WHERE id_ingesta_persona_expuesta = ?";
+    private static final String SQL_DELETE = "DELETE FROM INGESTA_PERSONA_EXPUESTA WHERE id_ingesta_persona_expuesta = ?";
+
+    public IngestaPersonaExpuestaDaoImpl(ConnectionPool pool) {
+        this.pool = pool;
     }
 
     @Override
     public void insert(IngestaPersonaExpuesta v) throws SQLException {
-        final String sql = "INSERT INTO INGESTA_PERSONA_EXPUESTA " +
-                "(id_ingesta_persona_expuesta, id_ingesta, id_expuesto, es_sospechosa_para_expuesto) " +
-                "VALUES (?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, v.getIdIngestaPersonaExpuesta());
-            pstmt.setString(2, v.getIdIngesta());
-            pstmt.setString(3, v.getIdExpuesto());
-            pstmt.setObject(4, v.getEsSospechosaParaExpuesto());
+        try (Connection conn = pool.writer();
+             PreparedStatement pstmt = conn.prepareStatement(SQL_INSERT)) {
+            bindInsert(pstmt, v);
             pstmt.executeUpdate();
         }
     }
@@ -34,7 +38,8 @@ public class IngestaPersonaExpuestaDaoImpl implements IngestaPersonaExpuestaDao
     public Optional<IngestaPersonaExpuesta> findById(String id) throws SQLException {
         final String sql = "SELECT id_ingesta_persona_expuesta, id_ingesta, id_expuesto, es_sospechosa_para_expuesto " +
                 "FROM INGESTA_PERSONA_EXPUESTA WHERE id_ingesta_persona_expuesta = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, id);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
@@ -52,32 +57,65 @@ public class IngestaPersonaExpuestaDaoImpl implements IngestaPersonaExpuestaDao
 
     @Override
     public void update(IngestaPersonaExpuesta v) throws SQLException {
-        final String sql = "UPDATE INGESTA_PERSONA_EXPUESTA SET id_ingesta = ?, id_expuesto = ?, " +
-                "es_sospechosa_para_expuesto = ? WHERE id_ingesta_persona_expuesta = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, v.getIdIngesta());
-            pstmt.setString(2, v.getIdExpuesto());
-            pstmt.setObject(3, v.getEsSospechosaParaExpuesto());
-            pstmt.setString(4, v.getIdIngestaPersonaExpuesta());
+        try (Connection conn = pool.writer();
+             PreparedStatement pstmt = conn.prepareStatement(SQL_UPDATE)) {
+            bindUpdate(pstmt, v);
             pstmt.executeUpdate();
         }
     }
 
     @Override
     public void delete(String id) throws SQLException {
-        final String sql = "DELETE FROM INGESTA_PERSONA_EXPUESTA WHERE id_ingesta_persona_expuesta = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.writer();
+             PreparedStatement pstmt = conn.prepareStatement(SQL_DELETE)) {
             pstmt.setString(1, id);
             pstmt.executeUpdate();
         }
     }
 
+    // ===== Lotes (una transacción, executeBatch) =====
+
+    @Override
+    public void insertAll(Collection<? extends IngestaPersonaExpuesta> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_INSERT, items, IngestaPersonaExpuestaDaoImpl::bindInsert);
+    }
+
+    @Override
+    public void updateAll(Collection<? extends IngestaPersonaExpuesta> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_UPDATE, items, IngestaPersonaExpuestaDaoImpl::bindUpdate);
+    }
+
+    @Override
+    public void deleteAllById(Collection<? extends String> ids) throws SQLException {
+        Lotes.ejecutar(pool, SQL_DELETE, ids, (ps, id) -> ps.setString(1, id));
+    }
+
+    @Override
+    public void upsertAll(Collection<? extends IngestaPersonaExpuesta> items) throws SQLException {
+        Lotes.upsert(pool, items, SQL_UPDATE, IngestaPersonaExpuestaDaoImpl::bindUpdate, SQL_INSERT, IngestaPersonaExpuestaDaoImpl::bindInsert);
+    }
+
+    private static void bindInsert(PreparedStatement pstmt, IngestaPersonaExpuesta v) throws SQLException {
+        pstmt.setString(1, v.getIdIngestaPersonaExpuesta());
+        pstmt.setString(2, v.getIdIngesta());
+        pstmt.setString(3, v.getIdExpuesto());
+        pstmt.setObject(4, v.getEsSospechosaParaExpuesto());
+    }
+
+    private static void bindUpdate(PreparedStatement pstmt, IngestaPersonaExpuesta v) throws SQLException {
+        pstmt.setString(1, v.getIdIngesta());
+        pstmt.setString(2, v.getIdExpuesto());
+        pstmt.setObject(3, v.getEsSospechosaParaExpuesto());
+        pstmt.setString(4, v.getIdIngestaPersonaExpuesta());
+    }
+
     @Override
     public List<IngestaPersonaExpuesta> findAll() throws SQLException {
         final String sql = "SELECT id_ingesta_persona_expuesta, id_ingesta, id_expuesto, es_sospechosa_para_expuesto " +
                 "FROM INGESTA_PERSONA_EXPUESTA";
         List<IngestaPersonaExpuesta> list = new ArrayList<>();
-        try (Statement stmt = connection.createStatement();
+        try (Connection conn = pool.reader();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             while (rs.next()) {
                 list.add(new IngestaPersonaExpuesta(
@@ -96,7 +134,8 @@ public class IngestaPersonaExpuestaDaoImpl implements IngestaPersonaExpuestaDao
         final String sql = "SELECT id_ingesta_persona_expuesta, id_ingesta, id_expuesto, es_sospechosa_para_expuesto " +
                 "FROM INGESTA_PERSONA_EXPUESTA WHERE id_ingesta = ?";
         List<IngestaPersonaExpuesta> list = new ArrayList<>();
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, ingestaId);
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
@@ -117,7 +156,8 @@ public class IngestaPersonaExpuestaDaoImpl implements IngestaPersonaExpuestaDao
         final String sql = "SELECT id_ingesta_persona_expuesta, id_ingesta, id_expuesto, es_sospechosa_para_expuesto " +
                 "FROM INGESTA_PERSONA_EXPUESTA WHERE id_expuesto = ?";
         List<IngestaPersonaExpuesta> list = new ArrayList<>();
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, expuestoId);
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
@@ -137,7 +177,8 @@ public class IngestaPersonaExpuestaDaoImpl implements IngestaPersonaExpuestaDao
     public Optional<IngestaPersonaExpuesta> findByIngestaAndExpuesto(String ingestaId, String expuestoId) throws SQLException {
         final String sql = "SELECT id_ingesta_persona_expuesta, id_ingesta, id_expuesto, es_sospechosa_para_expuesto " +
                 "FROM INGESTA_PERSONA_EXPUESTA WHERE id_ingesta = ? AND id_expuesto = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, ingestaId);
             pstmt.setString(2, expuestoId);
             try (ResultSet rs = pstmt.executeQuery()) {
@@ -159,7 +200,8 @@ public class IngestaPersonaExpuestaDaoImpl implements IngestaPersonaExpuestaDao
         final String sql = "SELECT id_ingesta_persona_expuesta, id_ingesta, id_expuesto, es_sospechosa_para_expuesto " +
                 "FROM INGESTA_PERSONA_EXPUESTA WHERE id_expuesto = ? AND es_sospechosa_para_expuesto = 1";
         List<IngestaPersonaExpuesta> list = new ArrayList<>();
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, expuestoId);
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
@@ -178,7 +220,8 @@ public class IngestaPersonaExpuestaDaoImpl implements IngestaPersonaExpuestaDao
     @Override
     public void deleteByIngestaAndExpuesto(String ingestaId, String expuestoId) throws SQLException {
         String sql = "DELETE FROM INGESTA_PERSONA_EXPUESTA WHERE id_ingesta = ? AND id_expuesto = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, ingestaId);
             ps.setString(2, expuestoId);
             ps.executeUpdate();
@@ -188,9 +231,37 @@ public class IngestaPersonaExpuestaDaoImpl implements IngestaPersonaExpuestaDao
     @Override
     public void deleteByIngestaId(String ingestaId) throws SQLException {
         String sql = "DELETE FROM INGESTA_PERSONA_EXPUESTA WHERE id_ingesta = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, ingestaId);
             ps.executeUpdate();
         }
     }
+
+    @Override
+    public List<ConsumoDeExpuesto> findConsumosByBroteId(String broteId) throws SQLException {
+        final String sql = "SELECT ipe.id_ingesta, i.fecha_consumo, i.lugar_consumo, ipe.id_expuesto, ipe.es_sospechosa_para_expuesto " +
+                "FROM PERSONA_EXPUESTA pe " +
+                "JOIN INGESTA_PERSONA_EXPUESTA ipe ON ipe.id_expuesto = pe.id_expuesto " +
+                "JOIN INGESTA i ON i.id_ingesta = ipe.id_ingesta " +
+                "WHERE pe.id_brote = ? " +
+                "ORDER BY i.fecha_consumo, ipe.id_ingesta, pe.rowid";
+        List<ConsumoDeExpuesto> out = new ArrayList<>();
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, broteId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.add(new ConsumoDeExpuesto(
+                            rs.getString(1),
+                            rs.getString(2),
+                            rs.getString(3),
+                            rs.getString(4),
+                            rs.getInt(5) == 1
+                    ));
+                }
+            }
+        }
+        return out;
+    }
 }
@@ -0,0 +1,99 @@
+package com.toxisafe.dao.impl;
+
+import com.toxisafe.util.ConnectionPool;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Escrituras por lotes de los DAOs: una sentencia preparada, addBatch/executeBatch por tramos
+ * y una sola transacción en la escritora (o la que el hilo ya tenga abierta, p.ej. la de
+ * SyncEmitter.enTransaccion, a la que se une).
+ */
+final class Lotes {
+
+    static final int TRAMO = 500;
+
+    @FunctionalInterface
+    interface Binder<T> {
+        void bind(PreparedStatement ps, T valor) throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface Trabajo<R> {
+        R ejecutar(Connection conn) throws SQLException;
+    }
+
+    private Lotes() {}
+
+    /** Ejecuta {@code sql} una vez por valor; devuelve las filas afectadas por cada uno. */
+    static <T> int[] ejecutar(ConnectionPool pool, String sql, Collection<? extends T> valores,
+                              Binder<? super T> binder) throws SQLException {
+        if (valores == null || valores.isEmpty()) return new int[0];
+        return enTransaccion(pool, conn -> {
+            int[] filas = new int[valores.size()];
+            int n = 0;
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                int enTramo = 0;
+                for (T v : valores) {
+                    binder.bind(ps, v);
+                    ps.addBatch();
+                    if (++enTramo == TRAMO) {
+                        n = copiar(ps.executeBatch(), filas, n);
+                        enTramo = 0;
+                    }
+                }
+                if (enTramo > 0) copiar(ps.executeBatch(), filas, n);
+            }
+            return filas;
+        });
+    }
+
+    /**
+     * UPDATE en lote y, para los que no tocan ninguna fila, INSERT en lote.
+     * (No se usa INSERT OR REPLACE: borra la fila anterior y dispararía ON DELETE CASCADE.)
+     */
+    static <T> void upsert(ConnectionPool pool, Collection<? extends T> valores,
+                           String sqlUpdate, Binder<? super T> bindUpdate,
+                           String sqlInsert, Binder<? super T> bindInsert) throws SQLException {
+        if (valores == null || valores.isEmpty()) return;
+        enTransaccion(pool, conn -> {
+            int[] filas = ejecutar(pool, sqlUpdate, valores, bindUpdate);
+            List<T> nuevos = new ArrayList<>();
+            int i = 0;
+            for (T v : valores) {
+                if (filas[i++] == 0) nuevos.add(v);
+            }
+            ejecutar(pool, sqlInsert, nuevos, bindInsert);
+            return null;
+        });
+    }
+
+    private static int copiar(int[] tramo, int[] filas, int desde) {
+        for (int r : tramo) filas[desde++] = r == Statement.SUCCESS_NO_INFO ? 1 : r;
+        return desde;
+    }
+
+    /** Ejecuta {@code trabajo} en una transacción de la escritora (o en la que ya tenga el hilo). */
+    static <R> R enTransaccion(ConnectionPool pool, Trabajo<R> trabajo) throws SQLException {
+        try (Connection conn = pool.writer()) {
+            if (!conn.getAutoCommit()) return trabajo.ejecutar(conn); // se une a la del hilo
+            conn.setAutoCommit(false);
+            try {
+                R r = trabajo.ejecutar(conn);
+                conn.commit();
+                return r;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+}
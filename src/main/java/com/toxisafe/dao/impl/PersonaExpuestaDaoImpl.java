@@ -2,18 +2,46 @@ package com.toxisafe.dao.impl;
 
 import com.toxisafe.dao.PersonaExpuestaDao;
 import com.toxisafe.model.PersonaExpuesta;
+import com.toxisafe.util.ConnectionPool;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public class PersonaExpuestaDaoImpl implements PersonaExpuestaDao {
 
-    private final Connection connection;
+    private final ConnectionPool pool;
 
-    public PersonaExpuestaDaoImpl(Connection connection) {
-        this.connection = connection;
+    private static final String SQL_INSERT = "INSERT INTO PERSONA_EXPUESTA (" +
+            "id_expuesto, id_brote, nombre_expuesto, apellido_expuesto, tfno1_expuesto, tfno2_expuesto, " +
+            "nhusa_expuesto, tipo_documento_expuesto, num_documento_expuesto, sexo_expuesto, edad_expuesto, " +
+            "fecha_nacimiento_expuesto, direccion_expuesto, centro_salud_expuesto, profesion_expuesto, " +
+            "manipulador_expuesto, grupo_expuesto, enfermo_expuesto, atencion_medica_expuesto, " +
+            "atencion_hospitalaria_expuesto, fecha_atencion_medica_expuesto, lugar_atencion_medica_expuesto, " +
+            "evolucion_expuesto, tratamiento_expuesto, solicitud_coprocultivo_expuesto, " +
+            "estado_coprocultivo_expuesto, fecha_coprocultivo_expuesto, laboratorio_coprocultivo_expuesto, " +
+            "resultado_coprocultivo_expuesto, patogeno_coprocultivo_expuesto, observaciones_coprocultivo_expuesto, " +
+            "solicitud_frotis_expuesto, estado_frotis_expuesto, fecha_frotis_expuesto, laboratorio_frotis_expuesto, " +
+            "resultado_frotis_expuesto, patogeno_frotis_expuesto, observaciones_frotis_expuesto" +
+            ") VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+    private static final String SQL_UPDATE = "UPDATE PERSONA_EXPUESTA SET " +
+            "id_brote=?, nombre_expuesto=?, apellido_expuesto=?, tfno1_expuesto=?, tfno2_expuesto=?, " +
+            "nhusa_expuesto=?, tipo_documento_expuesto=?, num_documento_expuesto=?, sexo_expuesto=?, edad_expuesto=?, " +
+            "fecha_nacimiento_expuesto=?, direccion_expuesto=?, centro_salud_expuesto=?, profesion_expuesto=?, " +
+            "manipulador_expuesto=?, grupo_expuesto=?, enfermo_expuesto=?, atencion_medica_expuesto=?, " +
+            "atencion_hospitalaria_expuesto=?, fecha_atencion_medica_expuesto=?, lugar_atencion_medica_expuesto=?, " +
+            "evolucion_expuesto=?, tratamiento_expuesto=?, solicitud_coprocultivo_expuesto=?, estado_coprocultivo_expuesto=?, " +
+            "fecha_coprocultivo_expuesto=?, laboratorio_coprocultivo_expuesto=?, resultado_coprocultivo_expuesto=?, " +
+            "patogeno_coprocultivo_expuesto=?, observaciones_coprocultivo_expuesto=?, solicitud_frotis_expuesto=?, " +
+            "estado_frotis_expuesto=?, fecha_frotis_expuesto=?, laboratorio_frotis_expuesto=?, resultado_frotis_expuesto=?, " +
+            "patogeno_frotis_expuesto=?, observaciones_frotis_expuesto=? " +
+            "WHERE id_expuesto=?";
+    private static final String SQL_DELETE = "DELETE FROM PERSONA_EXPUESTA WHERE id_expuesto = ?";
+
+    public PersonaExpuestaDaoImpl(ConnectionPool pool) {
+        this.pool = pool;
     }
 
     // ===== Helpers =====
@@ -69,59 +97,9 @@ public class PersonaExpuestaDaoImpl implements PersonaExpuestaDao {
 
     @Override
     public void insert(PersonaExpuesta p) throws SQLException {
-        final String sql =
-                "INSERT INTO PERSONA_EXPUESTA (" +
-                        "id_expuesto, id_brote, nombre_expuesto, apellido_expuesto, tfno1_expuesto, tfno2_expuesto, " +
-                        "nhusa_expuesto, tipo_documento_expuesto, num_documento_expuesto, sexo_expuesto, edad_expuesto, " +
-                        "fecha_nacimiento_expuesto, direccion_expuesto, centro_salud_expuesto, profesion_expuesto, " +
-                        "manipulador_expuesto, grupo_expuesto, enfermo_expuesto, atencion_medica_expuesto, " +
-                        "atencion_hospitalaria_expuesto, fecha_atencion_medica_expuesto, lugar_atencion_medica_expuesto, " +
-                        "evolucion_expuesto, tratamiento_expuesto, solicitud_coprocultivo_expuesto, " +
-                        "estado_coprocultivo_expuesto, fecha_coprocultivo_expuesto, laboratorio_coprocultivo_expuesto, " +
-                        "resultado_coprocultivo_expuesto, patogeno_coprocultivo_expuesto, observaciones_coprocultivo_expuesto, " +
-                        "solicitud_frotis_expuesto, estado_frotis_expuesto, fecha_frotis_expuesto, laboratorio_frotis_expuesto, " +
-                        "resultado_frotis_expuesto, patogeno_frotis_expuesto, observaciones_frotis_expuesto" +
-                        ") VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            int i = 1;
-            ps.setString(i++, p.getIdExpuesto());
-            ps.setString(i++, p.getIdBrote());
-            ps.setString(i++, p.getNombreExpuesto());
-            ps.setString(i++, p.getApellidoExpuesto());
-            ps.setObject(i++, p.getTfno1Expuesto());
-            ps.setString(i++, p.getTfno2Expuesto());
-            ps.setString(i++, p.getNhusaExpuesto());
-            ps.setString(i++, p.getTipoDocumentoExpuesto());
-            ps.setString(i++, p.getNumDocumentoExpuesto());
-            ps.setString(i++, p.getSexoExpuesto());
-            ps.setObject(i++, p.getEdadExpuesto());
-            ps.setString(i++, p.getFechaNacimientoExpuesto());
-            ps.setString(i++, p.getDireccionExpuesto());
-            ps.setString(i++, p.getCentroSaludExpuesto());
-            ps.setString(i++, p.getProfesionExpuesto());
-            ps.setObject(i++, p.isManipuladorExpuesto());
-            ps.setString(i++, p.getGrupoExpuesto());
-            ps.setObject(i++, p.isEnfermoExpuesto());
-            ps.setObject(i++, p.isAtencionMedicaExpuesto());
-            ps.setObject(i++, p.isAtencionHospitalariaExpuesto());
-            ps.setString(i++, p.getFechaAtencionMedicaExpuesto());
-            ps.setString(i++, p.getLugarAtencionMedicaExpuesto());
-            ps.setString(i++, p.getEvolucionExpuesto());
-            ps.setString(i++, p.getTratamientoExpuesto());
-            ps.setObject(i++, p.isSolicitudCoprocultivoExpuesto());
-            ps.setObject(i++, p.isEstadoCoprocultivoExpuesto());
-            ps.setString(i++, p.getFechaCoprocultivoExpuesto());
-            ps.setString(i++, p.getLaboratorioCoprocultivoExpuesto());
-            ps.setString(i++, p.getResultadoCoprocultivoExpuesto());
-            ps.setString(i++, p.getPatogenoCoprocultivoExpuesto());
-            ps.setString(i++, p.getObservacionesCoprocultivoExpuesto());
-            ps.setObject(i++, p.isSolicitudFrotisExpuesto());
-            ps.setObject(i++, p.isEstadoFrotisExpuesto());
-            ps.setString(i++, p.getFechaFrotisExpuesto());
-            ps.setString(i++, p.getLaboratorioFrotisExpuesto());
-            ps.setString(i++, p.getResultadoFrotisExpuesto());
-            ps.setString(i++, p.getPatogenoFrotisExpuesto());
-            ps.setString(i++, p.getObservacionesFrotisExpuesto());
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_INSERT)) {
+            bindInsert(ps, p);
             ps.executeUpdate();
         }
     }
@@ -129,7 +107,8 @@ public class PersonaExpuestaDaoImpl implements PersonaExpuestaDao {
     @Override
     public Optional<PersonaExpuesta> findById(String id) throws SQLException {
         final String sql = "SELECT * FROM PERSONA_EXPUESTA WHERE id_expuesto = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, id);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) return Optional.of(mapRow(rs));
@@ -140,77 +119,134 @@ public class PersonaExpuestaDaoImpl implements PersonaExpuestaDao {
 
     @Override
     public void update(PersonaExpuesta p) throws SQLException {
-        final String sql =
-                "UPDATE PERSONA_EXPUESTA SET " +
-                        "id_brote=?, nombre_expuesto=?, apellido_expuesto=?, tfno1_expuesto=?, tfno2_expuesto=?, " +
-                        "nhusa_expuesto=?, tipo_documento_expuesto=?, num_documento_expuesto=?, sexo_expuesto=?, edad_expuesto=?, " +
-                        "fecha_nacimiento_expuesto=?, direccion_expuesto=?, centro_salud_expuesto=?, profesion_expuesto=?, " +
-                        "manipulador_expuesto=?, grupo_expuesto=?, enfermo_expuesto=?, atencion_medica_expuesto=?, " +
-                        "atencion_hospitalaria_expuesto=?, fecha_atencion_medica_expuesto=?, lugar_atencion_medica_expuesto=?, " +
-                        "evolucion_expuesto=?, tratamiento_expuesto=?, solicitud_coprocultivo_expuesto=?, estado_coprocultivo_expuesto=?, " +
-                        "fecha_coprocultivo_expuesto=?, laboratorio_coprocultivo_expuesto=?, resultado_coprocultivo_expuesto=?, " +
-                        "patogeno_coprocultivo_expuesto=?, observaciones_coprocultivo_expuesto=?, solicitud_frotis_expuesto=?, " +
-                        "estado_frotis_expuesto=?, fecha_frotis_expuesto=?, laboratorio_frotis_expuesto=?, resultado_frotis_expuesto=?, " +
-                        "patogeno_frotis_expuesto=?, observaciones_frotis_expuesto=? " +
-                        "WHERE id_expuesto=?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            int i = 1;
-            ps.setString(i++, p.getIdBrote());
-            ps.setString(i++, p.getNombreExpuesto());
-            ps.setString(i++, p.getApellidoExpuesto());
-            ps.setObject(i++, p.getTfno1Expuesto());
-            ps.setString(i++, p.getTfno2Expuesto());
-            ps.setString(i++, p.getNhusaExpuesto());
-            ps.setString(i++, p.getTipoDocumentoExpuesto());
-            ps.setString(i++, p.getNumDocumentoExpuesto());
-            ps.setString(i++, p.getSexoExpuesto());
-            ps.setObject(i++, p.getEdadExpuesto());
-            ps.setString(i++, p.getFechaNacimientoExpuesto());
-            ps.setString(i++, p.getDireccionExpuesto());
-            ps.setString(i++, p.getCentroSaludExpuesto());
-            ps.setString(i++, p.getProfesionExpuesto());
-            ps.setObject(i++, p.isManipuladorExpuesto());
-            ps.setString(i++, p.getGrupoExpuesto());
-            ps.setObject(i++, p.isEnfermoExpuesto());
-            ps.setObject(i++, p.isAtencionMedicaExpuesto());
-            ps.setObject(i++, p.isAtencionHospitalariaExpuesto());
-            ps.setString(i++, p.getFechaAtencionMedicaExpuesto());
-            ps.setString(i++, p.getLugarAtencionMedicaExpuesto());
-            ps.setString(i++, p.getEvolucionExpuesto());
-            ps.setString(i++, p.getTratamientoExpuesto());
-            ps.setObject(i++, p.isSolicitudCoprocultivoExpuesto());
-            ps.setObject(i++, p.isEstadoCoprocultivoExpuesto());
-            ps.setString(i++, p.getFechaCoprocultivoExpuesto());
-            ps.setString(i++, p.getLaboratorioCoprocultivoExpuesto());
-            ps.setString(i++, p.getResultadoCoprocultivoExpuesto());
-            ps.setString(i++, p.getPatogenoCoprocultivoExpuesto());
-            ps.setString(i++, p.getObservacionesCoprocultivoExpuesto());
-            ps.setObject(i++, p.isSolicitudFrotisExpuesto());
-            ps.setObject(i++, p.isEstadoFrotisExpuesto());
-            ps.setString(i++, p.getFechaFrotisExpuesto());
-            ps.setString(i++, p.getLaboratorioFrotisExpuesto());
-            ps.setString(i++, p.getResultadoFrotisExpuesto());
-            ps.setString(i++, p.getPatogenoFrotisExpuesto());
-            ps.setString(i++, p.getObservacionesFrotisExpuesto());
-            ps.setString(i++, p.getIdExpuesto());
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_UPDATE)) {
+            bindUpdate(ps, p);
             ps.executeUpdate();
         }
     }
 
     @Override
     public void delete(String id) throws SQLException {
-        final String sql = "DELETE FROM PERSONA_EXPUESTA WHERE id_expuesto = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_DELETE)) {
             ps.setString(1, id);
             ps.executeUpdate();
         }
     }
 
+    // ===== Lotes (una transacción, executeBatch) =====
+
+    @Override
+    public void insertAll(Collection<? extends PersonaExpuesta> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_INSERT, items, PersonaExpuestaDaoImpl::bindInsert);
+    }
+
+    @Override
+    public void updateAll(Collection<? extends PersonaExpuesta> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_UPDATE, items, PersonaExpuestaDaoImpl::bindUpdate);
+    }
+
+    @Override
+    public void deleteAllById(Collection<? extends String> ids) throws SQLException {
+        Lotes.ejecutar(pool, SQL_DELETE, ids, (ps, id) -> ps.setString(1, id));
+    }
+
+    @Override
+    public void upsertAll(Collection<? extends PersonaExpuesta> items) throws SQLException {
+        Lotes.upsert(pool, items, SQL_UPDATE, PersonaExpuestaDaoImpl::bindUpdate, SQL_INSERT, PersonaExpuestaDaoImpl::bindInsert);
+    }
+
+    private static void bindInsert(PreparedStatement ps, PersonaExpuesta p) throws SQLException {
+        int i = 1;
+        ps.setString(i++, p.getIdExpuesto());
+        ps.setString(i++, p.getIdBrote());
+        ps.setString(i++, p.getNombreExpuesto());
+        ps.setString(i++, p.getApellidoExpuesto());
+        ps.setObject(i++, p.getTfno1Expuesto());
+        ps.setString(i++, p.getTfno2Expuesto());
+        ps.setString(i++, p.getNhusaExpuesto());
+        ps.setString(i++, p.getTipoDocumentoExpuesto());
+        ps.setString(i++, p.getNumDocumentoExpuesto());
+        ps.setString(i++, p.getSexoExpuesto());
+        ps.setObject(i++, p.getEdadExpuesto());
+        ps.setString(i++, p.getFechaNacimientoExpuesto());
+        ps.setString(i++, p.getDireccionExpuesto());
+        ps.setString(i++, p.getCentroSaludExpuesto());
+        ps.setString(i++, p.getProfesionExpuesto());
+        ps.setObject(i++, p.isManipuladorExpuesto());
+        ps.setString(i++, p.getGrupoExpuesto());
+        ps.setObject(i++, p.isEnfermoExpuesto());
+        ps.setObject(i++, p.isAtencionMedicaExpuesto());
+        ps.setObject(i++, p.isAtencionHospitalariaExpuesto());
+        ps.setString(i++, p.getFechaAtencionMedicaExpuesto());
+        ps.setString(i++, p.getLugarAtencionMedicaExpuesto());
+        ps.setString(i++, p.getEvolucionExpuesto());
+        ps.setString(i++, p.getTratamientoExpuesto());
+        ps.setObject(i++, p.isSolicitudCoprocultivoExpuesto());
+        ps.setObject(i++, p.isEstadoCoprocultivoExpuesto());
+        ps.setString(i++, p.getFechaCoprocultivoExpuesto());
+        ps.setString(i++, p.getLaboratorioCoprocultivoExpuesto());
+        ps.setString(i++, p.getResultadoCoprocultivoExpuesto());
+        ps.setString(i++, p.getPatogenoCoprocultivoExpuesto());
+        ps.setString(i++, p.getObservacionesCoprocultivoExpuesto());
+        ps.setObject(i++, p.isSolicitudFrotisExpuesto());
+        ps.setObject(i++, p.isEstadoFrotisExpuesto());
+        ps.setString(i++, p.getFechaFrotisExpuesto());
+        ps.setString(i++, p.getLaboratorioFrotisExpuesto());
+        ps.setString(i++, p.getResultadoFrotisExpuesto());
+        ps.setString(i++, p.getPatogenoFrotisExpuesto());
+        ps.setString(i++, p.getObservacionesFrotisExpuesto());
+    }
+
+    private static void bindUpdate(PreparedStatement ps, PersonaExpuesta p) throws SQLException {
+        int i = 1;
+        ps.setString(i++, p.getIdBrote());
+        ps.setString(i++, p.getNombreExpuesto());
+        ps.setString(i++, p.getApellidoExpuesto());
+        ps.setObject(i++, p.getTfno1Expuesto());
+        ps.setString(i++, p.getTfno2Expuesto());
+        ps.setString(i++, p.getNhusaExpuesto());
+        ps.setString(i++, p.getTipoDocumentoExpuesto());
+        ps.setString(i++, p.getNumDocumentoExpuesto());
+        ps.setString(i++, p.getSexoExpuesto());
+        ps.setObject(i++, p.getEdadExpuesto());
+        ps.setString(i++, p.getFechaNacimientoExpuesto());
+        ps.setString(i++, p.getDireccionExpuesto());
+        ps.setString(i++, p.getCentroSaludExpuesto());
+        ps.setString(i++, p.getProfesionExpuesto());
+        ps.setObject(i++, p.isManipuladorExpuesto());
+        ps.setString(i++, p.getGrupoExpuesto());
+        ps.setObject(i++, p.isEnfermoExpuesto());
+        ps.setObject(i++, p.isAtencionMedicaExpuesto());
+        ps.setObject(i++, p.isAtencionHospitalariaExpuesto());
+        ps.setString(i++, p.getFechaAtencionMedicaExpuesto());
+        ps.setString(i++, p.getLugarAtencionMedicaExpuesto());
+        ps.setString(i++, p.getEvolucionExpuesto());
+        ps.setString(i++, p.getTratamientoExpuesto());
+        ps.setObject(i++, p.isSolicitudCoprocultivoExpuesto());
+        ps.setObject(i++, p.isEstadoCoprocultivoExpuesto());
+        ps.setString(i++, p.getFechaCoprocultivoExpuesto());
+        ps.setString(i++, p.getLaboratorioCoprocultivoExpuesto());
+        ps.setString(i++, p.getResultadoCoprocultivoExpuesto());
+        ps.setString(i++, p.getPatogenoCoprocultivoExpuesto());
+        ps.setString(i++, p.getObservacionesCoprocultivoExpuesto());
+        ps.setObject(i++, p.isSolicitudFrotisExpuesto());
+        ps.setObject(i++, p.isEstadoFrotisExpuesto());
+        ps.setString(i++, p.getFechaFrotisExpuesto());
+        ps.setString(i++, p.getLaboratorioFrotisExpuesto());
+        ps.setString(i++, p.getResultadoFrotisExpuesto());
+        ps.setString(i++, p.getPatogenoFrotisExpuesto());
+        ps.setString(i++, p.getObservacionesFrotisExpuesto());
+        ps.setString(i++, p.getIdExpuesto());
+    }
+
     @Override
     public List<PersonaExpuesta> findAll() throws SQLException {
         final String sql = "SELECT * FROM PERSONA_EXPUESTA";
         List<PersonaExpuesta> list = new ArrayList<>();
-        try (Statement st = connection.createStatement();
+        try (Connection conn = pool.reader();
+             Statement st = conn.createStatement();
              ResultSet rs = st.executeQuery(sql)) {
             while (rs.next()) list.add(mapRow(rs));
         }
@@ -221,7 +257,8 @@ public class PersonaExpuestaDaoImpl implements PersonaExpuestaDao {
     public List<PersonaExpuesta> findByBroteId(String broteId) throws SQLException {
         final String sql = "SELECT * FROM PERSONA_EXPUESTA WHERE id_brote = ?";
         List<PersonaExpuesta> list = new ArrayList<>();
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, broteId);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) list.add(mapRow(rs));
@@ -240,7 +277,8 @@ public class PersonaExpuestaDaoImpl implements PersonaExpuestaDao {
                         "  AND LOWER(tipo_documento_expuesto) = LOWER(?) " +
                         "  AND UPPER(REPLACE(REPLACE(num_documento_expuesto,' ',''),'-','')) = ? " +
                         "LIMIT 1";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, broteId);
             ps.setString(2, tipoDocumento);
             ps.setString(3, normalizarDoc(numDocumento));
@@ -261,7 +299,8 @@ public class PersonaExpuestaDaoImpl implements PersonaExpuestaDao {
                         "  AND UPPER(REPLACE(REPLACE(num_documento_expuesto,' ',''),'-','')) = ? " +
                         "  AND id_expuesto <> ? " +
                         "LIMIT 1";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, broteId);
             ps.setString(2, tipoDocumento);
             ps.setString(3, normalizarDoc(numDocumento));
@@ -2,25 +2,29 @@ package com.toxisafe.dao.impl;
 
 import com.toxisafe.dao.SintomaDao;
 import com.toxisafe.model.Sintoma;
+import com.toxisafe.util.ConnectionPool;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public class SintomaDaoImpl implements SintomaDao {
 
-    private final Connection connection;
+    private final ConnectionPool pool;
 
-    public SintomaDaoImpl(Connection connection) { this.connection = connection; }
+    private static final String SQL_INSERT = "INSERT INTO SINTOMA (id_sintoma, id_grupo_sintomas, nombre_sintoma) VALUES (?, ?, ?)";
+    private static final String SQL_UPDATE = "UPDATE SINTOMA SET id_grupo_sintomas = ?, nombre_sintoma = ? WHERE id_sintoma = ?";
+    private static final String SQL_DELETE = "DELETE FROM SINTOMA WHERE id_sintoma = ?";
+
+    public SintomaDaoImpl(ConnectionPool pool) { this.pool = pool; }
 
     @Override
     public void insert(Sintoma s) throws SQLException {
-        final String sql = "INSERT INTO SINTOMA (id_sintoma, id_grupo_sintomas, nombre_sintoma) VALUES (?, ?, ?)";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, s.getIdSintoma());
-            ps.setString(2, s.getIdGrupoSintomas());
-            ps.setString(3, s.getNombreSintoma());
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_INSERT)) {
+            bindInsert(ps, s);
             ps.executeUpdate();
         }
     }
@@ -28,7 +32,8 @@ public class SintomaDaoImpl implements SintomaDao {
     @Override
     public Optional<Sintoma> findById(String id) throws SQLException {
         final String sql = "SELECT id_sintoma, id_grupo_sintomas, nombre_sintoma FROM SINTOMA WHERE id_sintoma = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, id);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -45,29 +50,62 @@ public class SintomaDaoImpl implements SintomaDao {
 
     @Override
     public void update(Sintoma s) throws SQLException {
-        final String sql = "UPDATE SINTOMA SET id_grupo_sintomas = ?, nombre_sintoma = ? WHERE id_sintoma = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, s.getIdGrupoSintomas());
-            ps.setString(2, s.getNombreSintoma());
-            ps.setString(3, s.getIdSintoma());
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_UPDATE)) {
+            bindUpdate(ps, s);
             ps.executeUpdate();
         }
     }
 
     @Override
     public void delete(String id) throws SQLException {
-        final String sql = "DELETE FROM SINTOMA WHERE id_sintoma = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_DELETE)) {
             ps.setString(1, id);
             ps.executeUpdate();
         }
     }
 
+    // ===== Lotes (una transacción, executeBatch) =====
+
+    @Override
+    public void insertAll(Collection<? extends Sintoma> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_INSERT, items, SintomaDaoImpl::bindInsert);
+    }
+
+    @Override
+    public void updateAll(Collection<? extends Sintoma> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_UPDATE, items, SintomaDaoImpl::bindUpdate);
+    }
+
+    @Override
+    public void deleteAllById(Collection<? extends String> ids) throws SQLException {
+        Lotes.ejecutar(pool, SQL_DELETE, ids, (ps, id) -> ps.setString(1, id));
+    }
+
+    @Override
+    public void upsertAll(Collection<? extends Sintoma> items) throws SQLException {
+        Lotes.upsert(pool, items, SQL_UPDATE, SintomaDaoImpl::bindUpdate, SQL_INSERT, SintomaDaoImpl::bindInsert);
+    }
+
+    private static void bindInsert(PreparedStatement ps, Sintoma s) throws SQLException {
+        ps.setString(1, s.getIdSintoma());
+        ps.setString(2, s.getIdGrupoSintomas());
+        ps.setString(3, s.getNombreSintoma());
+    }
+
+    private static void bindUpdate(PreparedStatement ps, Sintoma s) throws SQLException {
+        ps.setString(1, s.getIdGrupoSintomas());
+        ps.setString(2, s.getNombreSintoma());
+        ps.setString(3, s.getIdSintoma());
+    }
+
     @Override
     public List<Sintoma> findAll() throws SQLException {
         final String sql = "SELECT id_sintoma, id_grupo_sintomas, nombre_sintoma FROM SINTOMA ORDER BY nombre_sintoma";
         List<Sintoma> out = new ArrayList<>();
-        try (PreparedStatement ps = connection.prepareStatement(sql);
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
             while (rs.next()) {
                 out.add(new Sintoma(
@@ -84,7 +122,8 @@ public class SintomaDaoImpl implements SintomaDao {
     public List<Sintoma> findByGrupoSintomaId(String grupoId) throws SQLException {
         final String sql = "SELECT id_sintoma, id_grupo_sintomas, nombre_sintoma FROM SINTOMA WHERE id_grupo_sintomas = ? ORDER BY nombre_sintoma";
         List<Sintoma> out = new ArrayList<>();
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, grupoId);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -102,7 +141,8 @@ public class SintomaDaoImpl implements SintomaDao {
     @Override
     public Optional<Sintoma> findByNombreInGrupo(String grupoId, String nombre) throws SQLException {
         final String sql = "SELECT id_sintoma, id_grupo_sintomas, nombre_sintoma FROM SINTOMA WHERE id_grupo_sintomas = ? AND nombre_sintoma = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, grupoId);
             ps.setString(2, nombre);
             try (ResultSet rs = ps.executeQuery()) {
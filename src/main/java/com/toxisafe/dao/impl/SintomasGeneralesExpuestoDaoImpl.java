@@ -2,17 +2,23 @@ package com.toxisafe.dao.impl;
 
 import com.toxisafe.dao.SintomasGeneralesExpuestoDao;
 import com.toxisafe.model.SintomasGeneralesExpuesto;
+import com.toxisafe.util.ConnectionPool;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public class SintomasGeneralesExpuestoDaoImpl implements SintomasGeneralesExpuestoDao {
 
-    private final Connection connection;
+    private final ConnectionPool pool;
 
-    public SintomasGeneralesExpuestoDaoImpl(Connection connection) { this.connection = connection; }
+    private static final String SQL_INSERT = "INSERT INTO SINTOMAS_GENERALES_EXPUESTO (id_sintomas_generales, id_expuesto, fecha_inicio_conjunto, fecha_fin_conjunto, observaciones_conjunto) VALUES (?, ?, ?, ?, ?)";
+    private static final String SQL_UPDATE = "UPDATE SINTOMAS_GENERALES_EXPUESTO SET id_expuesto = ?, fecha_inicio_conjunto = ?, fecha_fin_conjunto = ?, observaciones_conjunto = ? WHERE id_sintomas_generales = ?";
+    private static final String SQL_DELETE = "DELETE FROM SINTOMAS_GENERALES_EXPUESTO WHERE id_sintomas_generales = ?";
+
+    public SintomasGeneralesExpuestoDaoImpl(ConnectionPool pool) { this.pool = pool; }
 
     private static void setStr(PreparedStatement ps, int idx, String v) throws SQLException {
         if (v == null) ps.setNull(idx, Types.VARCHAR);
@@ -21,13 +27,9 @@ public class SintomasGeneralesExpuestoDaoImpl implements SintomasGeneralesExpues
 
     @Override
     public void insert(SintomasGeneralesExpuesto g) throws SQLException {
-        final String sql = "INSERT INTO SINTOMAS_GENERALES_EXPUESTO (id_sintomas_generales, id_expuesto, fecha_inicio_conjunto, fecha_fin_conjunto, observaciones_conjunto) VALUES (?, ?, ?, ?, ?)";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, g.getIdSintomasGenerales());
-            ps.setString(2, g.getIdExpuesto());
-            setStr(ps, 3, g.getFechaInicioConjunto());
-            setStr(ps, 4, g.getFechaFinConjunto());
-            setStr(ps, 5, g.getObservacionesConjunto());
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_INSERT)) {
+            bindInsert(ps, g);
             ps.executeUpdate();
         }
     }
@@ -35,7 +37,8 @@ public class SintomasGeneralesExpuestoDaoImpl implements SintomasGeneralesExpues
     @Override
     public Optional<SintomasGeneralesExpuesto> findById(String id) throws SQLException {
         final String sql = "SELECT id_sintomas_generales, id_expuesto, fecha_inicio_conjunto, fecha_fin_conjunto, observaciones_conjunto FROM SINTOMAS_GENERALES_EXPUESTO WHERE id_sintomas_generales = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, id);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -54,31 +57,66 @@ public class SintomasGeneralesExpuestoDaoImpl implements SintomasGeneralesExpues
 
     @Override
     public void update(SintomasGeneralesExpuesto g) throws SQLException {
-        final String sql = "UPDATE SINTOMAS_GENERALES_EXPUESTO SET id_expuesto = ?, fecha_inicio_conjunto = ?, fecha_fin_conjunto = ?, observaciones_conjunto = ? WHERE id_sintomas_generales = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, g.getIdExpuesto());
-            setStr(ps, 2, g.getFechaInicioConjunto());
-            setStr(ps, 3, g.getFechaFinConjunto());
-            setStr(ps, 4, g.getObservacionesConjunto());
-            ps.setString(5, g.getIdSintomasGenerales());
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_UPDATE)) {
+            bindUpdate(ps, g);
             ps.executeUpdate();
         }
     }
 
     @Override
     public void delete(String id) throws SQLException {
-        final String sql = "DELETE FROM SINTOMAS_GENERALES_EXPUESTO WHERE id_sintomas_generales = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.writer();
+             PreparedStatement ps = conn.prepareStatement(SQL_DELETE)) {
             ps.setString(1, id);
             ps.executeUpdate();
         }
     }
 
+    // ===== Lotes (una transacción, executeBatch) =====
+
+    @Override
+    public void insertAll(Collection<? extends SintomasGeneralesExpuesto> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_INSERT, items, SintomasGeneralesExpuestoDaoImpl::bindInsert);
+    }
+
+    @Override
+    public void updateAll(Collection<? extends SintomasGeneralesExpuesto> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_UPDATE, items, SintomasGeneralesExpuestoDaoImpl::bindUpdate);
+    }
+
+    @Override
+    public void deleteAllById(Collection<? extends String> ids) throws SQLException {
+        Lotes.ejecutar(pool, SQL_DELETE, ids, (ps, id) -> ps.setString(1, id));
+    }
+
+    @Override
+    public void upsertAll(Collection<? extends SintomasGeneralesExpuesto> items) throws SQLException {
+        Lotes.upsert(pool, items, SQL_UPDATE, SintomasGeneralesExpuestoDaoImpl::bindUpdate, SQL_INSERT, SintomasGeneralesExpuestoDaoImpl::bindInsert);
+    }
+
+    private static void bindInsert(PreparedStatement ps, SintomasGeneralesExpuesto g) throws SQLException {
+        ps.setString(1, g.getIdSintomasGenerales());
+        ps.setString(2, g.getIdExpuesto());
+        setStr(ps, 3, g.getFechaInicioConjunto());
+        setStr(ps, 4, g.getFechaFinConjunto());
+        setStr(ps, 5, g.getObservacionesConjunto());
+    }
+
+    private static void bindUpdate(PreparedStatement ps, SintomasGeneralesExpuesto g) throws SQLException {
+        ps.setString(1, g.getIdExpuesto());
+        setStr(ps, 2, g.getFechaInicioConjunto());
+        setStr(ps, 3, g.getFechaFinConjunto());
+        setStr(ps, 4, g.getObservacionesConjunto());
+        ps.setString(5, g.getIdSintomasGenerales());
+    }
+
     @Override
     public List<SintomasGeneralesExpuesto> findAll() throws SQLException {
         final String sql = "SELECT id_sintomas_generales, id_expuesto, fecha_inicio_conjunto, fecha_fin_conjunto, observaciones_conjunto FROM SINTOMAS_GENERALES_EXPUESTO";
         List<SintomasGeneralesExpuesto> out = new ArrayList<>();
-        try (PreparedStatement ps = connection.prepareStatement(sql);
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
             while (rs.next()) {
                 out.add(new SintomasGeneralesExpuesto(
@@ -96,7 +134,8 @@ public class SintomasGeneralesExpuestoDaoImpl implements SintomasGeneralesExpues
     @Override
     public Optional<SintomasGeneralesExpuesto> findByExpuestoId(String expuestoId) throws SQLException {
         final String sql = "SELECT id_sintomas_generales, id_expuesto, fecha_inicio_conjunto, fecha_fin_conjunto, observaciones_conjunto FROM SINTOMAS_GENERALES_EXPUESTO WHERE id_expuesto = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, expuestoId);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -112,4 +151,30 @@ public class SintomasGeneralesExpuestoDaoImpl implements SintomasGeneralesExpues
         }
         return Optional.empty();
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<SintomasGeneralesExpuesto> findByBroteId(String broteId) throws SQLException {
+        final String sql = "SELECT g.id_sintomas_generales, g.id_expuesto, g.fecha_inicio_conjunto, g.fecha_fin_conjunto, g.observaciones_conjunto " +
+                "FROM SINTOMAS_GENERALES_EXPUESTO g " +
+                "JOIN PERSONA_EXPUESTA pe ON pe.id_expuesto = g.id_expuesto " +
+                "WHERE pe.id_brote = ? " +
+                "ORDER BY g.id_expuesto, g.rowid";
+        List<SintomasGeneralesExpuesto> out = new ArrayList<>();
+        try (Connection conn = pool.reader();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, broteId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.add(new SintomasGeneralesExpuesto(
+                            rs.getString("id_sintomas_generales"),
+                            rs.getString("id_expuesto"),
+                            rs.getString("fecha_inicio_conjunto"),
+                            rs.getString("fecha_fin_conjunto"),
+                            rs.getString("observaciones_conjunto")
+                    ));
+                }
+            }
+        }
+        return out;
+    }
+}
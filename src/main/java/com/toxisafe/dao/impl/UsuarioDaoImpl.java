@@ -2,28 +2,30 @@ package com.toxisafe.dao.impl;
 
 import com.toxisafe.dao.UsuarioDao;
 import com.toxisafe.model.Usuario;
+import com.toxisafe.util.ConnectionPool;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public class UsuarioDaoImpl implements UsuarioDao {
 
-    private Connection connection; // La conexión a la BD se inyecta
+    private final ConnectionPool pool;
 
-    public UsuarioDaoImpl(Connection connection) {
-        this.connection = connection;
+    private static final String SQL_INSERT = "INSERT INTO USUARIO (id_usuario, nombre_usuario, rol_usuario, username_usuario, password_usuario) VALUES (?, ?, ?, ?, ?)";
+    private static final String SQL_UPDATE = "UPDATE USUARIO SET nombre_usuario = ?, rol_usuario = ?, username_usuario = ?, password_usuario = ? WHERE id_usuario = ?";
+    private static final String SQL_DELETE = "DELETE FROM USUARIO WHERE id_usuario = ?";
+
+    public UsuarioDaoImpl(ConnectionPool pool) {
+        this.pool = pool;
     }
 
     @Override
     public void insert(Usuario usuario) throws SQLException {
-        String sql = "INSERT INTO USUARIO (id_usuario, nombre_usuario, rol_usuario, username_usuario, password_usuario) VALUES (?, ?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, usuario.getIdUsuario());
-            pstmt.setString(2, usuario.getNombreUsuario());
-            pstmt.setString(3, usuario.getRolUsuario());
-            pstmt.setString(4, usuario.getUsernameUsuario());
-            pstmt.setString(5, usuario.getPasswordUsuario());
+        try (Connection conn = pool.writer();
+             PreparedStatement pstmt = conn.prepareStatement(SQL_INSERT)) {
+            bindInsert(pstmt, usuario);
             pstmt.executeUpdate();
         }
     }
@@ -31,7 +33,8 @@ public class UsuarioDaoImpl implements UsuarioDao {
     @Override
     public Optional<Usuario> findById(String id) throws SQLException {
         String sql = "SELECT * FROM USUARIO WHERE id_usuario = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, id);
             ResultSet rs = pstmt.executeQuery();
             if (rs.next()) {
@@ -49,31 +52,66 @@ public class UsuarioDaoImpl implements UsuarioDao {
 
     @Override
     public void update(Usuario usuario) throws SQLException {
-        String sql = "UPDATE USUARIO SET nombre_usuario = ?, rol_usuario = ?, username_usuario = ?, password_usuario = ? WHERE id_usuario = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, usuario.getNombreUsuario());
-            pstmt.setString(2, usuario.getRolUsuario());
-            pstmt.setString(3, usuario.getUsernameUsuario());
-            pstmt.setString(4, usuario.getPasswordUsuario());
-            pstmt.setString(5, usuario.getIdUsuario());
+        try (Connection conn = pool.writer();
+             PreparedStatement pstmt = conn.prepareStatement(SQL_UPDATE)) {
+            bindUpdate(pstmt, usuario);
             pstmt.executeUpdate();
         }
     }
 
     @Override
     public void delete(String id) throws SQLException {
-        String sql = "DELETE FROM USUARIO WHERE id_usuario = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.writer();
+             PreparedStatement pstmt = conn.prepareStatement(SQL_DELETE)) {
             pstmt.setString(1, id);
             pstmt.executeUpdate();
         }
     }
 
+    // ===== Lotes (una transacción, executeBatch) =====
+
+    @Override
+    public void insertAll(Collection<? extends Usuario> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_INSERT, items, UsuarioDaoImpl::bindInsert);
+    }
+
+    @Override
+    public void updateAll(Collection<? extends Usuario> items) throws SQLException {
+        Lotes.ejecutar(pool, SQL_UPDATE, items, UsuarioDaoImpl::bindUpdate);
+    }
+
+    @Override
+    public void deleteAllById(Collection<? extends String> ids) throws SQLException {
+        Lotes.ejecutar(pool, SQL_DELETE, ids, (ps, id) -> ps.setString(1, id));
+    }
+
+    @Override
+    public void upsertAll(Collection<? extends Usuario> items) throws SQLException {
+        Lotes.upsert(pool, items, SQL_UPDATE, UsuarioDaoImpl::bindUpdate, SQL_INSERT, UsuarioDaoImpl::bindInsert);
+    }
+
+    private static void bindInsert(PreparedStatement pstmt, Usuario usuario) throws SQLException {
+        pstmt.setString(1, usuario.getIdUsuario());
+        pstmt.setString(2, usuario.getNombreUsuario());
+        pstmt.setString(3, usuario.getRolUsuario());
+        pstmt.setString(4, usuario.getUsernameUsuario());
+        pstmt.setString(5, usuario.getPasswordUsuario());
+    }
+
+    private static void bindUpdate(PreparedStatement pstmt, Usuario usuario) throws SQLException {
+        pstmt.setString(1, usuario.getNombreUsuario());
+        pstmt.setString(2, usuario.getRolUsuario());
+        pstmt.setString(3, usuario.getUsernameUsuario());
+        pstmt.setString(4, usuario.getPasswordUsuario());
+        pstmt.setString(5, usuario.getIdUsuario());
+    }
+
     @Override
     public List<Usuario> findAll() throws SQLException {
         List<Usuario> usuarios = new ArrayList<>();
         String sql = "SELECT * FROM USUARIO";
-        try (Statement stmt = connection.createStatement();
+        try (Connection conn = pool.reader();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             while (rs.next()) {
                 usuarios.add(new Usuario(
@@ -91,7 +129,8 @@ public class UsuarioDaoImpl implements UsuarioDao {
     @Override
     public Optional<Usuario> findByUsername(String username) throws SQLException {
         String sql = "SELECT * FROM USUARIO WHERE username_usuario = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, username);
             ResultSet rs = pstmt.executeQuery();
             if (rs.next()) {
@@ -111,7 +150,8 @@ public class UsuarioDaoImpl implements UsuarioDao {
     public List<Usuario> search(String filtro) throws SQLException {
         List<Usuario> lista = new ArrayList<>();
         String sql = "SELECT * FROM usuarios WHERE nombre LIKE ? OR username LIKE ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.reader();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             String pattern = "%" + filtro + "%";
             stmt.setString(1, pattern);
             stmt.setString(2, pattern);
@@ -0,0 +1,77 @@
+package com.toxisafe.model;
+
+public class CasoDefinicion {
+
+    /** Papel del coprocultivo positivo en la definición. */
+    public enum CriterioLaboratorio {
+        NO_APLICA,   // solo criterio clínico
+        REQUERIDO,   // clínico Y coprocultivo positivo (confirmado)
+        SUFICIENTE   // clínico O coprocultivo positivo
+    }
+
+    private String idDefinicion;
+    private String idBrote;               // FK a BROTE; null = plantilla para todos los brotes
+    private String nombreDefinicion;
+    private String sintomasTodos;         // nombres separados por ';'
+    private String sintomasAlguno;        // nombres separados por ';'
+    private int minimoSintomas;
+    private boolean requiereInicio;
+    private String inicioDesde;           // 'yyyy-MM-dd HH:mm:ss' o null
+    private String inicioHasta;           // 'yyyy-MM-dd HH:mm:ss' o null
+    private CriterioLaboratorio criterioLaboratorio = CriterioLaboratorio.NO_APLICA;
+
+    public CasoDefinicion() { }
+
+    public CasoDefinicion(String idDefinicion, String idBrote, String nombreDefinicion,
+                          String sintomasTodos, String sintomasAlguno, int minimoSintomas,
+                          boolean requiereInicio, String inicioDesde, String inicioHasta,
+                          CriterioLaboratorio criterioLaboratorio) {
+        this.idDefinicion = idDefinicion;
+        this.idBrote = idBrote;
+        this.nombreDefinicion = nombreDefinicion;
+        this.sintomasTodos = sintomasTodos;
+        this.sintomasAlguno = sintomasAlguno;
+        this.minimoSintomas = minimoSintomas;
+        this.requiereInicio = requiereInicio;
+        this.inicioDesde = inicioDesde;
+        this.inicioHasta = inicioHasta;
+        setCriterioLaboratorio(criterioLaboratorio);
+    }
+
+    public String getIdDefinicion() { return idDefinicion; }
+    public void setIdDefinicion(String idDefinicion) { this.idDefinicion = idDefinicion; }
+
+    public String getIdBrote() { return idBrote; }
+    public void setIdBrote(String idBrote) { this.idBrote = idBrote; }
+
+    public String getNombreDefinicion() { return nombreDefinicion; }
+    public void setNombreDefinicion(String nombreDefinicion) { this.nombreDefinicion = nombreDefinicion; }
+
+    public String getSintomasTodos() { return sintomasTodos; }
+    public void setSintomasTodos(String sintomasTodos) { this.sintomasTodos = sintomasTodos; }
+
+    public String getSintomasAlguno() { return sintomasAlguno; }
+    public void setSintomasAlguno(String sintomasAlguno) { this.sintomasAlguno = sintomasAlguno; }
+
+    public int getMinimoSintomas() { return minimoSintomas; }
+    public void setMinimoSintomas(int minimoSintomas) { this.minimoSintomas = minimoSintomas; }
+
+    public boolean isRequiereInicio() { return requiereInicio; }
+    public void setRequiereInicio(boolean requiereInicio) { this.requiereInicio = requiereInicio; }
+
+    public String getInicioDesde() { return inicioDesde; }
+    public void setInicioDesde(String inicioDesde) { this.inicioDesde = inicioDesde; }
+
+    public String getInicioHasta() { return inicioHasta; }
+    public void setInicioHasta(String inicioHasta) { this.inicioHasta = inicioHasta; }
+
+    public CriterioLaboratorio getCriterioLaboratorio() { return criterioLaboratorio; }
+    public void setCriterioLaboratorio(CriterioLaboratorio criterioLaboratorio) {
+        this.criterioLaboratorio = criterioLaboratorio == null ? CriterioLaboratorio.NO_APLICA : criterioLaboratorio;
+    }
+
+    @Override
+    public String toString() {
+        return nombreDefinicion;
+    }
+}
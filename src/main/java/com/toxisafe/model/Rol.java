@@ -0,0 +1,46 @@
+package com.toxisafe.model;
+
+import com.toxisafe.util.Texto;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rol de usuario normalizado (el texto de USUARIO.rol_usuario puede venir con tildes,
+ * espacios o en minúsculas: "Epidemiólogo", "mir salud publica"...).
+ * - ADMIN, EPIDEMIOLOGO y MIR_SALUD_PUBLICA ven y gestionan todos los brotes
+ * - ENCUESTADOR solo los brotes a los que está asignado (BROTE_ENCUESTADOR)
+ * - Cualquier otro texto es DESCONOCIDO (sin acceso)
+ */
+public enum Rol {
+    ADMIN, EPIDEMIOLOGO, MIR_SALUD_PUBLICA, ENCUESTADOR, DESCONOCIDO;
+
+    // Hay muy pocos textos de rol distintos: se normaliza cada uno una sola vez
+    private static final Map<String, Rol> POR_TEXTO = new ConcurrentHashMap<>();
+
+    public static Rol de(String texto) {
+        if (texto == null) return DESCONOCIDO;
+        Rol r = POR_TEXTO.get(texto);
+        if (r != null) return r;
+        r = normalizar(texto);
+        if (POR_TEXTO.size() < 256) POR_TEXTO.put(texto, r);
+        return r;
+    }
+
+    public static Rol de(Usuario u) {
+        return u == null ? DESCONOCIDO : de(u.getRolUsuario());
+    }
+
+    /** true para los roles que ven todos los brotes sin asignación. */
+    public boolean esGlobal() {
+        return this == ADMIN || this == EPIDEMIOLOGO || this == MIR_SALUD_PUBLICA;
+    }
+
+    private static Rol normalizar(String s) {
+        String up = Texto.rol(s);
+        for (Rol r : values()) {
+            if (r != DESCONOCIDO && r.name().equals(up)) return r;
+        }
+        return DESCONOCIDO;
+    }
+}
@@ -5,13 +5,15 @@ import com.toxisafe.dao.AlimentoCatalogoDao;
 import com.toxisafe.dao.AlimentoDao;
 import com.toxisafe.dao.BroteDao;
 import com.toxisafe.model.Alimento;
+import com.toxisafe.model.AlimentoCatalogo;
+import com.toxisafe.model.AlimentoCatalogoAlias;
 import com.toxisafe.model.Brote;
-import com.toxisafe.model.BroteEncuestador;
+import com.toxisafe.model.Rol;
 import com.toxisafe.model.Usuario;
 import com.toxisafe.sync.SyncEmitter;
+import com.toxisafe.util.Texto;
 
 import java.sql.SQLException;
-import java.text.Normalizer;
 import java.util.*;
 
 public class AlimentoService {
@@ -30,6 +32,9 @@ public class AlimentoService {
     private final AlimentoCatalogoAliasDao aliasDao;
     private SyncEmitter sync;
 
+    // Índice del catálogo para sugerencias; se reconstruye tras cada escritura de catálogo/alias
+    private volatile CatalogoIndice indiceCatalogo;
+
     public AlimentoService(AlimentoDao alimentoDao,
                            IngestaLookup ingestaLookup,
                            BroteDao broteDao,
@@ -70,12 +75,12 @@ public class AlimentoService {
     public List<Alimento> findByIngestaIdVisiblePara(String ingestaId, Usuario actor) throws SQLException {
         requireActor(actor);
         String broteId = broteDeIngesta(ingestaId);
-        String rol = resp(actor.getRolUsuario());
+        Rol rol = Rol.de(actor);
 
-        if (rol.equals("ADMIN") || rol.equals("EPIDEMIOLOGO") || rol.equals("MIR_SALUD_PUBLICA")) {
+        if (rol.esGlobal()) {
             return alimentoDao.findByIngestaId(ingestaId);
         }
-        if (rol.equals("ENCUESTADOR")) {
+        if (rol == Rol.ENCUESTADOR) {
             return estaAsignado(actor.getIdUsuario(), broteId)
                     ? alimentoDao.findByIngestaId(ingestaId)
                     : Collections.emptyList();
@@ -83,6 +88,25 @@ public class AlimentoService {
         return Collections.emptyList();
     }
 
+    /**
+     * Alimentos consumidos por todos los expuestos del brote, agrupados por id_expuesto.
+     * Un único permiso y una única consulta (evita el N+1 ingesta -> alimentos).
+     */
+    public Map<String, List<Alimento>> findConsumidosByBroteVisiblePara(String broteId, Usuario actor) throws SQLException {
+        requireActor(actor);
+        Rol rol = Rol.de(actor);
+
+        if (rol.esGlobal()) {
+            return alimentoDao.findConsumidosByBroteId(broteId);
+        }
+        if (rol == Rol.ENCUESTADOR) {
+            return estaAsignado(actor.getIdUsuario(), broteId)
+                    ? alimentoDao.findConsumidosByBroteId(broteId)
+                    : Collections.emptyMap();
+        }
+        return Collections.emptyMap();
+    }
+
     /* =================== Escritura =================== */
 
     public Alimento create(Alimento a, Usuario actor) throws SQLException {
@@ -97,7 +121,7 @@ public class AlimentoService {
         assertPermisoEscritura(actor, b.getIdBrote());
 
         // normalización y dulicados
-        String nombreNorm = normalizarNombre(a.getNombre());
+        String nombreNorm = Texto.compactar(a.getNombre());
         assertNoDuplicadoEnIngesta(a.getIdIngesta(), nombreNorm, null);
         a.setNombre(nombreNorm);
 
@@ -108,8 +132,10 @@ public class AlimentoService {
 
         a.setNombre(normalizarDesdeCatalogo(a.getNombre())); // NUEVO
 
-        alimentoDao.insert(a);
-        emitInsert("ALIMENTO", a.getIdAlimento(), toMap(a));
+        enTransaccion(() -> {
+            alimentoDao.insert(a);
+            emitInsert("ALIMENTO", a.getIdAlimento(), toMap(a));
+        });
         return a;
     }
 
@@ -125,7 +151,7 @@ public class AlimentoService {
         assertBroteActivo(b);
         assertPermisoEscritura(actor, b.getIdBrote());
 
-        String nombreNorm = normalizarNombre(a.getNombre());
+        String nombreNorm = Texto.compactar(a.getNombre());
         assertNoDuplicadoEnIngesta(a.getIdIngesta(), nombreNorm, a.getIdAlimento());
         a.setNombre(nombreNorm);
         a.setIdCatalogo(resolverCatalogoId(a.getNombre()).orElse(null));
@@ -133,11 +159,13 @@ public class AlimentoService {
         var prevOpt = alimentoDao.findById(a.getIdAlimento());
         Map<String,Object> prevMap = prevOpt.isPresent() ? toMap(prevOpt.get()) : null;
 
-        alimentoDao.update(a);
-        emitUpdate("ALIMENTO",
-                a.getIdAlimento(),
-                prevMap,
-                toMap(a));
+        enTransaccion(() -> {
+            alimentoDao.update(a);
+            emitUpdate("ALIMENTO",
+                    a.getIdAlimento(),
+                    prevMap,
+                    toMap(a));
+        });
     }
 
     public void delete(String idAlimento, Usuario actor) throws SQLException {
@@ -156,8 +184,10 @@ public class AlimentoService {
         assertPermisoEscritura(actor, b.getIdBrote());
 
         var antiguosOpt = alimentoDao.findById(idAlimento);
-        alimentoDao.delete(idAlimento);
-        antiguosOpt.ifPresent(prev ->emitDelete("ALIMENTO", a.getIdAlimento(), toMap(a)));
+        enTransaccion(() -> {
+            alimentoDao.delete(idAlimento);
+            antiguosOpt.ifPresent(prev ->emitDelete("ALIMENTO", a.getIdAlimento(), toMap(a)));
+        });
 
     }
 
@@ -175,31 +205,23 @@ public class AlimentoService {
         List<Alimento> existentes = alimentoDao.findByIngestaId(idIngesta);
         boolean dup = existentes.stream().anyMatch(x -> {
             if (excluirId != null && excluirId.equals(x.getIdAlimento())) return false;
-            String nx = normalizarNombre(x.getNombre());
+            String nx = Texto.compactar(x.getNombre());
             return nx.equalsIgnoreCase(nombreNormalizado);
         });
         if (dup) throw new IllegalArgumentException("Ya existe un alimento con ese nombre en esta ingesta.");
     }
 
-    private static String normalizarNombre(String s) {
-        String t = (s == null ? "" : s.trim());
-        // colapsa espacios internos
-        t = t.replaceAll("\\s+", " ");
-        return t;
-    }
-
     /* =================== Permisos / Estado =================== */
 
     private void assertPermisoEscritura(Usuario actor, String broteId) throws SQLException {
-        String rol = resp(actor.getRolUsuario());
-        if (rol.equals("ADMIN") || rol.equals("EPIDEMIOLOGO") || rol.equals("MIR_SALUD_PUBLICA")) return;
-        if (rol.equals("ENCUESTADOR") && estaAsignado(actor.getIdUsuario(), broteId)) return;
+        Rol rol = Rol.de(actor);
+        if (rol.esGlobal()) return;
+        if (rol == Rol.ENCUESTADOR && estaAsignado(actor.getIdUsuario(), broteId)) return;
         throw new SecurityException("No tiene permisos para modificar alimentos en este brote.");
     }
 
     private boolean estaAsignado(String usuarioId, String broteId) throws SQLException {
-        return broteEncuestadorService.findByUsuarioId(usuarioId).stream()
-                .anyMatch(be -> broteId.equals(be.getIdBrote()));
+        return broteEncuestadorService.estaAsignado(usuarioId, broteId);
     }
 
     private void assertBroteActivo(Brote b) {
@@ -222,36 +244,81 @@ public class AlimentoService {
 
     private static boolean isBlank(String s) { return s == null || s.trim().isEmpty(); }
 
-    private static String resp(String s) {
-        if (s == null) return "";
-        String up = java.text.Normalizer.normalize(s, java.text.Normalizer.Form.NFD)
-                .replaceAll("\\p{M}", "");
-        return up.trim().toUpperCase(java.util.Locale.ROOT).replace(' ', '_');
+    // ====== Normalización y resolución de catálogo ======
+
+    // SUGERENCIAS para poblar el combo (catálogo + alias, en memoria y ordenadas por relevancia)
+    public List<String> catalogoSugerencias(String query) throws SQLException {
+        return indiceCatalogo().sugerencias(query);
     }
 
-    // ====== Normalización y resolución de catálogo ======
+    /** Índice del catálogo; se carga la primera vez que se pide (o con {@link #recargarIndiceCatalogo}). */
+    public CatalogoIndice indiceCatalogo() throws SQLException {
+        CatalogoIndice i = indiceCatalogo;
+        if (i == null) {
+            synchronized (this) {
+                i = indiceCatalogo;
+                if (i == null) indiceCatalogo = i = CatalogoIndice.construir(catalogoDao.findAll(), aliasDao.findAll());
+            }
+        }
+        return i;
+    }
 
-    private static String norm(String s) {
-        if (s == null) return null;
-        String t = Normalizer.normalize(s, Normalizer.Form.NFD)
-                .replaceAll("\\p{M}", "")     // sin acentos
-                .toLowerCase(Locale.ROOT)
-                .trim()
-                .replaceAll("\\s+", " ");     // colapsar espacios
-        return t;
+    /** Vuelve a leer catálogo y alias (al arrancar o si se han tocado fuera del servicio). */
+    public synchronized void recargarIndiceCatalogo() throws SQLException {
+        indiceCatalogo = CatalogoIndice.construir(catalogoDao.findAll(), aliasDao.findAll());
     }
 
-    // SUGERENCIAS para poblar el combo (usa catálogo + alias). Si no hay DAOs, devuelve vacío.
-    public List<String> catalogoSugerencias(String query) throws SQLException {
-        if (catalogoDao == null || aliasDao == null) return Collections.emptyList();
-        String q = (query == null ? "" : query.trim());
-        if (q.isEmpty()) return catalogoDao.findAllNombres();
+    /* =================== Catálogo (solo perfiles globales) =================== */
+
+    public synchronized AlimentoCatalogo crearCatalogo(String nombreCanonico, String categoria, Usuario actor) throws SQLException {
+        assertPermisoCatalogo(actor);
+        String nombre = Texto.compactar(nombreCanonico);
+        if (nombre.isEmpty()) throw new IllegalArgumentException("Nombre canónico obligatorio");
+        if (indiceCatalogo().resolverExacto(nombre).isPresent())
+            throw new IllegalArgumentException("Ya existe en el catálogo (como nombre o alias): " + nombre);
+
+        AlimentoCatalogo c = new AlimentoCatalogo(UUID.randomUUID().toString(), nombre, Texto.clave(nombre),
+                isBlank(categoria) ? null : categoria.trim());
+        catalogoDao.insert(c);
+        recargarIndiceCatalogo();
+        return c;
+    }
+
+    /**
+     * Borra la entrada y sus alias en una transacción; el índice se rehace con el mismo cerrojo,
+     * así nadie lo ve a medias. Los alimentos que la referencian conservan su nombre.
+     */
+    public synchronized void eliminarCatalogo(String idCatalogo, Usuario actor) throws SQLException {
+        assertPermisoCatalogo(actor);
+        catalogoDao.deleteConAlias(idCatalogo);
+        recargarIndiceCatalogo();
+    }
 
-        // union: nombres que empiezan por q + canónicos de alias que empiezan por q
-        LinkedHashSet<String> out = new LinkedHashSet<>();
-        out.addAll(catalogoDao.findByPrefix(q));
-        out.addAll(aliasDao.findCanonicosByAliasPrefix(q)); // devuelve el canónico
-        return new ArrayList<>(out);
+    public synchronized AlimentoCatalogoAlias crearAlias(String alias, String idCatalogo, Usuario actor) throws SQLException {
+        assertPermisoCatalogo(actor);
+        String a = Texto.compactar(alias);
+        if (a.isEmpty()) throw new IllegalArgumentException("Alias obligatorio");
+        if (catalogoDao.findById(idCatalogo).isEmpty())
+            throw new IllegalArgumentException("Entrada de catálogo no encontrada");
+        if (indiceCatalogo().resolverExacto(a).isPresent())
+            throw new IllegalArgumentException("Ya existe en el catálogo (como nombre o alias): " + a);
+
+        AlimentoCatalogoAlias x = new AlimentoCatalogoAlias(a, Texto.clave(a), idCatalogo);
+        aliasDao.insert(x);
+        recargarIndiceCatalogo();
+        return x;
+    }
+
+    public synchronized void eliminarAlias(String alias, Usuario actor) throws SQLException {
+        assertPermisoCatalogo(actor);
+        aliasDao.delete(alias);
+        recargarIndiceCatalogo();
+    }
+
+    private void assertPermisoCatalogo(Usuario actor) {
+        requireActor(actor);
+        if (!Rol.de(actor).esGlobal())
+            throw new SecurityException("Solo los perfiles globales pueden modificar el catálogo de alimentos.");
     }
 
     // Normaliza entrada: si coincide con nombre canónico => ese; si coincide con alias => devuelve canónico; si no, deja tal cual.
@@ -270,7 +337,7 @@ public class AlimentoService {
 
 
     private Optional<String> resolverCatalogoId(String nombreLibre) throws SQLException {
-        String n = norm(nombreLibre);
+        String n = Texto.clave(nombreLibre);
         if (isBlank(n)) return Optional.empty();
 
         // 1) Alias exacto normalizado
@@ -279,7 +346,113 @@ public class AlimentoService {
 
         // 2) Coincidencia por nombre canónico normalizado
         var cat = catalogoDao.findByNombreNorm(n);
-        return cat.map(c -> c.getIdCatalogo());
+        if (cat.isPresent()) return Optional.of(cat.get().getIdCatalogo());
+
+        // 3) Aproximada, solo con confianza alta ("tortilla patatas" -> "Tortilla de patata")
+        ResolutorAlimentos.Resolucion r = ResolutorAlimentos.resolver(indiceCatalogo(), n);
+        return r.vinculable() ? Optional.of(r.idCatalogo) : Optional.empty();
+    }
+
+    /** Resolución aproximada de un nombre libre contra el catálogo (sin tocar BD). */
+    public ResolutorAlimentos.Resolucion resolverAlimento(String nombreLibre) throws SQLException {
+        return ResolutorAlimentos.resolver(indiceCatalogo(), nombreLibre);
+    }
+
+    /* =================== Revinculación masiva =================== */
+
+    /** Propuesta para un nombre distinto (normalizado) de los alimentos sin catálogo. */
+    public static final class PropuestaVinculo {
+        public final ResolutorAlimentos.Resolucion resolucion;
+        public final int filas;              // alimentos con ese nombre
+        public final int omitidasCerrado;    // de ellos, en brotes cerrados (no se tocan)
+        public final boolean aplicada;
+
+        PropuestaVinculo(ResolutorAlimentos.Resolucion resolucion, int filas, int omitidasCerrado, boolean aplicada) {
+            this.resolucion = resolucion;
+            this.filas = filas;
+            this.omitidasCerrado = omitidasCerrado;
+            this.aplicada = aplicada;
+        }
+    }
+
+    /** Informe de {@link #revincularCatalogo}: recuentos por confianza (en filas) y detalle por nombre. */
+    public static final class InformeRevinculacion {
+        public final int revisadas;
+        public final int vinculadas;
+        public final int exactas, altas, paraRevisar, sinCandidato;
+        public final int omitidasCerrado;
+        public final List<PropuestaVinculo> propuestas;   // de menor a mayor similitud
+
+        InformeRevinculacion(int revisadas, int vinculadas, int exactas, int altas, int paraRevisar,
+                             int sinCandidato, int omitidasCerrado, List<PropuestaVinculo> propuestas) {
+            this.revisadas = revisadas;
+            this.vinculadas = vinculadas;
+            this.exactas = exactas;
+            this.altas = altas;
+            this.paraRevisar = paraRevisar;
+            this.sinCandidato = sinCandidato;
+            this.omitidasCerrado = omitidasCerrado;
+            this.propuestas = propuestas;
+        }
+    }
+
+    /**
+     * Revincula en bloque los alimentos sin id_catalogo (o con uno borrado) contra el catálogo actual.
+     * - Cada nombre distinto se resuelve una sola vez
+     * - Solo se vinculan las resoluciones EXACTA y ALTA; el resto queda en el informe para revisar
+     * - Los brotes cerrados no se modifican (cuentan como omitidos)
+     * - Se conserva el nombre tecleado; solo cambia id_catalogo (la Estadística agrupa por él)
+     * Con {@code aplicar = false} solo calcula el informe.
+     */
+    public InformeRevinculacion revincularCatalogo(boolean aplicar, Usuario actor) throws SQLException {
+        assertPermisoCatalogo(actor);
+        CatalogoIndice indice = indiceCatalogo();
+
+        Map<String, List<AlimentoDao.AlimentoSinCatalogo>> porNombre = new LinkedHashMap<>();
+        for (AlimentoDao.AlimentoSinCatalogo x : alimentoDao.findSinCatalogo()) {
+            String n = Texto.clave(x.alimento().getNombre());
+            if (!isBlank(n)) porNombre.computeIfAbsent(n, k -> new ArrayList<>()).add(x);
+        }
+
+        List<Alimento> cambios = new ArrayList<>();
+        Map<String, Map<String,Object>> previos = new HashMap<>();
+        List<PropuestaVinculo> propuestas = new ArrayList<>(porNombre.size());
+        int revisadas = 0, exactas = 0, altas = 0, revisar = 0, sin = 0, cerradas = 0;
+        for (Map.Entry<String, List<AlimentoDao.AlimentoSinCatalogo>> e : porNombre.entrySet()) {
+            ResolutorAlimentos.Resolucion r = ResolutorAlimentos.resolver(indice, e.getKey());
+            int filas = e.getValue().size(), omitidas = 0;
+            revisadas += filas;
+            switch (r.confianza) {
+                case EXACTA -> exactas += filas;
+                case ALTA -> altas += filas;
+                case REVISAR -> revisar += filas;
+                case SIN_CANDIDATO -> sin += filas;
+            }
+            boolean aplicada = false;
+            for (AlimentoDao.AlimentoSinCatalogo x : e.getValue()) {
+                if ("CERRADO".equalsIgnoreCase(x.estadoBrote())) { omitidas++; continue; }
+                if (!aplicar || !r.vinculable()) continue;
+                Alimento a = x.alimento();
+                previos.put(a.getIdAlimento(), toMap(a));
+                a.setIdCatalogo(r.idCatalogo);
+                cambios.add(a);
+                aplicada = true;
+            }
+            cerradas += omitidas;
+            propuestas.add(new PropuestaVinculo(r, filas, omitidas, aplicada));
+        }
+
+        if (!cambios.isEmpty()) {
+            enTransaccion(() -> {
+                alimentoDao.updateAll(cambios);
+                for (Alimento a : cambios) emitUpdate("ALIMENTO", a.getIdAlimento(), previos.get(a.getIdAlimento()), toMap(a));
+            });
+        }
+
+        propuestas.sort(Comparator.comparingDouble((PropuestaVinculo p) -> p.resolucion.similitud)
+                .thenComparing(p -> p.resolucion.texto));
+        return new InformeRevinculacion(revisadas, cambios.size(), exactas, altas, revisar, sin, cerradas,
+                List.copyOf(propuestas));
     }
 
     private static Map<String,Object> toMap(Alimento a) {
@@ -300,5 +473,9 @@ public class AlimentoService {
     private void emitDelete(String tabla, String id, Map<String,Object> oldV) {
         if (sync != null) sync.emitDelete(tabla, id, oldV);
     }
+    /** Escritura + emisión en una transacción (si el emisor la soporta). */
+    private void enTransaccion(SyncEmitter.Accion accion) throws SQLException {
+        if (sync != null) sync.enTransaccion(accion); else accion.ejecutar();
+    }
 
 }
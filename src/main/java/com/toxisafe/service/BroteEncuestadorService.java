@@ -5,25 +5,40 @@ import com.toxisafe.dao.BroteEncuestadorDao;
 import com.toxisafe.dao.UsuarioDao;
 import com.toxisafe.model.Brote;
 import com.toxisafe.model.BroteEncuestador;
+import com.toxisafe.model.Rol;
 import com.toxisafe.model.Usuario;
+import com.toxisafe.sync.SyncChange;
+import com.toxisafe.sync.SyncChangeListener;
 import com.toxisafe.sync.SyncEmitter;
 import com.toxisafe.sync.util.SharedFolderIngestor;
 
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
  * Servicio para gestión de la relación Brote-Encuestador.
  * Valida rol, existencia y evita duplicados.
+ *
+ * Autorización por brote: todos los servicios comparten esta instancia para saber si un actor
+ * puede acceder a un brote ({@link #puedeAccederBrote}). Los brotes asignados a cada usuario se
+ * cargan una vez y quedan en memoria (comprobación O(1)) hasta que cambia BROTE_ENCUESTADOR:
+ * por este servicio, o localmente/desde sync vía SyncEvents (registrar con SyncEvents.addListener).
  */
-public class BroteEncuestadorService {
+public class BroteEncuestadorService implements SyncChangeListener {
 
     private final BroteEncuestadorDao broteEncuestadorDao;
     private final BroteDao broteDao;
     private final UsuarioDao usuarioDao;
     private SyncEmitter sync;
 
+    // id_usuario -> ids de brote asignados (inmutable)
+    private final Map<String, Set<String>> brotesPorUsuario = new ConcurrentHashMap<>();
+    // Se incrementa en cada invalidación: una carga que se solapa con una invalidación no se guarda
+    private final AtomicLong generacion = new AtomicLong();
+
     public BroteEncuestadorService(BroteEncuestadorDao broteEncuestadorDao,
                                    BroteDao broteDao,
                                    UsuarioDao usuarioDao,
@@ -65,8 +80,7 @@ public class BroteEncuestadorService {
         Usuario usuario = usuarioDao.findById(idUsuario)
                 .orElseThrow(() -> new IllegalArgumentException("El usuario no existe."));
 
-        String rol = (usuario.getRolUsuario() == null ? "" : usuario.getRolUsuario().trim().toUpperCase(Locale.ROOT));
-        if (!"ENCUESTADOR".equals(rol))
+        if (Rol.de(usuario) != Rol.ENCUESTADOR)
             throw new IllegalArgumentException("Solo usuarios con rol ENCUESTADOR pueden ser asignados.");
 
         // Evitar duplicados
@@ -77,10 +91,12 @@ public class BroteEncuestadorService {
         String id = UUID.randomUUID().toString();
         BroteEncuestador be = new BroteEncuestador(id, brote.getIdBrote(), usuario.getIdUsuario());
 
-        broteEncuestadorDao.insert(be);
-
-        emitInsert("BROTE_ENCUESTADOR", be.getIdBroteEncuestador(), toMap(be));
+        enTransaccion(() -> {
+            broteEncuestadorDao.insert(be);
 
+            emitInsert("BROTE_ENCUESTADOR", be.getIdBroteEncuestador(), toMap(be));
+        });
+        invalidarAutorizaciones(idUsuario);
 
         return be;
     }
@@ -93,16 +109,14 @@ public class BroteEncuestadorService {
                 .orElseThrow(() -> new IllegalArgumentException("Brote no encontrado"));
         assertBroteActivo(idBrote);
 
-        broteEncuestadorDao.findByBroteAndUsuario(idBrote, idUsuario)
-                .ifPresent(be -> {
-                    try {
-                        broteEncuestadorDao.delete(be.getIdBroteEncuestador());
-                        emitDelete("BROTE_ENCUESTADOR", be.getIdBroteEncuestador(), toMap(be));
-
-                    } catch (SQLException e) {
-                        throw new RuntimeException(e);
-                    }
-                });
+        var asignacion = broteEncuestadorDao.findByBroteAndUsuario(idBrote, idUsuario);
+        if (asignacion.isEmpty()) return;
+        BroteEncuestador be = asignacion.get();
+        enTransaccion(() -> {
+            broteEncuestadorDao.delete(be.getIdBroteEncuestador());
+            emitDelete("BROTE_ENCUESTADOR", be.getIdBroteEncuestador(), toMap(be));
+        });
+        invalidarAutorizaciones(idUsuario);
     }
 
     /**
@@ -135,6 +149,67 @@ public class BroteEncuestadorService {
         return broteEncuestadorDao.findByUsuarioId(usuarioId);
     }
 
+    /* =================== AUTORIZACIÓN (caché) =================== */
+
+    /** Ids de los brotes asignados al usuario (vista inmutable, desde memoria salvo la primera vez). */
+    public Set<String> brotesAsignados(String idUsuario) throws SQLException {
+        if (idUsuario == null) return Set.of();
+        Set<String> s = brotesPorUsuario.get(idUsuario);
+        if (s != null) return s;
+
+        long gen = generacion.get();
+        Set<String> cargado = new HashSet<>();
+        for (BroteEncuestador be : broteEncuestadorDao.findByUsuarioId(idUsuario)) {
+            if (be.getIdBrote() != null) cargado.add(be.getIdBrote());
+        }
+        s = Collections.unmodifiableSet(cargado);
+        if (generacion.get() == gen) brotesPorUsuario.put(idUsuario, s);
+        return s;
+    }
+
+    public boolean estaAsignado(String idUsuario, String idBrote) throws SQLException {
+        return idBrote != null && brotesAsignados(idUsuario).contains(idBrote);
+    }
+
+    /** Roles globales: siempre; ENCUESTADOR: si está asignado al brote; resto: nunca. */
+    public boolean puedeAccederBrote(Usuario actor, String idBrote) throws SQLException {
+        if (actor == null) return false;
+        Rol rol = Rol.de(actor);
+        if (rol.esGlobal()) return true;
+        return rol == Rol.ENCUESTADOR && estaAsignado(actor.getIdUsuario(), idBrote);
+    }
+
+    /** Olvida las asignaciones en memoria de todos los usuarios (p.ej. al cerrar sesión). */
+    public void invalidarAutorizaciones() {
+        generacion.incrementAndGet();
+        brotesPorUsuario.clear();
+    }
+
+    private void invalidarAutorizaciones(String idUsuario) {
+        generacion.incrementAndGet();
+        if (idUsuario == null) brotesPorUsuario.clear();
+        else brotesPorUsuario.remove(idUsuario);
+    }
+
+    /** Cambio ya confirmado (local o remoto): invalida solo lo afectado. */
+    @Override
+    public void onChange(SyncChange.Op op, String tabla, String idRegistro,
+                         Map<String,Object> antiguos, Map<String,Object> nuevos) {
+        if ("BROTE_ENCUESTADOR".equalsIgnoreCase(tabla)) {
+            Object antes = antiguos == null ? null : antiguos.get("id_usuario");
+            Object despues = nuevos == null ? null : nuevos.get("id_usuario");
+            if (antes == null && despues == null) {
+                invalidarAutorizaciones(null); // sin datos del usuario (p.ej. borrado remoto sin antiguos)
+                return;
+            }
+            if (antes != null) invalidarAutorizaciones(antes.toString());
+            if (despues != null) invalidarAutorizaciones(despues.toString());
+        } else if ("BROTE".equalsIgnoreCase(tabla) && op == SyncChange.Op.DELETE) {
+            // Borrar un brote arrastra sus asignaciones sin emitirlas una a una
+            invalidarAutorizaciones(null);
+        }
+    }
+
     private void assertBroteActivo(String idBrote) throws SQLException {
         var b = broteDao.findById(idBrote)
                 .orElseThrow(() -> new IllegalArgumentException("Brote no encontrado"));
@@ -159,6 +234,10 @@ public class BroteEncuestadorService {
     private void emitDelete(String tabla, String id, Map<String,Object> oldV) {
         if (sync != null) sync.emitDelete(tabla, id, oldV);
     }
+    /** Escritura + emisión en una transacción (si el emisor la soporta). */
+    private void enTransaccion(SyncEmitter.Accion accion) throws SQLException {
+        if (sync != null) sync.enTransaccion(accion); else accion.ejecutar();
+    }
 
 
 }
@@ -8,6 +8,7 @@ import com.toxisafe.model.Brote;
 import com.toxisafe.model.BroteEncuestador;
 import com.toxisafe.model.Usuario;
 import com.toxisafe.sync.SyncEmitter;
+import com.toxisafe.util.Texto;
 
 import java.sql.SQLException;
 import java.time.LocalDate;
@@ -79,7 +80,7 @@ public class BroteService {
                 .orElseThrow(() -> new IllegalArgumentException("Responsable no existe."));
 
         // Validar rol del responsable
-        if (!ROLES_RESPONSABLE_VALIDOS.contains(resp(responsable.getRolUsuario())))
+        if (!ROLES_RESPONSABLE_VALIDOS.contains(Texto.rol(responsable.getRolUsuario())))
             throw new IllegalArgumentException("El responsable debe tener rol ADMIN, EPIDEMIOLOGO o MIR_SALUD_PUBLICA.");
 
         java.time.LocalDate f = java.time.LocalDate.parse(fechaYYYYMMDD);
@@ -96,9 +97,11 @@ public class BroteService {
         b.setEstadoBrote("ACTIVO");
         b.setFechaCierreBrote(null);
 
-        broteDao.insert(b);
+        enTransaccion(() -> {
+            broteDao.insert(b);
 
-        emitInsert("BROTE", b.getIdBrote(), toMap(b));
+            emitInsert("BROTE", b.getIdBrote(), toMap(b));
+        });
 
         return b;
     }
@@ -137,14 +140,16 @@ public class BroteService {
         Usuario responsable = usuarioDao.findById(brote.getResponsableBrote())
                 .orElseThrow(() -> new IllegalArgumentException("Responsable no existe."));
 
-        if (!ROLES_RESPONSABLE_VALIDOS.contains(resp(responsable.getRolUsuario())))
+        if (!ROLES_RESPONSABLE_VALIDOS.contains(Texto.rol(responsable.getRolUsuario())))
             throw new IllegalArgumentException("El responsable debe tener rol ADMIN o EPIDEMIOLOGO.");
 
         Optional<Brote> prevOpt = broteDao.findById(brote.getIdBrote());
         Map<String,Object> prevMap = prevOpt.isPresent() ? toMap(prevOpt.get()) : null;
 
-        broteDao.update(brote);
-        emitUpdate("BROTE", brote.getIdBrote(), prevMap, toMap(brote));
+        enTransaccion(() -> {
+            broteDao.update(brote);
+            emitUpdate("BROTE", brote.getIdBrote(), prevMap, toMap(brote));
+        });
 
     }
 
@@ -160,16 +165,18 @@ public class BroteService {
         if ("CERRADO".equalsIgnoreCase(brote.getEstadoBrote()))
             throw new IllegalStateException("No se puede eliminar un brote cerrado.");
 
-        // Borrar asignaciones de encuestadores (dependencias)
         List<BroteEncuestador> asignaciones = broteEncuestadorDao.findByBroteId(idBrote);
-        for (BroteEncuestador be : asignaciones) {
-            broteEncuestadorDao.delete(be.getIdBroteEncuestador());
-        }
-
         Optional<Brote> prevOpt = broteDao.findById(idBrote);
 
-        broteDao.delete(idBrote);
-        prevOpt.ifPresent(prev -> emitDelete("BROTE", idBrote, toMap(prev)));
+        enTransaccion(() -> {
+            // Borrar asignaciones de encuestadores (dependencias), en lote
+            List<String> idsAsignaciones = new ArrayList<>(asignaciones.size());
+            for (BroteEncuestador be : asignaciones) idsAsignaciones.add(be.getIdBroteEncuestador());
+            broteEncuestadorDao.deleteAllById(idsAsignaciones);
+
+            broteDao.delete(idBrote);
+            prevOpt.ifPresent(prev -> emitDelete("BROTE", idBrote, toMap(prev)));
+        });
 
     }
 
@@ -202,7 +209,7 @@ public class BroteService {
      */
     public List<Brote> brotesVisiblesPara(Usuario usuario) throws SQLException {
         if (usuario == null) return Collections.emptyList();
-        String rol = resp(usuario.getRolUsuario());
+        String rol = Texto.rol(usuario.getRolUsuario());
 
         if ("ADMIN".equals(rol) || "EPIDEMIOLOGO".equals(rol) || "MIR_SALUD_PUBLICA".equals(rol)) {
             return broteDao.findAll();
@@ -236,17 +243,6 @@ public class BroteService {
         }
     }
 
-    private String resp(String s) {
-        if (s == null) return "";
-        String up = s.trim().toUpperCase(Locale.ROOT)
-                .replace('Á','A').replace('É','E').replace('Í','I').replace('Ó','O').replace('Ú','U')
-                .replace('Ü','U').replace('Ñ','N')
-                .replace(' ', '_');
-        // alias comunes:
-        if (up.equals("EPIDEMIOLOG@")) return "EPIDEMIOLOGO";
-        return up;
-    }
-
     // Cerrar brote
     public void cerrarBrote(String idBrote, String fechaCierreIso) throws SQLException {
         var brote = broteDao.findById(idBrote)
@@ -256,10 +252,14 @@ public class BroteService {
         if (java.time.LocalDate.parse(fechaCierreIso).isAfter(java.time.LocalDate.now()))
             throw new IllegalArgumentException("La fecha de cierre no puede ser posterior a hoy.");
         Map<String,Object> oldMap = toMap(brote);
-        broteDao.actualizarEstado(idBrote, "CERRADO", fechaCierreIso);
+        brote.setEstadoBrote("CERRADO");
+        brote.setFechaCierreBrote(fechaCierreIso);
+        enTransaccion(() -> {
+            broteDao.actualizarEstado(idBrote, "CERRADO", fechaCierreIso);
 
-        // >>> EMIT SYNC
-        emitUpdate("BROTE", idBrote, oldMap, toMap(brote));
+            // >>> EMIT SYNC
+            emitUpdate("BROTE", idBrote, oldMap, toMap(brote));
+        });
 
     }
 
@@ -270,10 +270,14 @@ public class BroteService {
         if ("ACTIVO".equalsIgnoreCase(brote.getEstadoBrote())) return; // idempotente
 
         Map<String,Object> oldMap = toMap(brote);
-        broteDao.actualizarEstado(idBrote, "ACTIVO", null);
-
-        // >>> EMIT SYNC
-        emitUpdate("BROTE", idBrote, oldMap, toMap(brote));
+        brote.setEstadoBrote("ACTIVO");
+        brote.setFechaCierreBrote(null);
+        enTransaccion(() -> {
+            broteDao.actualizarEstado(idBrote, "ACTIVO", null);
+
+            // >>> EMIT SYNC
+            emitUpdate("BROTE", idBrote, oldMap, toMap(brote));
+        });
     }
 
 
@@ -301,4 +305,8 @@ public class BroteService {
     private void emitDelete(String tabla, String id, Map<String,Object> oldV) {
         if (sync != null) sync.emitDelete(tabla, id, oldV);
     }
+    /** Escritura + emisión en una transacción (si el emisor la soporta). */
+    private void enTransaccion(SyncEmitter.Accion accion) throws SQLException {
+        if (sync != null) sync.enTransaccion(accion); else accion.ejecutar();
+    }
 }
@@ -0,0 +1,254 @@
+package com.toxisafe.service;
+
+import java.util.*;
+
+/**
+ * Instantánea columnar y de solo lectura de un brote para el módulo de Estadística.
+ * - Los id_expuesto se internan a índices densos 0..n-1 (orden de findByBroteIdVisiblePara)
+ * - Condición de caso y "tiene registro general" en BitSet
+ * - Exposición a cada alimento como un BitSet por clave (CAT#id o nombre normalizado)
+ * - Inicio de síntomas como epoch-second primitivo ({@link #SIN_INICIO} si no hay o no parsea)
+ * - Síntomas por expuesto como índices sobre un diccionario de id_sintoma y, para las
+ *   definiciones de caso compiladas, como máscara de bits por nombre normalizado
+ * - Coprocultivo positivo en BitSet; grupo y sexo del expuesto para estratificar
+ * - Inicios de los casos ya ordenados (para reagrupar la curva sin volver a parsear) e
+ *   ingestas con su fecha de consumo en epoch-second y sus asistentes en BitSet
+ *
+ * Se construye una vez con {@link EstadisticaService#cargarSnapshot} y se reutiliza para
+ * line list, curva epidémica, tablas 2x2 y resumen del informe.
+ */
+public final class BroteSnapshot {
+
+    /** Marca de "sin fecha de inicio" en {@link #inicioEpochSecond(int)}. */
+    public static final long SIN_INICIO = Long.MIN_VALUE;
+
+    private final String idBrote;
+
+    // Columnas por expuesto (índice denso)
+    private final String[] idExpuesto;
+    private final String[] nombre;
+    private final String[] apellido;
+    private final String[] fechaInicio;   // texto tal cual para la line list
+    private final String[] fechaFin;
+    private final String[] grupo;
+    private final String[] sexo;
+    private final long[] inicioEpoch;
+    private final int[][] sintomas;       // índices sobre sintomaIds, en orden de registro
+    private final BitSet conGenerales;
+    private final BitSet casos;
+    private final Map<String, Integer> indice;
+
+    // Diccionario de síntomas (índice -> id / nombre visible; nombre null si no está en catálogo)
+    private final String[] sintomaIds;
+    private final String[] sintomaNombres;
+
+    // Síntomas como máscara por expuesto: palabras consecutivas en un array plano
+    private final SintomasGeneralesExpuestoService.DiccionarioSintomas diccionario;
+    private final int palabras;
+    private final long[] mascaras;
+    private final BitSet coprocultivoPositivo;
+
+    // Alimentos: clave -> expuestos (BitSet) y etiqueta visible
+    private final Map<String, BitSet> expuestosPorAlimento;
+    private final Map<String, String> etiquetaAlimento;
+
+    // Claves ajenas presentes en la instantánea (para saber si un cambio le afecta)
+    private final Set<String> idsSintomasGenerales;
+    private final Set<String> idsIngesta;
+
+    // Curva epidémica e incubación
+    private final long[] iniciosCasos;    // epoch-second de los casos con inicio, ascendente
+    private final List<Comida> comidas;
+
+    /** Ingesta del brote: fecha de consumo parseada una vez y expuestos que asistieron. */
+    public static final class Comida {
+        public final String idIngesta;
+        public final String fechaConsumo;
+        public final String lugarConsumo;
+        public final long consumoEpoch;       // SIN_INICIO si no parsea
+        public final boolean soloFecha;
+        private final BitSet asistentes;
+        private final int marcadaSospechosa;
+
+        Comida(String idIngesta, String fechaConsumo, String lugarConsumo, long consumoEpoch,
+               boolean soloFecha, BitSet asistentes, int marcadaSospechosa) {
+            this.idIngesta = idIngesta;
+            this.fechaConsumo = fechaConsumo;
+            this.lugarConsumo = lugarConsumo;
+            this.consumoEpoch = consumoEpoch;
+            this.soloFecha = soloFecha;
+            this.asistentes = asistentes;
+            this.marcadaSospechosa = marcadaSospechosa;
+        }
+
+        public BitSet asistentes() { return (BitSet) asistentes.clone(); }
+        public int marcadaSospechosa() { return marcadaSospechosa; }
+        BitSet asistentesSinCopia() { return asistentes; }
+    }
+
+    BroteSnapshot(String idBrote,
+                  String[] idExpuesto, String[] nombre, String[] apellido,
+                  String[] fechaInicio, String[] fechaFin, String[] grupo, String[] sexo, long[] inicioEpoch,
+                  int[][] sintomas, BitSet conGenerales, BitSet casos,
+                  String[] sintomaIds, String[] sintomaNombres, BitSet coprocultivoPositivo,
+                  Map<String, BitSet> expuestosPorAlimento, Map<String, String> etiquetaAlimento,
+                  Set<String> idsSintomasGenerales, Set<String> idsIngesta, List<Comida> comidas) {
+        this.idBrote = idBrote;
+        this.idExpuesto = idExpuesto;
+        this.nombre = nombre;
+        this.apellido = apellido;
+        this.fechaInicio = fechaInicio;
+        this.fechaFin = fechaFin;
+        this.grupo = grupo;
+        this.sexo = sexo;
+        this.inicioEpoch = inicioEpoch;
+        this.sintomas = sintomas;
+        this.conGenerales = conGenerales;
+        this.casos = casos;
+        this.sintomaIds = sintomaIds;
+        this.sintomaNombres = sintomaNombres;
+        this.coprocultivoPositivo = coprocultivoPositivo;
+        this.expuestosPorAlimento = expuestosPorAlimento;
+        this.etiquetaAlimento = etiquetaAlimento;
+        this.idsSintomasGenerales = idsSintomasGenerales;
+        this.idsIngesta = idsIngesta;
+        this.comidas = List.copyOf(comidas);
+
+        long[] ini = new long[casos.cardinality()];
+        int m = 0;
+        for (int i = casos.nextSetBit(0); i >= 0; i = casos.nextSetBit(i + 1)) {
+            if (inicioEpoch[i] != SIN_INICIO) ini[m++] = inicioEpoch[i];
+        }
+        ini = Arrays.copyOf(ini, m);
+        Arrays.sort(ini);
+        this.iniciosCasos = ini;
+
+        Map<String, Integer> idx = new HashMap<>(idExpuesto.length * 2);
+        for (int i = 0; i < idExpuesto.length; i++) idx.putIfAbsent(idExpuesto[i], i);
+        this.indice = idx;
+
+        SintomasGeneralesExpuestoService.DiccionarioSintomas dic = new SintomasGeneralesExpuestoService.DiccionarioSintomas();
+        int[] bit = new int[sintomaIds.length];
+        for (int k = 0; k < sintomaIds.length; k++) bit[k] = dic.registrar(sintomaIds[k], sintomaNombres[k]);
+        this.diccionario = dic;
+        this.palabras = dic.palabras();
+        this.mascaras = new long[idExpuesto.length * palabras];
+        for (int i = 0; i < idExpuesto.length; i++) {
+            for (int k : sintomas[i]) {
+                int b = bit[k];
+                if (b >= 0) mascaras[i * palabras + (b >>> 6)] |= 1L << b;
+            }
+        }
+    }
+
+    /* ===================== Expuestos ===================== */
+
+    public String idBrote() { return idBrote; }
+
+    /** Número de expuestos visibles en la instantánea. */
+    public int size() { return idExpuesto.length; }
+
+    public String idExpuesto(int i) { return idExpuesto[i]; }
+
+    /** Índice denso del expuesto o -1 si no está en la instantánea. */
+    public int indiceDe(String idExpuesto) {
+        Integer i = indice.get(idExpuesto);
+        return i == null ? -1 : i;
+    }
+
+    public String nombre(int i) { return nombre[i]; }
+    public String apellido(int i) { return apellido[i]; }
+    public String fechaInicio(int i) { return fechaInicio[i]; }
+    public String fechaFin(int i) { return fechaFin[i]; }
+    public String grupo(int i) { return grupo[i]; }
+    public String sexo(int i) { return sexo[i]; }
+
+    /**
+     * Expuestos por valor de la variable (sin tildes, en mayúsculas); quienes no tienen dato no
+     * aparecen. Orden estable por valor.
+     */
+    public SortedMap<String, BitSet> estratos(EstadisticaService.Estratificacion por) {
+        String[] col = por == EstadisticaService.Estratificacion.SEXO ? sexo : grupo;
+        SortedMap<String, BitSet> out = new TreeMap<>();
+        for (int i = 0; i < col.length; i++) {
+            String v = col[i];
+            if (v == null || v.isBlank()) continue;
+            out.computeIfAbsent(v, x -> new BitSet(col.length)).set(i);
+        }
+        return out;
+    }
+
+    /** Inicio de síntomas en segundos desde epoch (hora local tratada como UTC) o {@link #SIN_INICIO}. */
+    public long inicioEpochSecond(int i) { return inicioEpoch[i]; }
+
+    public boolean tieneGenerales(int i) { return conGenerales.get(i); }
+    public boolean esCaso(int i) { return casos.get(i); }
+    public int numSintomas(int i) { return sintomas[i].length; }
+
+    /** Coprocultivo con resultado positivo (resultado o patógeno informado). */
+    public boolean coprocultivoPositivo(int i) { return coprocultivoPositivo.get(i); }
+
+    /** Copia del conjunto de casos (se puede modificar libremente). */
+    public BitSet casos() { return (BitSet) casos.clone(); }
+
+    /** Copia del conjunto de expuestos con registro general de síntomas. */
+    public BitSet conGenerales() { return (BitSet) conGenerales.clone(); }
+
+    /* ===================== Síntomas ===================== */
+
+    /** Índices (sobre el diccionario) de los síntomas del expuesto, en orden de registro. */
+    public int[] sintomasDe(int i) { return sintomas[i].clone(); }
+
+    public int numSintomasDistintos() { return sintomaIds.length; }
+    public String sintomaId(int s) { return sintomaIds[s]; }
+
+    /** Nombre del síntoma o null si el id no existe en el catálogo. */
+    public String sintomaNombre(int s) { return sintomaNombres[s]; }
+
+    /* ===================== Alimentos ===================== */
+
+    /** Claves de alimento (CAT#id_catalogo o nombre normalizado). */
+    public Set<String> alimentos() { return Collections.unmodifiableSet(expuestosPorAlimento.keySet()); }
+
+    /** Copia del conjunto de expuestos al alimento (vacío si la clave no existe). */
+    public BitSet expuestosA(String alimentoKey) {
+        BitSet b = expuestosPorAlimento.get(alimentoKey);
+        return b == null ? new BitSet(size()) : (BitSet) b.clone();
+    }
+
+    public String etiqueta(String alimentoKey) {
+        return etiquetaAlimento.getOrDefault(alimentoKey, alimentoKey);
+    }
+
+    /** Acceso directo sin copia para los cálculos internos del servicio. */
+    Map<String, BitSet> expuestosPorAlimento() { return expuestosPorAlimento; }
+    BitSet casosSinCopia() { return casos; }
+    int[] sintomasSinCopia(int i) { return sintomas[i]; }
+
+    /** Diccionario de nombres normalizados sobre el que están las máscaras (solo lectura). */
+    SintomasGeneralesExpuestoService.DiccionarioSintomas diccionarioSintomas() { return diccionario; }
+
+    /** Máscaras de síntomas de todos los expuestos; la del expuesto i empieza en i * palabrasMascara(). */
+    long[] mascarasSinCopia() { return mascaras; }
+    int palabrasMascara() { return palabras; }
+
+    /* ===================== Curva / ingestas ===================== */
+
+    /** Casos con fecha de inicio válida. */
+    public int numCasosConInicio() { return iniciosCasos.length; }
+    /** Primer / último inicio de un caso (SIN_INICIO si no hay ninguno). */
+    public long primerInicio() { return iniciosCasos.length == 0 ? SIN_INICIO : iniciosCasos[0]; }
+    public long ultimoInicio() { return iniciosCasos.length == 0 ? SIN_INICIO : iniciosCasos[iniciosCasos.length - 1]; }
+
+    /** Ingestas del brote ordenadas por fecha de consumo. */
+    public List<Comida> comidas() { return comidas; }
+
+    /** Inicios de los casos ordenados, sin copia (solo lectura). */
+    long[] iniciosCasosSinCopia() { return iniciosCasos; }
+
+    /* ===================== Pertenencia (invalidación de caché) ===================== */
+
+    boolean contieneExpuesto(String idExpuesto) { return indice.containsKey(idExpuesto); }
+    boolean contieneSintomasGenerales(String idSintomasGenerales) { return idsSintomasGenerales.contains(idSintomasGenerales); }
+    boolean contieneIngesta(String idIngesta) { return idsIngesta.contains(idIngesta); }
+}
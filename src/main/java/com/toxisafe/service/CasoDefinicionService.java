@@ -0,0 +1,276 @@
+package com.toxisafe.service;
+
+import com.toxisafe.dao.BroteDao;
+import com.toxisafe.dao.CasoDefinicionDao;
+import com.toxisafe.dao.SintomaDao;
+import com.toxisafe.model.*;
+import com.toxisafe.model.CasoDefinicion.CriterioLaboratorio;
+import com.toxisafe.util.Texto;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Definiciones de caso editables (tabla CASO_DEFINICION) y su evaluación sobre una {@link BroteSnapshot}.
+ * - Cada definición combina: regla de síntomas (todos / al menos uno / mínimo), ventana de inicio de
+ *   síntomas y papel del coprocultivo positivo (no aplica, requerido o suficiente)
+ * - {@link #compilar} la traduce a un {@link Evaluador} sobre las máscaras de síntomas de la instantánea:
+ *   re-puntuar miles de expuestos son unas pocas operaciones de bits por persona, sin consultas
+ * - Las definiciones no guardadas también se evalúan (panel "qué pasaría si")
+ * Las definiciones son configuración local del equipo (como los catálogos): no se sincronizan.
+ */
+public class CasoDefinicionService {
+
+    private final CasoDefinicionDao casoDefinicionDao;
+    private final BroteDao broteDao;
+    private final SintomaDao sintomaDao;
+    private final BroteEncuestadorService broteEncuestadorService;
+
+    private static final DateTimeFormatter DF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int MAX_NOMBRE = 120;
+
+    public CasoDefinicionService(CasoDefinicionDao casoDefinicionDao,
+                                 BroteDao broteDao,
+                                 SintomaDao sintomaDao,
+                                 BroteEncuestadorService broteEncuestadorService) {
+        this.casoDefinicionDao = casoDefinicionDao;
+        this.broteDao = broteDao;
+        this.sintomaDao = sintomaDao;
+        this.broteEncuestadorService = broteEncuestadorService;
+    }
+
+    /** Definición equivalente a {@link SintomasGeneralesExpuestoService.CasoDef#porDefecto()} (no persistida). */
+    public static CasoDefinicion porDefecto() {
+        return new CasoDefinicion(null, null, "Por defecto (diarrea y fiebre, vómitos o dolor abdominal)",
+                "Diarrea", "Fiebre; Vómitos; Dolor o calambres abdominales", 0,
+                false, null, null, CriterioLaboratorio.NO_APLICA);
+    }
+
+    /* ================== CRUD con permisos ================== */
+
+    /** Definiciones del brote y plantillas comunes; vacía si el actor no ve el brote. */
+    public List<CasoDefinicion> findByBroteIdVisiblePara(String idBrote, Usuario actor) throws SQLException {
+        requireActor(actor);
+        Objects.requireNonNull(idBrote, "id_brote requerido");
+        if (!puedeVerBrote(actor, idBrote)) return Collections.emptyList();
+        return casoDefinicionDao.findByBroteIdConPlantillas(idBrote);
+    }
+
+    public CasoDefinicion create(CasoDefinicion d, Usuario actor) throws SQLException {
+        requireActor(actor);
+        Objects.requireNonNull(d, "Definición requerida");
+        checkPuedeEditar(actor, d.getIdBrote());
+        validar(d);
+        if (isBlank(d.getIdDefinicion())) d.setIdDefinicion(UUID.randomUUID().toString());
+        casoDefinicionDao.insert(d);
+        return d;
+    }
+
+    public void update(CasoDefinicion d, Usuario actor) throws SQLException {
+        requireActor(actor);
+        Objects.requireNonNull(d, "Definición requerida");
+        if (isBlank(d.getIdDefinicion())) throw new IllegalArgumentException("id_definicion obligatorio");
+        CasoDefinicion prev = casoDefinicionDao.findById(d.getIdDefinicion())
+                .orElseThrow(() -> new IllegalArgumentException("Definición no encontrada"));
+        checkPuedeEditar(actor, prev.getIdBrote());
+        checkPuedeEditar(actor, d.getIdBrote());
+        validar(d);
+        casoDefinicionDao.update(d);
+    }
+
+    public void delete(String idDefinicion, Usuario actor) throws SQLException {
+        requireActor(actor);
+        if (isBlank(idDefinicion)) throw new IllegalArgumentException("id_definicion obligatorio");
+        var prev = casoDefinicionDao.findById(idDefinicion);
+        if (prev.isEmpty()) return; // idempotente
+        checkPuedeEditar(actor, prev.get().getIdBrote());
+        casoDefinicionDao.delete(idDefinicion);
+    }
+
+    /**
+     * Validación de una definición (también antes de evaluarla en el panel "qué pasaría si").
+     * Los síntomas deben existir en el catálogo: un nombre mal escrito haría la regla imposible sin avisar.
+     */
+    public void validar(CasoDefinicion d) throws SQLException {
+        String nombre = d.getNombreDefinicion() == null ? "" : d.getNombreDefinicion().trim();
+        if (nombre.isEmpty()) throw new IllegalArgumentException("El nombre de la definición es obligatorio");
+        if (nombre.length() > MAX_NOMBRE) throw new IllegalArgumentException("Nombre demasiado largo (máx. " + MAX_NOMBRE + ")");
+        d.setNombreDefinicion(nombre);
+
+        if (d.getMinimoSintomas() < 0 || d.getMinimoSintomas() > 50)
+            throw new IllegalArgumentException("Mínimo de síntomas fuera de rango (0-50)");
+
+        LocalDateTime desde = parseOrNull(d.getInicioDesde(), "inicio desde");
+        LocalDateTime hasta = parseOrNull(d.getInicioHasta(), "inicio hasta");
+        if (desde != null && hasta != null && hasta.isBefore(desde))
+            throw new IllegalArgumentException("La ventana de inicio termina antes de empezar");
+
+        Set<String> catalogo = new HashSet<>();
+        for (Sintoma s : sintomaDao.findAll()) catalogo.add(Texto.codigo(s.getNombreSintoma()));
+        d.setSintomasTodos(validarSintomas(d.getSintomasTodos(), catalogo));
+        d.setSintomasAlguno(validarSintomas(d.getSintomasAlguno(), catalogo));
+    }
+
+    /* ================== Evaluación ================== */
+
+    /** Resultado de una definición sobre una instantánea. */
+    public static final class Resultado {
+        public final CasoDefinicion definicion;
+        public final BitSet casos;        // índices de la instantánea
+        public final int numCasos;
+        public final int totalExpuestos;
+
+        Resultado(CasoDefinicion definicion, BitSet casos, int totalExpuestos) {
+            this.definicion = definicion;
+            this.casos = casos;
+            this.numCasos = casos.cardinality();
+            this.totalExpuestos = totalExpuestos;
+        }
+
+        /** Proporción de casos entre los expuestos (NaN sin expuestos). */
+        public double proporcion() {
+            return totalExpuestos == 0 ? Double.NaN : (double) numCasos / totalExpuestos;
+        }
+    }
+
+    /**
+     * Definición compilada sobre una instantánea concreta. Sin consultas ni objetos por expuesto:
+     * regla de síntomas como máscaras, ventana de inicio como epoch-second y laboratorio como BitSet.
+     */
+    public static final class Evaluador {
+        private final BroteSnapshot s;
+        private final SintomasGeneralesExpuestoService.Compilada regla;
+        private final boolean exigeInicio;
+        private final long desde;
+        private final long hasta;
+        private final CriterioLaboratorio laboratorio;
+
+        private Evaluador(BroteSnapshot s, SintomasGeneralesExpuestoService.Compilada regla,
+                          boolean exigeInicio, long desde, long hasta, CriterioLaboratorio laboratorio) {
+            this.s = s;
+            this.regla = regla;
+            this.exigeInicio = exigeInicio;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.laboratorio = laboratorio;
+        }
+
+        public boolean esCaso(int i) {
+            boolean lab = s.coprocultivoPositivo(i);
+            return switch (laboratorio) {
+                case NO_APLICA -> clinico(i);
+                case REQUERIDO -> lab && clinico(i);
+                case SUFICIENTE -> lab || clinico(i);
+            };
+        }
+
+        /** Casos de la instantánea (índices densos). */
+        public BitSet evaluar() {
+            BitSet out = new BitSet(s.size());
+            for (int i = 0; i < s.size(); i++) {
+                if (esCaso(i)) out.set(i);
+            }
+            return out;
+        }
+
+        private boolean clinico(int i) {
+            if (s.numSintomas(i) == 0) return false;
+            if (exigeInicio) {
+                long ini = s.inicioEpochSecond(i);
+                if (ini == BroteSnapshot.SIN_INICIO || ini < desde || ini > hasta) return false;
+            }
+            return regla.cumple(s.mascarasSinCopia(), i * s.palabrasMascara());
+        }
+    }
+
+    /** Compila la definición sobre la instantánea (no comprueba el catálogo: ver {@link #validar}). */
+    public static Evaluador compilar(CasoDefinicion d, BroteSnapshot s) {
+        SintomasGeneralesExpuestoService.CasoDef def = SintomasGeneralesExpuestoService.CasoDef.de(
+                partir(d.getSintomasTodos()), partir(d.getSintomasAlguno()), d.getMinimoSintomas());
+        long desde = epochOr(d.getInicioDesde(), Long.MIN_VALUE + 1); // SIN_INICIO nunca entra en la ventana
+        long hasta = epochOr(d.getInicioHasta(), Long.MAX_VALUE);
+        boolean exigeInicio = d.isRequiereInicio() || !isBlank(d.getInicioDesde()) || !isBlank(d.getInicioHasta());
+        return new Evaluador(s, def.compilar(s.diccionarioSintomas()), exigeInicio, desde, hasta,
+                d.getCriterioLaboratorio());
+    }
+
+    /** Evalúa varias definiciones sobre la misma instantánea, en el orden recibido. */
+    public static List<Resultado> evaluar(BroteSnapshot s, List<CasoDefinicion> definiciones) {
+        List<Resultado> out = new ArrayList<>(definiciones.size());
+        for (CasoDefinicion d : definiciones) {
+            out.add(new Resultado(d, compilar(d, s).evaluar(), s.size()));
+        }
+        return out;
+    }
+
+    /**
+     * Coprocultivo positivo según los campos del expuesto (el resultado es texto libre):
+     * el resultado dice "positivo", o hay patógeno informado y el resultado no dice "negativo".
+     */
+    public static boolean coprocultivoPositivo(PersonaExpuesta pe) {
+        String res = Texto.codigo(pe.getResultadoCoprocultivoExpuesto());
+        if (res.contains("NEGATIV")) return false;
+        if (res.contains("POSITIV")) return true;
+        String pat = Texto.codigo(pe.getPatogenoCoprocultivoExpuesto());
+        return !pat.isEmpty() && !pat.equals("NO") && !pat.equals("NINGUNO") && !pat.contains("NEGATIV");
+    }
+
+    /* ================== Helpers ================== */
+
+    /** Nombres de una lista separada por ';' (sin vacíos). */
+    public static List<String> partir(String lista) {
+        if (isBlank(lista)) return List.of();
+        List<String> out = new ArrayList<>();
+        for (String p : lista.split(";")) {
+            if (!p.isBlank()) out.add(p.trim());
+        }
+        return out;
+    }
+
+    private static String validarSintomas(String lista, Set<String> catalogo) {
+        List<String> nombres = partir(lista);
+        for (String n : nombres) {
+            if (!catalogo.contains(Texto.codigo(n))) throw new IllegalArgumentException("Síntoma desconocido: " + n);
+        }
+        return nombres.isEmpty() ? null : String.join("; ", nombres);
+    }
+
+    private static LocalDateTime parseOrNull(String s, String campo) {
+        if (isBlank(s)) return null;
+        try { return LocalDateTime.parse(s.trim(), DF); }
+        catch (Exception e) { throw new IllegalArgumentException("Fecha de " + campo + " con formato YYYY-MM-DD HH:MM:SS"); }
+    }
+
+    private static long epochOr(String s, long siVacia) {
+        LocalDateTime t = parseOrNull(s, "la ventana");
+        return t == null ? siVacia : t.toEpochSecond(ZoneOffset.UTC); // mismo criterio que BroteSnapshot
+    }
+
+    private void requireActor(Usuario actor) {
+        if (actor == null || isBlank(actor.getIdUsuario()))
+            throw new SecurityException("Sesión no válida.");
+    }
+
+    private boolean puedeVerBrote(Usuario actor, String idBrote) throws SQLException {
+        Rol rol = Rol.de(actor);
+        if (rol.esGlobal()) return true;
+        if (rol == Rol.ENCUESTADOR) {
+            return broteEncuestadorService.estaAsignado(actor.getIdUsuario(), idBrote);
+        }
+        return false;
+    }
+
+    /** Solo los roles globales editan definiciones; las de un brote exigen que exista. */
+    private void checkPuedeEditar(Usuario actor, String idBrote) throws SQLException {
+        if (!Rol.de(actor).esGlobal())
+            throw new SecurityException("No tiene permiso para editar definiciones de caso.");
+        if (!isBlank(idBrote)) {
+            broteDao.findById(idBrote).orElseThrow(() -> new IllegalArgumentException("Brote no encontrado"));
+        }
+    }
+
+    private static boolean isBlank(String s) { return s == null || s.trim().isEmpty(); }
+}
@@ -0,0 +1,316 @@
+package com.toxisafe.service;
+
+import com.toxisafe.model.AlimentoCatalogo;
+import com.toxisafe.model.AlimentoCatalogoAlias;
+import com.toxisafe.util.Texto;
+
+import java.util.*;
+
+/**
+ * Índice en memoria del catálogo de alimentos (nombres canónicos + alias) para el
+ * autocompletado: ninguna consulta a BD mientras se escribe.
+ * - Trie sobre cada inicio de palabra de cada término normalizado: "pol" encuentra
+ *   "pollo asado" (inicio) y "pechuga de pollo" (palabra interior)
+ * - Índice de trigramas (término con un espacio a cada lado) para subcadenas y erratas:
+ *   "polo" -> "pollo", "ensalda" -> "ensalada"
+ * - Puntuación: exacto > empieza por > palabra que empieza por > contiene > parecido; a igual
+ *   puntuación, canónico antes que alias y más corto antes
+ *
+ * Inmutable: {@link AlimentoService} lo reconstruye entero tras cada escritura del catálogo o
+ * de un alias y lo publica en un campo volatile (el catálogo son miles de términos, no más).
+ */
+public final class CatalogoIndice {
+
+    public static final int MAX_SUGERENCIAS = 30;
+
+    // Puntuaciones base por tipo de coincidencia
+    private static final double EXACTO = 1000, PREFIJO = 800, PALABRA = 600, CONTIENE = 400, PARECIDO = 300;
+    private static final double SIMILITUD_MINIMA = 0.35;
+
+    /** Coincidencia de una búsqueda: entrada del catálogo y término (canónico o alias) por el que salió. */
+    public static final class Coincidencia {
+        public final String idCatalogo;
+        public final String nombreCanonico;
+        public final String termino;         // normalizado
+        public final boolean porAlias;
+        public final boolean exacta;          // el término normalizado es igual a la búsqueda
+        public final double puntuacion;       // para ordenar (ver constantes)
+        public final double similitud;        // 1 si exacta; prefijo: fracción cubierta; si no, trigramas
+
+        Coincidencia(String idCatalogo, String nombreCanonico, String termino, boolean porAlias,
+                     boolean exacta, double puntuacion, double similitud) {
+            this.idCatalogo = idCatalogo;
+            this.nombreCanonico = nombreCanonico;
+            this.termino = termino;
+            this.porAlias = porAlias;
+            this.exacta = exacta;
+            this.puntuacion = puntuacion;
+            this.similitud = similitud;
+        }
+    }
+
+    // Entradas del catálogo (orden por nombre canónico)
+    private final String[] idCatalogo;
+    private final String[] canonico;
+    private final List<String> nombres;
+    private final Map<String, Integer> entradaPorId;
+
+    // Términos: canónicos y alias normalizados
+    private final String[] termino;
+    private final int[] entradaDe;
+    private final boolean[] esAlias;
+    private final Map<String, Integer> terminoExacto;   // normalizado -> término
+    private final int[][] terminosDeEntrada;            // canónico primero, luego sus alias
+
+    private final Nodo raiz = new Nodo();
+    private final Map<Long, int[]> trigramas;
+    private final int[] numTrigramas;
+
+    private CatalogoIndice(List<AlimentoCatalogo> catalogo, List<AlimentoCatalogoAlias> alias) {
+        List<AlimentoCatalogo> cat = new ArrayList<>(catalogo);
+        cat.removeIf(c -> c.getIdCatalogo() == null || isBlank(c.getNombreCanonico()));
+        cat.sort(Comparator.comparing(AlimentoCatalogo::getNombreCanonico, String.CASE_INSENSITIVE_ORDER));
+
+        int n = cat.size();
+        idCatalogo = new String[n];
+        canonico = new String[n];
+        entradaPorId = new HashMap<>(n * 2);
+        for (int e = 0; e < n; e++) {
+            idCatalogo[e] = cat.get(e).getIdCatalogo();
+            canonico[e] = cat.get(e).getNombreCanonico();
+            entradaPorId.put(idCatalogo[e], e);
+        }
+        nombres = List.of(canonico);
+
+        // Términos: primero los canónicos, luego los alias (el primero que llega gana en exactos)
+        List<String> ts = new ArrayList<>();
+        List<Integer> es = new ArrayList<>();
+        List<Boolean> al = new ArrayList<>();
+        for (int e = 0; e < n; e++) {
+            ts.add(Texto.clave(canonico[e]));
+            es.add(e);
+            al.add(false);
+        }
+        for (AlimentoCatalogoAlias a : alias) {
+            Integer e = entradaPorId.get(a.getIdCatalogo());
+            if (e == null || isBlank(a.getAlias())) continue;
+            ts.add(Texto.clave(a.getAlias()));
+            es.add(e);
+            al.add(true);
+        }
+
+        int m = ts.size();
+        termino = ts.toArray(new String[0]);
+        entradaDe = new int[m];
+        esAlias = new boolean[m];
+        terminoExacto = new HashMap<>(m * 2);
+        numTrigramas = new int[m];
+        Map<Long, List<Integer>> tri = new HashMap<>();
+        for (int t = 0; t < m; t++) {
+            entradaDe[t] = es.get(t);
+            esAlias[t] = al.get(t);
+            String s = termino[t];
+            terminoExacto.putIfAbsent(s, t);
+
+            // Trie: el término completo y cada sufijo que empieza palabra
+            for (int i = 0; i < s.length(); i++) {
+                if (i == 0 || s.charAt(i - 1) == ' ') raiz.insertar(s, i, t << 1 | (i == 0 ? 0 : 1));
+            }
+
+            Set<Long> propios = trigramasDe(s);
+            numTrigramas[t] = propios.size();
+            for (Long g : propios) tri.computeIfAbsent(g, k -> new ArrayList<>()).add(t);
+        }
+        int[] porEntrada = new int[n];
+        for (int t = 0; t < m; t++) porEntrada[entradaDe[t]]++;
+        terminosDeEntrada = new int[n][];
+        for (int e = 0; e < n; e++) terminosDeEntrada[e] = new int[porEntrada[e]];
+        Arrays.fill(porEntrada, 0);
+        for (int t = 0; t < m; t++) terminosDeEntrada[entradaDe[t]][porEntrada[entradaDe[t]]++] = t;
+
+        trigramas = new HashMap<>(tri.size() * 2);
+        for (Map.Entry<Long, List<Integer>> e : tri.entrySet()) {
+            int[] p = new int[e.getValue().size()];
+            for (int k = 0; k < p.length; k++) p[k] = e.getValue().get(k);
+            trigramas.put(e.getKey(), p);
+        }
+    }
+
+    /** Construye el índice a partir del catálogo y sus alias (los alias huérfanos se ignoran). */
+    public static CatalogoIndice construir(List<AlimentoCatalogo> catalogo, List<AlimentoCatalogoAlias> alias) {
+        return new CatalogoIndice(catalogo, alias);
+    }
+
+    /* ===================== Consultas ===================== */
+
+    public int size() { return canonico.length; }
+
+    /** Nombres canónicos ordenados. */
+    public List<String> nombres() { return nombres; }
+
+    /** id_catalogo del canónico o alias que coincide exactamente tras normalizar. */
+    public Optional<String> resolverExacto(String texto) {
+        Integer t = terminoExacto.get(Texto.clave(texto));
+        return t == null ? Optional.empty() : Optional.of(idCatalogo[entradaDe[t]]);
+    }
+
+    /** Nombre canónico del id (null si no está en el catálogo). */
+    public String canonicoDe(String idCatalogo) {
+        Integer e = entradaPorId.get(idCatalogo);
+        return e == null ? null : canonico[e];
+    }
+
+    /** Términos normalizados de una entrada: el canónico primero y después sus alias (vacío si no existe). */
+    List<String> terminosDe(String idCatalogo) {
+        Integer e = entradaPorId.get(idCatalogo);
+        if (e == null) return List.of();
+        List<String> out = new ArrayList<>(terminosDeEntrada[e].length);
+        for (int t : terminosDeEntrada[e]) out.add(termino[t]);
+        return out;
+    }
+
+    /** Nombres canónicos para el texto tecleado; vacío = catálogo completo. */
+    public List<String> sugerencias(String texto) {
+        String q = Texto.clave(texto);
+        if (q.isEmpty()) return nombres;
+        List<Coincidencia> cs = buscar(q, MAX_SUGERENCIAS);
+        List<String> out = new ArrayList<>(cs.size());
+        for (Coincidencia c : cs) out.add(c.nombreCanonico);
+        return out;
+    }
+
+    /** Mejores coincidencias (una por entrada del catálogo), de mayor a menor puntuación. */
+    public List<Coincidencia> buscar(String texto, int max) {
+        String q = Texto.clave(texto);
+        if (q.isEmpty() || termino.length == 0) return List.of();
+
+        double[] mejor = new double[canonico.length];
+        int[] terminoMejor = new int[canonico.length];
+        double[] similitud = new double[canonico.length];
+        Arrays.fill(terminoMejor, -1);
+
+        // 1) Exacto
+        Integer ex = terminoExacto.get(q);
+        if (ex != null) anotar(mejor, terminoMejor, similitud, ex, EXACTO, 1.0);
+
+        // 2) Prefijo del término o de una de sus palabras
+        Nodo nodo = raiz.bajar(q);
+        if (nodo != null) {
+            Deque<Nodo> pila = new ArrayDeque<>();
+            pila.push(nodo);
+            while (!pila.isEmpty()) {
+                Nodo x = pila.pop();
+                for (int k = 0; k < x.numCodigos; k++) {
+                    int t = x.codigos[k] >>> 1;
+                    double base = (x.codigos[k] & 1) == 0 ? PREFIJO : PALABRA;
+                    anotar(mejor, terminoMejor, similitud, t, base, (double) q.length() / termino[t].length());
+                }
+                for (int k = 0; k < x.numHijos; k++) pila.push(x.hijos[k]);
+            }
+        }
+
+        // 3) Subcadena y parecido por trigramas
+        Set<Long> qt = trigramasDe(q);
+        if (!qt.isEmpty()) {
+            int[] comunes = new int[termino.length];
+            int[] tocados = new int[termino.length];
+            int nt = 0;
+            for (Long g : qt) {
+                int[] post = trigramas.get(g);
+                if (post == null) continue;
+                for (int t : post) {
+                    if (comunes[t]++ == 0) tocados[nt++] = t;
+                }
+            }
+            for (int k = 0; k < nt; k++) {
+                int t = tocados[k];
+                int c = comunes[t];
+                double jaccard = (double) c / (qt.size() + numTrigramas[t] - c);
+                double contencion = (double) c / qt.size();
+                double sim = (jaccard + contencion) / 2;
+                if (termino[t].contains(q)) anotar(mejor, terminoMejor, similitud, t, CONTIENE, sim);
+                else if (sim >= SIMILITUD_MINIMA) anotar(mejor, terminoMejor, similitud, t, PARECIDO * sim, sim);
+            }
+        }
+
+        List<Integer> entradas = new ArrayList<>();
+        for (int e = 0; e < mejor.length; e++) if (mejor[e] > 0) entradas.add(e);
+        entradas.sort((a, b) -> {
+            int c = Double.compare(mejor[b], mejor[a]);
+            return c != 0 ? c : String.CASE_INSENSITIVE_ORDER.compare(canonico[a], canonico[b]);
+        });
+
+        List<Coincidencia> out = new ArrayList<>(Math.min(max, entradas.size()));
+        for (int k = 0; k < entradas.size() && k < max; k++) {
+            int e = entradas.get(k);
+            int t = terminoMejor[e];
+            out.add(new Coincidencia(idCatalogo[e], canonico[e], termino[t], esAlias[t], termino[t].equals(q),
+                    mejor[e], similitud[e]));
+        }
+        return out;
+    }
+
+    // Guarda la mejor puntuación por entrada; desempate: canónico y término corto
+    private void anotar(double[] mejor, int[] terminoMejor, double[] similitud, int t, double base, double sim) {
+        double p = base + (esAlias[t] ? 0 : 5) - Math.min(termino[t].length(), 50) * 0.05;
+        int e = entradaDe[t];
+        if (p > mejor[e]) {
+            mejor[e] = p;
+            terminoMejor[e] = t;
+            similitud[e] = sim;
+        }
+    }
+
+    /* ===================== Trigramas / trie ===================== */
+
+    // Trigramas distintos de " s " empaquetados en un long (3 chars de 16 bits)
+    private static Set<Long> trigramasDe(String s) {
+        String p = " " + s + " ";
+        Set<Long> out = new HashSet<>();
+        for (int i = 0; i + 3 <= p.length(); i++) {
+            out.add(((long) p.charAt(i) << 32) | ((long) p.charAt(i + 1) << 16) | p.charAt(i + 2));
+        }
+        return out;
+    }
+
+    private static final class Nodo {
+        char[] claves = new char[2];
+        Nodo[] hijos = new Nodo[2];
+        int numHijos;
+        int[] codigos = new int[0];   // término << 1 | (1 si empieza en palabra interior)
+        int numCodigos;
+
+        void insertar(String s, int desde, int codigo) {
+            Nodo x = this;
+            for (int i = desde; i < s.length(); i++) x = x.hijoCreando(s.charAt(i));
+            if (x.numCodigos == x.codigos.length) x.codigos = Arrays.copyOf(x.codigos, Math.max(2, x.numCodigos * 2));
+            x.codigos[x.numCodigos++] = codigo;
+        }
+
+        Nodo bajar(String s) {
+            Nodo x = this;
+            for (int i = 0; i < s.length() && x != null; i++) x = x.hijo(s.charAt(i));
+            return x;
+        }
+
+        private Nodo hijo(char c) {
+            for (int k = 0; k < numHijos; k++) if (claves[k] == c) return hijos[k];
+            return null;
+        }
+
+        private Nodo hijoCreando(char c) {
+            Nodo h = hijo(c);
+            if (h != null) return h;
+            if (numHijos == claves.length) {
+                claves = Arrays.copyOf(claves, numHijos * 2);
+                hijos = Arrays.copyOf(hijos, numHijos * 2);
+            }
+            h = new Nodo();
+            claves[numHijos] = c;
+            hijos[numHijos++] = h;
+            return h;
+        }
+    }
+
+    private static boolean isBlank(String s) { return s == null || s.trim().isEmpty(); }
+}
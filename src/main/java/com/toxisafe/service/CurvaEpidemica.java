@@ -0,0 +1,170 @@
+package com.toxisafe.service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Curva epidémica e incubación sobre instantes epoch-second (sin objetos fecha en el bucle).
+ * - Las fechas se parsean una sola vez al cargar la {@link BroteSnapshot}; aquí solo se
+ *   trabaja con long ordenados
+ * - Agrupación con cualquier ancho (1 h, 6 h, 1 día...) y ventana [desde, hasta): búsqueda
+ *   binaria del primer inicio y un recorrido lineal, así que reagrupar al mover el zoom
+ *   cuesta O(log n + casos en la ventana + intervalos)
+ * - Intervalos alineados a múltiplos del ancho desde el epoch: al desplazar la ventana los
+ *   límites no bailan (6 h -> 00:00, 06:00, 12:00, 18:00)
+ *
+ * Los instantes son fecha-hora local guardada como si fuera UTC (igual que en la instantánea).
+ */
+public final class CurvaEpidemica {
+
+    public static final long HORA = 3_600L;
+    public static final long DIA = 86_400L;
+
+    /** Tope de intervalos por curva: por encima se agranda el ancho (ver {@link #agrupar(long[], long, long, long)}). */
+    public static final int MAX_INTERVALOS = 5_000;
+
+    private CurvaEpidemica() { }
+
+    /* ===================== Resultados ===================== */
+
+    /** Recuento de casos en intervalos consecutivos [origen + k·ancho, origen + (k+1)·ancho). */
+    public static final class Curva {
+        public final long origen;
+        public final long ancho;
+        public final int total;          // casos dentro de la ventana
+        private final int[] recuentos;
+
+        Curva(long origen, long ancho, int[] recuentos, int total) {
+            this.origen = origen;
+            this.ancho = ancho;
+            this.recuentos = recuentos;
+            this.total = total;
+        }
+
+        public int size() { return recuentos.length; }
+        public int casos(int k) { return recuentos[k]; }
+        public long inicio(int k) { return origen + k * ancho; }
+        public LocalDateTime inicioFecha(int k) { return LocalDateTime.ofEpochSecond(inicio(k), 0, ZoneOffset.UTC); }
+    }
+
+    /**
+     * Incubación (consumo -> inicio de síntomas) de los casos que asistieron a una ingesta.
+     * Horas; NaN si no hay casos con inicio posterior al consumo.
+     */
+    public static final class Incubacion {
+        public final String idIngesta;
+        public final String fechaConsumo;    // texto tal cual
+        public final String lugarConsumo;
+        public final boolean soloFecha;      // sin hora: se toma 00:00 y la incubación es una cota superior
+        public final int marcadaSospechosa;  // expuestos que la marcaron como sospechosa
+        public final int expuestos;
+        public final int casos;
+        public final int casosConInicio;     // casos usados en el cálculo
+        public final int descartados;        // inicio anterior al consumo
+        public final double mediana, q1, q3, minimo, maximo;
+
+        Incubacion(String idIngesta, String fechaConsumo, String lugarConsumo, boolean soloFecha,
+                   int marcadaSospechosa, int expuestos, int casos, int descartados, long[] horasSeg, int m) {
+            this.idIngesta = idIngesta;
+            this.fechaConsumo = fechaConsumo;
+            this.lugarConsumo = lugarConsumo;
+            this.soloFecha = soloFecha;
+            this.marcadaSospechosa = marcadaSospechosa;
+            this.expuestos = expuestos;
+            this.casos = casos;
+            this.casosConInicio = m;
+            this.descartados = descartados;
+            this.mediana = horas(cuantil(horasSeg, m, 0.50));
+            this.q1 = horas(cuantil(horasSeg, m, 0.25));
+            this.q3 = horas(cuantil(horasSeg, m, 0.75));
+            this.minimo = m == 0 ? Double.NaN : horas(horasSeg[0]);
+            this.maximo = m == 0 ? Double.NaN : horas(horasSeg[m - 1]);
+        }
+
+        public double rangoIntercuartil() { return q3 - q1; }
+
+        private static double horas(double seg) { return seg / HORA; }
+    }
+
+    /* ===================== Agrupación ===================== */
+
+    /** Curva de toda la serie (desde el primer inicio hasta el último, ambos incluidos). */
+    public static Curva agrupar(long[] ordenados, long ancho) {
+        if (ordenados.length == 0) return new Curva(0, ancho, new int[0], 0);
+        return agrupar(ordenados, ancho, ordenados[0], ordenados[ordenados.length - 1] + 1);
+    }
+
+    /**
+     * Curva de los instantes en [desde, hasta). {@code ordenados} debe venir ordenado ascendente.
+     * El primer intervalo empieza en el múltiplo de {@code ancho} anterior o igual a {@code desde}.
+     * Si saldrían más de {@link #MAX_INTERVALOS}, el ancho se multiplica por el menor factor que
+     * lo evita (p.ej. una fecha de inicio con el año mal tecleado); el usado queda en {@link Curva#ancho}.
+     */
+    public static Curva agrupar(long[] ordenados, long ancho, long desde, long hasta) {
+        if (ancho <= 0) throw new IllegalArgumentException("El ancho del intervalo debe ser positivo");
+        if (hasta <= desde) return new Curva(Math.floorDiv(desde, ancho) * ancho, ancho, new int[0], 0);
+
+        long origen = Math.floorDiv(desde, ancho) * ancho;
+        long n = Math.floorDiv(hasta - 1 - origen, ancho) + 1;
+        if (n > MAX_INTERVALOS) {
+            // Múltiplo del ancho pedido: los límites siguen alineados desde el epoch
+            long base = ancho;
+            long factor = Math.floorDiv(n - 1, MAX_INTERVALOS) + 1;
+            do {
+                ancho = Math.multiplyExact(base, factor++);
+                origen = Math.floorDiv(desde, ancho) * ancho;
+                n = Math.floorDiv(hasta - 1 - origen, ancho) + 1;
+            } while (n > MAX_INTERVALOS); // el redondeo del origen puede añadir un intervalo
+        }
+
+        int[] recuentos = new int[(int) n];
+        int total = 0;
+        for (int i = primeroNoMenor(ordenados, desde); i < ordenados.length; i++) {
+            long t = ordenados[i];
+            if (t >= hasta) break;
+            recuentos[(int) ((t - origen) / ancho)]++;
+            total++;
+        }
+        return new Curva(origen, ancho, recuentos, total);
+    }
+
+    /** Primer índice con valor >= clave (ordenados.length si no hay). */
+    static int primeroNoMenor(long[] ordenados, long clave) {
+        int lo = 0, hi = ordenados.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ordenados[mid] < clave) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    /* ===================== Incubación ===================== */
+
+    /**
+     * Incubación de una ingesta a partir de los inicios de sus casos (epoch-second, sin orden).
+     * {@code inicios} se reutiliza como búfer y queda ordenado en sus {@code m} primeras posiciones.
+     */
+    static Incubacion incubacion(String idIngesta, String fechaConsumo, String lugarConsumo, boolean soloFecha,
+                                 int marcadaSospechosa, int expuestos, int casos,
+                                 long consumo, long[] inicios, int m) {
+        int validos = 0, descartados = 0;
+        for (int k = 0; k < m; k++) {
+            long d = inicios[k] - consumo;
+            if (d < 0) descartados++;
+            else inicios[validos++] = d;
+        }
+        Arrays.sort(inicios, 0, validos);
+        return new Incubacion(idIngesta, fechaConsumo, lugarConsumo, soloFecha, marcadaSospechosa,
+                expuestos, casos, descartados, inicios, validos);
+    }
+
+    /** Cuantil con interpolación lineal entre órdenes (tipo 7 de Hyndman-Fan); NaN si m == 0. */
+    static double cuantil(long[] ordenados, int m, double p) {
+        if (m == 0) return Double.NaN;
+        double h = (m - 1) * p;
+        int lo = (int) Math.floor(h);
+        int hi = Math.min(lo + 1, m - 1);
+        return ordenados[lo] + (h - lo) * (ordenados[hi] - ordenados[lo]);
+    }
+}
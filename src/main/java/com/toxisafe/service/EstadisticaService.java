@@ -1,25 +1,56 @@
 package com.toxisafe.service;
 
+import com.toxisafe.dao.IngestaPersonaExpuestaDao;
 import com.toxisafe.model.*;
+import com.toxisafe.sync.SyncChange;
+import com.toxisafe.sync.SyncChangeListener;
+import com.toxisafe.util.Texto;
+
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
 
 /**
  * Servicio de Estadística para brotes.
  * - Line list
- * - Curva epidémica por día (casos)
- * - Tasas de ataque y medidas 2x2 por alimento (RR, OR, IC95%, Fisher bilateral)
+ * - Curva epidémica por día o con cualquier ancho de intervalo y ventana (ver {@link CurvaEpidemica})
+ * - Incubación (mediana, RIC y rango) por ingesta, desde INGESTA.fecha_consumo al inicio
+ * - Tasas de ataque y medidas 2x2 por alimento (RR, OR, IC95%, Fisher bilateral y mid-p, χ² de Yates)
+ * - RR/OR de Mantel-Haenszel por alimento estratificando por grupo o sexo
+ * Las pruebas están en {@link Tablas2x2}.
+ *
+ * Los cálculos trabajan sobre una {@link BroteSnapshot} cargada una sola vez por brote;
+ * las sobrecargas (idBrote, actor) la cargan y delegan.
+ *
+ * Las tablas por alimento se calculan en paralelo en un ForkJoinPool acotado y propio (no el
+ * común), con recuento disperso: solo se recorren los expuestos a cada alimento. El resultado
+ * se escribe por índice y se ordena con desempate por clave: mismo orden con 1 o N hilos.
  *
- * Depende SOLO de servicios de dominio existentes (no DAOs):
+ * Caché por brote: instantánea + resultados (line list, curva, 2x2, resumen) se guardan por
+ * id_brote y se invalidan SOLO para el brote afectado cuando llega un cambio, ya sea una
+ * escritura local (SyncEmitter) o un cambio remoto aplicado por el ingestor
+ * (registrar con SyncEvents.addListener). Los permisos se comprueban en cada llamada.
+ *
+ * Lee SOLO a través de servicios de dominio (no llama a DAOs; permisos incluidos):
  *   - PersonaExpuestaService
  *   - SintomasGeneralesExpuestoService
  *   - IngestaService
  *   - AlimentoService
+ *   - SintomaService
+ * Del paquete dao solo usa el tipo de fila IngestaPersonaExpuestaDao.ConsumoDeExpuesto, que es
+ * lo que devuelve IngestaService.findConsumosByBroteVisiblePara.
  */
-public class EstadisticaService {
+public class EstadisticaService implements SyncChangeListener {
 
     private final PersonaExpuestaService personaExpuestaService;
     private final SintomasGeneralesExpuestoService sintomasService;
@@ -27,6 +58,36 @@ public class EstadisticaService {
     private final AlimentoService alimentoService;
     private final SintomaService sintomaService;
 
+    private static final DateTimeFormatter DF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // Por debajo de este número de alimentos no compensa repartir
+    private static final int MIN_ALIMENTOS_PARALELO = 64;
+    private static final int ALIMENTOS_POR_TAREA = 16;
+    private static final ForkJoinPool CALCULO = new ForkJoinPool(
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1)),
+            pool -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                t.setName("toxisafe-estadistica-" + t.getPoolIndex());
+                t.setDaemon(true);
+                return t;
+            },
+            null, false);
+
+    /** Resultados memorizados de un brote; se calculan perezosamente sobre la misma instantánea. */
+    private static final class Entrada {
+        final BroteSnapshot snapshot;
+        volatile List<LineListRow> lineList;
+        volatile List<EpiBin> epiDaily;
+        volatile List<FoodAttackRow> food;
+        volatile List<CurvaEpidemica.Incubacion> incubacion;
+        final Map<Estratificacion, List<FoodStratifiedRow>> estratificado = new ConcurrentHashMap<>();
+        volatile String resumen;
+        Entrada(BroteSnapshot snapshot) { this.snapshot = snapshot; }
+    }
+
+    private final Map<String, Entrada> cache = new ConcurrentHashMap<>();
+    // Se incrementa en cada invalidación: una carga que se solapa con una invalidación no se guarda
+    private final AtomicLong generacion = new AtomicLong();
 
     public EstadisticaService(PersonaExpuestaService personaExpuestaService,
                               SintomasGeneralesExpuestoService sintomasService,
@@ -87,6 +148,9 @@ public class EstadisticaService {
         public final Double rr;  public final Double rrL;  public final Double rrH;
         public final Double or;  public final Double orL;  public final Double orH;
         public final Double pValueFisherTwoSided;
+        public final Double pValueMidP;          // mid-p exacta bilateral
+        public final double chiCuadradoYates;    // NaN si algún marginal es 0
+        public final double pValueChiCuadrado;
 
         public FoodAttackRow(String alimentoKey, String alimentoLabel,
                              int a, int b, int c, int d,
@@ -94,6 +158,17 @@ public class EstadisticaService {
                              Double rr, Double rrL, Double rrH,
                              Double or, Double orL, Double orH,
                              Double pValueFisherTwoSided) {
+            this(alimentoKey, alimentoLabel, a, b, c, d, arExpuestos, arNoExpuestos,
+                    rr, rrL, rrH, or, orL, orH, pValueFisherTwoSided, null, Double.NaN, Double.NaN);
+        }
+
+        public FoodAttackRow(String alimentoKey, String alimentoLabel,
+                             int a, int b, int c, int d,
+                             double arExpuestos, double arNoExpuestos,
+                             Double rr, Double rrL, Double rrH,
+                             Double or, Double orL, Double orH,
+                             Double pValueFisherTwoSided, Double pValueMidP,
+                             double chiCuadradoYates, double pValueChiCuadrado) {
             this.alimentoKey = alimentoKey;
             this.alimentoLabel = alimentoLabel;
             this.a = a; this.b = b; this.c = c; this.d = d;
@@ -102,37 +177,179 @@ public class EstadisticaService {
             this.rr = rr; this.rrL = rrL; this.rrH = rrH;
             this.or = or; this.orL = orL; this.orH = orH;
             this.pValueFisherTwoSided = pValueFisherTwoSided;
+            this.pValueMidP = pValueMidP;
+            this.chiCuadradoYates = chiCuadradoYates;
+            this.pValueChiCuadrado = pValueChiCuadrado;
+        }
+    }
+
+    /** Variable de estratificación para Mantel-Haenszel. */
+    public enum Estratificacion { GRUPO, SEXO }
+
+    /** RR/OR ajustados de Mantel-Haenszel por alimento (NaN si no se pueden estimar). */
+    public static final class FoodStratifiedRow {
+        public final String alimentoKey;
+        public final String alimentoLabel;
+        public final int estratos;
+        public final double rrMH, rrMHL, rrMHH;
+        public final double orMH, orMHL, orMHH;
+
+        public FoodStratifiedRow(String alimentoKey, String alimentoLabel, Tablas2x2.MantelHaenszel mh) {
+            this.alimentoKey = alimentoKey;
+            this.alimentoLabel = alimentoLabel;
+            this.estratos = mh.estratos;
+            this.rrMH = mh.rr; this.rrMHL = mh.rrL; this.rrMHH = mh.rrH;
+            this.orMH = mh.or; this.orMHL = mh.orL; this.orMHH = mh.orH;
         }
     }
 
     /* ===================== API principal ===================== */
 
-    /** Line list visible para el actor de todos los expuestos del brote. */
-    public List<LineListRow> buildLineList(String idBrote, Usuario actor) throws SQLException {
+    /**
+     * Carga en bloque la instantánea del brote (expuestos visibles, síntomas, casos y alimentos).
+     * Seis consultas por brote; el resto de cálculos se hacen en memoria sobre la instantánea.
+     * Las fechas (inicio de síntomas, consumo) se parsean aquí una sola vez.
+     */
+    public BroteSnapshot cargarSnapshot(String idBrote, Usuario actor) throws SQLException {
         Objects.requireNonNull(actor, "actor requerido");
+
         List<PersonaExpuesta> expuestos = personaExpuestaService.findByBroteIdVisiblePara(idBrote, actor);
+        Map<String, SintomasGeneralesExpuesto> generales = sintomasService.findGeneralesByBroteVisiblePara(idBrote, actor);
+        Map<String, List<ExposicionSintoma>> exposiciones = sintomasService.listExposicionesByBroteVisiblePara(idBrote, actor);
+        Map<String, List<Alimento>> consumos = alimentoService.findConsumidosByBroteVisiblePara(idBrote, actor);
+        List<IngestaPersonaExpuestaDao.ConsumoDeExpuesto> ingestas = ingestaService.findConsumosByBroteVisiblePara(idBrote, actor);
+
+        int n = expuestos.size();
+        String[] ids = new String[n], nombres = new String[n], apellidos = new String[n];
+        String[] inicios = new String[n], fines = new String[n];
+        String[] grupos = new String[n], sexos = new String[n];
+        long[] inicioEpoch = new long[n];
+        int[][] sintomas = new int[n][];
+        BitSet conGenerales = new BitSet(n);
+        BitSet casos = new BitSet(n);
+        BitSet coprocultivo = new BitSet(n);
+
+        Map<String, Integer> dicSintomas = new LinkedHashMap<>();
+        Map<String, BitSet> expuestosPorAlimento = new HashMap<>();
+        Map<String, String> etiquetaAlimento = new HashMap<>();
+        Set<String> idsGenerales = new HashSet<>();
+        Set<String> idsIngesta = new HashSet<>();
+
+        for (int i = 0; i < n; i++) {
+            PersonaExpuesta pe = expuestos.get(i);
+            ids[i] = pe.getIdExpuesto();
+            nombres[i] = nz(pe.getNombreExpuesto());
+            apellidos[i] = nz(pe.getApellidoExpuesto());
+            grupos[i] = isBlank(pe.getGrupoExpuesto()) ? null : Texto.codigo(pe.getGrupoExpuesto());
+            sexos[i] = isBlank(pe.getSexoExpuesto()) ? null : Texto.codigo(pe.getSexoExpuesto());
+            inicioEpoch[i] = BroteSnapshot.SIN_INICIO;
+            sintomas[i] = new int[0];
+            if (CasoDefinicionService.coprocultivoPositivo(pe)) coprocultivo.set(i);
+
+            SintomasGeneralesExpuesto g = generales.get(pe.getIdExpuesto());
+            if (g != null) {
+                conGenerales.set(i);
+                idsGenerales.add(g.getIdSintomasGenerales());
+                inicios[i] = g.getFechaInicioConjunto();
+                fines[i] = g.getFechaFinConjunto();
+                inicioEpoch[i] = parseEpochOrMin(g.getFechaInicioConjunto());
+
+                List<ExposicionSintoma> expos = exposiciones.getOrDefault(g.getIdSintomasGenerales(), Collections.emptyList());
+                int[] idxs = new int[expos.size()];
+                for (int k = 0; k < idxs.length; k++) {
+                    idxs[k] = dicSintomas.computeIfAbsent(expos.get(k).getIdSintoma(), x -> dicSintomas.size());
+                }
+                sintomas[i] = idxs;
+
+                // Regla: caso = tiene fecha de inicio y ≥1 síntoma
+                if (!isBlank(g.getFechaInicioConjunto()) && idxs.length > 0) casos.set(i);
+            }
 
-        List<LineListRow> out = new ArrayList<>();
-        for (PersonaExpuesta pe : expuestos) {
-            var optG = sintomasService.findGeneralesByExpuestoVisiblePara(pe.getIdExpuesto(), actor);
-            String ini = null, fin = null;
-            int numSintomas = 0;
-            boolean caso = false;
-
-            if (optG.isPresent()) {
-                var g = optG.get();
-                ini = g.getFechaInicioConjunto();
-                fin = g.getFechaFinConjunto();
-                var expos = sintomasService.listExposiciones(g.getIdSintomasGenerales(), actor);
-                numSintomas = expos == null ? 0 : expos.size();
-                caso = esCaso(pe.getIdExpuesto(), actor);
+            // Alimentos consumidos (set por persona para evitar duplicados)
+            Set<String> alimentosPersona = new HashSet<>();
+            for (Alimento al : consumos.getOrDefault(pe.getIdExpuesto(), Collections.emptyList())) {
+                String label = nz(al.getNombre());
+                String idCat = al.getIdCatalogo();
+                String key = (idCat != null && !idCat.isBlank()) ? "CAT#" + idCat.trim() : Texto.codigo(label);
+                alimentosPersona.add(key);
+                if (al.getIdIngesta() != null) idsIngesta.add(al.getIdIngesta());
+                etiquetaAlimento.putIfAbsent(key, label);
+            }
+            for (String key : alimentosPersona) {
+                expuestosPorAlimento.computeIfAbsent(key, k -> new BitSet(n)).set(i);
             }
+        }
+
+        // Diccionario de síntomas: id -> nombre visible (null si no existe en catálogo)
+        String[] sintomaIds = dicSintomas.keySet().toArray(new String[0]);
+        String[] sintomaNombres = new String[sintomaIds.length];
+        if (sintomaIds.length > 0) {
+            Map<String, String> nombrePorId = new HashMap<>();
+            for (Sintoma s : sintomaService.findAll()) nombrePorId.put(s.getIdSintoma(), s.getNombreSintoma());
+            for (int k = 0; k < sintomaIds.length; k++) sintomaNombres[k] = nombrePorId.get(sintomaIds[k]);
+        }
+
+        List<BroteSnapshot.Comida> comidas = comidas(ingestas, ids, idsIngesta);
 
+        return new BroteSnapshot(idBrote, ids, nombres, apellidos, inicios, fines, grupos, sexos, inicioEpoch,
+                sintomas, conGenerales, casos, sintomaIds, sintomaNombres, coprocultivo,
+                expuestosPorAlimento, etiquetaAlimento, idsGenerales, idsIngesta, comidas);
+    }
+
+    // Agrupa los enlaces (ya ordenados por fecha e ingesta) en una Comida por ingesta
+    private static List<BroteSnapshot.Comida> comidas(List<IngestaPersonaExpuestaDao.ConsumoDeExpuesto> filas,
+                                                      String[] ids, Set<String> idsIngesta) {
+        Map<String, Integer> indice = new HashMap<>(ids.length * 2);
+        for (int i = 0; i < ids.length; i++) indice.putIfAbsent(ids[i], i);
+
+        List<BroteSnapshot.Comida> out = new ArrayList<>();
+        int k = 0;
+        while (k < filas.size()) {
+            IngestaPersonaExpuestaDao.ConsumoDeExpuesto primera = filas.get(k);
+            String idIngesta = primera.idIngesta();
+            BitSet asistentes = new BitSet(ids.length);
+            int sospechosa = 0;
+            for (; k < filas.size() && filas.get(k).idIngesta().equals(idIngesta); k++) {
+                Integer i = indice.get(filas.get(k).idExpuesto());
+                if (i == null) continue;
+                asistentes.set(i);
+                if (filas.get(k).sospechosa()) sospechosa++;
+            }
+            idsIngesta.add(idIngesta);
+            String fecha = primera.fechaConsumo();
+            out.add(new BroteSnapshot.Comida(idIngesta, fecha, primera.lugarConsumo(),
+                    parseConsumoEpoch(fecha), fecha != null && fecha.trim().length() == 10,
+                    asistentes, sospechosa));
+        }
+        return out;
+    }
+
+    /** Instantánea del brote desde la caché (se carga si no está o fue invalidada). */
+    public BroteSnapshot snapshot(String idBrote, Usuario actor) throws SQLException {
+        return entrada(idBrote, actor).snapshot;
+    }
+
+    /** Line list visible para el actor de todos los expuestos del brote. */
+    public List<LineListRow> buildLineList(String idBrote, Usuario actor) throws SQLException {
+        Entrada e = entrada(idBrote, actor);
+        List<LineListRow> r = e.lineList;
+        if (r == null) e.lineList = r = Collections.unmodifiableList(buildLineList(e.snapshot));
+        return r;
+    }
+
+    /** Line list a partir de una instantánea ya cargada. */
+    public List<LineListRow> buildLineList(BroteSnapshot s) {
+        List<LineListRow> out = new ArrayList<>(s.size());
+        for (int i = 0; i < s.size(); i++) {
+            boolean g = s.tieneGenerales(i);
             out.add(new LineListRow(
-                    pe.getIdExpuesto(),
-                    nz(pe.getNombreExpuesto()),
-                    nz(pe.getApellidoExpuesto()),
-                    ini, fin, numSintomas, caso
+                    s.idExpuesto(i),
+                    s.nombre(i),
+                    s.apellido(i),
+                    g ? s.fechaInicio(i) : null,
+                    g ? s.fechaFin(i) : null,
+                    g ? s.numSintomas(i) : 0,
+                    s.esCaso(i)
             ));
         }
         return out;
@@ -140,32 +357,81 @@ public class EstadisticaService {
 
     /** Curva epidémica (recuento de CASOS por día de inicio). */
     public List<EpiBin> buildEpiCurveDaily(String idBrote, Usuario actor) throws SQLException {
-        Objects.requireNonNull(actor, "actor requerido");
-        DateTimeFormatter DF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        Map<LocalDate, Integer> counts = new HashMap<>();
+        Entrada e = entrada(idBrote, actor);
+        List<EpiBin> r = e.epiDaily;
+        if (r == null) e.epiDaily = r = Collections.unmodifiableList(buildEpiCurveDaily(e.snapshot));
+        return r;
+    }
 
-        for (PersonaExpuesta pe : personaExpuestaService.findByBroteIdVisiblePara(idBrote, actor)) {
-            if (!esCaso(pe.getIdExpuesto(), actor)) continue;
+    /** Curva epidémica diaria a partir de una instantánea ya cargada (solo días con casos). */
+    public List<EpiBin> buildEpiCurveDaily(BroteSnapshot s) {
+        // Recorrido de los inicios ordenados por rachas del mismo día: sin reservar los días vacíos,
+        // así un inicio con el año mal tecleado solo añade un punto suelto
+        long[] ini = s.iniciosCasosSinCopia();
+        List<EpiBin> out = new ArrayList<>();
+        for (int i = 0; i < ini.length; ) {
+            long dia = Math.floorDiv(ini[i], CurvaEpidemica.DIA);
+            int j = i + 1;
+            while (j < ini.length && Math.floorDiv(ini[j], CurvaEpidemica.DIA) == dia) j++;
+            out.add(new EpiBin(LocalDate.ofEpochDay(dia), j - i));
+            i = j;
+        }
+        return out;
+    }
 
-            var optG = sintomasService.findGeneralesByExpuestoVisiblePara(pe.getIdExpuesto(), actor);
-            if (optG.isEmpty()) continue;
-            var g = optG.get();
-            String ini = g.getFechaInicioConjunto();
-            if (isBlank(ini)) continue;
+    /**
+     * Curva epidémica completa con intervalos de {@code anchoSegundos} (3600 = horaria). Si el rango
+     * de inicios es muy largo el ancho se agranda ({@link CurvaEpidemica#MAX_INTERVALOS}); ver {@code Curva.ancho}.
+     */
+    public CurvaEpidemica.Curva buildEpiCurve(String idBrote, long anchoSegundos, Usuario actor) throws SQLException {
+        return buildEpiCurve(entrada(idBrote, actor).snapshot, anchoSegundos,
+                Long.MIN_VALUE, Long.MAX_VALUE);
+    }
 
-            try {
-                LocalDateTime ldt = LocalDateTime.parse(ini, DF);
-                LocalDate d = ldt.toLocalDate();
-                counts.merge(d, 1, Integer::sum);
-            } catch (Exception ignore) {
-                // formato incorrecto -> ignora
+    /**
+     * Curva epidémica de los casos con inicio en [desde, hasta), recortada al rango de inicios
+     * existente. No se cachea: es lo bastante barata para recalcular en cada movimiento del zoom.
+     */
+    public CurvaEpidemica.Curva buildEpiCurve(BroteSnapshot s, long anchoSegundos, long desde, long hasta) {
+        long[] ini = s.iniciosCasosSinCopia();
+        if (ini.length == 0) return CurvaEpidemica.agrupar(ini, anchoSegundos);
+        long d = Math.max(desde, ini[0]);
+        long h = Math.min(hasta, ini[ini.length - 1] + 1);
+        return CurvaEpidemica.agrupar(ini, anchoSegundos, d, h);
+    }
+
+    /** Incubación por ingesta del brote (sospechosas primero). */
+    public List<CurvaEpidemica.Incubacion> computeIncubacionPorComida(String idBrote, Usuario actor) throws SQLException {
+        Entrada e = entrada(idBrote, actor);
+        List<CurvaEpidemica.Incubacion> r = e.incubacion;
+        if (r == null) e.incubacion = r = Collections.unmodifiableList(computeIncubacionPorComida(e.snapshot));
+        return r;
+    }
+
+    /**
+     * Para cada ingesta con fecha de consumo válida: inicios de los casos que asistieron menos
+     * el consumo. Orden: más marcas de sospechosa, más casos, fecha de consumo.
+     */
+    public List<CurvaEpidemica.Incubacion> computeIncubacionPorComida(BroteSnapshot s) {
+        BitSet casos = s.casosSinCopia();
+        long[] buf = new long[Math.max(1, casos.cardinality())];
+        List<CurvaEpidemica.Incubacion> out = new ArrayList<>();
+        for (BroteSnapshot.Comida c : s.comidas()) {
+            if (c.consumoEpoch == BroteSnapshot.SIN_INICIO) continue;
+            BitSet asis = c.asistentesSinCopia();
+            int nCasos = 0, m = 0;
+            for (int i = asis.nextSetBit(0); i >= 0; i = asis.nextSetBit(i + 1)) {
+                if (!casos.get(i)) continue;
+                nCasos++;
+                long t = s.inicioEpochSecond(i);
+                if (t != BroteSnapshot.SIN_INICIO) buf[m++] = t;
             }
+            out.add(CurvaEpidemica.incubacion(c.idIngesta, c.fechaConsumo, c.lugarConsumo, c.soloFecha,
+                    c.marcadaSospechosa(), asis.cardinality(), nCasos, c.consumoEpoch, buf, m));
         }
-
-        List<LocalDate> fechas = new ArrayList<>(counts.keySet());
-        Collections.sort(fechas);
-        List<EpiBin> out = new ArrayList<>();
-        for (LocalDate d : fechas) out.add(new EpiBin(d, counts.getOrDefault(d, 0)));
+        out.sort(Comparator.comparingInt((CurvaEpidemica.Incubacion x) -> x.marcadaSospechosa).reversed()
+                .thenComparing(Comparator.comparingInt((CurvaEpidemica.Incubacion x) -> x.casos).reversed())
+                .thenComparing(x -> x.fechaConsumo));
         return out;
     }
 
@@ -174,103 +440,251 @@ public class EstadisticaService {
      * Clave de alimento = id_catalogo si existe; si no, nombre normalizado.
      */
     public List<FoodAttackRow> computeAttackByFood(String idBrote, Usuario actor) throws SQLException {
-        Objects.requireNonNull(actor, "actor requerido");
+        Entrada e = entrada(idBrote, actor);
+        List<FoodAttackRow> r = e.food;
+        if (r == null) e.food = r = Collections.unmodifiableList(computeAttackByFood(e.snapshot));
+        return r;
+    }
 
-        // 1) Universo de expuestos visibles y condición de caso
-        List<PersonaExpuesta> expuestos = personaExpuestaService.findByBroteIdVisiblePara(idBrote, actor);
-        Map<String, Boolean> esCasoPorExpuesto = new HashMap<>();
-        for (PersonaExpuesta pe : expuestos) {
-            esCasoPorExpuesto.put(pe.getIdExpuesto(), esCaso(pe.getIdExpuesto(), actor));
-        }
+    /**
+     * Tablas 2x2 por alimento sobre la instantánea. Solo se recorren los expuestos a cada
+     * alimento (a = expuestos que son caso, b = |expuestos| - a, c = |casos| - a, d = resto);
+     * cada alimento es independiente, así que se reparten en {@link #CALCULO}.
+     */
+    public List<FoodAttackRow> computeAttackByFood(BroteSnapshot s) {
+        int n = s.size();
+        BitSet casos = s.casosSinCopia();
+        int totalCasos = casos.cardinality();
+        List<Map.Entry<String, BitSet>> alimentos = new ArrayList<>(s.expuestosPorAlimento().entrySet());
+        FoodAttackRow[] filas = new FoodAttackRow[alimentos.size()];
+
+        porIndice(filas.length, i -> {
+            Map.Entry<String, BitSet> e = alimentos.get(i);
+            filas[i] = filaAlimento(s, e.getKey(), e.getValue(), casos, totalCasos, n);
+        });
 
-        // 2) Para cada expuesto, determinar alimentos consumidos (set por persona para evitar duplicados)
-        Map<String, String> alimentoLabel = new HashMap<>();            // clave -> etiqueta visible
-        Map<String, Set<String>> expuestosPorAlimento = new HashMap<>();// clave -> set idExpuesto
-        Set<String> universoExpuestos = new HashSet<>();
+        // Orden sugerida: RR desc (desempate por clave: determinista)
+        List<FoodAttackRow> out = new ArrayList<>(Arrays.asList(filas));
+        out.sort(Comparator.comparingDouble((FoodAttackRow r) -> safeForSort(r.rr)).reversed()
+                .thenComparing(r -> r.alimentoKey));
+        return out;
+    }
 
-        for (PersonaExpuesta pe : expuestos) {
-            universoExpuestos.add(pe.getIdExpuesto());
+    private static FoodAttackRow filaAlimento(BroteSnapshot s, String key, BitSet expAl,
+                                              BitSet casos, int totalCasos, int n) {
+        int expuestos = 0, a = 0;
+        for (int i = expAl.nextSetBit(0); i >= 0; i = expAl.nextSetBit(i + 1)) {
+            expuestos++;
+            if (casos.get(i)) a++;
+        }
+        int b = expuestos - a;
+        int c = totalCasos - a;
+        int d = n - a - b - c;
+
+        double arExp = ratio(a, a + b);
+        double arNoExp = ratio(c, c + d);
+        RROR rrOr = calcRROR(a, b, c, d);
+        Tablas2x2.Fisher fisher = Tablas2x2.fisher(a, b, c, d);
+        Tablas2x2.ChiCuadrado chi = Tablas2x2.chiCuadradoYates(a, b, c, d);
+
+        return new FoodAttackRow(
+                key, s.etiqueta(key), a, b, c, d,
+                arExp, arNoExp,
+                rrOr.rr, rrOr.rrL, rrOr.rrH,
+                rrOr.or, rrOr.orL, rrOr.orH,
+                fisher == null ? null : fisher.pBilateral,
+                fisher == null ? null : fisher.pMedio,
+                chi.estadistico, chi.p
+        );
+    }
 
-            Set<String> alimentosPersona = new HashSet<>();
-            for (Ingesta ing : ingestaService.findByExpuestoVisiblePara(pe.getIdExpuesto(), actor)) {
-                for (Alimento al : alimentoService.findByIngestaIdVisiblePara(ing.getIdIngesta(), actor)) {
-                    String key;
-                    String label;
-
-                    String idCat = null;
-                    try { idCat = al.getIdCatalogo(); } catch (Throwable ignore) {}
-                    if (idCat != null && !idCat.isBlank()) {
-                        key = "CAT#" + idCat.trim();
-                        label = nz(al.getNombre());
-                    } else {
-                        label = nz(al.getNombre());
-                        key = norm(label);
-                    }
-
-                    alimentosPersona.add(key);
-                    alimentoLabel.putIfAbsent(key, label);
-                }
+    /**
+     * Ejecuta accion(0..n-1) repartiendo rangos en {@link #CALCULO}; con pocos elementos, en el
+     * hilo actual. La acción solo debe escribir en su propio índice.
+     */
+    static void porIndice(int n, IntConsumer accion) {
+        if (n < MIN_ALIMENTOS_PARALELO || CALCULO.getParallelism() == 1) {
+            for (int i = 0; i < n; i++) accion.accept(i);
+            return;
+        }
+        CALCULO.invoke(new Tramo(0, n, accion));
+    }
+
+    private static final class Tramo extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int desde, hasta;
+        private final IntConsumer accion;
+        Tramo(int desde, int hasta, IntConsumer accion) {
+            this.desde = desde; this.hasta = hasta; this.accion = accion;
+        }
+        @Override protected void compute() {
+            if (hasta - desde <= ALIMENTOS_POR_TAREA) {
+                for (int i = desde; i < hasta; i++) accion.accept(i);
+                return;
             }
-            for (String key : alimentosPersona) {
-                expuestosPorAlimento.computeIfAbsent(key, k -> new HashSet<>()).add(pe.getIdExpuesto());
+            int medio = (desde + hasta) >>> 1;
+            invokeAll(new Tramo(desde, medio, accion), new Tramo(medio, hasta, accion));
+        }
+    }
+
+    /** RR/OR de Mantel-Haenszel por alimento, estratificando por grupo o sexo del expuesto. */
+    public List<FoodStratifiedRow> computeMantelHaenszelByFood(String idBrote, Estratificacion por, Usuario actor) throws SQLException {
+        Objects.requireNonNull(por, "estratificación requerida");
+        Entrada e = entrada(idBrote, actor);
+        List<FoodStratifiedRow> r = e.estratificado.get(por);
+        if (r == null) {
+            r = Collections.unmodifiableList(computeMantelHaenszelByFood(e.snapshot, por));
+            e.estratificado.put(por, r);
+        }
+        return r;
+    }
+
+    /**
+     * Mantel-Haenszel sobre la instantánea: por alimento se recorren solo sus expuestos y se
+     * reparten por estrato. Los expuestos sin dato en la variable de estratificación no entran.
+     */
+    public List<FoodStratifiedRow> computeMantelHaenszelByFood(BroteSnapshot s, Estratificacion por) {
+        List<BitSet> estratos = new ArrayList<>(s.estratos(por).values());
+        int k = estratos.size();
+        BitSet casos = s.casosSinCopia();
+
+        // Estrato de cada expuesto (-1 = sin dato) y, por estrato, tamaño y casos
+        int[] estratoDe = new int[s.size()];
+        Arrays.fill(estratoDe, -1);
+        int[] tam = new int[k], casosEstrato = new int[k];
+        for (int e = 0; e < k; e++) {
+            BitSet est = estratos.get(e);
+            for (int i = est.nextSetBit(0); i >= 0; i = est.nextSetBit(i + 1)) {
+                estratoDe[i] = e;
+                tam[e]++;
+                if (casos.get(i)) casosEstrato[e]++;
             }
         }
 
-        // 3) Tablas 2x2 por alimento
-        int N = universoExpuestos.size();
-        List<FoodAttackRow> out = new ArrayList<>();
-
-        for (Map.Entry<String, Set<String>> e : expuestosPorAlimento.entrySet()) {
-            String key = e.getKey();
-            Set<String> expAl = e.getValue();
-            String label = alimentoLabel.getOrDefault(key, key);
-
-            int a = 0, b = 0, c = 0, d = 0;
-            for (String idExp : universoExpuestos) {
-                boolean expuesto = expAl.contains(idExp);
-                boolean caso = esCasoPorExpuesto.getOrDefault(idExp, false);
-                if (expuesto && caso) a++;
-                else if (expuesto) b++;
-                else if (!expuesto && caso) c++;
-                else d++;
+        List<Map.Entry<String, BitSet>> alimentos = new ArrayList<>(s.expuestosPorAlimento().entrySet());
+        FoodStratifiedRow[] filas = new FoodStratifiedRow[alimentos.size()];
+        porIndice(filas.length, j -> {
+            Map.Entry<String, BitSet> al = alimentos.get(j);
+            BitSet expAl = al.getValue();
+            int[] a = new int[k], b = new int[k], c = new int[k], d = new int[k];
+            for (int i = expAl.nextSetBit(0); i >= 0; i = expAl.nextSetBit(i + 1)) {
+                int e = estratoDe[i];
+                if (e < 0) continue;
+                if (casos.get(i)) a[e]++; else b[e]++;
+            }
+            for (int e = 0; e < k; e++) {
+                c[e] = casosEstrato[e] - a[e];
+                d[e] = tam[e] - a[e] - b[e] - c[e];
             }
+            filas[j] = new FoodStratifiedRow(al.getKey(), s.etiqueta(al.getKey()), Tablas2x2.mantelHaenszel(a, b, c, d));
+        });
 
-            double arExp = ratio(a, a + b);
-            double arNoExp = ratio(c, c + d);
-            RROR rrOr = calcRROR(a, b, c, d);
-            Double pFisher = fisherTwoSidedP(a, b, c, d);
-
-            out.add(new FoodAttackRow(
-                    key, label, a, b, c, d,
-                    arExp, arNoExp,
-                    rrOr.rr, rrOr.rrL, rrOr.rrH,
-                    rrOr.or, rrOr.orL, rrOr.orH,
-                    pFisher
-            ));
+        List<FoodStratifiedRow> out = new ArrayList<>(Arrays.asList(filas));
+        out.sort(Comparator.comparingDouble((FoodStratifiedRow r) -> safeForSort(r.rrMH)).reversed()
+                .thenComparing(r -> r.alimentoKey));
+        return out;
+    }
+
+    /* ===================== Caché e invalidación ===================== */
+
+    private Entrada entrada(String idBrote, Usuario actor) throws SQLException {
+        Objects.requireNonNull(actor, "actor requerido");
+        // Sin permiso o sin id: se calcula (vacío) pero no se guarda
+        if (idBrote == null || !personaExpuestaService.puedeVerBrote(idBrote, actor)) {
+            return new Entrada(cargarSnapshot(idBrote, actor));
         }
+        Entrada e = cache.get(idBrote);
+        if (e != null) return e;
 
-        // Orden sugerida: RR desc
-        out.sort((r1, r2) -> Double.compare(safeForSort(r2.rr), safeForSort(r1.rr)));
-        return out;
+        long gen = generacion.get();
+        e = new Entrada(cargarSnapshot(idBrote, actor));
+        synchronized (cache) {
+            if (generacion.get() == gen) cache.put(idBrote, e);
+        }
+        return e;
     }
 
-    /* ===================== Lógica de "es caso" (ajústala si quieres) ===================== */
+    /** Descarta los resultados memorizados del brote. */
+    public void invalidar(String idBrote) {
+        if (idBrote == null) return;
+        synchronized (cache) {
+            generacion.incrementAndGet();
+            cache.remove(idBrote);
+        }
+    }
 
-    private boolean esCaso(String idExpuesto, Usuario actor) throws SQLException {
-        var optG = sintomasService.findGeneralesByExpuestoVisiblePara(idExpuesto, actor);
-        if (optG.isEmpty()) return false;
-        var g = optG.get();
+    /** Descarta toda la caché (p.ej. cambios en el catálogo de síntomas). */
+    public void invalidarTodo() {
+        synchronized (cache) {
+            generacion.incrementAndGet();
+            cache.clear();
+        }
+    }
 
-        boolean tieneInicio = !isBlank(g.getFechaInicioConjunto());
-        int numSintomas = 0;
-        try {
-            var expos = sintomasService.listExposiciones(g.getIdSintomasGenerales(), actor);
-            numSintomas = (expos == null) ? 0 : expos.size();
-        } catch (Exception ignore) {}
-        boolean tieneAlguno = numSintomas > 0;
+    private void invalidarSi(Predicate<BroteSnapshot> afectado) {
+        synchronized (cache) {
+            generacion.incrementAndGet();
+            cache.values().removeIf(e -> afectado.test(e.snapshot));
+        }
+    }
+
+    /**
+     * Resuelve a qué brote(s) afecta un cambio persistido y los invalida.
+     * Se apoya en las claves de la propia instantánea (expuestos, registros generales, ingestas);
+     * si el cambio no trae la clave necesaria, invalida todo por prudencia.
+     */
+    @Override
+    public void onChange(SyncChange.Op op, String tabla, String idRegistro,
+                         Map<String, Object> antiguos, Map<String, Object> nuevos) {
+        if (tabla == null) return;
+        switch (tabla.toUpperCase(Locale.ROOT)) {
+            case "BROTE" -> invalidar(idRegistro);
+            case "PERSONA_EXPUESTA" -> {
+                for (String b : claves(antiguos, nuevos, "id_brote")) invalidar(b);
+                invalidarSi(s -> s.contieneExpuesto(idRegistro));
+            }
+            case "SINTOMAS_GENERALES_EXPUESTO" -> {
+                Set<String> exp = claves(antiguos, nuevos, "id_expuesto");
+                invalidarSi(s -> s.contieneSintomasGenerales(idRegistro) || exp.stream().anyMatch(s::contieneExpuesto));
+            }
+            case "EXPOSICION_SINTOMA" -> {
+                Set<String> gen = claves(antiguos, nuevos, "id_sintomas_generales");
+                if (gen.isEmpty()) invalidarTodo();
+                else invalidarSi(s -> gen.stream().anyMatch(s::contieneSintomasGenerales));
+            }
+            case "INGESTA_PERSONA_EXPUESTA" -> {
+                Set<String> exp = claves(antiguos, nuevos, "id_expuesto");
+                if (exp.isEmpty()) invalidarTodo();
+                else invalidarSi(s -> exp.stream().anyMatch(s::contieneExpuesto));
+            }
+            case "INGESTA" -> invalidarIngestas(idRegistro == null ? Set.of() : Set.of(idRegistro));
+            case "ALIMENTO" -> invalidarIngestas(claves(antiguos, nuevos, "id_ingesta"));
+            case "SINTOMA" -> invalidarTodo();
+            default -> {
+                // INFORME, BROTE_ENCUESTADOR (permisos se comprueban en cada llamada), catálogos...
+            }
+        }
+    }
+
+    private void invalidarIngestas(Set<String> ingestas) {
+        if (ingestas.isEmpty()) { invalidarTodo(); return; }
+        invalidarSi(s -> ingestas.stream().anyMatch(s::contieneIngesta));
+        // Ingesta aún sin alimentos en ninguna instantánea: se resuelve su brote por los enlaces
+        for (String id : ingestas) {
+            try {
+                ingestaService.broteIdDeIngesta(id).ifPresent(this::invalidar);
+            } catch (SQLException ex) {
+                invalidarTodo();
+                return;
+            }
+        }
+    }
 
-        // Regla: caso = tiene fecha de inicio y ≥1 síntoma
-        return tieneInicio && tieneAlguno;
+    private static Set<String> claves(Map<String, Object> antiguos, Map<String, Object> nuevos, String col) {
+        Set<String> out = new HashSet<>(2);
+        if (antiguos != null && antiguos.get(col) != null) out.add(String.valueOf(antiguos.get(col)));
+        if (nuevos != null && nuevos.get(col) != null) out.add(String.valueOf(nuevos.get(col)));
+        return out;
     }
 
     /* ===================== Utilidades epidemiológicas ===================== */
@@ -303,65 +717,44 @@ public class EstadisticaService {
         return new RROR(rr, rrL, rrH, or, orL, orH);
     }
 
-    /** Fisher exacta bilateral para 2x2 sin librerías externas. */
-    private static Double fisherTwoSidedP(int a, int b, int c, int d) {
-        int r1 = a + b, r2 = c + d, c1 = a + c, c2 = b + d, n = r1 + r2;
-        if (n == 0) return null;
-
-        int minA = Math.max(0, c1 - r2);
-        int maxA = Math.min(c1, r1);
-
-        double pObs = hypergeomProb(a, r1, c1, n);
-        double pTwo = 0.0;
+    /* ===================== Helpers ===================== */
 
-        for (int k = minA; k <= maxA; k++) {
-            double p = hypergeomProb(k, r1, c1, n);
-            if (p <= pObs + 1e-12) pTwo += p; // bilateral "clásico"
+    private static boolean isBlank(String s) { return s == null || s.trim().isEmpty(); }
+    private static long parseEpochOrMin(String s) {
+        if (isBlank(s)) return BroteSnapshot.SIN_INICIO;
+        try {
+            return LocalDateTime.parse(s, DF).toEpochSecond(ZoneOffset.UTC);
+        } catch (Exception ignore) {
+            return BroteSnapshot.SIN_INICIO;
         }
-        return Math.min(1.0, pTwo);
-    }
-
-    // P(A=k) ~ Hypergeom: C(c1, k) * C(c2, r1-k) / C(n, r1)
-    private static double hypergeomProb(int k, int r1, int c1, int n) {
-        int c2 = n - c1;
-        if (k < 0 || k > c1 || (r1 - k) < 0 || (r1 - k) > c2) return 0.0;
-        double logP = logChoose(c1, k) + logChoose(c2, r1 - k) - logChoose(n, r1);
-        return Math.exp(logP);
-    }
-
-    // log(C(n,k)) con log-factoriales (cache simple).
-    private static final Map<Integer, Double> LOGFACT = new HashMap<>();
-    private static double logChoose(int n, int k) {
-        if (k < 0 || k > n) return Double.NEGATIVE_INFINITY;
-        return logFact(n) - logFact(k) - logFact(n - k);
     }
-    private static double logFact(int n) {
-        if (n < 0) return Double.NaN;
-        return LOGFACT.computeIfAbsent(n, EstadisticaService::lf);
-    }
-    private static double lf(int n) {
-        if (n < 2) return 0.0;
-        double x = 0.0;
-        for (int i = 2; i <= n; i++) x += Math.log(i);
-        return x;
+    // fecha_consumo se valida como yyyy-MM-dd, pero se admite también con hora
+    private static long parseConsumoEpoch(String s) {
+        if (isBlank(s)) return BroteSnapshot.SIN_INICIO;
+        String t = s.trim().replace('T', ' ');
+        try {
+            if (t.length() == 10) return LocalDate.parse(t).toEpochDay() * CurvaEpidemica.DIA;
+            if (t.length() == 16) t = t + ":00";
+            return LocalDateTime.parse(t, DF).toEpochSecond(ZoneOffset.UTC);
+        } catch (Exception ignore) {
+            return BroteSnapshot.SIN_INICIO;
+        }
     }
-
-    /* ===================== Helpers ===================== */
-
-    private static boolean isBlank(String s) { return s == null || s.trim().isEmpty(); }
     private static String nz(String s) { return s == null ? "" : s; }
     private static double ratio(int num, int den) { return den == 0 ? Double.NaN : (double) num / den; }
     private static double safeForSort(Double d) { return (d == null || Double.isNaN(d)) ? Double.NEGATIVE_INFINITY : d; }
-    private static String norm(String s) {
-        if (s == null) return "";
-        String t = java.text.Normalizer.normalize(s, java.text.Normalizer.Form.NFD)
-                .replaceAll("\\p{M}", "");
-        return t.trim().toUpperCase(Locale.ROOT);
-    }
 
     /** Texto plano para insertar en el contenido del Informe (RF6). */
     public String resumenTextoParaInforme(String idBrote, Usuario actor) throws SQLException {
-        ResumenBrote r = calcularResumenBrote(idBrote, actor);
+        Entrada e = entrada(idBrote, actor);
+        String r = e.resumen;
+        if (r == null) e.resumen = r = resumenTextoParaInforme(e.snapshot);
+        return r;
+    }
+
+    /** Resumen de texto a partir de una instantánea ya cargada. */
+    public String resumenTextoParaInforme(BroteSnapshot s) {
+        ResumenBrote r = calcularResumenBrote(s);
 
         StringBuilder sb = new StringBuilder();
         sb.append("Expuestos totales: ").append(r.totalExpuestos).append('\n');
@@ -385,46 +778,31 @@ public class EstadisticaService {
     }
 
 
-    private ResumenBrote calcularResumenBrote(String idBrote, Usuario actor) throws SQLException {
+    private ResumenBrote calcularResumenBrote(BroteSnapshot s) {
         ResumenBrote out = new ResumenBrote();
+        out.totalExpuestos = s.size();
+
+        // Nombre visible por síntoma; la regla se compila sobre las máscaras de la instantánea
+        int nS = s.numSintomasDistintos();
+        String[] visible = new String[nS];
+        for (int k = 0; k < nS; k++) {
+            String nombre = s.sintomaNombre(k);
+            visible[k] = nombre != null ? nombre : "(síntoma " + s.sintomaId(k) + ")";
+        }
+        SintomasGeneralesExpuestoService.Compilada def =
+                SintomasGeneralesExpuestoService.CasoDef.porDefecto().compilar(s.diccionarioSintomas());
+        long[] mascaras = s.mascarasSinCopia();
+        int palabras = s.palabrasMascara();
 
-        // 1) Expuestos visibles en el brote para el actor
-        List<PersonaExpuesta> expuestos =
-                personaExpuestaService.findByBroteIdVisiblePara(idBrote, actor);
-        out.totalExpuestos = expuestos.size();
-
-        // 2) Cache de nombres de síntoma por id para no ir a BD en bucle
-        Map<String, String> nombreSintomaCache = new HashMap<>();
-        java.util.function.Function<String, String> nombreSintoma = id -> nombreSintomaCache.computeIfAbsent(id, k -> {
-            try {
-                return sintomaService.findById(k)
-                        .map(Sintoma::getNombreSintoma)
-                        .orElse("(síntoma " + k + ")");
-            } catch (SQLException e) {
-                return "(síntoma " + k + ")";
-            }
-        });
-
-        // 3) Recorrido por expuestos
-        for (PersonaExpuesta pe : expuestos) {
-            var genOpt = sintomasService.findGeneralesByExpuestoVisiblePara(pe.getIdExpuesto(), actor);
-            if (genOpt.isEmpty()) continue;
-
+        for (int i = 0; i < s.size(); i++) {
+            if (!s.tieneGenerales(i)) continue;
             out.expuestosConSintomas++;
 
-            var gen = genOpt.get();
-            var expos = sintomasService.listExposiciones(gen.getIdSintomasGenerales(), actor);
-
-            for (ExposicionSintoma e : expos) {
-                String nombre = nombreSintoma.apply(e.getIdSintoma());
-                out.conteoSintomas.merge(nombre, 1, Integer::sum);
-            }
+            int[] sint = s.sintomasSinCopia(i);
+            for (int k : sint) out.conteoSintomas.merge(visible[k], 1, Integer::sum);
 
             // ¿Cumple definición de caso por defecto?
-            if (sintomasService.esCaso(
-                    pe.getIdExpuesto(),
-                    SintomasGeneralesExpuestoService.CasoDef.porDefecto(),
-                    actor)) {
+            if (sint.length > 0 && def.cumple(mascaras, i * palabras)) {
                 out.casosDefinidos++;
             }
         }
@@ -4,6 +4,7 @@ import com.toxisafe.dao.GrupoSintomaDao;
 import com.toxisafe.dao.SintomaDao;
 import com.toxisafe.model.GrupoSintoma;
 import com.toxisafe.model.Usuario;
+import com.toxisafe.util.Texto;
 
 import java.sql.SQLException;
 import java.util.*;
@@ -73,17 +74,10 @@ public class GrupoSintomaService {
     }
 
     private void assertPermisoCatalogo(Usuario actor, String accion) {
-        String rol = resp(actor.getRolUsuario());
+        String rol = Texto.rol(actor.getRolUsuario());
         if (rol.equals("ADMIN") || rol.equals("EPIDEMIOLOGO") || rol.equals("MIR_SALUD_PUBLICA")) return;
         throw new SecurityException("No tiene permiso para " + accion + " del catálogo de síntomas.");
     }
 
     private static boolean isBlank(String s) { return s == null || s.trim().isEmpty(); }
-
-    private static String resp(String s) {
-        if (s == null) return "";
-        String up = java.text.Normalizer.normalize(s, java.text.Normalizer.Form.NFD)
-                .replaceAll("\\p{M}", "");
-        return up.trim().toUpperCase(java.util.Locale.ROOT).replace(' ', '_');
-    }
 }
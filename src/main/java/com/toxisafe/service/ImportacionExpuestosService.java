@@ -0,0 +1,442 @@
+package com.toxisafe.service;
+
+import com.toxisafe.model.PersonaExpuesta;
+import com.toxisafe.model.Usuario;
+import com.toxisafe.util.Texto;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.*;
+
+/**
+ * Importación del padrón de expuestos de un brote desde CSV o XLSX.
+ * - Lectura en streaming (CSV línea a línea; XLSX con el parser SAX de POI): el fichero no se
+ *   carga entero en memoria
+ * - Las filas se procesan en lotes de {@value #TAM_LOTE}: la conversión y validación de formato
+ *   (sin BD) va en paralelo; la unicidad del documento se comprueba en orden de fila contra un
+ *   índice en memoria (documentos del brote cargados una vez + los ya aceptados del fichero)
+ * - Cada lote válido se escribe en una transacción (executeBatch) con sus cambios de sync en bloque
+ * - Una fila con errores no detiene la importación: queda en el informe (fila, campo, mensaje)
+ * Permisos y estado del brote se comprueban una vez, como en PersonaExpuestaService.create().
+ */
+public class ImportacionExpuestosService {
+
+    static final int TAM_LOTE = 500;
+
+    private final PersonaExpuestaService personaExpuestaService;
+
+    /** Error de una fila del fichero (fila 1 = cabecera; campo null si no es de una columna concreta). */
+    public record ErrorFila(long fila, String campo, String mensaje) {}
+
+    /** Resumen de la importación. */
+    public record Resultado(int filasLeidas, int importadas, List<ErrorFila> errores) {
+        public boolean tieneErrores() { return !errores.isEmpty(); }
+    }
+
+    public ImportacionExpuestosService(PersonaExpuestaService personaExpuestaService) {
+        this.personaExpuestaService = Objects.requireNonNull(personaExpuestaService);
+    }
+
+    /* =================== API PÚBLICA =================== */
+
+    /** Importa {@code fichero} (.csv o .xlsx) como expuestos del brote {@code idBrote}. */
+    public Resultado importar(Path fichero, String idBrote, Usuario actor) throws IOException, SQLException {
+        Objects.requireNonNull(fichero, "Fichero requerido");
+        personaExpuestaService.comprobarAltaEnBrote(idBrote, actor, "importar");
+
+        Proceso p = new Proceso(idBrote, personaExpuestaService.documentosEnBrote(idBrote));
+        String nombre = fichero.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (nombre.endsWith(".xlsx")) {
+            leerXlsx(fichero, p);
+        } else if (nombre.endsWith(".csv") || nombre.endsWith(".txt")) {
+            leerCsv(fichero, p);
+        } else {
+            throw new IllegalArgumentException("Formato no soportado (use .csv o .xlsx): " + fichero.getFileName());
+        }
+        p.terminar();
+        return new Resultado(p.leidas, p.importadas, List.copyOf(p.errores));
+    }
+
+    /** Informe de errores en CSV (separador ';', UTF-8 con BOM para abrirlo en Excel). */
+    public static void escribirInforme(Resultado r, Path destino) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(destino, StandardCharsets.UTF_8)) {
+            w.write('\uFEFF');
+            w.write("fila;campo;error");
+            w.newLine();
+            for (ErrorFila e : r.errores()) {
+                w.write(e.fila() + ";" + csv(e.campo()) + ";" + csv(e.mensaje()));
+                w.newLine();
+            }
+        }
+    }
+
+    /* =================== PROCESO POR LOTES =================== */
+
+    /** Fila del fichero aún sin interpretar. */
+    private record Fila(long numero, List<String> celdas) {}
+
+    /** Resultado de convertir y validar una fila (pe o error). */
+    private record Convertida(long fila, PersonaExpuesta pe, ErrorFila error) {}
+
+    /** Estado de una importación: cabecera, índice de documentos, lote pendiente y contadores. */
+    private final class Proceso {
+        final String idBrote;
+        final Set<String> documentos;
+        final List<ErrorFila> errores = new ArrayList<>();
+        final List<Fila> pendientes = new ArrayList<>(TAM_LOTE);
+        Map<String, Integer> columnas; // campo → índice de columna
+        int leidas;
+        int importadas;
+
+        Proceso(String idBrote, Set<String> documentos) {
+            this.idBrote = idBrote;
+            this.documentos = documentos;
+        }
+
+        void fila(long numero, List<String> celdas) throws SQLException {
+            if (columnas == null) {
+                columnas = mapearCabecera(celdas);
+                return;
+            }
+            if (celdas.stream().allMatch(ImportacionExpuestosService::isBlank)) return;
+            leidas++;
+            pendientes.add(new Fila(numero, celdas));
+            if (pendientes.size() >= TAM_LOTE) procesarLote();
+        }
+
+        void terminar() throws SQLException {
+            if (columnas == null) throw new IllegalArgumentException("El fichero está vacío");
+            procesarLote();
+        }
+
+        private void procesarLote() throws SQLException {
+            if (pendientes.isEmpty()) return;
+            // Sin BD: en paralelo; toList() conserva el orden de las filas
+            List<Convertida> convertidas = pendientes.parallelStream().map(this::convertir).toList();
+            pendientes.clear();
+
+            List<PersonaExpuesta> validas = new ArrayList<>();
+            List<Long> filasValidas = new ArrayList<>();
+            for (Convertida c : convertidas) {
+                if (c.error() != null) { errores.add(c.error()); continue; }
+                String k = PersonaExpuestaService.claveDocumento(
+                        c.pe().getTipoDocumentoExpuesto(), c.pe().getNumDocumentoExpuesto());
+                if (k != null && !documentos.add(k)) {
+                    errores.add(new ErrorFila(c.fila(), "num_documento",
+                            "Ya existe un expuesto con ese documento en este brote."));
+                    continue;
+                }
+                validas.add(c.pe());
+                filasValidas.add(c.fila());
+            }
+            escribir(validas, filasValidas);
+        }
+
+        private void escribir(List<PersonaExpuesta> validas, List<Long> filas) throws SQLException {
+            try {
+                personaExpuestaService.insertarLote(validas);
+                importadas += validas.size();
+            } catch (SQLException e) {
+                if (validas.size() == 1) {
+                    errores.add(new ErrorFila(filas.get(0), null, "No se pudo guardar: " + e.getMessage()));
+                    return;
+                }
+                // El lote se ha revertido entero: fila a fila para localizar la que falla
+                for (int i = 0; i < validas.size(); i++) {
+                    escribir(List.of(validas.get(i)), List.of(filas.get(i)));
+                }
+            }
+        }
+
+        private Convertida convertir(Fila f) {
+            String campo = null;
+            try {
+                PersonaExpuesta pe = new PersonaExpuesta();
+                pe.setIdBrote(idBrote);
+                for (Map.Entry<String, Integer> col : columnas.entrySet()) {
+                    campo = col.getKey();
+                    String v = col.getValue() < f.celdas().size() ? f.celdas().get(col.getValue()) : null;
+                    asignar(pe, campo, isBlank(v) ? null : v.trim());
+                }
+                campo = null;
+                personaExpuestaService.validarFormato(pe);
+                pe.setIdExpuesto(UUID.randomUUID().toString());
+                return new Convertida(f.numero(), pe, null);
+            } catch (IllegalArgumentException e) {
+                return new Convertida(f.numero(), null, new ErrorFila(f.numero(), campo, e.getMessage()));
+            }
+        }
+    }
+
+    /* =================== COLUMNAS =================== */
+
+    /** Cabecera normalizada (minúsculas, sin tildes, '_' como separador) → campo. */
+    private static final Map<String, String> ALIAS = new HashMap<>();
+
+    private static void alias(String campo, String... cabeceras) {
+        ALIAS.put(campo, campo);
+        for (String c : cabeceras) ALIAS.put(c, campo);
+    }
+
+    static {
+        alias("nombre", "nombre_expuesto");
+        alias("apellido", "apellidos", "apellido_expuesto");
+        alias("telefono", "tfno", "tfno1", "telefono1", "telefono_1", "movil", "tfno1_expuesto");
+        alias("telefono2", "tfno2", "telefono_2", "tfno2_expuesto");
+        alias("nhusa", "nhusa_expuesto");
+        alias("tipo_documento", "tipo_doc", "tipo_documento_expuesto");
+        alias("num_documento", "documento", "num_doc", "dni", "numero_documento", "num_documento_expuesto");
+        alias("sexo", "sexo_expuesto");
+        alias("edad", "edad_expuesto");
+        alias("fecha_nacimiento", "f_nacimiento", "nacimiento", "fecha_nacimiento_expuesto");
+        alias("direccion", "domicilio", "direccion_expuesto");
+        alias("centro_salud", "centro", "centro_de_salud", "centro_salud_expuesto");
+        alias("profesion", "profesion_expuesto");
+        alias("manipulador", "manipulador_alimentos", "manipulador_expuesto");
+        alias("grupo", "grupo_expuesto");
+        alias("enfermo", "enfermo_expuesto");
+    }
+
+    private static Map<String, Integer> mapearCabecera(List<String> cabecera) {
+        Map<String, Integer> out = new LinkedHashMap<>();
+        for (int i = 0; i < cabecera.size(); i++) {
+            String campo = ALIAS.get(normalizarCabecera(cabecera.get(i)));
+            if (campo != null) out.putIfAbsent(campo, i);
+        }
+        for (String obligatorio : List.of("nombre", "apellido", "telefono")) {
+            if (!out.containsKey(obligatorio))
+                throw new IllegalArgumentException("Falta la columna obligatoria '" + obligatorio + "' en la cabecera");
+        }
+        return out;
+    }
+
+    private static String normalizarCabecera(String s) {
+        return Texto.clave(s).replaceAll("[^a-z0-9]+", "_").replaceAll("^_|_$", "");
+    }
+
+    private static void asignar(PersonaExpuesta pe, String campo, String v) {
+        switch (campo) {
+            case "nombre" -> pe.setNombreExpuesto(v);
+            case "apellido" -> pe.setApellidoExpuesto(v);
+            case "telefono" -> pe.setTfno1Expuesto(telefono(v));
+            case "telefono2" -> pe.setTfno2Expuesto(v);
+            case "nhusa" -> pe.setNhusaExpuesto(v);
+            case "tipo_documento" -> pe.setTipoDocumentoExpuesto(v == null ? null : v.toUpperCase(Locale.ROOT));
+            case "num_documento" -> pe.setNumDocumentoExpuesto(v);
+            case "sexo" -> pe.setSexoExpuesto(sexo(v));
+            case "edad" -> pe.setEdadExpuesto(entero(v));
+            case "fecha_nacimiento" -> pe.setFechaNacimientoExpuesto(fecha(v));
+            case "direccion" -> pe.setDireccionExpuesto(v);
+            case "centro_salud" -> pe.setCentroSaludExpuesto(v);
+            case "profesion" -> pe.setProfesionExpuesto(v);
+            case "manipulador" -> pe.setManipuladorExpuesto(bandera(v));
+            case "grupo" -> pe.setGrupoExpuesto(v);
+            case "enfermo" -> pe.setEnfermoExpuesto(bandera(v));
+            default -> { }
+        }
+    }
+
+    /* =================== CONVERSIÓN DE VALORES =================== */
+
+    private static final DateTimeFormatter DMY = DateTimeFormatter.ofPattern("d/M/uuuu", Locale.ROOT)
+            .withResolverStyle(ResolverStyle.STRICT);
+
+    private static String telefono(String v) {
+        if (v == null) return null;
+        return v.replace(" ", "").replace("-", "").replace("(", "").replace(")", "").replace(".", "");
+    }
+
+    private static String sexo(String v) {
+        if (v == null) return null;
+        return switch (normalizarCabecera(v)) {
+            case "h", "hombre", "v", "varon", "masculino" -> "Hombre";
+            case "m", "mujer", "f", "femenino" -> "Mujer";
+            case "o", "otro" -> "Otro";
+            default -> throw new IllegalArgumentException("Sexo no reconocido: " + v + " (Hombre/Mujer/Otro)");
+        };
+    }
+
+    private static Integer entero(String v) {
+        if (v == null) return null;
+        try {
+            return Integer.valueOf(v.endsWith(".0") ? v.substring(0, v.length() - 2) : v);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Número entero no válido: " + v);
+        }
+    }
+
+    private static Integer bandera(String v) {
+        if (v == null) return 0;
+        return switch (normalizarCabecera(v)) {
+            case "1", "si", "s", "x", "true", "verdadero" -> 1;
+            case "0", "no", "n", "false", "falso" -> 0;
+            default -> throw new IllegalArgumentException("Valor no válido (Sí/No): " + v);
+        };
+    }
+
+    /** Fecha ISO (yyyy-MM-dd) o dd/MM/yyyy; el XLSX ya llega en ISO (ver {@link FormatoIso}). */
+    private static String fecha(String v) {
+        if (v == null) return null;
+        try {
+            if (v.contains("/")) return LocalDate.parse(v, DMY).toString();
+            return LocalDate.parse(v).toString();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Fecha no válida: " + v + " (use AAAA-MM-DD o DD/MM/AAAA)");
+        }
+    }
+
+    /* =================== LECTURA CSV =================== */
+
+    private static void leerCsv(Path fichero, Proceso p) throws IOException, SQLException {
+        try (BufferedReader r = Files.newBufferedReader(fichero, StandardCharsets.UTF_8)) {
+            String linea = r.readLine();
+            if (linea == null) return;
+            if (linea.startsWith("\uFEFF")) linea = linea.substring(1);
+            char sep = linea.indexOf(';') >= 0 || linea.indexOf(',') < 0 ? ';' : ',';
+
+            long numero = 0;
+            while (linea != null) {
+                numero++;
+                long inicio = numero;
+                List<String> celdas = new ArrayList<>();
+                StringBuilder celda = new StringBuilder();
+                boolean comillas = false;
+                // Un campo entre comillas puede ocupar varias líneas
+                while (true) {
+                    for (int i = 0; i < linea.length(); i++) {
+                        char c = linea.charAt(i);
+                        if (comillas) {
+                            if (c == '"') {
+                                if (i + 1 < linea.length() && linea.charAt(i + 1) == '"') { celda.append('"'); i++; }
+                                else comillas = false;
+                            } else {
+                                celda.append(c);
+                            }
+                        } else if (c == '"') {
+                            comillas = true;
+                        } else if (c == sep) {
+                            celdas.add(celda.toString());
+                            celda.setLength(0);
+                        } else {
+                            celda.append(c);
+                        }
+                    }
+                    if (!comillas) break;
+                    linea = r.readLine();
+                    if (linea == null) break;
+                    numero++;
+                    celda.append('\n');
+                }
+                celdas.add(celda.toString());
+                p.fila(inicio, celdas);
+                linea = r.readLine();
+            }
+        }
+    }
+
+    /* =================== LECTURA XLSX (SAX) =================== */
+
+    /** Fechas de Excel como yyyy-MM-dd; el resto como se ve en la hoja. */
+    private static final class FormatoIso extends DataFormatter {
+        FormatoIso() { super(Locale.ROOT); }
+
+        @Override
+        public String formatRawCellContents(double valor, int indiceFormato, String formato, boolean usar1904) {
+            if (DateUtil.isADateFormat(indiceFormato, formato) && DateUtil.isValidExcelDate(valor)) {
+                return DateUtil.getLocalDateTime(valor, usar1904).toLocalDate().toString();
+            }
+            return super.formatRawCellContents(valor, indiceFormato, formato, usar1904);
+        }
+    }
+
+    /** Lleva una SQLException fuera de los callbacks SAX. */
+    private static final class Abortado extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        Abortado(SQLException causa) { super(causa); }
+    }
+
+    /** Solo la primera hoja del libro. */
+    private static void leerXlsx(Path fichero, Proceso p) throws IOException, SQLException {
+        try (OPCPackage pkg = OPCPackage.open(fichero.toFile(), PackageAccess.READ)) {
+            XSSFReader xr = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable textos = new ReadOnlySharedStringsTable(pkg);
+            StylesTable estilos = xr.getStylesTable();
+            Iterator<InputStream> hojas = xr.getSheetsData();
+            if (!hojas.hasNext()) return;
+
+            XSSFSheetXMLHandler.SheetContentsHandler manejador = new XSSFSheetXMLHandler.SheetContentsHandler() {
+                final List<String> celdas = new ArrayList<>();
+
+                @Override
+                public void startRow(int fila) {
+                    celdas.clear();
+                }
+
+                @Override
+                public void endRow(int fila) {
+                    try {
+                        p.fila(fila + 1L, new ArrayList<>(celdas));
+                    } catch (SQLException e) {
+                        throw new Abortado(e);
+                    }
+                }
+
+                @Override
+                public void cell(String referencia, String valor, XSSFComment comentario) {
+                    // Las celdas vacías no llegan: se rellenan hasta la columna
+                    int col = referencia == null ? celdas.size() : new CellReference(referencia).getCol();
+                    while (celdas.size() < col) celdas.add(null);
+                    celdas.add(valor);
+                }
+            };
+
+            try (InputStream hoja = hojas.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(estilos, null, textos, manejador, new FormatoIso(), false));
+                parser.parse(new InputSource(hoja));
+            } catch (Abortado e) {
+                throw (SQLException) e.getCause();
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("No se pudo leer el libro Excel: " + e.getMessage(), e);
+        }
+    }
+
+    /* =================== HELPERS =================== */
+
+    private static boolean isBlank(String s) {
+        return s == null || s.trim().isEmpty();
+    }
+
+    private static String csv(String s) {
+        if (s == null) return "";
+        if (s.indexOf(';') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+}
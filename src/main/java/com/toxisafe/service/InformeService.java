@@ -5,6 +5,7 @@ import com.toxisafe.dao.InformeDao;
 import com.toxisafe.model.Alimento;
 import com.toxisafe.model.Brote;
 import com.toxisafe.model.Informe;
+import com.toxisafe.model.Rol;
 import com.toxisafe.model.Usuario;
 import com.toxisafe.sync.SyncEmitter;
 
@@ -57,8 +58,10 @@ public class InformeService {
         if (isBlank(informe.getIdInforme())) {
             informe.setIdInforme(UUID.randomUUID().toString());
         }
-        informeDao.insert(informe);
-        emitInsert("INFORME", informe.getIdInforme(), toMap(informe));
+        enTransaccion(() -> {
+            informeDao.insert(informe);
+            emitInsert("INFORME", informe.getIdInforme(), toMap(informe));
+        });
         return informe;
     }
 
@@ -76,9 +79,11 @@ public class InformeService {
         Optional<Informe> prevOpt = informeDao.findById(informe.getIdInforme());
         Map<String,Object> prevMap = prevOpt.isPresent() ? toMap(prevOpt.get()) : null;
 
-        informeDao.update(informe);
+        enTransaccion(() -> {
+            informeDao.update(informe);
 
-        emitUpdate("INFORME", informe.getIdInforme(), prevMap, toMap(informe));
+            emitUpdate("INFORME", informe.getIdInforme(), prevMap, toMap(informe));
+        });
 
     }
 
@@ -96,9 +101,11 @@ public class InformeService {
 
         Optional<Informe> prevOpt = informeDao.findById(idInforme);
 
-        informeDao.delete(idInforme);
+        enTransaccion(() -> {
+            informeDao.delete(idInforme);
 
-        prevOpt.ifPresent(prev -> emitDelete("INFORME", idInforme, toMap(prev)));
+            prevOpt.ifPresent(prev -> emitDelete("INFORME", idInforme, toMap(prev)));
+        });
 
     }
 
@@ -108,13 +115,12 @@ public class InformeService {
         requireActor(actor);
         Objects.requireNonNull(broteId, "id_brote requerido");
 
-        String rol = resp(actor.getRolUsuario());
-        if (rol.equals("ADMIN") || rol.equals("EPIDEMIOLOGO") || rol.equals("MIR_SALUD_PUBLICA")) {
+        Rol rol = Rol.de(actor);
+        if (rol.esGlobal()) {
             return informeDao.findByBroteId(broteId);
         }
-        if (rol.equals("ENCUESTADOR")) {
-            boolean asignado = broteEncuestadorService.findByUsuarioId(actor.getIdUsuario())
-                    .stream().anyMatch(be -> broteId.equals(be.getIdBrote()));
+        if (rol == Rol.ENCUESTADOR) {
+            boolean asignado = broteEncuestadorService.estaAsignado(actor.getIdUsuario(), broteId);
             return asignado ? informeDao.findByBroteId(broteId) : Collections.emptyList();
         }
         return Collections.emptyList();
@@ -133,12 +139,11 @@ public class InformeService {
     }
 
     private void checkPermisoSobreBrote(Usuario actor, String idBrote, String accion) throws SQLException {
-        String rol = resp(actor.getRolUsuario());
-        if (rol.equals("ADMIN") || rol.equals("EPIDEMIOLOGO") || rol.equals("MIR_SALUD_PUBLICA")) return;
+        Rol rol = Rol.de(actor);
+        if (rol.esGlobal()) return;
 
-        if (rol.equals("ENCUESTADOR")) {
-            boolean asignado = broteEncuestadorService.findByUsuarioId(actor.getIdUsuario())
-                    .stream().anyMatch(be -> idBrote.equals(be.getIdBrote()));
+        if (rol == Rol.ENCUESTADOR) {
+            boolean asignado = broteEncuestadorService.estaAsignado(actor.getIdUsuario(), idBrote);
             if (!asignado) throw new SecurityException("No tiene permiso para " + accion + " de este brote.");
             return;
         }
@@ -147,13 +152,6 @@ public class InformeService {
 
     private static boolean isBlank(String s) { return s == null || s.trim().isEmpty(); }
 
-    private static String resp(String s) {
-        if (s == null) return "";
-        String up = java.text.Normalizer.normalize(s, java.text.Normalizer.Form.NFD)
-                .replaceAll("\\p{M}", "");
-        return up.trim().toUpperCase(java.util.Locale.ROOT).replace(' ', '_');
-    }
-
     // ---- emisión segura (no hace nada si sync == null) ----
     private void emitInsert(String tabla, String id, Map<String,Object> data) {
         if (sync != null) sync.emitInsert(tabla, id, data);
@@ -164,6 +162,10 @@ public class InformeService {
     private void emitDelete(String tabla, String id, Map<String,Object> oldV) {
         if (sync != null) sync.emitDelete(tabla, id, oldV);
     }
+    /** Escritura + emisión en una transacción (si el emisor la soporta). */
+    private void enTransaccion(SyncEmitter.Accion accion) throws SQLException {
+        if (sync != null) sync.enTransaccion(accion); else accion.ejecutar();
+    }
 
     // ---- mapeo EXACTO a lo que consume tu ingestor para la tabla INFORME ----
     private static Map<String,Object> toMap(Informe i) {
@@ -88,6 +88,13 @@ public class IngestaService {
         return linkDao.findByIngestaId(ingestaId);
     }
 
+    /** Enlaces ingesta-expuesto de todo el brote con fecha y lugar (una consulta, un permiso). */
+    public List<IngestaPersonaExpuestaDao.ConsumoDeExpuesto> findConsumosByBroteVisiblePara(String broteId, Usuario actor) throws SQLException {
+        requireActor(actor);
+        if (!puedeVer(actor, broteId)) return Collections.emptyList();
+        return linkDao.findConsumosByBroteId(broteId);
+    }
+
     /* ======================= Escrituras ======================= */
 
     /** Crea una ingesta y la enlaza con un expuesto en el mismo paso (recomendado). */
@@ -109,26 +116,27 @@ public class IngestaService {
         if (isBlank(ingesta.getIdIngesta())) {
             ingesta.setIdIngesta(UUID.randomUUID().toString());
         }
-        ingestaDao.insert(ingesta);
-
         IngestaPersonaExpuesta link = new IngestaPersonaExpuesta(
                 UUID.randomUUID().toString(),
                 ingesta.getIdIngesta(),
                 expuestoId,
                 n01(esSospechosa)
         );
-        // Enforce integridad: si la ingesta ya tenía enlaces, todos deben pertenecer al mismo brote
-        assertEnlaceConsistenteConBrote(ingesta.getIdIngesta(), pe.getIdBrote());
-        linkDao.insert(link);
+        // Ingesta + enlace juntos: si el enlace no es válido no queda una ingesta huérfana
+        enTransaccion(() -> {
+            ingestaDao.insert(ingesta);
 
-        // tras ingestaDao.insert(ingesta);
-        emitInsert("INGESTA", ingesta.getIdIngesta(), toMap(ingesta));
+            // Enforce integridad: si la ingesta ya tenía enlaces, todos deben pertenecer al mismo brote
+            assertEnlaceConsistenteConBrote(ingesta.getIdIngesta(), pe.getIdBrote());
+            linkDao.insert(link);
 
-        emitInsert("INGESTA", ingesta.getIdIngesta(), toMap(ingesta));
+            // tras ingestaDao.insert(ingesta);
+            emitInsert("INGESTA", ingesta.getIdIngesta(), toMap(ingesta));
 
-// EMIT: ENLACE (usa el PK REAL y todas las columnas)
-        Map<String,Object> linkM = toMapLink(link, expuestoId, ingesta.getIdIngesta());
-        emitInsert("INGESTA_PERSONA_EXPUESTA", link.getIdIngestaPersonaExpuesta(), linkM);
+            // EMIT: ENLACE (usa el PK REAL y todas las columnas)
+            Map<String,Object> linkM = toMapLink(link, expuestoId, ingesta.getIdIngesta());
+            emitInsert("INGESTA_PERSONA_EXPUESTA", link.getIdIngestaPersonaExpuesta(), linkM);
+        });
 
 
         return ingesta;
@@ -140,15 +148,17 @@ public class IngestaService {
         Objects.requireNonNull(ingesta, "Ingesta requerida");
         validarIngesta(ingesta);
 
-        String rol = resp(actor.getRolUsuario());
-        if (!(rol.equals("ADMIN") || rol.equals("EPIDEMIOLOGO") || rol.equals("MIR_SALUD_PUBLICA")))
+        Rol rol = Rol.de(actor);
+        if (!rol.esGlobal())
             throw new SecurityException("Solo ADMIN/EPIDEMIOLOGO/MIR pueden crear ingestas sin enlace inicial.");
 
         if (isBlank(ingesta.getIdIngesta())) {
             ingesta.setIdIngesta(UUID.randomUUID().toString());
         }
-        ingestaDao.insert(ingesta);
-        emitInsert("INGESTA", ingesta.getIdIngesta(), toMap(ingesta));
+        enTransaccion(() -> {
+            ingestaDao.insert(ingesta);
+            emitInsert("INGESTA", ingesta.getIdIngesta(), toMap(ingesta));
+        });
 
         return ingesta;
     }
@@ -168,17 +178,19 @@ public class IngestaService {
             assertPermisoEscritura(actor, b.getIdBrote());
         } else {
             // sin enlaces: solo ADMIN/EPI/MIR pueden editar
-            String rol = resp(actor.getRolUsuario());
-            if (!(rol.equals("ADMIN") || rol.equals("EPIDEMIOLOGO") || rol.equals("MIR_SALUD_PUBLICA")))
+            Rol rol = Rol.de(actor);
+            if (!rol.esGlobal())
                 throw new SecurityException("Solo ADMIN/EPIDEMIOLOGO/MIR pueden editar ingestas sin enlaces.");
         }
 
         Optional<Ingesta> prevOpt = ingestaDao.findById(ingesta.getIdIngesta());
         Map<String,Object> prev = prevOpt.map(IngestaService::toMap).orElse(null);
 
-        ingestaDao.update(ingesta);
+        enTransaccion(() -> {
+            ingestaDao.update(ingesta);
 
-        emitUpdate("INGESTA", ingesta.getIdIngesta(), prev, toMap(ingesta));
+            emitUpdate("INGESTA", ingesta.getIdIngesta(), prev, toMap(ingesta));
+        });
 
     }
 
@@ -193,21 +205,26 @@ public class IngestaService {
             assertBroteActivo(b);
             assertPermisoEscritura(actor, b.getIdBrote());
         } else {
-            String rol = resp(actor.getRolUsuario());
-            if (!(rol.equals("ADMIN") || rol.equals("EPIDEMIOLOGO") || rol.equals("MIR_SALUD_PUBLICA")))
+            Rol rol = Rol.de(actor);
+            if (!rol.esGlobal())
                 throw new SecurityException("Solo ADMIN/EPIDEMIOLOGO/MIR pueden borrar ingestas sin enlaces.");
         }
 
         List<IngestaPersonaExpuesta> enlaces = linkDao.findByIngestaId(ingestaId);
-        for (IngestaPersonaExpuesta l : enlaces) {
-            linkDao.delete(l.getIdIngestaPersonaExpuesta());
-            emitDelete("INGESTA_PERSONA_EXPUESTA", l.getIdIngestaPersonaExpuesta(), toMapLink(l, l.getIdExpuesto(), l.getIdIngesta()));
-        }
-
         Optional<Ingesta> prevOpt = ingestaDao.findById(ingestaId);
-        ingestaDao.delete(ingestaId);
 
-        prevOpt.ifPresent(p -> emitDelete("INGESTA", ingestaId, toMap(p)));
+        enTransaccion(() -> {
+            List<String> idsEnlaces = new ArrayList<>(enlaces.size());
+            for (IngestaPersonaExpuesta l : enlaces) idsEnlaces.add(l.getIdIngestaPersonaExpuesta());
+            linkDao.deleteAllById(idsEnlaces);
+            for (IngestaPersonaExpuesta l : enlaces) {
+                emitDelete("INGESTA_PERSONA_EXPUESTA", l.getIdIngestaPersonaExpuesta(), toMapLink(l, l.getIdExpuesto(), l.getIdIngesta()));
+            }
+
+            ingestaDao.delete(ingestaId);
+
+            prevOpt.ifPresent(p -> emitDelete("INGESTA", ingestaId, toMap(p)));
+        });
 
     }
 
@@ -225,9 +242,11 @@ public class IngestaService {
         assertPermisoEscritura(actor, b.getIdBrote());
 
         l.setEsSospechosaParaExpuesto(sospechosa ? 1 : 0);
-        linkDao.update(l);
         Map<String,Object> link = toMapLink(l, expuestoId, ingestaId);
-        emitUpdate("INGESTA_PERSONA_EXPUESTA", l.getIdIngestaPersonaExpuesta(), null, link);
+        enTransaccion(() -> {
+            linkDao.update(l);
+            emitUpdate("INGESTA_PERSONA_EXPUESTA", l.getIdIngestaPersonaExpuesta(), null, link);
+        });
 
 
     }
@@ -248,11 +267,10 @@ public class IngestaService {
     }
 
     private boolean puedeVer(Usuario actor, String broteId) throws SQLException {
-        String rol = resp(actor.getRolUsuario());
-        if (rol.equals("ADMIN") || rol.equals("EPIDEMIOLOGO") || rol.equals("MIR_SALUD_PUBLICA")) return true;
-        if (rol.equals("ENCUESTADOR")) {
-            return broteEncuestadorService.findByUsuarioId(actor.getIdUsuario())
-                    .stream().anyMatch(be -> broteId.equals(be.getIdBrote()));
+        Rol rol = Rol.de(actor);
+        if (rol.esGlobal()) return true;
+        if (rol == Rol.ENCUESTADOR) {
+            return broteEncuestadorService.estaAsignado(actor.getIdUsuario(), broteId);
         }
         return false;
     }
@@ -304,13 +322,6 @@ public class IngestaService {
 
     private static boolean isBlank(String s) { return s == null || s.trim().isEmpty(); }
 
-    private static String resp(String s) {
-        if (s == null) return "";
-        String up = java.text.Normalizer.normalize(s, java.text.Normalizer.Form.NFD)
-                .replaceAll("\\p{M}", "");
-        return up.trim().toUpperCase(java.util.Locale.ROOT).replace(' ', '_');
-    }
-
     private static int n01(Integer v) {
         return (v != null && v == 1) ? 1 : 0;
     }
@@ -325,6 +336,10 @@ public class IngestaService {
     private void emitDelete(String tabla, String id, Map<String,Object> oldV) {
         if (sync != null) sync.emitDelete(tabla, id, oldV);
     }
+    /** Escritura + emisión en una transacción (si el emisor la soporta). */
+    private void enTransaccion(SyncEmitter.Accion accion) throws SQLException {
+        if (sync != null) sync.enTransaccion(accion); else accion.ejecutar();
+    }
 
     // ---- mapeo EXACTO a columnas de tu tabla INGESTA ----
 // (No incluyas id_brote: tu esquema de INGESTA no lo tiene)
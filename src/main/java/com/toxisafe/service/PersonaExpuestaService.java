@@ -1,10 +1,12 @@
 package com.toxisafe.service;
 
+import com.toxisafe.util.Texto;
+
         import com.toxisafe.dao.BroteDao;
         import com.toxisafe.dao.PersonaExpuestaDao;
         import com.toxisafe.model.Brote;
-        import com.toxisafe.model.BroteEncuestador;
         import com.toxisafe.model.PersonaExpuesta;
+        import com.toxisafe.model.Rol;
         import com.toxisafe.model.Usuario;
         import com.toxisafe.sync.SyncEmitter;
 
@@ -12,7 +14,6 @@ package com.toxisafe.service;
         import java.time.format.DateTimeFormatter;
         import java.util.*;
         import java.util.regex.Pattern;
-        import java.util.stream.Collectors;
 
 /**
  * Servicio de dominio para PersonaExpuesta con emisión de cambios a sync.
@@ -32,6 +33,10 @@ public class PersonaExpuestaService {
 
     private static final DateTimeFormatter DF = DateTimeFormatter.ofPattern("yyyy-MM-dd", Locale.ROOT);
     private static final Pattern ISO_DATE = Pattern.compile("\\d{4}-\\d{2}-\\d{2}");
+    private static final Pattern DNI = Pattern.compile("^\\d{8}[A-HJ-NP-TV-Z]$");
+    private static final Pattern NIE = Pattern.compile("^[XYZ]\\d{7}[A-HJ-NP-TV-Z]$");
+    private static final Pattern PASAPORTE = Pattern.compile("^[A-Z0-9]{3,9}$");
+    private static final Pattern OTRO_DOC = Pattern.compile("^[A-Z0-9\\-]{3,20}$");
 
     /* =================== CONSTRUCTORES =================== */
 
@@ -76,10 +81,12 @@ public class PersonaExpuestaService {
             pe.setIdExpuesto(UUID.randomUUID().toString());
         }
 
-        personaExpuestaDao.insert(pe);
+        enTransaccion(() -> {
+            personaExpuestaDao.insert(pe);
 
-        // Emitir sync
-        emitInsert("PERSONA_EXPUESTA", pe.getIdExpuesto(), toMap(pe));
+            // Emitir sync
+            emitInsert("PERSONA_EXPUESTA", pe.getIdExpuesto(), toMap(pe));
+        });
 
         return pe;
     }
@@ -104,10 +111,12 @@ public class PersonaExpuestaService {
         Map<String,Object> prev = personaExpuestaDao.findById(pe.getIdExpuesto())
                 .map(this::toMap).orElse(null);
 
-        personaExpuestaDao.update(pe);
+        enTransaccion(() -> {
+            personaExpuestaDao.update(pe);
 
-        // Emitir sync
-        emitUpdate("PERSONA_EXPUESTA", pe.getIdExpuesto(), prev, toMap(pe));
+            // Emitir sync
+            emitUpdate("PERSONA_EXPUESTA", pe.getIdExpuesto(), prev, toMap(pe));
+        });
     }
 
     public void delete(String idExpuesto, Usuario actor) throws SQLException {
@@ -126,10 +135,12 @@ public class PersonaExpuestaService {
 
         Map<String,Object> prev = toMap(pe);
 
-        personaExpuestaDao.delete(idExpuesto);
+        enTransaccion(() -> {
+            personaExpuestaDao.delete(idExpuesto);
 
-        // Emitir sync
-        emitDelete("PERSONA_EXPUESTA", idExpuesto, prev);
+            // Emitir sync
+            emitDelete("PERSONA_EXPUESTA", idExpuesto, prev);
+        });
     }
 
     public Optional<PersonaExpuesta> findById(String id) throws SQLException {
@@ -142,28 +153,24 @@ public class PersonaExpuestaService {
      *  - ENCUESTADOR: solo si está asignado; si no, devuelve lista vacía
      */
     public List<PersonaExpuesta> findByBroteIdVisiblePara(String broteId, Usuario actor) throws SQLException {
+        return puedeVerBrote(broteId, actor) ? personaExpuestaDao.findByBroteId(broteId) : Collections.emptyList();
+    }
+
+    /** true si el actor puede ver los expuestos del brote (roles globales o ENCUESTADOR asignado). */
+    public boolean puedeVerBrote(String broteId, Usuario actor) throws SQLException {
         requireActor(actor);
-        String rol = resp(actor.getRolUsuario());
-        if (rol.equals("ADMIN") || rol.equals("EPIDEMIOLOGO") || rol.equals("MIR_SALUD_PUBLICA")) {
-            return personaExpuestaDao.findByBroteId(broteId);
-        }
-        if (rol.equals("ENCUESTADOR")) {
-            boolean asignado = broteEncuestadorService.findByUsuarioId(actor.getIdUsuario())
-                    .stream().anyMatch(be -> broteId.equals(be.getIdBrote()));
-            return asignado ? personaExpuestaDao.findByBroteId(broteId) : Collections.emptyList();
-        }
-        return Collections.emptyList();
+        return broteEncuestadorService.puedeAccederBrote(actor, broteId);
     }
 
     public List<PersonaExpuesta> findAllVisibles(Usuario actor) throws SQLException {
         requireActor(actor);
-        String rol = resp(actor.getRolUsuario());
-        if (rol.equals("ADMIN") || rol.equals("EPIDEMIOLOGO") || rol.equals("MIR_SALUD_PUBLICA")) {
+        Rol rol = Rol.de(actor);
+        if (rol.esGlobal()) {
             return personaExpuestaDao.findAll();
         }
+        if (rol != Rol.ENCUESTADOR) return Collections.emptyList();
         // ENCUESTADOR: sólo expuestos de brotes asignados
-        var asignaciones = broteEncuestadorService.findByUsuarioId(actor.getIdUsuario());
-        Set<String> brotes = asignaciones.stream().map(BroteEncuestador::getIdBrote).collect(Collectors.toSet());
+        Set<String> brotes = broteEncuestadorService.brotesAsignados(actor.getIdUsuario());
         List<PersonaExpuesta> out = new ArrayList<>();
         for (String idBrote : brotes) {
             out.addAll(personaExpuestaDao.findByBroteId(idBrote));
@@ -171,9 +178,72 @@ public class PersonaExpuestaService {
         return out;
     }
 
+    /* =================== IMPORTACIÓN (ImportacionExpuestosService) =================== */
+
+    /** Comprueba una sola vez lo que create() comprueba por fila: brote existente, ACTIVO y permiso. */
+    void comprobarAltaEnBrote(String idBrote, Usuario actor, String accion) throws SQLException {
+        requireActor(actor);
+        if (isBlank(idBrote)) throw new IllegalArgumentException("id_brote obligatorio");
+        Brote brote = broteDao.findById(idBrote)
+                .orElseThrow(() -> new IllegalArgumentException("El brote no existe: " + idBrote));
+        assertBroteActivo(brote);
+        checkPermisoSobreBrote(actor, idBrote, accion);
+    }
+
+    /** Claves de documento (ver {@link #claveDocumento}) de los expuestos ya registrados en el brote. */
+    Set<String> documentosEnBrote(String idBrote) throws SQLException {
+        Set<String> out = new HashSet<>();
+        for (PersonaExpuesta pe : personaExpuestaDao.findByBroteId(idBrote)) {
+            String k = claveDocumento(pe.getTipoDocumentoExpuesto(), pe.getNumDocumentoExpuesto());
+            if (k != null) out.add(k);
+        }
+        return out;
+    }
+
+    /** Clave tipo|número normalizada, o null si el expuesto no tiene documento. */
+    static String claveDocumento(String tipo, String num) {
+        if (isBlank(tipo) || isBlank(num)) return null;
+        return Texto.rol(tipo) + "|" + normalizarDoc(num);
+    }
+
+    /**
+     * Inserta expuestos ya validados (con id) en una transacción, con un solo executeBatch
+     * y sus INSERT de sync en un lote.
+     */
+    void insertarLote(List<PersonaExpuesta> lote) throws SQLException {
+        if (lote.isEmpty()) return;
+        enTransaccion(() -> {
+            personaExpuestaDao.insertAll(lote);
+
+            Map<String, Map<String,Object>> nuevos = new LinkedHashMap<>();
+            for (PersonaExpuesta pe : lote) nuevos.put(pe.getIdExpuesto(), toMap(pe));
+            if (sync != null) sync.emitInserts("PERSONA_EXPUESTA", nuevos);
+        });
+    }
+
     /* =================== VALIDACIONES =================== */
 
     private void validarCampos(PersonaExpuesta pe, boolean esUpdate) throws SQLException {
+        validarFormato(pe);
+
+        // Documento único dentro del brote (ya normalizado)
+        String tipo = pe.getTipoDocumentoExpuesto();
+        String num = pe.getNumDocumentoExpuesto();
+        if (!isBlank(tipo) && !isBlank(num)) {
+            boolean exists = esUpdate
+                    ? personaExpuestaDao.existsDocumentoEnBroteExcepto(
+                    pe.getIdExpuesto(), pe.getIdBrote(), tipo, num)
+                    : personaExpuestaDao.existsDocumentoEnBrote(
+                    pe.getIdBrote(), tipo, num);
+            if (exists) throw new IllegalArgumentException("Ya existe un expuesto con ese documento en este brote.");
+        }
+    }
+
+    /**
+     * Validación y normalización que no consulta la BD (la importación la ejecuta en paralelo).
+     * No comprueba que el documento sea único en el brote.
+     */
+    void validarFormato(PersonaExpuesta pe) {
         if (isBlank(pe.getIdBrote())) throw new IllegalArgumentException("id_brote obligatorio");
         if (isBlank(pe.getNombreExpuesto())) throw new IllegalArgumentException("nombre obligatorio");
         if (isBlank(pe.getApellidoExpuesto())) throw new IllegalArgumentException("apellido obligatorio");
@@ -187,12 +257,6 @@ public class PersonaExpuestaService {
             if (isBlank(tipo) || isBlank(num))
                 throw new IllegalArgumentException("Tipo y número de documento deben informarse juntos.");
             validarDocumento(tipo, num);
-            boolean exists = esUpdate
-                    ? personaExpuestaDao.existsDocumentoEnBroteExcepto(
-                    pe.getIdExpuesto(), pe.getIdBrote(), tipo, num)
-                    : personaExpuestaDao.existsDocumentoEnBrote(
-                    pe.getIdBrote(), tipo, num);
-            if (exists) throw new IllegalArgumentException("Ya existe un expuesto con ese documento en este brote.");
 
             // Normaliza número y tipo en memoria (sin espacios/guiones)
             pe.setNumDocumentoExpuesto(normalizarDoc(num));
@@ -212,9 +276,10 @@ public class PersonaExpuestaService {
             pe.setTfno2Expuesto(n2);
         }
 
-        if (pe.getEdadExpuesto() < 0)
+        Integer edad = pe.getEdadExpuesto();
+        if (edad != null && edad < 0)
             throw new IllegalArgumentException("La edad no puede ser negativa");
-        if (pe.getEdadExpuesto() > 120) {
+        if (edad != null && edad > 120) {
             throw new IllegalArgumentException("La edad debe ser menor de 120");
         }
 
@@ -251,13 +316,11 @@ public class PersonaExpuestaService {
     /* =================== PERMISOS =================== */
 
     private void checkPermisoSobreBrote(Usuario actor, String idBrote, String accion) throws SQLException {
-        String rol = resp(actor.getRolUsuario());
-        if (rol.equals("ADMIN") || rol.equals("EPIDEMIOLOGO") || rol.equals("MIR_SALUD_PUBLICA")) return;
+        Rol rol = Rol.de(actor);
+        if (rol.esGlobal()) return;
 
-        if (rol.equals("ENCUESTADOR")) {
-            boolean asignado = broteEncuestadorService.findByUsuarioId(actor.getIdUsuario())
-                    .stream().anyMatch(be -> idBrote.equals(be.getIdBrote()));
-            if (!asignado) {
+        if (rol == Rol.ENCUESTADOR) {
+            if (!broteEncuestadorService.estaAsignado(actor.getIdUsuario(), idBrote)) {
                 throw new SecurityException("No tiene permiso para " + accion + " expuestos de este brote.");
             }
             return;
@@ -281,13 +344,6 @@ public class PersonaExpuestaService {
         return s == null || s.trim().isEmpty();
     }
 
-    private static String resp(String s) {
-        if (s == null) return "";
-        String up = java.text.Normalizer.normalize(s, java.text.Normalizer.Form.NFD)
-                .replaceAll("\\p{M}", "");
-        return up.trim().toUpperCase(Locale.ROOT).replace(' ', '_');
-    }
-
     private static String normalizarDoc(String num) {
         if (num == null) return null;
         String t = num.trim().replace(" ", "").replace("-", "");
@@ -305,24 +361,24 @@ public class PersonaExpuestaService {
     }
 
     private void validarDocumento(String tipo, String num) {
-        String t = resp(tipo);
+        String t = Texto.rol(tipo);
         String n = normalizarDoc(num);
 
         switch (t) {
             case "DNI":
-                if (!Pattern.compile("^\\d{8}[A-HJ-NP-TV-Z]$").matcher(n).matches())
+                if (!DNI.matcher(n).matches())
                     throw new IllegalArgumentException("Formato de DNI inválido. Ej: 12345678Z");
                 break;
             case "NIE":
-                if (!Pattern.compile("^[XYZ]\\d{7}[A-HJ-NP-TV-Z]$").matcher(n).matches())
+                if (!NIE.matcher(n).matches())
                     throw new IllegalArgumentException("Formato de NIE inválido. Ej: X1234567L");
                 break;
             case "PASAPORTE":
-                if (!Pattern.compile("^[A-Z0-9]{3,9}$").matcher(n).matches())
+                if (!PASAPORTE.matcher(n).matches())
                     throw new IllegalArgumentException("Formato de pasaporte inválido.");
                 break;
             case "OTRO":
-                if (!Pattern.compile("^[A-Z0-9\\-]{3,20}$").matcher(n).matches())
+                if (!OTRO_DOC.matcher(n).matches())
                     throw new IllegalArgumentException("Número de documento inválido.");
                 break;
             default:
@@ -341,6 +397,10 @@ public class PersonaExpuestaService {
     private void emitDelete(String tabla, String id, Map<String,Object> antiguos) {
         if (sync != null) sync.emitDelete(tabla, id, antiguos);
     }
+    /** Escritura + emisión en una transacción (si el emisor la soporta). */
+    private void enTransaccion(SyncEmitter.Accion accion) throws SQLException {
+        if (sync != null) sync.enTransaccion(accion); else accion.ejecutar();
+    }
 
     /** Mapea el objeto a un Map<columna, valor> para el emisor de sync. Ajusta a tu DDL real. */
     private Map<String,Object> toMap(PersonaExpuesta p) {
@@ -0,0 +1,188 @@
+package com.toxisafe.service;
+
+import com.toxisafe.util.Texto;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Resolución aproximada de nombres libres de alimento contra el catálogo en memoria
+ * ({@link CatalogoIndice}): "tortilla patatas" y "tortila de patata" -> "Tortilla de patata".
+ * - Candidatos: las mejores entradas de {@link CatalogoIndice#buscar} (trie + trigramas)
+ * - Cada candidato se puntúa con todos sus términos (canónico y alias) y se queda el mejor:
+ *   · edición: 1 - Levenshtein / longitud mayor
+ *   · palabras: emparejamiento de palabras sin artículos/preposiciones y sin plural, cada
+ *     par aceptado si su similitud de edición llega a {@link #SIMILITUD_PALABRA}
+ *   · similitud = max(palabras, media de ambas): el orden y las preposiciones pesan poco,
+ *     pero un prefijo largo compartido ("arroz con leche" / "arroz con pollo") no basta
+ * - Confianza: EXACTA (coincide un término normalizado), ALTA (similitud >= umbral automático
+ *   y sin empate con el segundo candidato), REVISAR, SIN_CANDIDATO
+ *
+ * Sin estado: se puede llamar desde varios hilos sobre el mismo índice.
+ */
+public final class ResolutorAlimentos {
+
+    /** A partir de aquí se vincula sin intervención. */
+    public static final double UMBRAL_AUTOMATICO = 0.85;
+    /** Por debajo no se propone nada. */
+    public static final double UMBRAL_REVISION = 0.60;
+    /** Si el segundo candidato queda a menos de esto, la resolución es ambigua (como mucho REVISAR). */
+    static final double MARGEN_AMBIGUEDAD = 0.05;
+    static final double SIMILITUD_PALABRA = 0.80;
+
+    private static final int MAX_CANDIDATOS = 12;
+    private static final Set<String> VACIAS = Set.of("de", "del", "con", "y", "e", "a", "al", "en",
+            "el", "la", "los", "las", "un", "una", "para");
+
+    public enum Confianza { EXACTA, ALTA, REVISAR, SIN_CANDIDATO }
+
+    /** Resultado de resolver un nombre; sin candidato si {@code idCatalogo} es null. */
+    public static final class Resolucion {
+        public final String texto;            // normalizado
+        public final String idCatalogo;
+        public final String nombreCanonico;
+        public final String termino;          // término del catálogo con el que se emparejó
+        public final boolean porAlias;
+        public final double similitud;        // 0..1
+        public final Confianza confianza;
+        public final String alternativa;      // segundo candidato (canónico), null si no hay
+
+        Resolucion(String texto, String idCatalogo, String nombreCanonico, String termino, boolean porAlias,
+                   double similitud, Confianza confianza, String alternativa) {
+            this.texto = texto;
+            this.idCatalogo = idCatalogo;
+            this.nombreCanonico = nombreCanonico;
+            this.termino = termino;
+            this.porAlias = porAlias;
+            this.similitud = similitud;
+            this.confianza = confianza;
+            this.alternativa = alternativa;
+        }
+
+        /** Se puede vincular sin revisión manual. */
+        public boolean vinculable() { return confianza == Confianza.EXACTA || confianza == Confianza.ALTA; }
+    }
+
+    private ResolutorAlimentos() { }
+
+    /* ===================== Resolución ===================== */
+
+    public static Resolucion resolver(CatalogoIndice indice, String texto) {
+        String q = Texto.clave(texto);
+        if (q.isEmpty()) return sinCandidato(q);
+
+        // Exacto (canónico o alias): no hace falta puntuar
+        var exacto = indice.resolverExacto(q);
+        if (exacto.isPresent()) {
+            String id = exacto.get();
+            List<String> ts = indice.terminosDe(id);
+            int k = ts.indexOf(q);
+            return new Resolucion(q, id, indice.canonicoDe(id), q, k > 0, 1.0, Confianza.EXACTA, null);
+        }
+
+        List<String> palabrasQ = palabras(q);
+        String mejorId = null, mejorTermino = null, segundo = null;
+        double mejor = -1, segundoSim = -1;
+        boolean mejorAlias = false;
+        for (CatalogoIndice.Coincidencia c : indice.buscar(q, MAX_CANDIDATOS)) {
+            List<String> ts = indice.terminosDe(c.idCatalogo);
+            double sEntrada = -1;
+            String tEntrada = null;
+            boolean aEntrada = false;
+            for (int k = 0; k < ts.size(); k++) {
+                double s = similitud(q, palabrasQ, ts.get(k));
+                if (s > sEntrada) { sEntrada = s; tEntrada = ts.get(k); aEntrada = k > 0; }
+            }
+            if (sEntrada > mejor) {
+                segundo = mejorId == null ? null : indice.canonicoDe(mejorId);
+                segundoSim = mejor;
+                mejor = sEntrada; mejorId = c.idCatalogo; mejorTermino = tEntrada; mejorAlias = aEntrada;
+            } else if (sEntrada > segundoSim) {
+                segundoSim = sEntrada;
+                segundo = c.nombreCanonico;
+            }
+        }
+        if (mejorId == null || mejor < UMBRAL_REVISION) return sinCandidato(q);
+
+        boolean ambigua = segundoSim >= 0 && mejor - segundoSim < MARGEN_AMBIGUEDAD;
+        Confianza conf = mejor >= UMBRAL_AUTOMATICO && !ambigua ? Confianza.ALTA : Confianza.REVISAR;
+        return new Resolucion(q, mejorId, indice.canonicoDe(mejorId), mejorTermino, mejorAlias, mejor, conf,
+                segundoSim >= UMBRAL_REVISION ? segundo : null);
+    }
+
+    private static Resolucion sinCandidato(String q) {
+        return new Resolucion(q, null, null, null, false, 0, Confianza.SIN_CANDIDATO, null);
+    }
+
+    /* ===================== Similitudes ===================== */
+
+    /** Similitud combinada entre el texto normalizado (y sus palabras) y un término del catálogo. */
+    static double similitud(String q, List<String> palabrasQ, String termino) {
+        double edicion = similitudEdicion(q, termino);
+        double pal = similitudPalabras(palabrasQ, palabras(termino));
+        return Math.max(pal, (edicion + pal) / 2);
+    }
+
+    /** 1 - distancia de Levenshtein / longitud mayor (1 = iguales). */
+    static double similitudEdicion(String a, String b) {
+        int n = a.length(), m = b.length();
+        if (n == 0 && m == 0) return 1.0;
+        int[] prev = new int[m + 1], cur = new int[m + 1];
+        for (int j = 0; j <= m; j++) prev[j] = j;
+        for (int i = 1; i <= n; i++) {
+            cur[0] = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                int sust = prev[j - 1] + (ca == b.charAt(j - 1) ? 0 : 1);
+                cur[j] = Math.min(sust, Math.min(prev[j], cur[j - 1]) + 1);
+            }
+            int[] t = prev; prev = cur; cur = t;
+        }
+        return 1.0 - (double) prev[m] / Math.max(n, m);
+    }
+
+    /**
+     * Emparejamiento voraz de palabras (cada una se usa una vez): suma de similitudes de los
+     * pares aceptados / número de palabras del lado más largo.
+     */
+    static double similitudPalabras(List<String> a, List<String> b) {
+        if (a.isEmpty() || b.isEmpty()) return 0;
+        boolean[] usada = new boolean[b.size()];
+        double suma = 0;
+        for (String x : a) {
+            int mejorK = -1;
+            double mejor = SIMILITUD_PALABRA;
+            for (int k = 0; k < b.size(); k++) {
+                if (usada[k]) continue;
+                double s = x.equals(b.get(k)) ? 1.0 : similitudEdicion(x, b.get(k));
+                if (s >= mejor) { mejor = s; mejorK = k; }
+            }
+            if (mejorK >= 0) { usada[mejorK] = true; suma += mejor; }
+        }
+        return suma / Math.max(a.size(), b.size());
+    }
+
+    /** Palabras significativas de un texto normalizado: sin artículos/preposiciones y en singular. */
+    static List<String> palabras(String normalizado) {
+        List<String> out = new ArrayList<>();
+        Set<String> vistas = new HashSet<>();
+        for (String p : normalizado.split("[^\\p{L}\\p{N}]+")) {
+            if (p.isEmpty() || VACIAS.contains(p)) continue;
+            String s = singular(p);
+            if (vistas.add(s)) out.add(s);
+        }
+        // Si solo había palabras vacías, mejor compararlas que no comparar nada
+        if (out.isEmpty() && !normalizado.isBlank()) out.add(normalizado);
+        return out;
+    }
+
+    // Plural regular: "patatas" -> "patata", "tomates" -> "tomate", "limones" -> "limon", "panes" -> "pan"
+    private static String singular(String p) {
+        int n = p.length();
+        if (n > 4 && p.endsWith("es") && "lnrdj".indexOf(p.charAt(n - 3)) >= 0) return p.substring(0, n - 2);
+        if (n > 3 && p.endsWith("s") && !p.endsWith("ss")) return p.substring(0, n - 1);
+        return p;
+    }
+}
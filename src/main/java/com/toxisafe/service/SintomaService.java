@@ -4,6 +4,7 @@ import com.toxisafe.dao.GrupoSintomaDao;
 import com.toxisafe.dao.SintomaDao;
 import com.toxisafe.model.Sintoma;
 import com.toxisafe.model.Usuario;
+import com.toxisafe.util.Texto;
 
 import java.sql.SQLException;
 import java.util.*;
@@ -72,20 +73,13 @@ public class SintomaService {
                 .orElseThrow(() -> new IllegalArgumentException("El grupo no existe."));
 
         // Evitar duplicados de nombre dentro del grupo (normalizando)
-        String nuevoNorm = normNombre(s.getNombreSintoma());
+        String nuevoNorm = Texto.clave(s.getNombreSintoma());
         boolean dup = sintomaDao.findByGrupoSintomaId(s.getIdGrupoSintomas()).stream()
                 .filter(x -> !esUpdate || !x.getIdSintoma().equals(s.getIdSintoma()))
-                .anyMatch(x -> normNombre(x.getNombreSintoma()).equals(nuevoNorm));
+                .anyMatch(x -> Texto.clave(x.getNombreSintoma()).equals(nuevoNorm));
         if (dup) throw new IllegalArgumentException("Ya existe un síntoma con ese nombre en el grupo.");
     }
 
-    private static String normNombre(String s) {
-        if (s == null) return "";
-        String sinAcentos = java.text.Normalizer.normalize(s, java.text.Normalizer.Form.NFD)
-                .replaceAll("\\p{M}", "");
-        return sinAcentos.toLowerCase(java.util.Locale.ROOT).replaceAll("\\s+", " ").trim();
-    }
-
     // ===== Permisos / helpers =====
 
     private void requireActor(Usuario actor) {
@@ -94,17 +88,10 @@ public class SintomaService {
     }
 
     private void assertPermisoCatalogo(Usuario actor, String accion) {
-        String rol = resp(actor.getRolUsuario());
+        String rol = Texto.rol(actor.getRolUsuario());
         if (rol.equals("ADMIN") || rol.equals("EPIDEMIOLOGO") || rol.equals("MIR_SALUD_PUBLICA")) return;
         throw new SecurityException("No tiene permiso para " + accion + " del catálogo de síntomas.");
     }
 
     private static boolean isBlank(String s) { return s == null || s.trim().isEmpty(); }
-
-    private static String resp(String s) {
-        if (s == null) return "";
-        String up = java.text.Normalizer.normalize(s, java.text.Normalizer.Form.NFD)
-                .replaceAll("\\p{M}", "");
-        return up.trim().toUpperCase(java.util.Locale.ROOT).replace(' ', '_');
-    }
 }
\ No newline at end of file
@@ -3,9 +3,9 @@ package com.toxisafe.service;
 import com.toxisafe.dao.*;
 import com.toxisafe.model.*;
 import com.toxisafe.sync.SyncEmitter;
+import com.toxisafe.util.Texto;
 
 import java.sql.SQLException;
-import java.text.Normalizer;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -79,18 +79,22 @@ public class SintomasGeneralesExpuestoService {
         if (existente.isPresent()) {
             SintomasGeneralesExpuesto cur = existente.get();
             g.setIdSintomasGenerales(cur.getIdSintomasGenerales());
-            generalesDao.update(g);
-            emitUpdate("SINTOMAS_GENERALES_EXPUESTO",
-                    g.getIdSintomasGenerales(),
-                    toMap(cur),
-                    toMap(g));
+            enTransaccion(() -> {
+                generalesDao.update(g);
+                emitUpdate("SINTOMAS_GENERALES_EXPUESTO",
+                        g.getIdSintomasGenerales(),
+                        toMap(cur),
+                        toMap(g));
+            });
             return g;
         } else {
             if (isBlank(g.getIdSintomasGenerales())) {
                 g.setIdSintomasGenerales(UUID.randomUUID().toString());
             }
-            generalesDao.insert(g);
-            emitInsert("SINTOMAS_GENERALES_EXPUESTO", g.getIdSintomasGenerales(), toMap(g));
+            enTransaccion(() -> {
+                generalesDao.insert(g);
+                emitInsert("SINTOMAS_GENERALES_EXPUESTO", g.getIdSintomasGenerales(), toMap(g));
+            });
             return g;
         }
     }
@@ -121,13 +125,12 @@ public class SintomasGeneralesExpuestoService {
         // Visibilidad como en otros módulos
         PersonaExpuesta pe = personaExpuestaDao.findById(idExpuesto)
                 .orElseThrow(() -> new IllegalArgumentException("Expuesto no encontrado"));
-        String rol = resp(actor.getRolUsuario());
-        if (rol.equals("ADMIN") || rol.equals("EPIDEMIOLOGO") || rol.equals("MIR_SALUD_PUBLICA")) {
+        Rol rol = Rol.de(actor);
+        if (rol.esGlobal()) {
             return generalesDao.findByExpuestoId(idExpuesto);
         }
-        if (rol.equals("ENCUESTADOR")) {
-            boolean asignado = broteEncuestadorService.findByUsuarioId(actor.getIdUsuario())
-                    .stream().anyMatch(be -> pe.getIdBrote().equals(be.getIdBrote()));
+        if (rol == Rol.ENCUESTADOR) {
+            boolean asignado = broteEncuestadorService.estaAsignado(actor.getIdUsuario(), pe.getIdBrote());
             return asignado ? generalesDao.findByExpuestoId(idExpuesto) : Optional.empty();
         }
         return Optional.empty();
@@ -141,6 +144,33 @@ public class SintomasGeneralesExpuestoService {
         return exposicionDao.findBySintomasGeneralesId(idSintomasGenerales);
     }
 
+    /**
+     * Registros generales de todo el brote, indexados por id_expuesto (una consulta, un permiso).
+     * Si un expuesto tuviera varios registros se queda el primero, igual que findByExpuestoId.
+     */
+    public Map<String, SintomasGeneralesExpuesto> findGeneralesByBroteVisiblePara(String idBrote, Usuario actor) throws SQLException {
+        requireActor(actor);
+        if (!puedeVerBrote(actor, idBrote)) return Collections.emptyMap();
+
+        Map<String, SintomasGeneralesExpuesto> out = new HashMap<>();
+        for (SintomasGeneralesExpuesto g : generalesDao.findByBroteId(idBrote)) {
+            out.putIfAbsent(g.getIdExpuesto(), g);
+        }
+        return out;
+    }
+
+    /** Exposiciones de todo el brote agrupadas por id_sintomas_generales (una consulta, un permiso). */
+    public Map<String, List<ExposicionSintoma>> listExposicionesByBroteVisiblePara(String idBrote, Usuario actor) throws SQLException {
+        requireActor(actor);
+        if (!puedeVerBrote(actor, idBrote)) return Collections.emptyMap();
+
+        Map<String, List<ExposicionSintoma>> out = new HashMap<>();
+        for (ExposicionSintoma e : exposicionDao.findByBroteId(idBrote)) {
+            out.computeIfAbsent(e.getIdSintomasGenerales(), k -> new ArrayList<>()).add(e);
+        }
+        return out;
+    }
+
     // ========= RF5.4: modificar conjunto (añadir/quitar síntomas) =========
 
     public ExposicionSintoma addSintomaAlConjunto(String idSintomasGenerales, String idSintoma, Usuario actor) throws SQLException {
@@ -163,8 +193,10 @@ public class SintomasGeneralesExpuestoService {
         if (yaExiste) throw new IllegalArgumentException("Ese síntoma ya está en el conjunto.");
 
         ExposicionSintoma e = new ExposicionSintoma(UUID.randomUUID().toString(), idSintomasGenerales, idSintoma);
-        exposicionDao.insert(e);
-        emitInsert("EXPOSICION_SINTOMA", e.getIdExposicionSintoma(), toMap(e));
+        enTransaccion(() -> {
+            exposicionDao.insert(e);
+            emitInsert("EXPOSICION_SINTOMA", e.getIdExposicionSintoma(), toMap(e));
+        });
         return e;
     }
 
@@ -182,8 +214,10 @@ public class SintomasGeneralesExpuestoService {
         // Busca la exposición por par (conjunto, síntoma) y bórrala
         for (ExposicionSintoma e : exposicionDao.findBySintomasGeneralesId(idSintomasGenerales)) {
             if (e.getIdSintoma().equals(idSintoma)) {
-                exposicionDao.delete(e.getIdExposicionSintoma());
-                emitDelete("EXPOSICION_SINTOMA", e.getIdExposicionSintoma(), toMap(e));
+                enTransaccion(() -> {
+                    exposicionDao.delete(e.getIdExposicionSintoma());
+                    emitDelete("EXPOSICION_SINTOMA", e.getIdExposicionSintoma(), toMap(e));
+                });
                 return;
             }
         }
@@ -215,22 +249,29 @@ public class SintomasGeneralesExpuestoService {
         Set<String> actualesIds = new HashSet<>();
         for (ExposicionSintoma e : actuales) actualesIds.add(e.getIdSintoma());
 
-        // Eliminar los que sobran
+        // Los que sobran y los que faltan (el id emitido es el mismo que se inserta)
+        List<ExposicionSintoma> sobran = new ArrayList<>();
         for (ExposicionSintoma e : actuales) {
-            if (!destino.contains(e.getIdSintoma())) {
-                exposicionDao.delete(e.getIdExposicionSintoma());
-                emitDelete("EXPOSICION_SINTOMA", e.getIdExposicionSintoma(), toMap(e));
-            }
+            if (!destino.contains(e.getIdSintoma())) sobran.add(e);
         }
-
-        // Añadir los que faltan
+        List<ExposicionSintoma> faltan = new ArrayList<>();
         for (String idS : destino) {
             if (!actualesIds.contains(idS)) {
-                ExposicionSintoma nuevo = new ExposicionSintoma(UUID.randomUUID().toString(), idSintomasGenerales, idS);
-                exposicionDao.insert(new ExposicionSintoma(UUID.randomUUID().toString(), idSintomasGenerales, idS));
-                emitInsert("EXPOSICION_SINTOMA", nuevo.getIdExposicionSintoma(), toMap(nuevo));
+                faltan.add(new ExposicionSintoma(UUID.randomUUID().toString(), idSintomasGenerales, idS));
             }
         }
+        if (sobran.isEmpty() && faltan.isEmpty()) return;
+
+        // Todo el reemplazo en una transacción (en lote): o queda el conjunto nuevo o el anterior
+        enTransaccion(() -> {
+            List<String> idsSobran = new ArrayList<>(sobran.size());
+            for (ExposicionSintoma e : sobran) idsSobran.add(e.getIdExposicionSintoma());
+            exposicionDao.deleteAllById(idsSobran);
+            exposicionDao.insertAll(faltan);
+
+            for (ExposicionSintoma e : sobran) emitDelete("EXPOSICION_SINTOMA", e.getIdExposicionSintoma(), toMap(e));
+            for (ExposicionSintoma e : faltan) emitInsert("EXPOSICION_SINTOMA", e.getIdExposicionSintoma(), toMap(e));
+        });
     }
 
     // ========= RF5.5: eliminar registro general (y sus síntomas) =========
@@ -249,8 +290,10 @@ public class SintomasGeneralesExpuestoService {
         checkPermisoSobreBrote(actor, b.getIdBrote(), "eliminar registro de síntomas");
 
         // Gracias al ON DELETE CASCADE en EXPOSICION_SINTOMA, basta con borrar el general.
-        generalesDao.delete(idSintomasGenerales);
-        emitDelete("SINTOMAS_GENERALES_EXPUESTO", idSintomasGenerales, toMap(g));
+        enTransaccion(() -> {
+            generalesDao.delete(idSintomasGenerales);
+            emitDelete("SINTOMAS_GENERALES_EXPUESTO", idSintomasGenerales, toMap(g));
+        });
     }
 
     // ========= Validación de fechas =========
@@ -285,18 +328,26 @@ public class SintomasGeneralesExpuestoService {
     }
 
     private void checkPermisoSobreBrote(Usuario actor, String idBrote, String accion) throws SQLException {
-        String rol = resp(actor.getRolUsuario());
-        if (rol.equals("ADMIN") || rol.equals("EPIDEMIOLOGO") || rol.equals("MIR_SALUD_PUBLICA")) return;
+        Rol rol = Rol.de(actor);
+        if (rol.esGlobal()) return;
 
-        if (rol.equals("ENCUESTADOR")) {
-            boolean asignado = broteEncuestadorService.findByUsuarioId(actor.getIdUsuario())
-                    .stream().anyMatch(be -> idBrote.equals(be.getIdBrote()));
+        if (rol == Rol.ENCUESTADOR) {
+            boolean asignado = broteEncuestadorService.estaAsignado(actor.getIdUsuario(), idBrote);
             if (!asignado) throw new SecurityException("No tiene permiso para " + accion + ".");
             return;
         }
         throw new SecurityException("Rol no autorizado: " + actor.getRolUsuario());
     }
 
+    private boolean puedeVerBrote(Usuario actor, String idBrote) throws SQLException {
+        Rol rol = Rol.de(actor);
+        if (rol.esGlobal()) return true;
+        if (rol == Rol.ENCUESTADOR) {
+            return broteEncuestadorService.estaAsignado(actor.getIdUsuario(), idBrote);
+        }
+        return false;
+    }
+
     private void assertBroteActivo(Brote b) {
         if ("CERRADO".equalsIgnoreCase(b.getEstadoBrote()))
             throw new IllegalStateException("No se pueden modificar síntomas de un brote cerrado.");
@@ -304,13 +355,6 @@ public class SintomasGeneralesExpuestoService {
 
     private static boolean isBlank(String s) { return s == null || s.trim().isEmpty(); }
 
-    private static String resp(String s) {
-        if (s == null) return "";
-        String up = java.text.Normalizer.normalize(s, java.text.Normalizer.Form.NFD)
-                .replaceAll("\\p{M}", "");
-        return up.trim().toUpperCase(java.util.Locale.ROOT).replace(' ', '_');
-    }
-
     /** Definición de caso “regla” basada en nombres de síntomas normalizados. */
     public static final class CasoDef {
         final Set<String> requiereTodos;       // Deben estar todos
@@ -323,16 +367,208 @@ public class SintomasGeneralesExpuestoService {
             this.minimoTotal = Math.max(0, minimoTotal);
         }
 
+        /** Regla a partir de nombres de síntoma tal como se escriben (se normalizan aquí). */
+        public static CasoDef de(Collection<String> todos, Collection<String> alguno, int minimoTotal) {
+            Set<String> t = new HashSet<>();
+            if (todos != null) for (String n : todos) if (!isBlank(n)) t.add(Texto.codigo(n));
+            Set<String> a = new HashSet<>();
+            if (alguno != null) for (String n : alguno) if (!isBlank(n)) a.add(Texto.codigo(n));
+            return new CasoDef(t, a, minimoTotal);
+        }
+
         /** Regla por defecto (ajústala si quieres): Diarrea Y (Fiebre o Vómitos o Dolor abdominal). */
         public static CasoDef porDefecto() {
-            Set<String> todos = new HashSet<>(Set.of(norm("Diarrea")));
+            Set<String> todos = new HashSet<>(Set.of(Texto.codigo("Diarrea")));
             Set<String> alguno = new HashSet<>(Arrays.asList(
-                    norm("Fiebre"),
-                    norm("Vómitos"), // “Vómitos” y “Vomitos” normalizan igual
-                    norm("Dolor o calambres abdominales")
+                    Texto.codigo("Fiebre"),
+                    Texto.codigo("Vómitos"), // “Vómitos” y “Vomitos” normalizan igual
+                    Texto.codigo("Dolor o calambres abdominales")
             ));
             return new CasoDef(todos, alguno, 0);
         }
+
+        /** Evalúa la regla sobre el conjunto de nombres de síntoma ya normalizados del expuesto. */
+        public boolean cumple(Set<String> seleccion) {
+            if (minimoTotal > 0 && seleccion.size() < minimoTotal) return false;
+
+            // Deben estar todos los requeridos
+            if (!seleccion.containsAll(requiereTodos)) return false;
+
+            // Debe estar al menos uno de los alternativos (si los hay)
+            if (!requiereAlMenosUno.isEmpty()) {
+                for (String cand : requiereAlMenosUno) {
+                    if (seleccion.contains(cand)) return true;
+                }
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Compila la regla sobre un diccionario de síntomas: cada nombre requerido pasa a su bit y
+         * evaluar a un expuesto son unas pocas operaciones AND/OR/bitCount sobre su máscara.
+         * Un nombre obligatorio que no está en el diccionario no lo tiene nadie: la regla no se cumple.
+         */
+        public Compilada compilar(DiccionarioSintomas dic) {
+            int palabras = dic.palabras();
+            long[] todos = new long[palabras];
+            long[] alguno = new long[palabras];
+            boolean imposible = false;
+            for (String n : requiereTodos) {
+                int b = dic.bitDeNombre(Texto.codigo(n));
+                if (b < 0) imposible = true;
+                else DiccionarioSintomas.marcar(todos, b);
+            }
+            for (String n : requiereAlMenosUno) {
+                DiccionarioSintomas.marcar(alguno, dic.bitDeNombre(Texto.codigo(n)));
+            }
+            return new Compilada(todos, alguno, !requiereAlMenosUno.isEmpty(), minimoTotal, imposible);
+        }
+    }
+
+    /** {@link CasoDef} compilada a máscaras de bits sobre un {@link DiccionarioSintomas}. */
+    public static final class Compilada {
+        private final long[] todos;
+        private final long[] alguno;
+        private final boolean exigeAlguno;
+        private final int minimoTotal;
+        private final boolean imposible;
+
+        private Compilada(long[] todos, long[] alguno, boolean exigeAlguno, int minimoTotal, boolean imposible) {
+            this.todos = todos;
+            this.alguno = alguno;
+            this.exigeAlguno = exigeAlguno;
+            this.minimoTotal = minimoTotal;
+            this.imposible = imposible;
+        }
+
+        /** Igual que {@link CasoDef#cumple} sobre la máscara de síntomas del expuesto. */
+        public boolean cumple(long[] seleccion) {
+            return cumple(seleccion, 0);
+        }
+
+        /** Igual, sobre la máscara que empieza en {@code desde} dentro de un array plano (una por expuesto). */
+        public boolean cumple(long[] mascaras, int desde) {
+            if (imposible) return false;
+            boolean hayAlguno = !exigeAlguno;
+            int total = 0;
+            for (int w = 0; w < todos.length; w++) {
+                long x = desde + w < mascaras.length ? mascaras[desde + w] : 0L;
+                if ((x & todos[w]) != todos[w]) return false;
+                if ((x & alguno[w]) != 0) hayAlguno = true;
+                total += Long.bitCount(x);
+            }
+            return hayAlguno && total >= minimoTotal;
+        }
+    }
+
+    /**
+     * Diccionario de síntomas para clasificar en bloque: un bit por nombre normalizado.
+     * Dos id_sintoma con el mismo nombre normalizado comparten bit ("Vómitos"/"Vomitos"),
+     * así que el nº de bits activos es el nº de síntomas distintos que cuenta {@link CasoDef#cumple}.
+     * Se normaliza cada nombre una sola vez, al registrarlo.
+     */
+    public static final class DiccionarioSintomas {
+        private final Map<String, Integer> bitPorNombre = new HashMap<>();
+        private final Map<String, Integer> bitPorId = new HashMap<>();
+
+        /** Bit del síntoma (se añade si es nuevo) o -1 si no tiene nombre de catálogo. */
+        public int registrar(String idSintoma, String nombre) {
+            Integer b = bitPorId.get(idSintoma);
+            if (b != null) return b;
+            b = nombre == null ? -1 : bitPorNombre.computeIfAbsent(Texto.codigo(nombre), k -> bitPorNombre.size());
+            bitPorId.put(idSintoma, b);
+            return b;
+        }
+
+        /** Bit ya registrado del síntoma o -1. */
+        public int bit(String idSintoma) {
+            Integer b = bitPorId.get(idSintoma);
+            return b == null ? -1 : b;
+        }
+
+        int bitDeNombre(String nombreNormalizado) {
+            Integer b = bitPorNombre.get(nombreNormalizado);
+            return b == null ? -1 : b;
+        }
+
+        /** Longitud (en long) de las máscaras sobre este diccionario. */
+        public int palabras() { return Math.max(1, (bitPorNombre.size() + 63) >>> 6); }
+
+        public static void marcar(long[] mascara, int bit) {
+            if (bit >= 0) mascara[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /** Resultado de {@link #classifyCases}: expuestos del brote (índice denso) y casos como BitSet. */
+    public static final class Clasificacion {
+        private final List<String> idExpuestos;
+        private final BitSet casos;
+
+        private Clasificacion(List<String> idExpuestos, BitSet casos) {
+            this.idExpuestos = idExpuestos;
+            this.casos = casos;
+        }
+
+        public int size() { return idExpuestos.size(); }
+        public String idExpuesto(int i) { return idExpuestos.get(i); }
+        public boolean esCaso(int i) { return casos.get(i); }
+        public int numCasos() { return casos.cardinality(); }
+
+        /** Copia del conjunto de casos (índices sobre {@link #idExpuesto}). */
+        public BitSet casos() { return (BitSet) casos.clone(); }
+
+        /** id_expuesto de los casos, en el orden de los expuestos. */
+        public Set<String> idsCasos() {
+            Set<String> out = new LinkedHashSet<>();
+            for (int i = casos.nextSetBit(0); i >= 0; i = casos.nextSetBit(i + 1)) out.add(idExpuestos.get(i));
+            return out;
+        }
+    }
+
+    /**
+     * Clasifica de una vez todos los expuestos de un brote con la definición indicada:
+     * una consulta (expuestos + síntomas + nombre de catálogo), el diccionario de nombres
+     * normalizados y la regla compilada a máscaras. Sin permiso sobre el brote, vacía.
+     * Mismo criterio que {@link #esCaso}: sin síntomas registrados nunca es caso.
+     */
+    public Clasificacion classifyCases(String idBrote, CasoDef def, Usuario actor) throws SQLException {
+        requireActor(actor);
+        if (isBlank(idBrote)) throw new IllegalArgumentException("id_brote requerido");
+        if (def == null) def = CasoDef.porDefecto();
+        if (!puedeVerBrote(actor, idBrote)) return new Clasificacion(List.of(), new BitSet());
+
+        List<ExposicionSintomaDao.SintomaDeExpuesto> filas = exposicionDao.findSintomasDeExpuestosByBroteId(idBrote);
+
+        // 1ª pasada: diccionario (para compilar la regla hacen falta todos los bits)
+        DiccionarioSintomas dic = new DiccionarioSintomas();
+        for (ExposicionSintomaDao.SintomaDeExpuesto f : filas) {
+            if (f.idSintoma() != null) dic.registrar(f.idSintoma(), f.nombreSintoma());
+        }
+        Compilada regla = def.compilar(dic);
+
+        // 2ª pasada: las filas de un mismo expuesto vienen seguidas (ORDER BY pe.rowid)
+        List<String> ids = new ArrayList<>();
+        BitSet casos = new BitSet();
+        long[] seleccion = new long[dic.palabras()];
+        boolean conSintomas = false;
+        String actual = null;
+        for (ExposicionSintomaDao.SintomaDeExpuesto f : filas) {
+            if (!f.idExpuesto().equals(actual)) {
+                if (actual != null && conSintomas && regla.cumple(seleccion)) casos.set(ids.size() - 1);
+                actual = f.idExpuesto();
+                ids.add(actual);
+                Arrays.fill(seleccion, 0L);
+                conSintomas = false;
+            }
+            if (f.idSintoma() != null) {
+                conSintomas = true;
+                DiccionarioSintomas.marcar(seleccion, dic.bit(f.idSintoma()));
+            }
+        }
+        if (actual != null && conSintomas && regla.cumple(seleccion)) casos.set(ids.size() - 1);
+
+        return new Clasificacion(ids, casos);
     }
 
     /** Devuelve true si el expuesto cumple la definición de caso indicada. */
@@ -351,25 +587,11 @@ public class SintomasGeneralesExpuestoService {
         for (ExposicionSintoma e : expos) {
             var sOpt = sintomaDao.findById(e.getIdSintoma());
             if (sOpt.isPresent()) {
-                seleccion.add(norm(sOpt.get().getNombreSintoma()));
+                seleccion.add(Texto.codigo(sOpt.get().getNombreSintoma()));
             }
         }
 
-        if (def.minimoTotal > 0 && seleccion.size() < def.minimoTotal) return false;
-
-        // Deben estar todos los requeridos
-        if (!seleccion.containsAll(def.requiereTodos)) return false;
-
-        // Debe estar al menos uno de los alternativos (si los hay)
-        if (!def.requiereAlMenosUno.isEmpty()) {
-            boolean alguno = false;
-            for (String cand : def.requiereAlMenosUno) {
-                if (seleccion.contains(cand)) { alguno = true; break; }
-            }
-            if (!alguno) return false;
-        }
-
-        return true;
+        return def.cumple(seleccion);
     }
 
     /** Comodín: usa la definición por defecto. */
@@ -378,14 +600,6 @@ public class SintomasGeneralesExpuestoService {
     }
 
 
-    // Normaliza texto: mayúsculas, sin tildes/diacríticos y sin espacios extremos
-    private static String norm(String s) {
-        if (s == null) return "";
-        String up = Normalizer.normalize(s, Normalizer.Form.NFD)
-                .replaceAll("\\p{M}", "");
-        return up.trim().toUpperCase(Locale.ROOT);
-    }
-
     // --- emisión genérica (no rompe si sync == null) ---
     private void emitInsert(String tabla, String id, Map<String,Object> data) {
         if (sync != null) sync.emitInsert(tabla, id, data);
@@ -396,6 +610,10 @@ public class SintomasGeneralesExpuestoService {
     private void emitDelete(String tabla, String id, Map<String,Object> oldV) {
         if (sync != null) sync.emitDelete(tabla, id, oldV);
     }
+    /** Escritura + emisión en una transacción (si el emisor la soporta). */
+    private void enTransaccion(SyncEmitter.Accion accion) throws SQLException {
+        if (sync != null) sync.enTransaccion(accion); else accion.ejecutar();
+    }
 
     // --- mapeadores a Map<String,Object> con las CLAVES exactas que consume el ingestor ---
     private static Map<String,Object> toMap(SintomasGeneralesExpuesto g) {
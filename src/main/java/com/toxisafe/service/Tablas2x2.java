@@ -0,0 +1,226 @@
+package com.toxisafe.service;
+
+/**
+ * Pruebas sobre tablas 2x2 (sin librerías externas) para el módulo de Estadística.
+ * Sin estado mutable compartido: se puede llamar desde varios hilos a la vez.
+ * - log(n!) de una tabla double[] precalculada; si llega un n mayor se amplía por copia
+ *   y se publica la tabla nueva (volatile), sin bloquear las lecturas
+ * - Fisher exacta (bilateral y mid-p) recorriendo la hipergeométrica desde la moda con la
+ *   recurrencia P(k+1) = P(k)·(c1-k)(r1-k) / ((k+1)(c2-r1+k+1)): una multiplicación por término
+ * - Chi-cuadrado con corrección de Yates
+ * - RR y OR de Mantel-Haenszel con IC95% para tablas estratificadas
+ *
+ * Celdas: a = expuestos y caso, b = expuestos no caso, c = no expuestos y caso, d = resto.
+ */
+public final class Tablas2x2 {
+
+    private static final int TAM_INICIAL = 4096;
+    private static final double Z95 = 1.96;
+
+    private static volatile double[] logFact = ampliar(new double[0], TAM_INICIAL);
+
+    private Tablas2x2() { }
+
+    /* ===================== Resultados ===================== */
+
+    /** p-valores de la prueba exacta de Fisher. */
+    public static final class Fisher {
+        public final double pBilateral; // suma de las tablas tan o menos probables que la observada
+        public final double pMedio;     // mid-p bilateral: 2·min(cola inferior, cola superior) con P(obs)/2
+        Fisher(double pBilateral, double pMedio) {
+            this.pBilateral = pBilateral;
+            this.pMedio = pMedio;
+        }
+    }
+
+    /** Chi-cuadrado (1 g.l.) con corrección de Yates; NaN si algún marginal es 0. */
+    public static final class ChiCuadrado {
+        public final double estadistico;
+        public final double p;
+        ChiCuadrado(double estadistico, double p) {
+            this.estadistico = estadistico;
+            this.p = p;
+        }
+    }
+
+    /** Medidas ajustadas de Mantel-Haenszel (NaN si no se pueden estimar). */
+    public static final class MantelHaenszel {
+        public final double rr, rrL, rrH;
+        public final double or, orL, orH;
+        public final int estratos;      // estratos con datos (n > 0)
+        MantelHaenszel(double rr, double rrL, double rrH, double or, double orL, double orH, int estratos) {
+            this.rr = rr; this.rrL = rrL; this.rrH = rrH;
+            this.or = or; this.orL = orL; this.orH = orH;
+            this.estratos = estratos;
+        }
+    }
+
+    /* ===================== Log-factorial ===================== */
+
+    /** log(n!) */
+    public static double logFactorial(int n) {
+        if (n < 0) throw new IllegalArgumentException("n negativo: " + n);
+        double[] t = logFact;
+        if (n >= t.length) t = crecer(n);
+        return t[n];
+    }
+
+    /** log(C(n, k)); -infinito fuera de rango. */
+    public static double logCombinaciones(int n, int k) {
+        if (k < 0 || k > n) return Double.NEGATIVE_INFINITY;
+        return logFactorial(n) - logFactorial(k) - logFactorial(n - k);
+    }
+
+    private static synchronized double[] crecer(int n) {
+        double[] t = logFact;
+        if (n < t.length) return t; // otro hilo ya la amplió
+        t = ampliar(t, Math.max(n + 1, t.length * 2));
+        logFact = t;
+        return t;
+    }
+
+    private static double[] ampliar(double[] previa, int tam) {
+        double[] t = java.util.Arrays.copyOf(previa, tam);
+        for (int i = Math.max(1, previa.length); i < tam; i++) {
+            t[i] = t[i - 1] + Math.log(i);
+        }
+        return t;
+    }
+
+    /* ===================== Fisher ===================== */
+
+    /** Fisher exacta para la tabla; null si está vacía. */
+    public static Fisher fisher(int a, int b, int c, int d) {
+        comprobar(a, b, c, d);
+        int r1 = a + b, c1 = a + c, n = a + b + c + d, c2 = n - c1;
+        if (n == 0) return null;
+
+        int min = Math.max(0, r1 - c2);
+        int max = Math.min(r1, c1);
+        if (min == max) return new Fisher(1.0, 1.0);
+
+        // Pesos relativos a la moda (w(moda) = 1): sin desbordes aunque la tabla sea grande
+        int moda = (int) Math.max(min, Math.min(max, ((long) (r1 + 1) * (c1 + 1)) / (n + 2)));
+        double base = logHiper(moda, r1, c1, c2);
+        double wObs = Math.exp(logHiper(a, r1, c1, c2) - base);
+        double umbral = wObs * (1 + 1e-7);          // tolerancia relativa (empates numéricos)
+        double despreciable = Math.min(1.0, wObs) * 1e-17;
+
+        double total = 1.0;
+        double tanOMenos = 1.0 <= umbral ? 1.0 : 0.0;
+        double bajo = moda < a ? 1.0 : 0.0;
+        double alto = moda > a ? 1.0 : 0.0;
+
+        // Hacia arriba desde la moda
+        double w = 1.0;
+        for (int k = moda; k < max; k++) {
+            w *= ((double) (c1 - k) * (r1 - k)) / ((double) (k + 1) * (c2 - r1 + k + 1));
+            int j = k + 1;
+            total += w;
+            if (w <= umbral) tanOMenos += w;
+            if (j < a) bajo += w; else if (j > a) alto += w;
+            if (j > a && w < despreciable) break; // decrece: el resto no cambia el resultado
+        }
+        // Hacia abajo desde la moda
+        w = 1.0;
+        for (int k = moda; k > min; k--) {
+            w *= ((double) k * (c2 - r1 + k)) / ((double) (c1 - k + 1) * (r1 - k + 1));
+            int j = k - 1;
+            total += w;
+            if (w <= umbral) tanOMenos += w;
+            if (j < a) bajo += w; else if (j > a) alto += w;
+            if (j < a && w < despreciable) break;
+        }
+
+        double pBilateral = Math.min(1.0, tanOMenos / total);
+        double pMedio = Math.min(1.0, 2.0 * Math.min(bajo + wObs / 2, alto + wObs / 2) / total);
+        return new Fisher(pBilateral, pMedio);
+    }
+
+    // log P(A=k) salvo la constante log C(n, r1), que se cancela al normalizar
+    private static double logHiper(int k, int r1, int c1, int c2) {
+        return logCombinaciones(c1, k) + logCombinaciones(c2, r1 - k);
+    }
+
+    /* ===================== Chi-cuadrado ===================== */
+
+    public static ChiCuadrado chiCuadradoYates(int a, int b, int c, int d) {
+        comprobar(a, b, c, d);
+        double r1 = a + b, r2 = c + d, c1 = a + c, c2 = b + d, n = r1 + r2;
+        if (r1 == 0 || r2 == 0 || c1 == 0 || c2 == 0) return new ChiCuadrado(Double.NaN, Double.NaN);
+
+        double dif = Math.abs((double) a * d - (double) b * c) - n / 2;
+        if (dif < 0) dif = 0; // la corrección no cambia el signo
+        double chi = n * dif * dif / (r1 * r2 * c1 * c2);
+        return new ChiCuadrado(chi, erfc(Math.sqrt(chi / 2))); // P(χ²₁ > x) = erfc(√(x/2))
+    }
+
+    // erfc con error relativo < 1.2e-7 (aproximación de Chebyshev)
+    private static double erfc(double x) {
+        double z = Math.abs(x);
+        double t = 1.0 / (1.0 + 0.5 * z);
+        double r = t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+                + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+                + t * (-0.82215223 + t * 0.17087277)))))))));
+        return x >= 0 ? r : 2.0 - r;
+    }
+
+    /* ===================== Mantel-Haenszel ===================== */
+
+    /**
+     * RR y OR de Mantel-Haenszel sobre k estratos (celdas en arrays paralelos).
+     * IC95%: varianza de Greenland-Robins para log RR y de Robins-Breslow-Greenland para log OR.
+     * Los estratos vacíos no cuentan.
+     */
+    public static MantelHaenszel mantelHaenszel(int[] a, int[] b, int[] c, int[] d) {
+        int k = a.length;
+        if (b.length != k || c.length != k || d.length != k)
+            throw new IllegalArgumentException("Los estratos deben tener las cuatro celdas");
+
+        double rrNum = 0, rrDen = 0, rrVar = 0;
+        double sR = 0, sS = 0, sPR = 0, sPSQR = 0, sQS = 0;
+        int estratos = 0;
+        for (int i = 0; i < k; i++) {
+            comprobar(a[i], b[i], c[i], d[i]);
+            double ai = a[i], bi = b[i], ci = c[i], di = d[i];
+            double n = ai + bi + ci + di;
+            if (n == 0) continue;
+            estratos++;
+            double r1 = ai + bi, r2 = ci + di, m1 = ai + ci;
+
+            rrNum += ai * r2 / n;
+            rrDen += ci * r1 / n;
+            rrVar += (r1 * r2 * m1 - ai * ci * n) / (n * n);
+
+            double p = (ai + di) / n, q = (bi + ci) / n;
+            double r = ai * di / n, s = bi * ci / n;
+            sR += r;
+            sS += s;
+            sPR += p * r;
+            sPSQR += p * s + q * r;
+            sQS += q * s;
+        }
+
+        double rr = Double.NaN, rrL = Double.NaN, rrH = Double.NaN;
+        if (rrNum > 0 && rrDen > 0) {
+            rr = rrNum / rrDen;
+            double se = Math.sqrt(rrVar / (rrNum * rrDen));
+            rrL = Math.exp(Math.log(rr) - Z95 * se);
+            rrH = Math.exp(Math.log(rr) + Z95 * se);
+        }
+        double or = Double.NaN, orL = Double.NaN, orH = Double.NaN;
+        if (sR > 0 && sS > 0) {
+            or = sR / sS;
+            double var = sPR / (2 * sR * sR) + sPSQR / (2 * sR * sS) + sQS / (2 * sS * sS);
+            double se = Math.sqrt(var);
+            orL = Math.exp(Math.log(or) - Z95 * se);
+            orH = Math.exp(Math.log(or) + Z95 * se);
+        }
+        return new MantelHaenszel(rr, rrL, rrH, or, orL, orH, estratos);
+    }
+
+    private static void comprobar(int a, int b, int c, int d) {
+        if (a < 0 || b < 0 || c < 0 || d < 0)
+            throw new IllegalArgumentException("Celdas negativas en la tabla 2x2");
+    }
+}
@@ -3,6 +3,7 @@ package com.toxisafe.service;
 import com.toxisafe.dao.UsuarioDao;
 import com.toxisafe.model.Brote;
 import com.toxisafe.model.Usuario;
+import com.toxisafe.util.Texto;
 
 import java.sql.SQLException;
 import java.util.List;
@@ -24,7 +25,7 @@ public class UsuarioService {
         if (usuarioDao.findByUsername(username).isPresent()) {
             throw new IllegalArgumentException("El nombre de usuario ya existe.");
         }
-        String rolNorm = normalizaRol(rol);
+        String rolNorm = Texto.rol(rol);
         if (!ROLES_VALIDOS.contains(rolNorm)) {
             throw new IllegalArgumentException("Rol inválido: " + rol + ". Use uno de: " + ROLES_VALIDOS);
         }
@@ -62,7 +63,7 @@ public class UsuarioService {
     public void update(Usuario u) throws SQLException {
         if (u.getIdUsuario() == null || u.getIdUsuario().isBlank())
             throw new IllegalArgumentException("Id de usuario inválido.");
-        String rolNorm = normalizaRol(u.getRolUsuario());
+        String rolNorm = Texto.rol(u.getRolUsuario());
         if (!ROLES_VALIDOS.contains(rolNorm)) {
             throw new IllegalArgumentException("Rol inválido: " + u.getRolUsuario() + ". Use uno de: " + ROLES_VALIDOS);
         }
@@ -84,16 +85,6 @@ public class UsuarioService {
                     "ADMIN", "EPIDEMIOLOGO", "MIR_SALUD_PUBLICA", "ENCUESTADOR"
             ));
 
-    private static String normalizaRol(String r) {
-        if (r == null) return "";
-        String s = java.text.Normalizer.normalize(r.trim(), java.text.Normalizer.Form.NFD)
-                .replaceAll("\\p{M}", ""); // quita acentos
-        s = s.toUpperCase(java.util.Locale.ROOT).replace(' ', '_');
-        // alias habituales que pueden venir de la UI / docs
-        if (s.equals("EPIDEMIOLOG@")) s = "EPIDEMIOLOGO";
-        return s;
-    }
-
     /** Útil para poblar el combo en la UI */
     public java.util.List<String> rolesPermitidos() {
         return new java.util.ArrayList<>(ROLES_VALIDOS);
@@ -14,6 +14,7 @@ public class SyncChange {
     private String idRegistroAfectado;    // PK del registro
     private Map<String, Object> datosAntiguos; // null en INSERT
     private Map<String, Object> datosNuevos;   // null en DELETE
+    private String version;               // HLC del registro tras el cambio (null en cambios antiguos)
 
     public SyncChange() {}
 
@@ -34,4 +35,6 @@ public class SyncChange {
     public void setDatosAntiguos(Map<String, Object> datosAntiguos) { this.datosAntiguos = datosAntiguos; }
     public Map<String, Object> getDatosNuevos() { return datosNuevos; }
     public void setDatosNuevos(Map<String, Object> datosNuevos) { this.datosNuevos = datosNuevos; }
+    public String getVersion() { return version; }
+    public void setVersion(String version) { this.version = version; }
 }
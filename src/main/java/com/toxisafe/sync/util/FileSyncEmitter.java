@@ -7,9 +7,9 @@ import com.toxisafe.sync.SyncEmitter;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
@@ -17,11 +17,11 @@ import java.util.UUID;
 import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
-public class FileSyncEmitter implements SyncEmitter {
+public class FileSyncEmitter implements SyncEmitter, SyncChangeWriter {
 
     private final String instanceId;
     private final Path sharedDir; // usa una única carpeta (más simple)
-    private final ObjectMapper om = new ObjectMapper();
+    private final ObjectMapper om = SyncMappers.json();
     private final DateTimeFormatter fnameTs =
             DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS").withZone(ZoneOffset.UTC);
 
@@ -55,30 +55,31 @@ public class FileSyncEmitter implements SyncEmitter {
     }
 
     private SyncChange build(SyncChange.Op op, String tabla, String id, Map<String,Object> oldV, Map<String,Object> newV) {
-        SyncChange c = new SyncChange();
-        c.setIdCambio(UUID.randomUUID().toString());
-        c.setInstanciaOrigen(instanceId);
-        c.setTimestamp(Instant.now());
-        c.setTipoOperacion(op);
-        c.setNombreTabla(tabla);
-        c.setIdRegistroAfectado(id);
-        c.setDatosAntiguos(oldV);
-        c.setDatosNuevos(newV);
-        return c;
+        return SyncChanges.nuevo(instanceId, op, tabla, id, oldV, newV);
     }
 
     private void emitir(SyncChange c) {
         try {
-            String ts = fnameTs.format(c.getTimestamp());
-            String fname = ts + "-" + c.getIdCambio() + "-" + c.getInstanciaOrigen() + ".json";
-            Path tmp = sharedDir.resolve(fname + ".tmp");
-            Path dst = sharedDir.resolve(fname);
-
-            byte[] json = om.writerWithDefaultPrettyPrinter().writeValueAsBytes(c);
-            Files.write(tmp, json, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-            Files.move(tmp, dst, ATOMIC_MOVE, REPLACE_EXISTING);
+            escribir(c);
         } catch (Exception e) {
             e.printStackTrace(); // registra si tienes logger
         }
     }
+
+    /** Un archivo por cambio; se detiene en el primer error (los anteriores ya quedaron escritos). */
+    @Override
+    public void escribir(List<SyncChange> cambios) throws IOException {
+        for (SyncChange c : cambios) escribir(c);
+    }
+
+    private void escribir(SyncChange c) throws IOException {
+        String ts = fnameTs.format(c.getTimestamp());
+        String fname = ts + "-" + c.getIdCambio() + "-" + c.getInstanciaOrigen() + ".json";
+        Path tmp = sharedDir.resolve(fname + ".tmp");
+        Path dst = sharedDir.resolve(fname);
+
+        byte[] json = om.writerWithDefaultPrettyPrinter().writeValueAsBytes(c);
+        Files.write(tmp, json, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        Files.move(tmp, dst, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
 }
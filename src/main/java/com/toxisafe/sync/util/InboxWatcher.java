@@ -0,0 +1,211 @@
+package com.toxisafe.sync.util;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Disparador de la ingestión del inbox.
+ * - Con WatchService: cada archivo .json/.seg nuevo programa una pasada tras una breve pausa
+ *   sin eventos (agrupa ráfagas), con un máximo de espera desde el primer evento
+ * - Sondeo de respaldo con espera creciente: tras encontrar archivos vuelve al mínimo; sin
+ *   actividad se dobla hasta {@code maxSondeoMs}
+ * - Si el sistema de archivos no entrega eventos (o un sondeo encuentra archivos que ningún
+ *   evento anunció, típico de algunas carpetas de red) pasa a depender solo del sondeo
+ * Todas las pasadas se ejecutan en {@code ejecutor} (un hilo): nunca hay dos a la vez.
+ */
+final class InboxWatcher implements AutoCloseable {
+
+    static final long PAUSA_MS = 150L;          // silencio que cierra una ráfaga
+    static final long ESPERA_MAX_MS = 1_000L;   // tope desde el primer evento de la ráfaga
+    static final long SONDEO_MIN_MS = 500L;
+    static final long SONDEO_SEGURIDAD_MS = 60_000L; // con eventos fiables, solo por si acaso
+
+    private final Path dir;
+    private final Callable<Integer> pasada;     // devuelve nº de archivos resueltos
+    private final ScheduledExecutorService ejecutor;
+    private final long maxSondeoMs;
+
+    private final WatchService watch;           // null si no hay soporte
+    private final Thread vigia;
+    private volatile boolean eventosFiables;
+    private volatile boolean cerrado;
+    private volatile long ultimoEventoMs;
+    private boolean primeraHecha;               // solo lo toca el hilo de ejecutor
+
+    // Estado de planificación (bajo this)
+    private ScheduledFuture<?> proxima;
+    private long proximaEnMs;
+    private long primerEventoMs = -1;
+    private boolean porEvento;
+    private long intervaloMs = SONDEO_MIN_MS;
+
+    InboxWatcher(Path dir, Callable<Integer> pasada, ScheduledExecutorService ejecutor, long maxSondeoMs) {
+        this.dir = Objects.requireNonNull(dir, "dir");
+        this.pasada = Objects.requireNonNull(pasada, "pasada");
+        this.ejecutor = Objects.requireNonNull(ejecutor, "ejecutor");
+        this.maxSondeoMs = Math.max(SONDEO_MIN_MS, maxSondeoMs);
+
+        WatchService ws = null;
+        try {
+            ws = dir.getFileSystem().newWatchService();
+            dir.register(ws, ENTRY_CREATE, ENTRY_MODIFY);
+        } catch (IOException | UnsupportedOperationException e) {
+            System.err.println("SYNC: sin notificaciones de carpeta (" + e.getMessage() + "), se usa sondeo adaptativo");
+            cerrarSilencioso(ws);
+            ws = null;
+        }
+        this.watch = ws;
+        this.eventosFiables = ws != null;
+
+        if (ws != null) {
+            vigia = new Thread(this::vigilar, "toxisafe-sync-watch");
+            vigia.setDaemon(true);
+            vigia.start();
+        } else {
+            vigia = null;
+        }
+    }
+
+    /** Primera pasada inmediata (recoge lo acumulado mientras la app estaba cerrada). */
+    void start() {
+        programar(0L, false);
+    }
+
+    /** Fuerza una pasada lo antes posible (p.ej. "Sincronizar ahora"). */
+    void despertar() {
+        programar(0L, true);
+    }
+
+    boolean usaEventos() {
+        return eventosFiables;
+    }
+
+    @Override
+    public void close() {
+        cerrado = true;
+        synchronized (this) {
+            if (proxima != null) proxima.cancel(false);
+        }
+        cerrarSilencioso(watch); // desbloquea take() con ClosedWatchServiceException
+        if (vigia != null) vigia.interrupt();
+    }
+
+    /* ======================= Eventos ======================= */
+
+    private void vigilar() {
+        try {
+            while (!cerrado) {
+                WatchKey key = watch.take();
+                boolean relevante = false;
+                for (WatchEvent<?> ev : key.pollEvents()) {
+                    if (ev.kind() == OVERFLOW) {
+                        relevante = true;
+                    } else if (ev.context() instanceof Path p && esEntrada(p)) {
+                        relevante = true;
+                    }
+                }
+                if (relevante) alEvento();
+                if (!key.reset()) {
+                    System.err.println("SYNC: la carpeta " + dir + " dejó de estar vigilada, se usa sondeo adaptativo");
+                    degradar();
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException fin) {
+            // cierre
+        }
+    }
+
+    private static boolean esEntrada(Path p) {
+        String n = p.getFileName().toString();
+        return n.endsWith(".json") || n.endsWith(SegmentCodec.EXT_SELLADO);
+    }
+
+    private synchronized void alEvento() {
+        long ahora = System.currentTimeMillis();
+        ultimoEventoMs = ahora;
+        if (primerEventoMs < 0) primerEventoMs = ahora;
+        long espera = Math.max(0L, Math.min(PAUSA_MS, primerEventoMs + ESPERA_MAX_MS - ahora));
+        // Debounce: cada evento aplaza la pasada, salvo que ya toque por el tope de espera
+        if (proxima != null && porEvento && espera >= PAUSA_MS) {
+            proxima.cancel(false);
+            proxima = null;
+        }
+        programar(espera, true);
+    }
+
+    private void degradar() {
+        eventosFiables = false;
+        cerrarSilencioso(watch);
+        programar(SONDEO_MIN_MS, false);
+    }
+
+    /* ======================= Planificación ======================= */
+
+    /** Programa la siguiente pasada si es antes que la ya prevista. */
+    private synchronized void programar(long esperaMs, boolean evento) {
+        if (cerrado || ejecutor.isShutdown()) return;
+        long en = System.currentTimeMillis() + esperaMs;
+        if (proxima != null && !proxima.isDone()) {
+            if (proximaEnMs <= en) {
+                porEvento |= evento;
+                return;
+            }
+            proxima.cancel(false);
+        }
+        porEvento = evento;
+        proximaEnMs = en;
+        proxima = ejecutor.schedule(this::ejecutar, esperaMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void ejecutar() {
+        boolean evento;
+        synchronized (this) {
+            evento = porEvento;
+            porEvento = false;
+            primerEventoMs = -1;
+            proxima = null;
+        }
+        long inicio = System.currentTimeMillis();
+        boolean primera = !primeraHecha;
+        primeraHecha = true;
+        int resueltos = 0;
+        try {
+            resueltos = pasada.call();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        // La primera pasada recoge lo acumulado con la app cerrada; un evento reciente explica lo encontrado
+        if (!evento && !primera && resueltos > 0 && eventosFiables
+                && ultimoEventoMs < inicio - ESPERA_MAX_MS) {
+            // Un sondeo encontró archivos que no llegaron por eventos: la carpeta no notifica bien
+            System.err.println("SYNC: la carpeta " + dir + " no notifica todos los cambios, se usa sondeo adaptativo");
+            degradar();
+            return;
+        }
+
+        long siguiente;
+        synchronized (this) {
+            if (eventosFiables) {
+                siguiente = SONDEO_SEGURIDAD_MS;
+            } else {
+                intervaloMs = resueltos > 0 ? SONDEO_MIN_MS : Math.min(maxSondeoMs, intervaloMs * 2);
+                siguiente = intervaloMs;
+            }
+        }
+        programar(siguiente, false);
+    }
+
+    private static void cerrarSilencioso(WatchService ws) {
+        if (ws == null) return;
+        try { ws.close(); } catch (IOException ignore) { }
+    }
+}
@@ -0,0 +1,293 @@
+package com.toxisafe.sync.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.toxisafe.sync.SyncChange;
+import com.toxisafe.sync.SyncEmitter;
+import com.toxisafe.util.ConnectionPool;
+
+import java.io.IOException;
+import java.sql.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Outbox transaccional en la propia BD (tabla CAMBIOS_SALIENTES).
+ * - emit* inserta el cambio (CBOR) con la conexión escritora del pool, la misma que usan los
+ *   DAOs: dentro de {@link #enTransaccion} se confirma o se descarta junto con la escritura de dominio
+ * - Un hilo de envío lee lo pendiente en orden (seq) con una lectora, fusiona UPDATEs repetidos
+ *   y lo entrega al {@link SyncChangeWriter}; después lo marca como enviado
+ * - Si la carpeta compartida no está disponible, lo pendiente sigue en la tabla y se
+ *   reintenta en la siguiente vuelta (también tras reiniciar la app)
+ * - Los enviados se purgan pasados unos días (el ingestor ignora idCambio repetidos)
+ * - Con {@link VersionesRegistro}, cada cambio sale con la versión HLC del registro, anotada
+ *   en la misma transacción
+ */
+public class OutboxSyncEmitter implements SyncEmitter, AutoCloseable {
+
+    public static final long PERIODO_MS_DEFECTO = 5_000L;
+
+    private static final int MAX_LOTE = 500;
+    private static final Duration RETENCION_ENVIADOS = Duration.ofDays(7);
+    private static final long PERIODO_PURGA_MS = 3_600_000L;
+
+    private static final String SQL_ANOTAR =
+            "INSERT INTO CAMBIOS_SALIENTES(id_cambio,nombre_tabla,payload,creado) VALUES (?,?,?,?)";
+    private static final String SQL_PENDIENTES =
+            "SELECT seq,payload FROM CAMBIOS_SALIENTES WHERE enviado IS NULL ORDER BY seq LIMIT " + MAX_LOTE;
+    private static final String SQL_MARCAR =
+            "UPDATE CAMBIOS_SALIENTES SET enviado=? WHERE seq=?";
+    private static final String SQL_PURGAR =
+            "DELETE FROM CAMBIOS_SALIENTES WHERE enviado IS NOT NULL AND enviado < ?";
+
+    private final ConnectionPool pool;
+    private final SyncChangeWriter destino;
+    private final String instanceId;
+    private final VersionesRegistro versiones; // null = cambios sin versión
+    private final ObjectMapper cbor = SyncMappers.cbor();
+
+    private final ScheduledExecutorService envio = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "toxisafe-sync-envio");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean despertado = new AtomicBoolean();
+    private long ultimaPurgaMs;
+
+    public OutboxSyncEmitter(ConnectionPool pool, SyncChangeWriter destino, String instanceId) throws SQLException {
+        this(pool, destino, instanceId, null, PERIODO_MS_DEFECTO);
+    }
+
+    OutboxSyncEmitter(ConnectionPool pool, SyncChangeWriter destino, String instanceId,
+                      VersionesRegistro versiones) throws SQLException {
+        this(pool, destino, instanceId, versiones, PERIODO_MS_DEFECTO);
+    }
+
+    OutboxSyncEmitter(ConnectionPool pool, SyncChangeWriter destino, String instanceId,
+                      VersionesRegistro versiones, long periodoMs) throws SQLException {
+        this.pool = Objects.requireNonNull(pool, "pool");
+        this.destino = Objects.requireNonNull(destino, "destino");
+        this.instanceId = Objects.requireNonNull(instanceId, "instanceId");
+        this.versiones = versiones;
+        if (periodoMs <= 0) throw new IllegalArgumentException("Periodo de envío inválido");
+        ensureSalientesTable();
+
+        // Lo pendiente de sesiones anteriores sale en la primera vuelta
+        envio.scheduleWithFixedDelay(this::enviarPendientes, 0, periodoMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void emitInsert(String tabla, String idRegistro, Map<String, Object> nuevos) {
+        anotar(SyncChanges.nuevo(instanceId, SyncChange.Op.INSERT, tabla, idRegistro, null, nuevos));
+    }
+
+    /** Todas las filas salientes con un solo executeBatch y en una transacción (p.ej. importaciones). */
+    @Override
+    public void emitInserts(String tabla, Map<String, Map<String, Object>> nuevosPorId) {
+        List<SyncChange> cambios = new ArrayList<>(nuevosPorId.size());
+        nuevosPorId.forEach((id, nuevos) ->
+                cambios.add(SyncChanges.nuevo(instanceId, SyncChange.Op.INSERT, tabla, id, null, nuevos)));
+        anotar(cambios);
+    }
+
+    @Override
+    public void emitUpdate(String tabla, String idRegistro, Map<String, Object> antiguos, Map<String, Object> nuevos) {
+        anotar(SyncChanges.nuevo(instanceId, SyncChange.Op.UPDATE, tabla, idRegistro, antiguos, nuevos));
+    }
+
+    @Override
+    public void emitDelete(String tabla, String idRegistro, Map<String, Object> antiguos) {
+        anotar(SyncChanges.nuevo(instanceId, SyncChange.Op.DELETE, tabla, idRegistro, antiguos, null));
+    }
+
+    /**
+     * Escritura de dominio + anotación en CAMBIOS_SALIENTES en una sola transacción.
+     * La escritora queda en este hilo hasta el final; si ya tenía una transacción abierta, se une a ella.
+     */
+    @Override
+    public void enTransaccion(Accion accion) throws SQLException {
+        try (Connection connection = pool.writer()) {
+            if (!connection.getAutoCommit()) {
+                accion.ejecutar();
+                return;
+            }
+            connection.setAutoCommit(false);
+            try {
+                accion.ejecutar();
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+        despertar();
+    }
+
+    /** Cambios anotados aún sin entregar a la carpeta compartida. */
+    public int pendientes() throws SQLException {
+        try (Connection connection = pool.reader();
+             Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM CAMBIOS_SALIENTES WHERE enviado IS NULL")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /** Último intento de envío y cierre; lo no entregado queda en la tabla para el próximo arranque. */
+    @Override
+    public void close() {
+        envio.shutdown();
+        try {
+            envio.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        enviarPendientes();
+        if (destino instanceof AutoCloseable ac) {
+            try { ac.close(); } catch (Exception e) { e.printStackTrace(); }
+        }
+    }
+
+    /* ======================= Anotación ======================= */
+
+    private void anotar(SyncChange c) {
+        anotar(List.of(c));
+    }
+
+    private void anotar(List<SyncChange> cambios) {
+        if (cambios.isEmpty()) return;
+        try {
+            // Versión + fila saliente juntas (se une a la transacción del servicio si la hay)
+            enTransaccion(() -> {
+                if (versiones != null) {
+                    for (SyncChange c : cambios) versiones.anotarLocal(c);
+                }
+                try (Connection connection = pool.writer();
+                     PreparedStatement ps = connection.prepareStatement(SQL_ANOTAR)) {
+                    String ahora = Instant.now().toString();
+                    for (SyncChange c : cambios) {
+                        ps.setString(1, c.getIdCambio());
+                        ps.setString(2, c.getNombreTabla());
+                        ps.setBytes(3, cbor.writeValueAsBytes(c));
+                        ps.setString(4, ahora);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                } catch (IOException e) {
+                    throw new SQLException("No se pudo serializar el cambio", e);
+                }
+            });
+        } catch (SQLException e) {
+            // Dentro de enTransaccion revierte también la escritura de dominio
+            throw new IllegalStateException("No se pudo anotar el cambio de sincronización", e);
+        }
+    }
+
+    private void despertar() {
+        if (despertado.compareAndSet(false, true) && !envio.isShutdown()) {
+            try {
+                envio.execute(this::enviarPendientes);
+            } catch (RuntimeException e) {
+                despertado.set(false); // cerrándose: close() hace el último envío
+            }
+        }
+    }
+
+    /* ======================= Hilo de envío ======================= */
+
+    private void enviarPendientes() {
+        despertado.set(false);
+        try {
+            while (true) {
+                List<Long> seqs = new ArrayList<>();
+                List<SyncChange> lote = new ArrayList<>();
+                leerPendientes(seqs, lote);
+                if (seqs.isEmpty()) break;
+
+                if (!lote.isEmpty()) destino.escribir(SyncChanges.fusionar(lote));
+                marcarEnviados(seqs);
+                if (seqs.size() < MAX_LOTE) break;
+            }
+            purgarSiToca();
+        } catch (IOException e) {
+            System.err.println("SYNC: carpeta compartida no disponible (" + e.getMessage() + "), se reintentará");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void leerPendientes(List<Long> seqs, List<SyncChange> lote) throws SQLException {
+        try (Connection connection = pool.reader();
+             Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery(SQL_PENDIENTES)) {
+            while (rs.next()) {
+                long seq = rs.getLong(1);
+                seqs.add(seq);
+                try {
+                    lote.add(cbor.readValue(rs.getBytes(2), SyncChange.class));
+                } catch (IOException e) {
+                    // Registro ilegible: se marca como enviado para no bloquear la cola
+                    System.err.println("SYNC: cambio saliente ilegible (seq=" + seq + "): " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void marcarEnviados(List<Long> seqs) throws SQLException {
+        try (Connection connection = pool.writer();
+             PreparedStatement ps = connection.prepareStatement(SQL_MARCAR)) {
+            connection.setAutoCommit(false);
+            try {
+                String ahora = Instant.now().toString();
+                for (Long seq : seqs) {
+                    ps.setString(1, ahora);
+                    ps.setLong(2, seq);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private void purgarSiToca() throws SQLException {
+        long ahora = System.currentTimeMillis();
+        if (ahora - ultimaPurgaMs < PERIODO_PURGA_MS) return;
+        ultimaPurgaMs = ahora;
+        try (Connection connection = pool.writer();
+             PreparedStatement ps = connection.prepareStatement(SQL_PURGAR)) {
+            ps.setString(1, Instant.now().minus(RETENCION_ENVIADOS).toString());
+            ps.executeUpdate();
+        }
+    }
+
+    private void ensureSalientesTable() throws SQLException {
+        try (Connection connection = pool.writer();
+             Statement st = connection.createStatement()) {
+            st.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS CAMBIOS_SALIENTES (
+                    seq INTEGER PRIMARY KEY AUTOINCREMENT,
+                    id_cambio TEXT NOT NULL UNIQUE,
+                    nombre_tabla TEXT NOT NULL,
+                    payload BLOB NOT NULL,
+                    creado TEXT NOT NULL,
+                    enviado TEXT
+                )
+            """);
+            st.executeUpdate("""
+                CREATE INDEX IF NOT EXISTS idx_salientes_pendientes
+                    ON CAMBIOS_SALIENTES(seq) WHERE enviado IS NULL
+            """);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.toxisafe.sync.util;
+
+import java.util.Objects;
+
+/**
+ * Reloj lógico híbrido (HLC) de una instancia.
+ * Versión = milisegundos de pared + contador + id de instancia, codificada con ancho fijo
+ * ("000001760000000000-00003-&lt;instancia&gt;") para que comparar cadenas sea comparar versiones.
+ * Tras {@link #recibir} toda versión local nueva es mayor que la recibida, aunque el reloj
+ * de pared de este equipo vaya por detrás.
+ * - El contador no pasa de {@link #MAX_CONTADOR} (5 cifras): al llegar se avanza 1 ms y vuelve a 0
+ * - Una versión con más de {@link #MAX_DERIVA_MS} de adelanto sobre el reloj de pared (equipo
+ *   con la hora mal, dato corrupto) no mueve el reloj: si no, todas las versiones locales
+ *   quedarían ancladas a ese futuro
+ */
+final class RelojHlc {
+
+    static final int MAX_CONTADOR = 99_999;
+    static final long MAX_DERIVA_MS = 60L * 60 * 1000;
+
+    private final String instancia;
+    private long ms;
+    private int contador;
+
+    RelojHlc(String instancia) {
+        this.instancia = Objects.requireNonNull(instancia, "instancia");
+    }
+
+    /** Nueva versión local, estrictamente mayor que cualquiera emitida o recibida antes. */
+    synchronized String tick() {
+        long ahora = System.currentTimeMillis();
+        if (ahora > ms) {
+            ms = ahora;
+            contador = 0;
+        } else if (contador < MAX_CONTADOR) {
+            contador++;
+        } else {
+            ms++; // contador agotado en este ms: sigue en el siguiente (ancho fijo, orden de cadenas intacto)
+            contador = 0;
+        }
+        return formatear(ms, contador, instancia);
+    }
+
+    /** Incorpora una versión ajena (o persistida) para no emitir nunca por debajo de ella. */
+    synchronized void recibir(String version) {
+        if (version == null) return;
+        long vms;
+        int vc;
+        try {
+            vms = Long.parseLong(version.substring(0, 18));
+            vc = Integer.parseInt(version.substring(19, version.indexOf('-', 19)));
+        } catch (RuntimeException e) {
+            return; // formato desconocido: no mueve el reloj
+        }
+        if (vms > System.currentTimeMillis() + MAX_DERIVA_MS) {
+            System.err.println("SYNC: versión " + version + " adelantada más de " + (MAX_DERIVA_MS / 60_000)
+                    + " min respecto al reloj local; se ignora para el reloj HLC");
+            return;
+        }
+        vc = Math.min(vc, MAX_CONTADOR);
+        if (vms > ms || (vms == ms && vc > contador)) {
+            ms = vms;
+            contador = vc;
+        }
+    }
+
+    static String formatear(long ms, int contador, String instancia) {
+        return String.format("%018d-%05d-%s", ms, contador, instancia);
+    }
+
+    /** Compara versiones (null = sin versión, menor que cualquiera). */
+    static int comparar(String a, String b) {
+        if (a == null) return b == null ? 0 : -1;
+        if (b == null) return 1;
+        return a.compareTo(b);
+    }
+}
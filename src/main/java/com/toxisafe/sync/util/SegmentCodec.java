@@ -0,0 +1,179 @@
+package com.toxisafe.sync.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.toxisafe.sync.SyncChange;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Formato de segmento de cambios (.seg):
+ * <pre>
+ *   cabecera : "TXSG" + versión (1 byte), sin comprimir
+ *   cuerpo   : flujo DEFLATE (raw) con SYNC_FLUSH tras cada registro
+ *   registro : longitud (int BE) + SyncChange en CBOR + CRC32 del payload (int BE)
+ * </pre>
+ * La compresión comparte diccionario entre registros (claves, UUID de instancia y de brote),
+ * y el SYNC_FLUSH permite leer todos los registros completos aunque el segmento no se cerrara.
+ * Un registro truncado o con CRC incorrecto marca el final legible del segmento.
+ */
+final class SegmentCodec {
+
+    static final String EXT_SELLADO = ".seg";
+    static final String EXT_ABIERTO = ".seg.part";
+
+    private static final byte[] MAGIC = {'T', 'X', 'S', 'G'};
+    private static final byte VERSION = 1;
+    static final int TAMANO_CABECERA = MAGIC.length + 1;
+    private static final int MAX_REGISTRO = 16 * 1024 * 1024;
+
+    private SegmentCodec() {}
+
+    static byte[] cabecera() {
+        byte[] h = new byte[TAMANO_CABECERA];
+        System.arraycopy(MAGIC, 0, h, 0, MAGIC.length);
+        h[MAGIC.length] = VERSION;
+        return h;
+    }
+
+    /** Registro completo (longitud + payload + CRC) listo para anexar. */
+    static byte[] registro(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(payload.length + 8);
+        try (DataOutputStream out = new DataOutputStream(bos)) {
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.writeInt((int) crc.getValue());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // no ocurre en memoria
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * Escritor de un segmento nuevo (CREATE_NEW). {@link #flush()} hace SYNC_FLUSH: todo lo anexado
+     * queda legible en el archivo aunque luego no se selle.
+     */
+    static final class Escritor implements Closeable {
+        private final FileChannel canal;
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final DeflaterOutputStream salida;
+
+        Escritor(Path archivo) throws IOException {
+            this.canal = FileChannel.open(archivo, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            ByteBuffer h = ByteBuffer.wrap(cabecera());
+            while (h.hasRemaining()) canal.write(h);
+            this.salida = new DeflaterOutputStream(Channels.newOutputStream(canal), deflater, 8 * 1024, true);
+        }
+
+        void anexar(SyncChange c, ObjectMapper cbor) throws IOException {
+            salida.write(registro(cbor.writeValueAsBytes(c)));
+        }
+
+        void flush() throws IOException { salida.flush(); }
+
+        /** Bytes ya escritos en el archivo (comprimidos). */
+        long tamano() throws IOException { return canal.position(); }
+
+        /** Cierra el flujo DEFLATE, hace fsync y cierra. */
+        void sellar() throws IOException {
+            try {
+                salida.finish();
+                canal.force(true);
+            } finally {
+                close();
+            }
+        }
+
+        @Override public void close() throws IOException {
+            deflater.end();
+            canal.close();
+        }
+    }
+
+    /**
+     * Lector en streaming de un segmento: devuelve los cambios en orden con {@link #siguiente()}.
+     * Un registro truncado o corrupto termina la lectura y deja {@link #integro()} a false
+     * (los registros anteriores ya se entregaron).
+     */
+    static final class Lector implements Closeable {
+        private final InputStream archivo;
+        private final Inflater inflater = new Inflater(true);
+        private DataInputStream in;
+        private final ObjectMapper cbor;
+        private final CRC32 crc = new CRC32();
+        private boolean integro = true;
+        private boolean fin;
+
+        Lector(Path segmento, ObjectMapper cbor) throws IOException {
+            this.archivo = new BufferedInputStream(Files.newInputStream(segmento), 64 * 1024);
+            this.cbor = cbor;
+            byte[] h = archivo.readNBytes(TAMANO_CABECERA);
+            boolean ok = h.length == TAMANO_CABECERA && h[MAGIC.length] == VERSION;
+            for (int i = 0; ok && i < MAGIC.length; i++) ok = h[i] == MAGIC[i];
+            if (!ok) { corrupto(); return; }
+            this.in = new DataInputStream(new InflaterInputStream(archivo, inflater, 8 * 1024));
+        }
+
+        /** Siguiente cambio o null al terminar (fin limpio o registro inválido). */
+        SyncChange siguiente() throws IOException {
+            if (fin) return null;
+            int len;
+            try {
+                len = in.readInt();
+            } catch (EOFException finLimpio) {
+                // fin del flujo en frontera de registro (sellado o .part de una sesión anterior)
+                fin = true;
+                return null;
+            } catch (IOException datosCorruptos) {
+                return corrupto();
+            }
+            if (len < 0 || len > MAX_REGISTRO) return corrupto();
+
+            byte[] payload = new byte[len];
+            int esperado;
+            try {
+                in.readFully(payload);
+                esperado = in.readInt();
+            } catch (IOException truncadoOCorrupto) {
+                return corrupto();
+            }
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != esperado) return corrupto();
+
+            try {
+                return cbor.readValue(payload, SyncChange.class);
+            } catch (IOException e) {
+                return corrupto();
+            }
+        }
+
+        boolean integro() { return integro; }
+
+        private SyncChange corrupto() {
+            integro = false;
+            fin = true;
+            return null;
+        }
+
+        @Override public void close() throws IOException {
+            try {
+                archivo.close();
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.toxisafe.sync.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.toxisafe.sync.SyncChange;
+import com.toxisafe.sync.SyncEmitter;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Emisor alternativo a {@link FileSyncEmitter}: en vez de un JSON por cambio, anexa los cambios
+ * (CBOR con longitud y CRC32, comprimidos, ver {@link SegmentCodec}) a un segmento abierto "*.seg.part".
+ * - Se sella (fsync + rename atómico a "*.seg") al superar un tamaño o una antigüedad
+ * - Solo los segmentos sellados son visibles para SharedFolderIngestor
+ * - Al arrancar, sella los ".part" de esta instancia que quedaran de una sesión anterior
+ *   (el lector tolera una cola truncada)
+ */
+public class SegmentSyncEmitter implements SyncEmitter, SyncChangeWriter, AutoCloseable {
+
+    public static final long TAMANO_SELLADO_DEFECTO = 1L << 20;   // 1 MiB
+    public static final long EDAD_SELLADO_MS_DEFECTO = 30_000L;   // 30 s
+
+    private final String instanceId;
+    private final Path sharedDir;
+    private final long tamanoSellado;
+    private final long edadSelladoMs;
+    private final ObjectMapper cbor = SyncMappers.cbor();
+    private final DateTimeFormatter fnameTs =
+            DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS").withZone(ZoneOffset.UTC);
+    private final ScheduledExecutorService sellador = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "toxisafe-sync-segmentos");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Segmento abierto (null si no hay)
+    private SegmentCodec.Escritor abierto;
+    private Path abiertoPath;
+    private long abiertoEnMs;
+    private int secuencia;
+
+    public SegmentSyncEmitter(Path sharedDir, String instanceId) throws IOException {
+        this(sharedDir, instanceId, TAMANO_SELLADO_DEFECTO, EDAD_SELLADO_MS_DEFECTO);
+    }
+
+    public SegmentSyncEmitter(Path sharedDir, String instanceId, long tamanoSellado, long edadSelladoMs) throws IOException {
+        this.instanceId = Objects.requireNonNull(instanceId, "instanceId");
+        this.sharedDir = Objects.requireNonNull(sharedDir, "sharedDir");
+        if (tamanoSellado <= 0 || edadSelladoMs <= 0) throw new IllegalArgumentException("Umbrales de sellado inválidos");
+        this.tamanoSellado = tamanoSellado;
+        this.edadSelladoMs = edadSelladoMs;
+        Files.createDirectories(sharedDir);
+
+        sellarHuerfanos();
+        long periodo = Math.max(1_000L, edadSelladoMs / 2);
+        sellador.scheduleWithFixedDelay(this::sellarSiCaducado, periodo, periodo, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void emitInsert(String tabla, String idRegistro, Map<String, Object> nuevos) {
+        emitir(build(SyncChange.Op.INSERT, tabla, idRegistro, null, nuevos));
+    }
+
+    @Override
+    public void emitUpdate(String tabla, String idRegistro, Map<String, Object> antiguos, Map<String, Object> nuevos) {
+        emitir(build(SyncChange.Op.UPDATE, tabla, idRegistro, antiguos, nuevos));
+    }
+
+    @Override
+    public void emitDelete(String tabla, String idRegistro, Map<String, Object> antiguos) {
+        emitir(build(SyncChange.Op.DELETE, tabla, idRegistro, antiguos, null));
+    }
+
+    private SyncChange build(SyncChange.Op op, String tabla, String id, Map<String,Object> oldV, Map<String,Object> newV) {
+        return SyncChanges.nuevo(instanceId, op, tabla, id, oldV, newV);
+    }
+
+    private void emitir(SyncChange c) {
+        try {
+            escribir(List.of(c));
+        } catch (Exception e) {
+            e.printStackTrace(); // registra si tienes logger
+        }
+    }
+
+    /** Anexa los cambios al segmento abierto con un único SYNC_FLUSH al final. */
+    @Override
+    public synchronized void escribir(List<SyncChange> cambios) throws IOException {
+        if (cambios.isEmpty()) return;
+        if (abierto == null) abrir();
+        for (SyncChange c : cambios) abierto.anexar(c, cbor);
+        abierto.flush(); // SYNC_FLUSH: los registros quedan completos en el archivo
+        if (abierto.tamano() >= tamanoSellado) sellar();
+    }
+
+    /** Sella el segmento abierto ahora (p.ej. botón "Sincronizar ahora"). */
+    public synchronized void flush() {
+        try {
+            sellar();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void close() {
+        sellador.shutdownNow();
+        flush();
+    }
+
+    /* ======================= Segmentos ======================= */
+
+    private void abrir() throws IOException {
+        String fname = fnameTs.format(Instant.now()) + "-" + instanceId + "-" + String.format("%06d", secuencia++)
+                + SegmentCodec.EXT_ABIERTO;
+        abiertoPath = sharedDir.resolve(fname);
+        abierto = new SegmentCodec.Escritor(abiertoPath);
+        abiertoEnMs = System.currentTimeMillis();
+    }
+
+    private void sellar() throws IOException {
+        if (abierto == null) return;
+        try {
+            abierto.sellar();
+        } finally {
+            abierto = null;
+        }
+        Files.move(abiertoPath, selladoDe(abiertoPath), ATOMIC_MOVE, REPLACE_EXISTING);
+        abiertoPath = null;
+    }
+
+    private synchronized void sellarSiCaducado() {
+        if (abierto == null || System.currentTimeMillis() - abiertoEnMs < edadSelladoMs) return;
+        flush();
+    }
+
+    /** ".part" propios de una ejecución anterior (cierre abrupto): se publican tal cual. */
+    private void sellarHuerfanos() {
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(sharedDir, "*-" + instanceId + "-*" + SegmentCodec.EXT_ABIERTO)) {
+            for (Path p : ds) {
+                try {
+                    Files.move(p, selladoDe(p), ATOMIC_MOVE, REPLACE_EXISTING);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static Path selladoDe(Path part) {
+        String n = part.getFileName().toString();
+        return part.resolveSibling(n.substring(0, n.length() - SegmentCodec.EXT_ABIERTO.length()) + SegmentCodec.EXT_SELLADO);
+    }
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.toxisafe.dao.*;
 import com.toxisafe.model.*;
 import com.toxisafe.sync.SyncChange;
+import com.toxisafe.util.ConnectionPool;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -22,10 +23,15 @@ import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
  * Módulo de sincronización por carpeta compartida (RF7.*).
  * - La capa de servicios llama a emitInsert/emitUpdate/emitDelete tras persistir en BD (RF7.2/RF7.3).
  * - Un planificador escanea periódicamente la carpeta, consume cambios ajenos y los aplica (RF7.4).
- * - Resolución de conflictos: last-writer-wins por timestamp del cambio (RF7.5). Si quieres,
- *   luego añadimos comparación con updated_at por tabla.
- * - Registra en CAMBIOS_PROCESADOS para no reprocesar (RF7.6).
- * - Limpieza de archivos antiguos (RF7.7).
+ * - Resolución de conflictos (RF7.5): con versiones (ver {@link #setVersiones}) gana, columna a columna,
+ *   la versión HLC más alta y los cambios obsoletos se descartan; sin ellas, last-writer-wins por orden.
+ * - Registra en CAMBIOS_PROCESADOS para no reprocesar (RF7.6). Los archivos aplicados se quedan en el
+ *   inbox (otros equipos o una instancia nueva pueden necesitarlos) hasta que SyncCompactor los pliega.
+ * - Aplica los archivos pendientes por lotes en una transacción (ver {@link #setTamanoLote}).
+ * - Lee tanto archivos JSON sueltos como segmentos binarios .seg (ver SegmentSyncEmitter).
+ * - Antes del inbox aplica el último checkpoint de compactación si aún no lo ha hecho (ver SyncCompactor):
+ *   una instancia nueva arranca de él y solo reproduce la cola.
+ * - Limpieza de archivos en cuarentena antiguos (RF7.7).
  */
 public class SharedFolderIngestor implements AutoCloseable {
 
@@ -33,14 +39,16 @@ public class SharedFolderIngestor implements AutoCloseable {
     private final Path sharedDir;       // p.ej. \\SERVIDOR\TOXISAFE\cambios
     private final Path outboxDir;       // sharedDir/pendientes
     private final Path inboxDir;        // sharedDir/entrantes (se puede usar el mismo sharedDir)
+    private final Path checkpointsDir;  // sharedDir/checkpoints (SyncCompactor)
 
-    private final ObjectMapper om = new ObjectMapper();
+    private final ObjectMapper om = SyncMappers.json();
+    private final ObjectMapper cbor = SyncMappers.cbor();
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
         Thread t = new Thread(r, "toxisafe-sync");
         t.setDaemon(true);
         return t;
     });
-    private final Connection connection; // para CAMBIOS_PROCESADOS y aplicar cambios
+    private final ConnectionPool pool; // CAMBIOS_PROCESADOS y transacciones de aplicación (escritora)
 
     // DAOs (aplicación de cambios). Pon aquí los que necesites consumir:
     private final BroteDao broteDao;
@@ -53,9 +61,17 @@ public class SharedFolderIngestor implements AutoCloseable {
     private final InformeDao informeDao;
     private final IngestaPersonaExpuestaDao ingestaPersonaExpuestaDao;
 
+    // Tamaño de lote de ingestión (configurable con -Dtoxisafe.sync.lote=N)
+    private static final int MAX_LOTE = 500; // < límite de parámetros de SQLite en el IN (...)
+    private volatile int tamanoLote = Math.max(1, Math.min(MAX_LOTE, Integer.getInteger("toxisafe.sync.lote", 200)));
+
+    private int resueltos; // archivos resueltos en la pasada en curso (hilo de consumo)
+    private volatile VersionesRegistro versiones; // null = aplicar tal cual
+    private final Set<String> yaAplicados = new HashSet<>(); // archivos del inbox ya resueltos en esta sesión
+
     private final DateTimeFormatter fnameTs = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS").withZone(ZoneOffset.UTC);
 
-    public SharedFolderIngestor(Connection connection,
+    public SharedFolderIngestor(ConnectionPool pool,
                                 Path sharedDir,
                                 String instanceId,
                                 // DAOs para aplicar cambios:
@@ -68,12 +84,13 @@ public class SharedFolderIngestor implements AutoCloseable {
                                 BroteEncuestadorDao broteEncuestadorDao,
                                 InformeDao informeDao,
                                 IngestaPersonaExpuestaDao ingestaPersonaExpuestaDao) throws SQLException, IOException {
-        this.connection = connection;
+        this.pool = Objects.requireNonNull(pool, "pool");
         this.instanceId = Objects.requireNonNull(instanceId, "instanceId");
         this.sharedDir = Objects.requireNonNull(sharedDir, "sharedDir");
 
         this.outboxDir = sharedDir.resolve("outbox");
         this.inboxDir  = sharedDir.resolve("inbox"); // si prefieres una única carpeta, usa sharedDir
+        this.checkpointsDir = sharedDir.resolve("checkpoints");
 
         Files.createDirectories(outboxDir);
         Files.createDirectories(inboxDir);
@@ -89,6 +106,14 @@ public class SharedFolderIngestor implements AutoCloseable {
         this.ingestaPersonaExpuestaDao = ingestaPersonaExpuestaDao;
 
         ensureProcesadosTable();
+        ensureCheckpointsTable();
+    }
+
+    /** Cambios por transacción en consumeOnce (1 = un commit por archivo, como antes). */
+    public void setTamanoLote(int tamanoLote) {
+        if (tamanoLote < 1 || tamanoLote > MAX_LOTE)
+            throw new IllegalArgumentException("Tamaño de lote fuera de rango (1.." + MAX_LOTE + ")");
+        this.tamanoLote = tamanoLote;
     }
 
     public void start(long periodSeconds) {
@@ -101,60 +126,336 @@ public class SharedFolderIngestor implements AutoCloseable {
 
     /* ======================= CONSUMO (loop) ======================= */
 
+    /** Resolución por versión de registro (la misma instancia que usa el emisor local). */
+    void setVersiones(VersionesRegistro versiones) {
+        this.versiones = versiones;
+    }
+
+    /** Directorio que se consume (para vigilarlo desde SyncService). */
+    Path inboxDir() {
+        return inboxDir;
+    }
+
+    /** Directorio de checkpoints de compactación. */
+    Path checkpointsDir() {
+        return checkpointsDir;
+    }
+
     private void consumeOnceSafe() {
         try { consumeOnce(); }
         catch (Exception e) { e.printStackTrace(); }
     }
 
-    void consumeOnce() throws IOException, SQLException {
-        try (DirectoryStream<Path> ds = Files.newDirectoryStream(inboxDir, "*.json")) {
-            List<Path> files = new ArrayList<>();
-            for (Path p : ds) files.add(p);
-            files.sort(Comparator.comparing(Path::getFileName));
+    /** Archivo de entrada (JSON o segmento) y cuántos de sus cambios quedan por resolver. */
+    private static final class Origen {
+        final Path archivo;
+        int pendientes;     // cambios entregados al lote y aún sin confirmar
+        boolean leido;      // ya se entregaron todos sus cambios
+        boolean fallo;      // algún cambio no se pudo aplicar -> se conserva para reintentar
+        boolean corrupto;   // segmento con cola ilegible -> .bad cuando termine
+        Origen(Path archivo) { this.archivo = archivo; }
+    }
 
-            for (Path f : files) {
+    private static final class Pendiente {
+        final SyncChange cambio;
+        final Origen origen;
+        Pendiente(SyncChange cambio, Origen origen) { this.cambio = cambio; this.origen = origen; }
+    }
+
+    /** Una pasada por el inbox; devuelve cuántos archivos se resolvieron (aplicados, propios o .bad). */
+    int consumeOnce() throws IOException, SQLException {
+        resueltos = 0;
+        Set<String> cubiertos = checkpointAlDia();
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(inboxDir, "*.{json,seg}")) {
+            for (Path p : ds) {
+                // Ya plegado en el checkpoint (el compactador no llegó a borrarlo)
+                if (cubiertos.contains(p.getFileName().toString())) {
+                    Files.deleteIfExists(p);
+                    resueltos++;
+                    continue;
+                }
+                files.add(p);
+            }
+        }
+        // Lo ya aplicado no se vuelve a leer (y se olvida lo que el compactador retiró)
+        Set<String> presentes = new HashSet<>();
+        for (Path p : files) presentes.add(p.getFileName().toString());
+        yaAplicados.retainAll(presentes);
+        files.removeIf(p -> yaAplicados.contains(p.getFileName().toString()));
+        // Nombres con prefijo de timestamp: JSON y segmentos se intercalan en orden
+        files.sort(Comparator.comparing(Path::getFileName));
+
+        List<Pendiente> buffer = new ArrayList<>(tamanoLote);
+        List<Origen> abiertos = new ArrayList<>();
+
+        for (Path f : files) {
+            Origen o = new Origen(f);
+            if (f.getFileName().toString().endsWith(SegmentCodec.EXT_SELLADO)) {
+                abiertos.add(o);
+                try (SegmentCodec.Lector lector = new SegmentCodec.Lector(f, cbor)) {
+                    for (SyncChange c; (c = lector.siguiente()) != null; ) {
+                        encolar(c, o, buffer);
+                        if (buffer.size() >= tamanoLote) vaciar(buffer, abiertos);
+                    }
+                    o.corrupto = !lector.integro();
+                }
+            } else {
                 SyncChange c;
                 try {
                     c = om.readValue(Files.readAllBytes(f), SyncChange.class);
                 } catch (Exception e) {
                     // archivo corrupto -> muévelo a .bad
                     Files.move(f, f.resolveSibling(f.getFileName().toString() + ".bad"), REPLACE_EXISTING);
+                    resueltos++;
                     continue;
                 }
-                if (instanceId.equals(c.getInstanciaOrigen())) {
-                    // propio -> opcionalmente eliminar
-                    Files.deleteIfExists(f);
-                    continue;
-                }
-                if (yaProcesado(c.getIdCambio())) {
-                    Files.deleteIfExists(f);
-                    continue;
+                abiertos.add(o);
+                encolar(c, o, buffer);
+            }
+            o.leido = true;
+            if (buffer.size() >= tamanoLote) vaciar(buffer, abiertos);
+        }
+        vaciar(buffer, abiertos);
+        return resueltos;
+    }
+
+    private void encolar(SyncChange c, Origen o, List<Pendiente> buffer) {
+        // propio -> se descarta (el archivo queda en el inbox para el compactador)
+        if (instanceId.equals(c.getInstanciaOrigen())) return;
+        o.pendientes++;
+        buffer.add(new Pendiente(c, o));
+    }
+
+    private void vaciar(List<Pendiente> buffer, List<Origen> abiertos) throws IOException, SQLException {
+        if (!buffer.isEmpty()) {
+            consumirLote(buffer);
+            buffer.clear();
+        }
+        // Archivos completamente resueltos: se quedan para el compactador (o .bad si el segmento tenía cola corrupta)
+        for (Iterator<Origen> it = abiertos.iterator(); it.hasNext(); ) {
+            Origen o = it.next();
+            if (!o.leido || o.pendientes > 0) continue;
+            it.remove();
+            if (o.fallo) continue;
+            resueltos++;
+            if (o.corrupto) {
+                Files.move(o.archivo, o.archivo.resolveSibling(o.archivo.getFileName().toString() + ".bad"), REPLACE_EXISTING);
+            } else {
+                yaAplicados.add(o.archivo.getFileName().toString());
+            }
+        }
+    }
+
+    /**
+     * Aplica un lote de cambios (en orden) en UNA transacción:
+     * - una sola consulta para saber qué id_cambio ya están en CAMBIOS_PROCESADOS
+     * - INSERT de procesados preparado una vez y ejecutado en batch
+     * - un único commit; si algo falla, rollback y se reintenta cambio a cambio
+     *   para que un cambio defectuoso no bloquee al resto.
+     */
+    private void consumirLote(List<Pendiente> lote) throws SQLException {
+        // Ya procesados (una consulta por lote); también duplicados dentro del propio lote
+        Set<String> vistos = procesadosDe(lote);
+        List<Pendiente> pendientes = new ArrayList<>(lote.size());
+        for (Pendiente p : lote) {
+            if (!vistos.add(p.cambio.getIdCambio())) {
+                p.origen.pendientes--;
+                continue;
+            }
+            pendientes.add(p);
+        }
+        if (pendientes.isEmpty()) return;
+
+        // Transacción única para el lote (la escritora queda en este hilo: los DAOs escriben dentro)
+        boolean ok = false;
+        try (Connection connection = pool.writer();
+             PreparedStatement reg = connection.prepareStatement(SQL_REGISTRAR)) {
+            connection.setAutoCommit(false);
+            try {
+                for (Pendiente p : pendientes) {
+                    aplicarCambio(p.cambio); // last-writer-wins por timestamp de cambio (ver nota abajo)
+                    bindProcesado(reg, p.cambio);
+                    reg.addBatch();
                 }
+                reg.executeBatch();
+                connection.commit();
+                ok = true;
+            } catch (Exception e) {
+                System.err.println("SYNC: lote de " + pendientes.size() + " cambios revertido, se aplica cambio a cambio");
+                e.printStackTrace();
+                connection.rollback();
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
 
-                // Transaccional
-                boolean ok = false;
-                try {
-                    connection.setAutoCommit(false);
-                    aplicarCambio(c); // last-writer-wins por timestamp de cambio (ver nota abajo)
-                    registrarProcesado(c);
-                    connection.commit();
-                    ok = true;
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    connection.rollback();
-                } finally {
-                    connection.setAutoCommit(true);
-                    if (ok) Files.deleteIfExists(f);
+        if (ok) {
+            for (Pendiente p : pendientes) {
+                p.origen.pendientes--;
+                SyncEvents.publicar(p.cambio); // oyentes locales (cachés), ya confirmado en BD
+            }
+            return;
+        }
+
+        // Fallback: cambio a cambio (aísla el que falla)
+        for (Pendiente p : pendientes) {
+            if (!aplicarIndividual(p.cambio)) p.origen.fallo = true;
+            p.origen.pendientes--;
+        }
+    }
+
+    private boolean aplicarIndividual(SyncChange c) throws SQLException {
+        if (yaProcesado(c.getIdCambio())) return true;
+
+        // Transaccional
+        boolean ok = false;
+        try (Connection connection = pool.writer()) {
+            connection.setAutoCommit(false);
+            try {
+                aplicarCambio(c);
+                registrarProcesado(c);
+                connection.commit();
+                ok = true;
+            } catch (Exception e) {
+                e.printStackTrace();
+                connection.rollback();
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+        if (ok) SyncEvents.publicar(c); // oyentes locales (cachés), ya confirmado en BD
+        return ok;
+    }
+
+    /* ======================= Checkpoints ======================= */
+
+    // Último checkpoint ya comprobado en esta sesión y los archivos del inbox que cubre
+    private String checkpointVigente;
+    private Set<String> cubiertosVigente = Set.of();
+
+    /**
+     * Aplica el checkpoint más reciente si esta instancia no lo ha hecho ya.
+     * Devuelve los nombres de archivo del inbox que cubre (no hay que reproducirlos).
+     */
+    private Set<String> checkpointAlDia() throws IOException, SQLException {
+        Optional<Path> ultimo = SyncCompactor.ultimo(checkpointsDir);
+        if (ultimo.isEmpty()) return Set.of();
+        String id = ultimo.get().getFileName().toString();
+        if (id.equals(checkpointVigente)) return cubiertosVigente;
+
+        SyncCompactor.Manifiesto m;
+        try {
+            m = SyncCompactor.leerManifiesto(ultimo.get());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Set.of();
+        }
+        if (!checkpointAplicado(id)) {
+            if (!aplicarCheckpoint(ultimo.get())) {
+                System.err.println("SYNC: checkpoint " + id + " aplicado parcialmente, se reintentará");
+                return Set.of(); // sin checkpoint completo hay que reproducir todo lo que haya
+            }
+            registrarCheckpoint(id);
+        }
+        checkpointVigente = id;
+        cubiertosVigente = new HashSet<>(m.archivos);
+        return cubiertosVigente;
+    }
+
+    /**
+     * Estado vigente del checkpoint: primero altas (padres antes que hijos, INSERT o UPDATE según
+     * exista la fila), después lápidas (hijos antes que padres). Usa el mismo camino que el inbox:
+     * lotes en transacción, salta idCambio ya procesados y lo propio de esta instancia.
+     */
+    private boolean aplicarCheckpoint(Path ckpt) throws IOException, SQLException {
+        boolean ok = true;
+        for (boolean lapidas : new boolean[] { false, true }) {
+            List<String> tablas = new ArrayList<>(SyncCompactor.ORDEN_TABLAS);
+            for (String t : SyncCompactor.tablasDe(ckpt)) if (!tablas.contains(t)) tablas.add(t);
+            if (lapidas) Collections.reverse(tablas);
+
+            for (String t : tablas) {
+                Path f = ckpt.resolve(t + SegmentCodec.EXT_SELLADO);
+                if (!Files.exists(f)) continue;
+                Origen o = new Origen(f);
+                List<Pendiente> buffer = new ArrayList<>(tamanoLote);
+                try (SegmentCodec.Lector lector = new SegmentCodec.Lector(f, cbor)) {
+                    for (SyncChange c; (c = lector.siguiente()) != null; ) {
+                        if ((c.getTipoOperacion() == SyncChange.Op.DELETE) != lapidas) continue;
+                        if (instanceId.equals(c.getInstanciaOrigen())) continue; // lo propio ya está aquí
+                        if (!lapidas && existe(c)) c.setTipoOperacion(SyncChange.Op.UPDATE);
+                        o.pendientes++;
+                        buffer.add(new Pendiente(c, o));
+                        if (buffer.size() >= tamanoLote) {
+                            consumirLote(buffer);
+                            buffer.clear();
+                        }
+                    }
+                    if (!lector.integro()) ok = false;
                 }
+                if (!buffer.isEmpty()) consumirLote(buffer);
+                if (o.fallo) ok = false;
             }
         }
+        return ok;
+    }
+
+    private boolean existe(SyncChange c) throws SQLException {
+        String id = c.getIdRegistroAfectado();
+        return switch (c.getNombreTabla().toUpperCase(Locale.ROOT)) {
+            case "BROTE" -> broteDao.findById(id).isPresent();
+            case "PERSONA_EXPUESTA" -> personaExpuestaDao.findById(id).isPresent();
+            case "INGESTA" -> ingestaDao.findById(id).isPresent();
+            case "ALIMENTO" -> alimentoDao.findById(id).isPresent();
+            case "SINTOMAS_GENERALES_EXPUESTO" -> sintomasGeneralesDao.findById(id).isPresent();
+            case "EXPOSICION_SINTOMA" -> exposicionSintomaDao.findById(id).isPresent();
+            case "BROTE_ENCUESTADOR" -> broteEncuestadorDao.findById(id).isPresent();
+            case "INFORME" -> informeDao.findById(id).isPresent();
+            case "INGESTA_PERSONA_EXPUESTA" -> ingestaPersonaExpuestaDao.findById(id).isPresent();
+            default -> false;
+        };
+    }
+
+    private void ensureCheckpointsTable() throws SQLException {
+        try (Connection connection = pool.writer();
+             Statement st = connection.createStatement()) {
+            st.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS CHECKPOINTS_APLICADOS (
+                    id_checkpoint TEXT PRIMARY KEY,
+                    timestamp_aplicado TEXT NOT NULL
+                )
+            """);
+        }
+    }
+
+    private boolean checkpointAplicado(String id) throws SQLException {
+        try (Connection connection = pool.reader();
+             PreparedStatement ps = connection.prepareStatement("SELECT 1 FROM CHECKPOINTS_APLICADOS WHERE id_checkpoint=?")) {
+            ps.setString(1, id);
+            try (ResultSet rs = ps.executeQuery()) { return rs.next(); }
+        }
+    }
+
+    private void registrarCheckpoint(String id) throws SQLException {
+        try (Connection connection = pool.writer();
+             PreparedStatement ps = connection.prepareStatement(
+                "INSERT OR IGNORE INTO CHECKPOINTS_APLICADOS(id_checkpoint,timestamp_aplicado) VALUES (?,?)")) {
+            ps.setString(1, id);
+            ps.setString(2, Instant.now().toString());
+            ps.executeUpdate();
+        }
     }
 
     /* ======================= Aplicación de cambios ======================= */
 
     private void aplicarCambio(SyncChange c) throws Exception {
-        // Estrategia simple LWW: aplicamos el cambio tal cual.
-        // Si más adelante añadimos updated_at por tabla, aquí comprobaríamos timestamps.
+        // Con versiones: obsoleto -> no se toca nada (queda como procesado); UPDATE concurrente -> columnas combinadas
+        VersionesRegistro v = versiones;
+        if (v != null) {
+            c = v.resolverRemoto(c);
+            if (c == null) return;
+        }
 
         String t = c.getNombreTabla().toUpperCase(Locale.ROOT);
 
@@ -350,7 +651,8 @@ public class SharedFolderIngestor implements AutoCloseable {
     /* ======================= Registro de procesados ======================= */
 
     private void ensureProcesadosTable() throws SQLException {
-        try (Statement st = connection.createStatement()) {
+        try (Connection connection = pool.writer();
+             Statement st = connection.createStatement()) {
             st.executeUpdate("""
                 CREATE TABLE IF NOT EXISTS CAMBIOS_PROCESADOS (
                     id_cambio TEXT PRIMARY KEY,
@@ -362,21 +664,46 @@ public class SharedFolderIngestor implements AutoCloseable {
     }
 
     private boolean yaProcesado(String idCambio) throws SQLException {
-        try (PreparedStatement ps = connection.prepareStatement("SELECT 1 FROM CAMBIOS_PROCESADOS WHERE id_cambio=?")) {
+        try (Connection connection = pool.reader();
+             PreparedStatement ps = connection.prepareStatement("SELECT 1 FROM CAMBIOS_PROCESADOS WHERE id_cambio=?")) {
             ps.setString(1, idCambio);
             try (ResultSet rs = ps.executeQuery()) { return rs.next(); }
         }
     }
 
+    private static final String SQL_REGISTRAR =
+            "INSERT INTO CAMBIOS_PROCESADOS(id_cambio,timestamp_procesado,instancia_origen) VALUES (?,?,?)";
+
     private void registrarProcesado(SyncChange c) throws SQLException {
-        try (PreparedStatement ps = connection.prepareStatement("INSERT INTO CAMBIOS_PROCESADOS(id_cambio,timestamp_procesado,instancia_origen) VALUES (?,?,?)")) {
-            ps.setString(1, c.getIdCambio());
-            ps.setString(2, Instant.now().toString());
-            ps.setString(3, c.getInstanciaOrigen());
+        try (Connection connection = pool.writer();
+             PreparedStatement ps = connection.prepareStatement(SQL_REGISTRAR)) {
+            bindProcesado(ps, c);
             ps.executeUpdate();
         }
     }
 
+    private static void bindProcesado(PreparedStatement ps, SyncChange c) throws SQLException {
+        ps.setString(1, c.getIdCambio());
+        ps.setString(2, Instant.now().toString());
+        ps.setString(3, c.getInstanciaOrigen());
+    }
+
+    /** id_cambio del lote que ya constan en CAMBIOS_PROCESADOS (una sola consulta IN). */
+    private Set<String> procesadosDe(List<Pendiente> lote) throws SQLException {
+        Set<String> out = new HashSet<>();
+        StringBuilder sql = new StringBuilder("SELECT id_cambio FROM CAMBIOS_PROCESADOS WHERE id_cambio IN (");
+        for (int i = 0; i < lote.size(); i++) sql.append(i == 0 ? "?" : ",?");
+        sql.append(')');
+        try (Connection connection = pool.reader();
+             PreparedStatement ps = connection.prepareStatement(sql.toString())) {
+            for (int i = 0; i < lote.size(); i++) ps.setString(i + 1, lote.get(i).cambio.getIdCambio());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) out.add(rs.getString(1));
+            }
+        }
+        return out;
+    }
+
     /* ======================= Utilidades ======================= */
 
     public static String ensureInstanceId(Path workDir) throws IOException {
@@ -387,9 +714,13 @@ public class SharedFolderIngestor implements AutoCloseable {
         return id;
     }
 
-    /** Limpia .json antiguos (p.ej. > 7 días) */
+    /**
+     * Limpia archivos en cuarentena (.bad) antiguos (p.ej. > 7 días).
+     * Los .json/.seg no se borran por edad: los retira el ingestor al aplicarlos o SyncCompactor
+     * cuando quedan plegados en un checkpoint.
+     */
     public void cleanupOldFiles(int days) {
-        try (DirectoryStream<Path> ds = Files.newDirectoryStream(inboxDir, "*.json")) {
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(inboxDir, "*.bad")) {
             Instant lim = Instant.now().minusSeconds(days * 86400L);
             for (Path p : ds) {
                 try {
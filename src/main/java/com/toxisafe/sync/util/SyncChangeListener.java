@@ -0,0 +1,12 @@
+package com.toxisafe.sync;
+
+import java.util.Map;
+
+/**
+ * Oyente de cambios ya persistidos: escrituras locales que pasan por un {@link SyncEmitter}
+ * y cambios remotos aplicados por el ingestor. Se invoca después de confirmar en BD.
+ */
+public interface SyncChangeListener {
+    void onChange(SyncChange.Op op, String tabla, String idRegistro,
+                  Map<String,Object> antiguos, Map<String,Object> nuevos);
+}
@@ -0,0 +1,15 @@
+package com.toxisafe.sync.util;
+
+import com.toxisafe.sync.SyncChange;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destino físico de cambios ya construidos (carpeta compartida).
+ * A diferencia de SyncEmitter, propaga el error para que el llamante pueda reintentar;
+ * conserva el idCambio, así que reenviar un cambio es idempotente en el ingestor.
+ */
+public interface SyncChangeWriter {
+    void escribir(List<SyncChange> cambios) throws IOException;
+}
@@ -0,0 +1,81 @@
+package com.toxisafe.sync.util;
+
+import com.toxisafe.sync.SyncChange;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/** Construcción de SyncChange común a los emisores. */
+final class SyncChanges {
+
+    private SyncChanges() {}
+
+    static SyncChange nuevo(String instanceId, SyncChange.Op op, String tabla, String id,
+                            Map<String,Object> oldV, Map<String,Object> newV) {
+        SyncChange c = new SyncChange();
+        c.setIdCambio(UUID.randomUUID().toString());
+        c.setInstanciaOrigen(instanceId);
+        c.setTimestamp(Instant.now());
+        c.setTipoOperacion(op);
+        c.setNombreTabla(tabla);
+        c.setIdRegistroAfectado(id);
+        c.setDatosAntiguos(oldV);
+        c.setDatosNuevos(newV);
+        return c;
+    }
+
+    /** Copia superficial (los mapas se comparten). */
+    static SyncChange copia(SyncChange o) {
+        SyncChange c = new SyncChange();
+        c.setIdCambio(o.getIdCambio());
+        c.setInstanciaOrigen(o.getInstanciaOrigen());
+        c.setTimestamp(o.getTimestamp());
+        c.setTipoOperacion(o.getTipoOperacion());
+        c.setNombreTabla(o.getNombreTabla());
+        c.setIdRegistroAfectado(o.getIdRegistroAfectado());
+        c.setDatosAntiguos(o.getDatosAntiguos());
+        c.setDatosNuevos(o.getDatosNuevos());
+        c.setVersion(o.getVersion());
+        return c;
+    }
+
+    /**
+     * Fusiona UPDATEs consecutivos (sin INSERT/DELETE intermedio) de la misma (tabla, id):
+     * datosAntiguos del primero, datosNuevos del último.
+     * El resultado ocupa la posición del último UPDATE, así no adelanta a cambios de los que dependa.
+     */
+    static List<SyncChange> fusionar(List<SyncChange> lote) {
+        List<SyncChange> out = new ArrayList<>(lote.size());
+        Map<String, Integer> ultimoUpdate = new HashMap<>();
+        boolean huecos = false;
+        for (SyncChange c : lote) {
+            String k = c.getNombreTabla() + '\u0000' + c.getIdRegistroAfectado();
+            if (c.getTipoOperacion() != SyncChange.Op.UPDATE) {
+                ultimoUpdate.remove(k);
+                out.add(c);
+                continue;
+            }
+            Integer i = ultimoUpdate.get(k);
+            if (i != null) {
+                SyncChange previo = out.get(i);
+                out.set(i, null);
+                huecos = true;
+                SyncChange m = nuevo(c.getInstanciaOrigen(), SyncChange.Op.UPDATE,
+                        c.getNombreTabla(), c.getIdRegistroAfectado(), previo.getDatosAntiguos(), c.getDatosNuevos());
+                m.setIdCambio(c.getIdCambio());
+                m.setTimestamp(c.getTimestamp());
+                m.setVersion(c.getVersion());
+                c = m;
+            }
+            ultimoUpdate.put(k, out.size());
+            out.add(c);
+        }
+        if (huecos) out.removeIf(Objects::isNull);
+        return out;
+    }
+}
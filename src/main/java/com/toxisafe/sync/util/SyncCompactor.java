@@ -0,0 +1,331 @@
+package com.toxisafe.sync.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.toxisafe.sync.SyncChange;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+
+/**
+ * Compactación del flujo de cambios del inbox en checkpoints por tabla.
+ * - Parte del último checkpoint y pliega encima los archivos .json/.seg del inbox (orden de nombre):
+ *   queda el estado vigente por (tabla, idRegistroAfectado) y una "lápida" DELETE por cada borrado
+ * - Cada checkpoint es una carpeta checkpoints/&lt;id&gt;/ con un segmento por tabla (TABLA.seg) y un
+ *   manifiesto (checkpoint.json) con los archivos del inbox que cubre; se publica con un rename atómico
+ * - Tras publicarlo borra del inbox los archivos cubiertos; una instancia nueva arranca del
+ *   checkpoint y solo reproduce lo que quede en el inbox (ver SharedFolderIngestor)
+ * - Cada registro conserva idCambio, instancia y timestamp de su último cambio: quien ya lo aplicó lo salta.
+ *   Si se le combinan columnas de un UPDATE tardío, pasa a tener un idCambio nuevo (ver {@link #plegar})
+ * Un candado (compactando.lock) evita que dos equipos compacten a la vez.
+ */
+public class SyncCompactor {
+
+    static final String MANIFIESTO = "checkpoint.json";
+
+    /** Origen de los registros que el compactador combina (no coincide con ningún instanceId). */
+    static final String ORIGEN_COMPACTADO = "compactador";
+
+    /** Orden de aplicación de altas (padres antes que hijos); las lápidas van en orden inverso. */
+    static final List<String> ORDEN_TABLAS = List.of(
+            "BROTE", "BROTE_ENCUESTADOR", "PERSONA_EXPUESTA", "INGESTA", "INGESTA_PERSONA_EXPUESTA",
+            "ALIMENTO", "SINTOMAS_GENERALES_EXPUESTO", "EXPOSICION_SINTOMA", "INFORME");
+
+    private static final String CANDADO = "compactando.lock";
+    private static final Duration CANDADO_CADUCADO = Duration.ofHours(1);
+    private static final Duration RETENCION_LAPIDAS = Duration.ofDays(90);
+    private static final int CHECKPOINTS_CONSERVADOS = 2;
+
+    private final Path inboxDir;
+    private final Path checkpointsDir;
+    private final String instanceId;
+    private final ObjectMapper om = SyncMappers.json();
+    private final ObjectMapper cbor = SyncMappers.cbor();
+    private final DateTimeFormatter fnameTs =
+            DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS").withZone(ZoneOffset.UTC);
+
+    /** Contenido de checkpoint.json. */
+    public static final class Manifiesto {
+        public String id;
+        public Instant creado;
+        public String instancia;
+        public String anterior;
+        public List<String> archivos = new ArrayList<>(); // archivos del inbox plegados en este checkpoint
+        public Map<String, Integer> filas = new LinkedHashMap<>();
+    }
+
+    public SyncCompactor(Path inboxDir, Path checkpointsDir, String instanceId) throws IOException {
+        this.inboxDir = Objects.requireNonNull(inboxDir, "inboxDir");
+        this.checkpointsDir = Objects.requireNonNull(checkpointsDir, "checkpointsDir");
+        this.instanceId = Objects.requireNonNull(instanceId, "instanceId");
+        Files.createDirectories(checkpointsDir);
+    }
+
+    /** Compacta solo si el último checkpoint tiene más de {@code intervalo} (o no hay ninguno). */
+    public Optional<Path> compactarSiToca(Duration intervalo) throws IOException {
+        Optional<Path> ultimo = ultimo(checkpointsDir);
+        if (ultimo.isPresent()) {
+            Instant creado = leerManifiesto(ultimo.get()).creado;
+            if (creado != null && creado.isAfter(Instant.now().minus(intervalo))) return Optional.empty();
+        }
+        return compactar();
+    }
+
+    /**
+     * Genera un checkpoint nuevo con lo que haya en el inbox.
+     * Vacío si no hay nada que plegar o si otro equipo está compactando.
+     */
+    public Optional<Path> compactar() throws IOException {
+        Path candado = checkpointsDir.resolve(CANDADO);
+        if (!tomarCandado(candado)) return Optional.empty();
+        try {
+            Optional<Path> previo = ultimo(checkpointsDir);
+
+            // Estado de partida: el checkpoint anterior
+            Map<String, LinkedHashMap<String, SyncChange>> estado = new TreeMap<>();
+            if (previo.isPresent()) {
+                for (String t : tablasDe(previo.get())) {
+                    LinkedHashMap<String, SyncChange> filas = estado.computeIfAbsent(t, k -> new LinkedHashMap<>());
+                    try (SegmentCodec.Lector lector = new SegmentCodec.Lector(previo.get().resolve(t + SegmentCodec.EXT_SELLADO), cbor)) {
+                        for (SyncChange c; (c = lector.siguiente()) != null; ) filas.put(c.getIdRegistroAfectado(), c);
+                        if (!lector.integro()) throw new IOException("Checkpoint dañado: " + previo.get().getFileName() + "/" + t);
+                    }
+                }
+            }
+
+            // Plegado del inbox en el mismo orden en que lo aplica el ingestor
+            List<Path> archivos = listarInbox();
+            List<String> cubiertos = new ArrayList<>();
+            for (Path f : archivos) {
+                List<SyncChange> cambios = leerCompleto(f);
+                if (cambios == null) continue; // ilegible o segmento con cola dañada: lo trata el ingestor
+                for (SyncChange c : cambios) plegar(estado, c);
+                cubiertos.add(f.getFileName().toString());
+            }
+            if (cubiertos.isEmpty() && previo.isPresent()) return Optional.empty();
+
+            podarLapidas(estado);
+
+            String id = fnameTs.format(Instant.now()) + "-" + instanceId;
+            Path tmp = checkpointsDir.resolve(id + ".tmp");
+            Path dst = checkpointsDir.resolve(id);
+            Files.createDirectories(tmp);
+
+            Manifiesto m = new Manifiesto();
+            m.id = id;
+            m.creado = Instant.now();
+            m.instancia = instanceId;
+            m.anterior = previo.map(p -> p.getFileName().toString()).orElse(null);
+            m.archivos = cubiertos;
+            for (Map.Entry<String, LinkedHashMap<String, SyncChange>> e : estado.entrySet()) {
+                if (e.getValue().isEmpty()) continue;
+                try (SegmentCodec.Escritor w = new SegmentCodec.Escritor(tmp.resolve(e.getKey() + SegmentCodec.EXT_SELLADO))) {
+                    for (SyncChange c : e.getValue().values()) w.anexar(c, cbor);
+                    w.sellar();
+                }
+                m.filas.put(e.getKey(), e.getValue().size());
+            }
+            Files.write(tmp.resolve(MANIFIESTO), om.writerWithDefaultPrettyPrinter().writeValueAsBytes(m));
+            Files.move(tmp, dst, ATOMIC_MOVE); // visible de golpe para el resto de equipos
+
+            // Lo cubierto ya no hace falta en el inbox
+            for (String n : cubiertos) {
+                try { Files.deleteIfExists(inboxDir.resolve(n)); } catch (IOException e) { e.printStackTrace(); }
+            }
+            borrarAntiguos();
+            return Optional.of(dst);
+        } finally {
+            Files.deleteIfExists(candado);
+        }
+    }
+
+    /* ======================= Plegado ======================= */
+
+    /**
+     * Último estado por registro; UPDATE mezcla sobre el estado previo por si no trae todas las columnas.
+     * Con versiones, un cambio que llega con versión menor que el estado plegado no lo pisa: INSERT/DELETE
+     * se ignoran y un UPDATE solo aporta las columnas que cambió y que el estado vigente aún no había tocado
+     * (el registro combinado lleva idCambio nuevo para que nadie lo dé por aplicado).
+     */
+    static void plegar(Map<String, LinkedHashMap<String, SyncChange>> estado, SyncChange c) {
+        if (c.getNombreTabla() == null || c.getIdRegistroAfectado() == null) return;
+        String t = c.getNombreTabla().toUpperCase(Locale.ROOT);
+        LinkedHashMap<String, SyncChange> filas = estado.computeIfAbsent(t, k -> new LinkedHashMap<>());
+        SyncChange previo = filas.get(c.getIdRegistroAfectado());
+        Map<String, Object> vigente = previo == null ? null
+                : previo.getTipoOperacion() == SyncChange.Op.DELETE ? null : previo.getDatosNuevos();
+
+        boolean tardio = previo != null && c.getVersion() != null && previo.getVersion() != null
+                && RelojHlc.comparar(c.getVersion(), previo.getVersion()) < 0;
+        if (tardio) {
+            if (c.getTipoOperacion() != SyncChange.Op.UPDATE || vigente == null || c.getDatosAntiguos() == null) return;
+            Map<String, Object> antiguos = c.getDatosAntiguos();
+            Map<String, Object> combinado = new LinkedHashMap<>(vigente);
+            boolean aporta = false;
+            for (String k : VersionesRegistro.columnasCambiadas(c)) {
+                // Solo si la columna sigue como la vio quien editó (nadie más nuevo la cambió)
+                if (antiguos.containsKey(k) && VersionesRegistro.igual(vigente.get(k), antiguos.get(k))) {
+                    combinado.put(k, c.getDatosNuevos().get(k));
+                    aporta = true;
+                }
+            }
+            if (!aporta) return;
+
+            // El registro ya no es el cambio más nuevo tal cual: con su idCambio, quien ya aplicó ese
+            // cambio (pero no el tardío) lo saltaría y nunca recibiría estas columnas. Sale como cambio
+            // nuevo, con la versión mayor y un origen que no es ninguna instancia.
+            SyncChange r = SyncChanges.copia(previo);
+            r.setIdCambio(UUID.randomUUID().toString());
+            r.setInstanciaOrigen(ORIGEN_COMPACTADO);
+            if (c.getTimestamp() != null && (r.getTimestamp() == null || c.getTimestamp().isAfter(r.getTimestamp()))) {
+                r.setTimestamp(c.getTimestamp());
+            }
+            r.setDatosAntiguos(null);
+            r.setDatosNuevos(combinado);
+            filas.put(r.getIdRegistroAfectado(), r); // mismo puesto: el orden sigue siendo el del cambio más nuevo
+            return;
+        }
+
+        SyncChange r = new SyncChange();
+        r.setIdCambio(c.getIdCambio());
+        r.setInstanciaOrigen(c.getInstanciaOrigen());
+        r.setTimestamp(c.getTimestamp());
+        r.setNombreTabla(t);
+        r.setIdRegistroAfectado(c.getIdRegistroAfectado());
+        r.setVersion(c.getVersion() != null ? c.getVersion() : previo == null ? null : previo.getVersion());
+
+        if (c.getTipoOperacion() == SyncChange.Op.DELETE) {
+            r.setTipoOperacion(SyncChange.Op.DELETE);
+            r.setDatosAntiguos(vigente != null ? vigente : c.getDatosAntiguos());
+        } else {
+            Map<String, Object> datos = new LinkedHashMap<>();
+            if (c.getTipoOperacion() == SyncChange.Op.UPDATE && vigente != null) datos.putAll(vigente);
+            if (c.getDatosNuevos() != null) datos.putAll(c.getDatosNuevos());
+            r.setTipoOperacion(SyncChange.Op.INSERT);
+            r.setDatosNuevos(datos);
+        }
+        filas.remove(r.getIdRegistroAfectado()); // reinsertar: orden = último cambio
+        filas.put(r.getIdRegistroAfectado(), r);
+    }
+
+    private static void podarLapidas(Map<String, LinkedHashMap<String, SyncChange>> estado) {
+        Instant limite = Instant.now().minus(RETENCION_LAPIDAS);
+        for (LinkedHashMap<String, SyncChange> filas : estado.values()) {
+            filas.values().removeIf(c -> c.getTipoOperacion() == SyncChange.Op.DELETE
+                    && c.getTimestamp() != null && c.getTimestamp().isBefore(limite));
+        }
+    }
+
+    /** Todos los cambios del archivo, o null si no se puede leer entero. */
+    private List<SyncChange> leerCompleto(Path f) {
+        try {
+            if (f.getFileName().toString().endsWith(SegmentCodec.EXT_SELLADO)) {
+                List<SyncChange> out = new ArrayList<>();
+                try (SegmentCodec.Lector lector = new SegmentCodec.Lector(f, cbor)) {
+                    for (SyncChange c; (c = lector.siguiente()) != null; ) out.add(c);
+                    return lector.integro() ? out : null;
+                }
+            }
+            return List.of(om.readValue(Files.readAllBytes(f), SyncChange.class));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private List<Path> listarInbox() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(inboxDir, "*.{json,seg}")) {
+            for (Path p : ds) files.add(p);
+        }
+        files.sort(Comparator.comparing(Path::getFileName));
+        return files;
+    }
+
+    /* ======================= Checkpoints ======================= */
+
+    /** Checkpoint publicado más reciente (los id empiezan por timestamp). */
+    static Optional<Path> ultimo(Path checkpointsDir) throws IOException {
+        if (!Files.isDirectory(checkpointsDir)) return Optional.empty();
+        Path mejor = null;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(checkpointsDir)) {
+            for (Path p : ds) {
+                if (!Files.isDirectory(p) || p.getFileName().toString().endsWith(".tmp")) continue;
+                if (!Files.exists(p.resolve(MANIFIESTO))) continue;
+                if (mejor == null || p.getFileName().compareTo(mejor.getFileName()) > 0) mejor = p;
+            }
+        }
+        return Optional.ofNullable(mejor);
+    }
+
+    static Manifiesto leerManifiesto(Path checkpoint) throws IOException {
+        return SyncMappers.json().readValue(Files.readAllBytes(checkpoint.resolve(MANIFIESTO)), Manifiesto.class);
+    }
+
+    /** Tablas con segmento en el checkpoint. */
+    static List<String> tablasDe(Path checkpoint) throws IOException {
+        List<String> out = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(checkpoint, "*" + SegmentCodec.EXT_SELLADO)) {
+            for (Path p : ds) {
+                String n = p.getFileName().toString();
+                out.add(n.substring(0, n.length() - SegmentCodec.EXT_SELLADO.length()));
+            }
+        }
+        return out;
+    }
+
+    private void borrarAntiguos() throws IOException {
+        List<Path> dirs = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(checkpointsDir)) {
+            for (Path p : ds) if (Files.isDirectory(p)) dirs.add(p);
+        }
+        dirs.sort(Comparator.comparing(Path::getFileName).reversed());
+        int vistos = 0;
+        for (Path d : dirs) {
+            boolean tmp = d.getFileName().toString().endsWith(".tmp");
+            if (!tmp && ++vistos <= CHECKPOINTS_CONSERVADOS) continue;
+            if (tmp && !caducado(d)) continue; // otro equipo podría estar escribiéndolo
+            borrarCarpeta(d);
+        }
+    }
+
+    private static void borrarCarpeta(Path d) {
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(d)) {
+            for (Path p : ds) Files.deleteIfExists(p);
+            Files.deleteIfExists(d);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private boolean tomarCandado(Path candado) throws IOException {
+        try {
+            Files.writeString(candado, instanceId, StandardOpenOption.CREATE_NEW);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            if (!caducado(candado)) return false;
+            Files.deleteIfExists(candado); // compactación abortada en otro equipo
+            try {
+                Files.writeString(candado, instanceId, StandardOpenOption.CREATE_NEW);
+                return true;
+            } catch (FileAlreadyExistsException otra) {
+                return false;
+            }
+        }
+    }
+
+    private static boolean caducado(Path p) {
+        try {
+            FileTime t = Files.getLastModifiedTime(p);
+            return t.toInstant().isBefore(Instant.now().minus(CANDADO_CADUCADO));
+        } catch (IOException e) {
+            return true;
+        }
+    }
+}
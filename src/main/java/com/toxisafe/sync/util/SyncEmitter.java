@@ -1,9 +1,32 @@
 package com.toxisafe.sync;
 
+import java.sql.SQLException;
 import java.util.Map;
 
 public interface SyncEmitter {
     void emitInsert(String tabla, String idRegistro, Map<String,Object> nuevos);
     void emitUpdate(String tabla, String idRegistro, Map<String,Object> antiguos, Map<String,Object> nuevos);
     void emitDelete(String tabla, String idRegistro, Map<String,Object> antiguos);
+
+    /**
+     * Varios INSERT de la misma tabla (idRegistro → datos nuevos), en el orden del mapa.
+     * Por defecto uno a uno; un emisor con outbox los anota en un solo lote.
+     */
+    default void emitInserts(String tabla, Map<String, Map<String,Object>> nuevosPorId) {
+        nuevosPorId.forEach((id, nuevos) -> emitInsert(tabla, id, nuevos));
+    }
+
+    /** Escritura en BD + emisiones que deben confirmarse (o descartarse) juntas. */
+    @FunctionalInterface
+    interface Accion {
+        void ejecutar() throws SQLException;
+    }
+
+    /**
+     * Ejecuta {@code accion} como una unidad con sus emisiones.
+     * Por defecto sin transacción; un emisor con outbox en BD la abre y confirma al final.
+     */
+    default void enTransaccion(Accion accion) throws SQLException {
+        accion.ejecutar();
+    }
 }
@@ -0,0 +1,110 @@
+package com.toxisafe.sync.util;
+
+import com.toxisafe.sync.SyncChange;
+import com.toxisafe.sync.SyncChangeListener;
+import com.toxisafe.sync.SyncEmitter;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Difusión en proceso de cambios persistidos (p.ej. para invalidar cachés).
+ * - Cambios locales: envolver el emisor con {@link #notificando(SyncEmitter)} (tras el commit
+ *   si se emiten dentro de una transacción)
+ * - Cambios remotos: SharedFolderIngestor publica cada cambio tras hacer commit
+ * Un oyente que lanza excepción no impide notificar al resto.
+ */
+public final class SyncEvents {
+
+    private static final List<SyncChangeListener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private SyncEvents() {}
+
+    public static void addListener(SyncChangeListener l) {
+        if (l != null && !LISTENERS.contains(l)) LISTENERS.add(l);
+    }
+
+    public static void removeListener(SyncChangeListener l) {
+        LISTENERS.remove(l);
+    }
+
+    public static void publicar(SyncChange.Op op, String tabla, String idRegistro,
+                                Map<String,Object> antiguos, Map<String,Object> nuevos) {
+        for (SyncChangeListener l : LISTENERS) {
+            try {
+                l.onChange(op, tabla, idRegistro, antiguos, nuevos);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public static void publicar(SyncChange c) {
+        publicar(c.getTipoOperacion(), c.getNombreTabla(), c.getIdRegistroAfectado(),
+                c.getDatosAntiguos(), c.getDatosNuevos());
+    }
+
+    /**
+     * Emisor que delega en {@code delegate} (puede ser null si no hay carpeta compartida)
+     * y después publica el cambio a los oyentes locales.
+     * Dentro de {@link SyncEmitter#enTransaccion} los avisos se retienen (por hilo) y solo se
+     * publican cuando la transacción más externa termina bien; si falla se descartan. Así un
+     * oyente nunca ve un cambio sin confirmar ni uno que se ha deshecho.
+     */
+    public static SyncEmitter notificando(SyncEmitter delegate) {
+        return new SyncEmitter() {
+            // Avisos retenidos de la transacción en curso; null = fuera de transacción
+            private final ThreadLocal<List<Runnable>> retenidos = new ThreadLocal<>();
+
+            private void avisar(Runnable aviso) {
+                List<Runnable> r = retenidos.get();
+                if (r != null) r.add(aviso); else aviso.run();
+            }
+
+            @Override
+            public void emitInsert(String tabla, String idRegistro, Map<String, Object> nuevos) {
+                if (delegate != null) delegate.emitInsert(tabla, idRegistro, nuevos);
+                avisar(() -> publicar(SyncChange.Op.INSERT, tabla, idRegistro, null, nuevos));
+            }
+
+            @Override
+            public void emitInserts(String tabla, Map<String, Map<String, Object>> nuevosPorId) {
+                if (delegate != null) delegate.emitInserts(tabla, nuevosPorId);
+                avisar(() -> nuevosPorId.forEach((id, nuevos) -> publicar(SyncChange.Op.INSERT, tabla, id, null, nuevos)));
+            }
+
+            @Override
+            public void emitUpdate(String tabla, String idRegistro, Map<String, Object> antiguos, Map<String, Object> nuevos) {
+                if (delegate != null) delegate.emitUpdate(tabla, idRegistro, antiguos, nuevos);
+                avisar(() -> publicar(SyncChange.Op.UPDATE, tabla, idRegistro, antiguos, nuevos));
+            }
+
+            @Override
+            public void emitDelete(String tabla, String idRegistro, Map<String, Object> antiguos) {
+                if (delegate != null) delegate.emitDelete(tabla, idRegistro, antiguos);
+                avisar(() -> publicar(SyncChange.Op.DELETE, tabla, idRegistro, antiguos, null));
+            }
+
+            @Override
+            public void enTransaccion(Accion accion) throws SQLException {
+                // Sin delegado no hay transacción: cada escritura ya está confirmada al emitir
+                if (delegate == null) { accion.ejecutar(); return; }
+
+                // Anidada: se une a la externa, que es la que publica o descarta
+                if (retenidos.get() != null) { delegate.enTransaccion(accion); return; }
+
+                List<Runnable> avisos = new ArrayList<>();
+                retenidos.set(avisos);
+                try {
+                    delegate.enTransaccion(accion);
+                } finally {
+                    retenidos.remove();
+                }
+                for (Runnable aviso : avisos) aviso.run();
+            }
+        };
+    }
+}
@@ -0,0 +1,34 @@
+package com.toxisafe.sync.util;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+/**
+ * ObjectMapper comunes del módulo de sincronización.
+ * Registran java.time (SyncChange.timestamp es Instant) y escriben fechas en ISO-8601.
+ * Ignoran propiedades desconocidas: una versión anterior de la app puede leer cambios con campos nuevos.
+ */
+final class SyncMappers {
+
+    private SyncMappers() {}
+
+    /** JSON (un archivo por cambio). */
+    static ObjectMapper json() {
+        return configurar(new ObjectMapper());
+    }
+
+    /** CBOR binario (registros de segmento). */
+    static ObjectMapper cbor() {
+        return configurar(new ObjectMapper(new CBORFactory()));
+    }
+
+    private static ObjectMapper configurar(ObjectMapper om) {
+        om.registerModule(new JavaTimeModule());
+        om.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        om.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        return om;
+    }
+}
@@ -2,13 +2,15 @@ package com.toxisafe.sync.util;
 
 import com.toxisafe.dao.*;
 import com.toxisafe.sync.SyncEmitter;
+import com.toxisafe.util.ConnectionPool;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.*;
 
@@ -16,8 +18,12 @@ import static java.nio.file.StandardOpenOption.CREATE_NEW;
 
 /**
  * Orquestador de sincronización por carpeta compartida.
- * - Expone un SyncEmitter para que los Services emitan cambios (outbox).
- * - Planifica la ingestión periódica de archivos JSON (inbox) mediante SharedFolderIngestor.
+ * - Expone un SyncEmitter para que los Services emitan cambios (outbox transaccional en la BD local).
+ * - Dispara la ingestión del inbox (SharedFolderIngestor) al llegar archivos (WatchService),
+ *   con sondeo adaptativo de respaldo (ver InboxWatcher).
+ * - Compacta periódicamente el inbox en checkpoints (ver SyncCompactor).
+ * - Formato de salida: JSON por cambio (por defecto) o segmentos binarios con
+ *   -Dtoxisafe.sync.formato=segmentos (todas las instancias deben leer .seg: versión actual).
  * NO duplica la lógica del emisor ni del ingestor.
  */
 public final class SyncService implements AutoCloseable {
@@ -25,10 +31,16 @@ public final class SyncService implements AutoCloseable {
     private final SyncEmitter emitter;                 // escribe JSON a outbox
     private final SharedFolderIngestor ingestor;       // lee/aplica JSON desde inbox
     private final ScheduledExecutorService scheduler;  // planificador del consume
+    private final SyncCompactor compactor;             // inbox -> checkpoints
+    private volatile InboxWatcher watcher;             // disparador (tras start)
 
-    private SyncService(SyncEmitter emitter, SharedFolderIngestor ingestor) {
+    /** Edad mínima del último checkpoint para generar otro. */
+    private static final Duration INTERVALO_COMPACTACION = Duration.ofHours(20);
+
+    private SyncService(SyncEmitter emitter, SharedFolderIngestor ingestor, SyncCompactor compactor) {
         this.emitter = Objects.requireNonNull(emitter, "emitter");
         this.ingestor = Objects.requireNonNull(ingestor, "ingestor");
+        this.compactor = Objects.requireNonNull(compactor, "compactor");
         this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
             Thread t = new Thread(r, "toxisafe-sync");
             t.setDaemon(true);
@@ -41,19 +53,39 @@ public final class SyncService implements AutoCloseable {
         return emitter;
     }
 
-    /** Arranca el planificador de ingestión (cada {@code periodSeconds}). */
-    public void start(long periodSeconds) {
-        scheduler.scheduleAtFixedRate(() -> {
-            try {
-                ingestor.consumeOnce();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }, 5, periodSeconds, TimeUnit.SECONDS);
+    /**
+     * Arranca la ingestión: una pasada inicial y después por eventos de la carpeta.
+     * {@code periodSeconds} es la espera máxima del sondeo de respaldo cuando no hay eventos.
+     */
+    public synchronized void start(long periodSeconds) {
+        if (watcher != null) return;
+        watcher = new InboxWatcher(ingestor.inboxDir(), ingestor::consumeOnce, scheduler,
+                TimeUnit.SECONDS.toMillis(periodSeconds));
+        watcher.start();
+        // Compactación en el mismo hilo que la ingestión: nunca pliega un archivo a medio aplicar
+        scheduler.scheduleWithFixedDelay(this::compactarSiToca, 15, 6 * 60, TimeUnit.MINUTES);
+    }
+
+    /** Genera un checkpoint ahora con lo que haya en el inbox (vacío si no hay nada o otro equipo compacta). */
+    public Optional<Path> compactarAhora() throws IOException {
+        return compactor.compactar();
+    }
+
+    private void compactarSiToca() {
+        try {
+            compactor.compactarSiToca(INTERVALO_COMPACTACION);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
     }
 
     /** Ejecuta una pasada de ingestión bajo demanda (útil en debug o botón “Sincronizar ahora”). */
     public void consumeOnceNow() {
+        InboxWatcher w = watcher;
+        if (w != null) {
+            w.despertar(); // en el hilo de ingestión, sin solaparse con otra pasada
+            return;
+        }
         try {
             ingestor.consumeOnce();
         } catch (Exception e) {
@@ -62,18 +94,24 @@ public final class SyncService implements AutoCloseable {
     }
 
     @Override public void close() {
+        InboxWatcher w = watcher;
+        if (w != null) w.close();
         scheduler.shutdownNow();
+        // Vacía el outbox y sella el segmento abierto para que no quede como .part
+        if (emitter instanceof AutoCloseable ac) {
+            try { ac.close(); } catch (Exception e) { e.printStackTrace(); }
+        }
     }
 
     // ---------- Fábrica recomendada para tu app ----------
 
     /**
-     * Construye el ecosistema de Sync usando tu Connection, carpeta compartida y DAOs.
+     * Construye el ecosistema de Sync usando el pool de conexiones, carpeta compartida y DAOs.
      * Crea (si no existen) subcarpetas: sharedRoot/outbox y sharedRoot/inbox.
      * Firma alineada con lo que ya pasas a SharedFolderIngestor.
      */
     public static SyncService createDefault(
-            Connection conn,
+            ConnectionPool pool,
             Path sharedRoot,
             BroteDao broteDao,
             PersonaExpuestaDao personaExpuestaDao,
@@ -86,7 +124,7 @@ public final class SyncService implements AutoCloseable {
             IngestaPersonaExpuestaDao ingestaPersonaExpuestaDao
     ) throws IOException, SQLException {
 
-        Objects.requireNonNull(conn, "conn");
+        Objects.requireNonNull(pool, "pool");
         Objects.requireNonNull(sharedRoot, "sharedRoot");
 
         Path outbox = sharedRoot.resolve("outbox");
@@ -96,12 +134,16 @@ public final class SyncService implements AutoCloseable {
 
         String instanceId = ensureInstanceId(sharedRoot);
 
-        // Emisor -> escribe a outbox
-        SyncEmitter emitter = new FileSyncEmitter(outbox, instanceId);
+        // Emisor -> tabla CAMBIOS_SALIENTES (misma transacción que el dato) + hilo que la vuelca a outbox
+        SyncChangeWriter destino = "segmentos".equalsIgnoreCase(System.getProperty("toxisafe.sync.formato"))
+                ? new SegmentSyncEmitter(outbox, instanceId)
+                : new FileSyncEmitter(outbox, instanceId);
+        VersionesRegistro versiones = new VersionesRegistro(pool, instanceId);
+        SyncEmitter emitter = new OutboxSyncEmitter(pool, destino, instanceId, versiones);
 
         // Ingestor -> lee de inbox y aplica con DAOs
         SharedFolderIngestor ingestor = new SharedFolderIngestor(
-                conn,
+                pool,
                 inbox,
                 instanceId,
                 broteDao,
@@ -115,7 +157,11 @@ public final class SyncService implements AutoCloseable {
                 ingestaPersonaExpuestaDao
         );
 
-        return new SyncService(emitter, ingestor);
+        ingestor.setVersiones(versiones);
+
+        SyncCompactor compactor = new SyncCompactor(ingestor.inboxDir(), ingestor.checkpointsDir(), instanceId);
+
+        return new SyncService(emitter, ingestor, compactor);
     }
 
     /** Genera/recupera un UUID estable por equipo en sharedRoot/instance.id */
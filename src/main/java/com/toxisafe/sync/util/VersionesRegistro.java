@@ -0,0 +1,229 @@
+package com.toxisafe.sync.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.toxisafe.sync.SyncChange;
+import com.toxisafe.util.ConnectionPool;
+
+import java.io.IOException;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Versión por registro sincronizado (tabla VERSIONES_REGISTRO, junto a los datos).
+ * - Cada fila guarda la versión HLC del registro, la versión de cada columna y el último
+ *   estado conocido (mapa de SyncChange); un borrado deja una lápida con su versión
+ * - Cambio local ({@link #anotarLocal}): nueva versión para las columnas que cambian, que viaja
+ *   en {@link SyncChange#getVersion()}
+ * - Cambio remoto ({@link #resolverRemoto}): cada columna se queda con la versión más alta.
+ *   Así un UPDATE que llega tarde se descarta con una comparación, y dos UPDATE concurrentes sobre
+ *   columnas distintas (según sus datosAntiguos) se combinan en vez de pisarse
+ * Se llama dentro de la transacción de la escritura: si esta se revierte, la versión también.
+ */
+final class VersionesRegistro {
+
+    private static final TypeReference<LinkedHashMap<String, Object>> MAPA = new TypeReference<>() {};
+    private static final TypeReference<LinkedHashMap<String, String>> VERSIONES = new TypeReference<>() {};
+
+    private final ConnectionPool pool;
+    private final RelojHlc reloj;
+    private final ObjectMapper om = SyncMappers.json();
+
+    /** Estado versionado de un registro. */
+    private static final class Registro {
+        String version;
+        boolean borrado;
+        Map<String, String> campos = new LinkedHashMap<>();
+        Map<String, Object> datos; // null si es lápida o no se conoce
+    }
+
+    VersionesRegistro(ConnectionPool pool, String instanceId) throws SQLException {
+        this.pool = Objects.requireNonNull(pool, "pool");
+        this.reloj = new RelojHlc(instanceId);
+        ensureVersionesTable();
+        // Tras reiniciar, nunca por debajo de lo ya versionado (aunque el reloj de pared retroceda)
+        try (Connection connection = pool.reader();
+             Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT MAX(version) FROM VERSIONES_REGISTRO")) {
+            if (rs.next()) reloj.recibir(rs.getString(1));
+        }
+    }
+
+    /** Asigna versión al cambio local y la registra. */
+    void anotarLocal(SyncChange c) throws SQLException {
+        String v = reloj.tick();
+        c.setVersion(v);
+        Registro r = leer(c.getNombreTabla(), c.getIdRegistroAfectado());
+        if (r == null) r = new Registro();
+        r.version = v;
+        if (c.getTipoOperacion() == SyncChange.Op.DELETE) {
+            r.borrado = true;
+            r.datos = null;
+        } else {
+            r.borrado = false;
+            Map<String, Object> nuevos = c.getDatosNuevos() == null ? Map.of() : c.getDatosNuevos();
+            for (String k : columnasCambiadas(c)) r.campos.put(k, v);
+            Map<String, Object> datos = new LinkedHashMap<>();
+            if (c.getTipoOperacion() == SyncChange.Op.UPDATE && r.datos != null) datos.putAll(r.datos);
+            datos.putAll(nuevos);
+            r.datos = datos;
+        }
+        guardar(c.getNombreTabla(), c.getIdRegistroAfectado(), r);
+    }
+
+    /**
+     * Cambio efectivo a aplicar para un cambio remoto, o null si es obsoleto.
+     * Deja registrada la nueva versión (si se aplica).
+     */
+    SyncChange resolverRemoto(SyncChange c) throws SQLException {
+        String v = c.getVersion();
+        if (v == null) return c; // emisor sin versiones: comportamiento anterior (se aplica tal cual)
+        reloj.recibir(v);
+
+        String tabla = c.getNombreTabla();
+        String id = c.getIdRegistroAfectado();
+        Registro r = leer(tabla, id);
+
+        switch (c.getTipoOperacion()) {
+            case DELETE -> {
+                if (r != null && RelojHlc.comparar(r.version, v) >= 0) return null;
+                Registro nuevo = r == null ? new Registro() : r;
+                nuevo.version = v;
+                nuevo.borrado = true;
+                nuevo.datos = null;
+                guardar(tabla, id, nuevo);
+                return c;
+            }
+            case INSERT -> {
+                if (r != null && RelojHlc.comparar(r.version, v) >= 0) return null;
+                Registro nuevo = new Registro();
+                nuevo.version = v;
+                Map<String, Object> datos = c.getDatosNuevos() == null ? new LinkedHashMap<>() : new LinkedHashMap<>(c.getDatosNuevos());
+                for (String k : datos.keySet()) nuevo.campos.put(k, v);
+                nuevo.datos = datos;
+                guardar(tabla, id, nuevo);
+                return c;
+            }
+            default -> {
+                // UPDATE: sin estado local conocido se aplica tal cual (fila anterior a las versiones)
+                if (r == null || r.datos == null && !r.borrado) {
+                    Registro nuevo = r == null ? new Registro() : r;
+                    nuevo.version = max(nuevo.version, v);
+                    Map<String, Object> datos = c.getDatosNuevos() == null ? new LinkedHashMap<>() : new LinkedHashMap<>(c.getDatosNuevos());
+                    for (String k : columnasCambiadas(c)) nuevo.campos.put(k, v);
+                    nuevo.datos = datos;
+                    guardar(tabla, id, nuevo);
+                    return c;
+                }
+                if (r.borrado) return null; // el borrado gana a una edición concurrente
+
+                // Gana, columna a columna, la versión más alta
+                Map<String, Object> nuevos = c.getDatosNuevos() == null ? Map.of() : c.getDatosNuevos();
+                List<String> ganadoras = new ArrayList<>();
+                for (String k : columnasCambiadas(c)) {
+                    String vk = r.campos.getOrDefault(k, r.version);
+                    if (RelojHlc.comparar(vk, v) < 0) ganadoras.add(k);
+                }
+                if (ganadoras.isEmpty()) return null; // obsoleto: todo lo que cambia ya es más nuevo aquí
+
+                Map<String, Object> combinado = new LinkedHashMap<>(r.datos);
+                for (String k : ganadoras) {
+                    combinado.put(k, nuevos.get(k));
+                    r.campos.put(k, v);
+                }
+                r.version = max(r.version, v);
+                r.datos = combinado;
+                guardar(tabla, id, r);
+
+                SyncChange efectivo = SyncChanges.copia(c);
+                efectivo.setDatosNuevos(combinado);
+                return efectivo;
+            }
+        }
+    }
+
+    /** Columnas que el cambio modifica según datosAntiguos (todas si no los trae). */
+    static Set<String> columnasCambiadas(SyncChange c) {
+        Map<String, Object> nuevos = c.getDatosNuevos();
+        if (nuevos == null) return Set.of();
+        Map<String, Object> antiguos = c.getDatosAntiguos();
+        if (c.getTipoOperacion() != SyncChange.Op.UPDATE || antiguos == null) return nuevos.keySet();
+        Set<String> out = new LinkedHashSet<>();
+        for (Map.Entry<String, Object> e : nuevos.entrySet()) {
+            if (!antiguos.containsKey(e.getKey()) || !igual(antiguos.get(e.getKey()), e.getValue())) out.add(e.getKey());
+        }
+        return out;
+    }
+
+    /** Igualdad tolerante al tipo numérico (tras JSON/CBOR un Integer puede volver como Long). */
+    static boolean igual(Object a, Object b) {
+        if (a instanceof Number na && b instanceof Number nb) return na.toString().equals(nb.toString())
+                || na.doubleValue() == nb.doubleValue();
+        return Objects.equals(a, b);
+    }
+
+    private static String max(String a, String b) {
+        return RelojHlc.comparar(a, b) >= 0 ? a : b;
+    }
+
+    /* ======================= Persistencia ======================= */
+
+    private Registro leer(String tabla, String id) throws SQLException {
+        try (Connection connection = pool.reader();
+             PreparedStatement ps = connection.prepareStatement(
+                "SELECT version,borrado,campos,datos FROM VERSIONES_REGISTRO WHERE nombre_tabla=? AND id_registro=?")) {
+            ps.setString(1, tabla);
+            ps.setString(2, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                Registro r = new Registro();
+                r.version = rs.getString(1);
+                r.borrado = rs.getInt(2) == 1;
+                try {
+                    String campos = rs.getString(3);
+                    if (campos != null) r.campos = om.readValue(campos, VERSIONES);
+                    String datos = rs.getString(4);
+                    if (datos != null) r.datos = om.readValue(datos, MAPA);
+                } catch (IOException e) {
+                    throw new SQLException("VERSIONES_REGISTRO ilegible para " + tabla + "/" + id, e);
+                }
+                return r;
+            }
+        }
+    }
+
+    private void guardar(String tabla, String id, Registro r) throws SQLException {
+        try (Connection connection = pool.writer();
+             PreparedStatement ps = connection.prepareStatement(
+                "INSERT OR REPLACE INTO VERSIONES_REGISTRO(nombre_tabla,id_registro,version,borrado,campos,datos) VALUES (?,?,?,?,?,?)")) {
+            ps.setString(1, tabla);
+            ps.setString(2, id);
+            ps.setString(3, r.version);
+            ps.setInt(4, r.borrado ? 1 : 0);
+            try {
+                ps.setString(5, r.borrado ? null : om.writeValueAsString(r.campos));
+                ps.setString(6, r.datos == null ? null : om.writeValueAsString(r.datos));
+            } catch (IOException e) {
+                throw new SQLException("No se pudo serializar la versión de " + tabla + "/" + id, e);
+            }
+            ps.executeUpdate();
+        }
+    }
+
+    private void ensureVersionesTable() throws SQLException {
+        try (Connection connection = pool.writer();
+             Statement st = connection.createStatement()) {
+            st.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS VERSIONES_REGISTRO (
+                    nombre_tabla TEXT NOT NULL,
+                    id_registro TEXT NOT NULL,
+                    version TEXT NOT NULL,
+                    borrado INTEGER NOT NULL DEFAULT 0,
+                    campos TEXT,
+                    datos TEXT,
+                    PRIMARY KEY (nombre_tabla, id_registro)
+                )
+            """);
+        }
+    }
+}
@@ -1,9 +1,9 @@
 package com.toxisafe.ui.controller;
 
 import com.toxisafe.model.Brote;
-import com.toxisafe.model.BroteEncuestador;
 import com.toxisafe.model.Usuario;
 import com.toxisafe.service.*;
+import com.toxisafe.util.Texto;
 import javafx.beans.binding.Bindings;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -22,7 +22,6 @@ import org.kordamp.ikonli.javafx.FontIcon;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 public class BroteController {
 
@@ -52,6 +51,7 @@ public class BroteController {
     private com.toxisafe.service.GrupoSintomaService grupoSintomaService;
     private com.toxisafe.service.InformeService informeService;
     private com.toxisafe.service.EstadisticaService estadisticaService;
+    private com.toxisafe.service.CasoDefinicionService casoDefinicionService;
     private MainController mainController;
 
 
@@ -113,6 +113,10 @@ public class BroteController {
         this.estadisticaService = estadisticaService;
     }
 
+    public void setDefinicionesCaso(com.toxisafe.service.CasoDefinicionService casoDefinicionService) {
+        this.casoDefinicionService = casoDefinicionService;
+    }
+
     private void configurarTabla() {
         tablaBrotes.setPlaceholder(new Label("Sin brotes"));
     }
@@ -300,8 +304,13 @@ public class BroteController {
         }
     }
 
+    // Filtro al dejar de escribir, no en cada pulsación
+    private final SugerenciasAsincronas<String> filtroDiferido =
+            new SugerenciasAsincronas<>(texto -> texto, texto -> refrescarFiltroCombinado(),
+                    e -> error("No se pudo aplicar el filtro: " + e.getMessage()), 150);
+
     private void configurarFiltro() {
-        txtFiltro.textProperty().addListener((obs, old, val) -> refrescarFiltroCombinado());
+        txtFiltro.textProperty().addListener((obs, old, val) -> filtroDiferido.pedir(val));
     }
 
     private void refrescarFiltroCombinado() {
@@ -313,10 +322,7 @@ public class BroteController {
         final Set<String> brotesAsignados;
         if (scopeAsignados) {
             try {
-                brotesAsignados = broteEncuestadorService.findByUsuarioId(currentUser.getIdUsuario())
-                        .stream()
-                        .map(BroteEncuestador::getIdBrote)
-                        .collect(Collectors.toSet());
+                brotesAsignados = broteEncuestadorService.brotesAsignados(currentUser.getIdUsuario());
             } catch (SQLException e) {
                 alertError("No se pudieron cargar asignaciones: " + e.getMessage());
                 return; // evita filtrar con set incompleto
@@ -422,7 +428,7 @@ public class BroteController {
     }
 
     private boolean puedeEditar() {
-        String r = normalizaRol(currentUser.getRolUsuario());
+        String r = Texto.rol(currentUser.getRolUsuario());
         return "EPIDEMIOLOGO".equals(r) || "MIR_SALUD_PUBLICA".equals(r) || "ADMIN".equals(r);
     }
 
@@ -486,6 +492,7 @@ public class BroteController {
                         FXMLLoader fx = new FXMLLoader(getClass().getResource("/com/toxisafe/ui/view/estadistica.fxml"));
             Parent root = fx.load();
             EstadisticaController ctrl = fx.getController();
+            ctrl.setCasoDefinicionService(casoDefinicionService);
             // Firma típica (ajústala a la tuya si difiere):
             ctrl.init(currentUser, sel, estadisticaService, informeService, broteEncuestadorService);
 
@@ -511,13 +518,6 @@ public class BroteController {
     }
 
 
-    private static String normalizaRol(String r) {
-        if (r == null) return "";
-        String s = java.text.Normalizer.normalize(r, java.text.Normalizer.Form.NFD)
-                .replaceAll("\\p{M}", "");
-        return s.toUpperCase(java.util.Locale.ROOT).replace(' ', '_');
-    }
-
     private void abrirDialogoBrote(Brote existente) {
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/toxisafe/ui/view/brote_form.fxml"));
@@ -1,12 +1,12 @@
 package com.toxisafe.ui.controller;
 
 import com.toxisafe.model.Brote;
-import com.toxisafe.model.BroteEncuestador;
 import com.toxisafe.model.Usuario;
 import com.toxisafe.service.BroteEncuestadorService;
 import com.toxisafe.service.BroteService;
 import com.toxisafe.service.PersonaExpuestaService;
 import com.toxisafe.service.UsuarioService;
+import com.toxisafe.util.Texto;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
 import javafx.fxml.FXML;
@@ -94,7 +94,7 @@ public class DashboardController {
 
     private void refrescar() {
         try {
-            String r = normalizeRol(actor.getRolUsuario());
+            String r = Texto.rol(actor.getRolUsuario());
 
             // Asignados
             List<Brote> asignados = brotesAsignados(actor.getIdUsuario());
@@ -137,10 +137,8 @@ public class DashboardController {
     /* ===== Helpers ===== */
 
     private List<Brote> brotesAsignados(String idUsuario) throws SQLException {
-        List<BroteEncuestador> asign = broteEncuestadorService.findByUsuarioId(idUsuario);
-        List<String> ids = asign.stream().map(BroteEncuestador::getIdBrote).distinct().toList();
         List<Brote> out = new ArrayList<>();
-        for (String id : ids) { broteService.findById(id).ifPresent(out::add); }
+        for (String id : broteEncuestadorService.brotesAsignados(idUsuario)) { broteService.findById(id).ifPresent(out::add); }
         return out;
     }
 
@@ -176,13 +174,6 @@ public class DashboardController {
         }
     }
 
-    private static String normalizeRol(String r){
-        if (r==null) return "";
-        String up = java.text.Normalizer.normalize(r, java.text.Normalizer.Form.NFD)
-                .replaceAll("\\p{M}", "");
-        return up.trim().toUpperCase(Locale.ROOT).replace(' ', '_');
-    }
-
     /* ===== DTO fila tabla ===== */
     public static final class BroteRow {
         private final String nombre, estado, fechaIniBrote, creador, responsable;
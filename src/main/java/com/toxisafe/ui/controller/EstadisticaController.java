@@ -1,6 +1,8 @@
 package com.toxisafe.ui.controller;
 
 import com.toxisafe.model.Brote;
+import com.toxisafe.model.CasoDefinicion;
+import com.toxisafe.model.Rol;
 import com.toxisafe.model.Usuario;
 import com.toxisafe.service.*;
 
@@ -25,8 +27,11 @@ import java.io.FileWriter;
 import java.sql.SQLException;
 import java.text.DecimalFormat;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 public class EstadisticaController {
 
@@ -50,6 +55,18 @@ public class EstadisticaController {
     @FXML private BarChart<String, Number> chartEpi;
     @FXML private CategoryAxis epiXAxis;
     @FXML private NumberAxis epiYAxis;
+    @FXML private ComboBox<String> cbEpiIntervalo;
+    @FXML private Slider sldEpiZoom;
+    @FXML private Slider sldEpiPosicion;
+    @FXML private Label lblEpiInfo;
+    @FXML private TableView<CurvaEpidemica.Incubacion> tvIncubacion;
+    @FXML private TableColumn<CurvaEpidemica.Incubacion, String> colIncComida;
+    @FXML private TableColumn<CurvaEpidemica.Incubacion, String> colIncSospechosa;
+    @FXML private TableColumn<CurvaEpidemica.Incubacion, String> colIncCasos;
+    @FXML private TableColumn<CurvaEpidemica.Incubacion, String> colIncMediana;
+    @FXML private TableColumn<CurvaEpidemica.Incubacion, String> colIncRic;
+    @FXML private TableColumn<CurvaEpidemica.Incubacion, String> colIncRango;
+    @FXML private TableColumn<CurvaEpidemica.Incubacion, String> colIncDescartados;
 
     // Ataque por alimento
     @FXML private TableView<EstadisticaService.FoodAttackRow> tvFood;
@@ -67,6 +84,35 @@ public class EstadisticaController {
     @FXML private TableColumn<EstadisticaService.FoodAttackRow, String> colFORL;
     @FXML private TableColumn<EstadisticaService.FoodAttackRow, String> colFORH;
     @FXML private TableColumn<EstadisticaService.FoodAttackRow, String> colFP;
+    @FXML private TableColumn<EstadisticaService.FoodAttackRow, String> colFMidP;
+    @FXML private TableColumn<EstadisticaService.FoodAttackRow, String> colFChi;
+    @FXML private TableColumn<EstadisticaService.FoodAttackRow, String> colFPChi;
+    @FXML private TableColumn<EstadisticaService.FoodAttackRow, String> colFRRMH;
+    @FXML private TableColumn<EstadisticaService.FoodAttackRow, String> colFORMH;
+    @FXML private ComboBox<String> cbEstratificar;
+
+    // Mantel-Haenszel de la estratificación elegida, por alimentoKey
+    private final Map<String, EstadisticaService.FoodStratifiedRow> foodMH = new HashMap<>();
+
+    // Definiciones de caso
+    @FXML private TableView<CasoDefinicionService.Resultado> tvDefiniciones;
+    @FXML private TableColumn<CasoDefinicionService.Resultado, String> colDefNombre;
+    @FXML private TableColumn<CasoDefinicionService.Resultado, String> colDefAmbito;
+    @FXML private TableColumn<CasoDefinicionService.Resultado, String> colDefCasos;
+    @FXML private TableColumn<CasoDefinicionService.Resultado, String> colDefProporcion;
+    @FXML private TextField txtDefNombre;
+    @FXML private TextField txtDefTodos;
+    @FXML private TextField txtDefAlguno;
+    @FXML private Spinner<Integer> spnDefMinimo;
+    @FXML private TextField txtDefDesde;
+    @FXML private TextField txtDefHasta;
+    @FXML private CheckBox chkDefInicio;
+    @FXML private ComboBox<CasoDefinicion.CriterioLaboratorio> cbDefLaboratorio;
+    @FXML private CheckBox chkDefPlantilla;
+    @FXML private Label lblDefQueSi;
+    @FXML private Button btnDefNueva;
+    @FXML private Button btnDefGuardar;
+    @FXML private Button btnDefEliminar;
 
     // --- Estado / servicios ---
     private Usuario actor;
@@ -75,9 +121,20 @@ public class EstadisticaController {
     private EstadisticaService estadisticaService;
     private InformeService informeService;
     private BroteEncuestadorService broteEncuestadorService;
+    private CasoDefinicionService casoDefinicionService; // opcional: sin él solo la definición por defecto
+
+    private BroteSnapshot snapshot;          // la de la última carga; la usan las definiciones de caso
+    private CasoDefinicion defEnEdicion;     // null = nueva
 
     private static final DecimalFormat DF3 = new DecimalFormat("#.###");
 
+    // Intervalos de la curva (etiqueta -> segundos) y tope de barras visibles
+    private static final String[] INTERVALOS = {"1 h", "6 h", "12 h", "1 día"};
+    private static final long[] INTERVALO_SEG = {CurvaEpidemica.HORA, 6 * CurvaEpidemica.HORA, 12 * CurvaEpidemica.HORA, CurvaEpidemica.DIA};
+    private static final int MAX_BARRAS = 240;
+    private static final DateTimeFormatter DF_DIA = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter DF_HORA = DateTimeFormatter.ofPattern("MM-dd HH:mm");
+
     public void init(Usuario actor,
                      Brote brote,
                      EstadisticaService estadisticaService,
@@ -94,6 +151,11 @@ public class EstadisticaController {
         refrescarTodo();
     }
 
+    /** Antes de {@link #init}: habilita las definiciones de caso guardadas. */
+    public void setCasoDefinicionService(CasoDefinicionService casoDefinicionService) {
+        this.casoDefinicionService = casoDefinicionService;
+    }
+
     @FXML
     private void initialize() {
         // Configuración estática del chart
@@ -129,6 +191,81 @@ public class EstadisticaController {
         colFORH.setCellValueFactory(c -> new SimpleStringProperty(fmt(c.getValue().orH)));
 
         colFP.setCellValueFactory(c -> new SimpleStringProperty(fmt(c.getValue().pValueFisherTwoSided)));
+        colFMidP.setCellValueFactory(c -> new SimpleStringProperty(fmt(c.getValue().pValueMidP)));
+        colFChi.setCellValueFactory(c -> new SimpleStringProperty(fmtRatio(c.getValue().chiCuadradoYates)));
+        colFPChi.setCellValueFactory(c -> new SimpleStringProperty(fmtRatio(c.getValue().pValueChiCuadrado)));
+        colFRRMH.setCellValueFactory(c -> {
+            var mh = foodMH.get(c.getValue().alimentoKey);
+            return new SimpleStringProperty(mh == null ? "" : fmtIc(mh.rrMH, mh.rrMHL, mh.rrMHH));
+        });
+        colFORMH.setCellValueFactory(c -> {
+            var mh = foodMH.get(c.getValue().alimentoKey);
+            return new SimpleStringProperty(mh == null ? "" : fmtIc(mh.orMH, mh.orMHL, mh.orMHH));
+        });
+
+        cbEstratificar.getItems().setAll(SIN_ESTRATIFICAR, "Grupo", "Sexo");
+        cbEstratificar.getSelectionModel().selectFirst();
+        cbEstratificar.valueProperty().addListener((obs, o, n) -> {
+            try {
+                recargarEstratificacion();
+            } catch (SQLException e) {
+                error("Error al estratificar: " + e.getMessage());
+            }
+        });
+
+        configurarCurva();
+        configurarDefiniciones();
+    }
+
+    private void configurarCurva() {
+        cbEpiIntervalo.getItems().setAll(INTERVALOS);
+        cbEpiIntervalo.getSelectionModel().select(INTERVALOS.length - 1);
+        cbEpiIntervalo.valueProperty().addListener((obs, o, n) -> renderCurva());
+        // Reagrupar mientras se arrastra: la curva sale de long[] ordenados, sin consultas
+        sldEpiZoom.valueProperty().addListener((obs, o, n) -> renderCurva());
+        sldEpiPosicion.valueProperty().addListener((obs, o, n) -> renderCurva());
+
+        colIncComida.setCellValueFactory(c -> {
+            var x = c.getValue();
+            String lugar = x.lugarConsumo == null || x.lugarConsumo.isBlank() ? "" : " · " + x.lugarConsumo;
+            return new ReadOnlyStringWrapper(nz(x.fechaConsumo) + lugar + (x.soloFecha ? " (solo fecha)" : ""));
+        });
+        colIncSospechosa.setCellValueFactory(c -> new ReadOnlyStringWrapper(
+                c.getValue().marcadaSospechosa > 0 ? "Sí (" + c.getValue().marcadaSospechosa + ")" : "No"));
+        colIncCasos.setCellValueFactory(c -> new ReadOnlyStringWrapper(c.getValue().casos + " / " + c.getValue().expuestos));
+        colIncMediana.setCellValueFactory(c -> new SimpleStringProperty(fmtRatio(c.getValue().mediana)));
+        colIncRic.setCellValueFactory(c -> new SimpleStringProperty(fmtRango(c.getValue().q1, c.getValue().q3)));
+        colIncRango.setCellValueFactory(c -> new SimpleStringProperty(fmtRango(c.getValue().minimo, c.getValue().maximo)));
+        colIncDescartados.setCellValueFactory(c -> new ReadOnlyStringWrapper(Integer.toString(c.getValue().descartados)));
+    }
+
+    private void configurarDefiniciones() {
+        colDefNombre.setCellValueFactory(c -> new ReadOnlyStringWrapper(nz(c.getValue().definicion.getNombreDefinicion())));
+        colDefAmbito.setCellValueFactory(c -> new ReadOnlyStringWrapper(ambito(c.getValue().definicion)));
+        colDefCasos.setCellValueFactory(c -> new ReadOnlyStringWrapper(Integer.toString(c.getValue().numCasos)));
+        colDefProporcion.setCellValueFactory(c -> new SimpleStringProperty(fmtRatio(c.getValue().proporcion())));
+
+        spnDefMinimo.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(0, 50, 0));
+        cbDefLaboratorio.getItems().setAll(CasoDefinicion.CriterioLaboratorio.values());
+        cbDefLaboratorio.setValue(CasoDefinicion.CriterioLaboratorio.NO_APLICA);
+
+        // Qué pasaría si: cualquier cambio en el editor re-puntúa el brote sobre la instantánea
+        for (TextField tf : List.of(txtDefTodos, txtDefAlguno, txtDefDesde, txtDefHasta)) {
+            tf.textProperty().addListener((o, a, b) -> recalcularQueSi());
+        }
+        spnDefMinimo.valueProperty().addListener((o, a, b) -> recalcularQueSi());
+        chkDefInicio.selectedProperty().addListener((o, a, b) -> recalcularQueSi());
+        cbDefLaboratorio.valueProperty().addListener((o, a, b) -> recalcularQueSi());
+
+        tvDefiniciones.getSelectionModel().selectedItemProperty().addListener((o, a, b) -> {
+            if (b != null) cargarEnEditor(b.definicion);
+        });
+
+        boolean puedeEditar = casoDefinicionService != null && Rol.de(actor).esGlobal();
+        btnDefNueva.setDisable(!puedeEditar);
+        btnDefGuardar.setDisable(!puedeEditar);
+        btnDefEliminar.setDisable(!puedeEditar);
+        chkDefPlantilla.setDisable(!puedeEditar);
     }
 
     /* ===================== Acciones ===================== */
@@ -151,6 +288,7 @@ public class EstadisticaController {
             case "line list" -> "linelist.csv";
             case "curva epidémica" -> "curva_epidemica.csv";
             case "alimentos" -> "alimentos_ataque.csv";
+            case "definiciones de caso" -> "definiciones_caso.csv";
             default -> "estadistica.csv";
         };
         fc.setInitialFileName(sugerido);
@@ -163,6 +301,8 @@ public class EstadisticaController {
             } else if (tab.getText().toLowerCase(Locale.ROOT).contains("curva")) {
                 // reconstruir bins desde el chart
                 exportCurveCsv(bw, chartEpi);
+            } else if (tab.getText().toLowerCase(Locale.ROOT).contains("definiciones")) {
+                exportDefinicionesCsv(bw, tvDefiniciones.getItems());
             } else {
                 exportFoodCsv(bw, tvFood.getItems());
             }
@@ -172,6 +312,53 @@ public class EstadisticaController {
         }
     }
 
+    @FXML
+    private void handleDefNueva() {
+        tvDefiniciones.getSelectionModel().clearSelection();
+        CasoDefinicion d = CasoDefinicionService.porDefecto();
+        d.setNombreDefinicion("");
+        cargarEnEditor(d);
+        txtDefNombre.requestFocus();
+    }
+
+    @FXML
+    private void handleDefGuardar() {
+        if (casoDefinicionService == null) return;
+        try {
+            CasoDefinicion d = leerEditor();
+            if (d.getIdDefinicion() == null) casoDefinicionService.create(d, actor);
+            else casoDefinicionService.update(d, actor);
+            defEnEdicion = d;
+            recargarDefiniciones();
+        } catch (IllegalArgumentException | SecurityException ex) {
+            error(ex.getMessage());
+        } catch (SQLException ex) {
+            error("No se pudo guardar la definición: " + ex.getMessage());
+        }
+    }
+
+    @FXML
+    private void handleDefEliminar() {
+        if (casoDefinicionService == null) return;
+        if (defEnEdicion == null || defEnEdicion.getIdDefinicion() == null) {
+            info("Seleccione una definición guardada.");
+            return;
+        }
+        Alert a = new Alert(Alert.AlertType.CONFIRMATION,
+                "¿Eliminar la definición \"" + defEnEdicion.getNombreDefinicion() + "\"?", ButtonType.YES, ButtonType.NO);
+        a.setHeaderText(null);
+        if (a.showAndWait().orElse(ButtonType.NO) != ButtonType.YES) return;
+        try {
+            casoDefinicionService.delete(defEnEdicion.getIdDefinicion(), actor);
+            defEnEdicion = null;
+            recargarDefiniciones();
+        } catch (IllegalArgumentException | SecurityException ex) {
+            error(ex.getMessage());
+        } catch (SQLException ex) {
+            error("No se pudo eliminar la definición: " + ex.getMessage());
+        }
+    }
+
     @FXML
     private void handleAbrirInforme() {
         try {
@@ -198,37 +385,158 @@ public class EstadisticaController {
 
     private void refrescarTodo() {
         try {
+            // Las tres vistas comparten la instantánea cacheada del brote (se recalcula solo si cambió)
             // Line list
             List<EstadisticaService.LineListRow> ll = estadisticaService.buildLineList(brote.getIdBrote(), actor);
             tvLineList.getItems().setAll(ll);
 
-            // Curva epidémica
-            List<EstadisticaService.EpiBin> bins = estadisticaService.buildEpiCurveDaily(brote.getIdBrote(), actor);
-            renderEpiChart(bins);
+            // Curva epidémica (se reagrupa sobre la instantánea al cambiar intervalo o zoom)
+            snapshot = estadisticaService.snapshot(brote.getIdBrote(), actor);
+            renderCurva();
+            tvIncubacion.getItems().setAll(estadisticaService.computeIncubacionPorComida(brote.getIdBrote(), actor));
 
             // Alimentos
             List<EstadisticaService.FoodAttackRow> foods = estadisticaService.computeAttackByFood(brote.getIdBrote(), actor);
             tvFood.getItems().setAll(foods);
+            recargarEstratificacion();
+
+            // Definiciones de caso (sobre la misma instantánea)
+            recargarDefiniciones();
 
         } catch (SQLException e) {
             error("Error al calcular estadísticas: " + e.getMessage());
             tvLineList.getItems().clear();
             tvFood.getItems().clear();
             chartEpi.getData().clear();
+            tvIncubacion.getItems().clear();
+            tvDefiniciones.getItems().clear();
         }
     }
 
+    private static final String SIN_ESTRATIFICAR = "Ninguno";
+
+    private void recargarEstratificacion() throws SQLException {
+        foodMH.clear();
+        String sel = cbEstratificar.getValue();
+        boolean estratificar = sel != null && !SIN_ESTRATIFICAR.equals(sel);
+        if (estratificar && brote != null) {
+            var por = "Sexo".equals(sel) ? EstadisticaService.Estratificacion.SEXO : EstadisticaService.Estratificacion.GRUPO;
+            for (var r : estadisticaService.computeMantelHaenszelByFood(brote.getIdBrote(), por, actor)) {
+                foodMH.put(r.alimentoKey, r);
+            }
+        }
+        colFRRMH.setVisible(estratificar);
+        colFORMH.setVisible(estratificar);
+        tvFood.refresh();
+    }
+
+    /* ===================== Definiciones de caso ===================== */
+
+    private void recargarDefiniciones() throws SQLException {
+        List<CasoDefinicion> defs = new ArrayList<>();
+        defs.add(CasoDefinicionService.porDefecto());
+        if (casoDefinicionService != null) {
+            defs.addAll(casoDefinicionService.findByBroteIdVisiblePara(brote.getIdBrote(), actor));
+        }
+        String idSel = defEnEdicion == null ? null : defEnEdicion.getIdDefinicion();
+        tvDefiniciones.getItems().setAll(CasoDefinicionService.evaluar(snapshot, defs));
+
+        for (CasoDefinicionService.Resultado r : tvDefiniciones.getItems()) {
+            if (idSel == null ? r.definicion.getIdDefinicion() == null : idSel.equals(r.definicion.getIdDefinicion())) {
+                tvDefiniciones.getSelectionModel().select(r);
+                return;
+            }
+        }
+        tvDefiniciones.getSelectionModel().selectFirst();
+    }
+
+    private void cargarEnEditor(CasoDefinicion d) {
+        defEnEdicion = d;
+        txtDefNombre.setText(nz(d.getNombreDefinicion()));
+        txtDefTodos.setText(nz(d.getSintomasTodos()));
+        txtDefAlguno.setText(nz(d.getSintomasAlguno()));
+        spnDefMinimo.getValueFactory().setValue(d.getMinimoSintomas());
+        txtDefDesde.setText(nz(d.getInicioDesde()));
+        txtDefHasta.setText(nz(d.getInicioHasta()));
+        chkDefInicio.setSelected(d.isRequiereInicio());
+        cbDefLaboratorio.setValue(d.getCriterioLaboratorio());
+        chkDefPlantilla.setSelected(d.getIdDefinicion() != null && d.getIdBrote() == null);
+        recalcularQueSi();
+    }
+
+    /** Definición con lo que hay en el editor (mismo id que la seleccionada, o null si es nueva). */
+    private CasoDefinicion leerEditor() {
+        String id = defEnEdicion == null ? null : defEnEdicion.getIdDefinicion();
+        return new CasoDefinicion(id,
+                chkDefPlantilla.isSelected() ? null : brote.getIdBrote(),
+                txtDefNombre.getText(),
+                emptyToNull(txtDefTodos.getText()),
+                emptyToNull(txtDefAlguno.getText()),
+                spnDefMinimo.getValue() == null ? 0 : spnDefMinimo.getValue(),
+                chkDefInicio.isSelected(),
+                emptyToNull(txtDefDesde.getText()),
+                emptyToNull(txtDefHasta.getText()),
+                cbDefLaboratorio.getValue());
+    }
+
+    private void recalcularQueSi() {
+        if (snapshot == null) return;
+        try {
+            long t0 = System.nanoTime();
+            int casos = CasoDefinicionService.compilar(leerEditor(), snapshot).evaluar().cardinality();
+            double ms = (System.nanoTime() - t0) / 1e6;
+            lblDefQueSi.setText("Con esta definición: " + casos + " casos de " + snapshot.size() + " expuestos ("
+                    + fmtRatio(snapshot.size() == 0 ? Double.NaN : (double) casos / snapshot.size())
+                    + ") · " + DF3.format(ms) + " ms");
+        } catch (IllegalArgumentException ex) {
+            lblDefQueSi.setText(ex.getMessage());
+        }
+    }
+
+    private String ambito(CasoDefinicion d) {
+        if (d.getIdDefinicion() == null) return "Sistema";
+        return d.getIdBrote() == null ? "Plantilla" : "Brote";
+    }
+
     /* ===================== Render / Export helpers ===================== */
 
-    private void renderEpiChart(List<EstadisticaService.EpiBin> bins) {
+    /**
+     * Dibuja la ventana elegida: el zoom fija qué fracción del periodo de inicios se ve y la
+     * posición dónde empieza. Si salen más de MAX_BARRAS intervalos se duplica el ancho.
+     */
+    private void renderCurva() {
         chartEpi.getData().clear();
+        if (snapshot == null || snapshot.numCasosConInicio() == 0) {
+            lblEpiInfo.setText("Sin casos con fecha de inicio");
+            return;
+        }
+        long t0 = System.nanoTime();
+        int sel = Math.max(0, cbEpiIntervalo.getSelectionModel().getSelectedIndex());
+        long ancho = INTERVALO_SEG[sel];
+
+        long primero = snapshot.primerInicio();
+        long periodo = snapshot.ultimoInicio() + 1 - primero;
+        long visible = Math.max(ancho, (long) Math.ceil(periodo * sldEpiZoom.getValue() / 100.0));
+        long desde = primero + (long) ((periodo - Math.min(visible, periodo)) * sldEpiPosicion.getValue() / 100.0);
+        long hasta = desde + visible;
+        while ((hasta - desde) / ancho + 1 > MAX_BARRAS) ancho *= 2;
+
+        CurvaEpidemica.Curva c = estadisticaService.buildEpiCurve(snapshot, ancho, desde, hasta);
+        ancho = c.ancho; // el servicio puede haberlo agrandado (tope de intervalos)
+        DateTimeFormatter df = ancho % CurvaEpidemica.DIA == 0 ? DF_DIA : DF_HORA;
         XYChart.Series<String, Number> s = new XYChart.Series<>();
-        s.setName("Casos por día");
-        DateTimeFormatter df = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        for (var b : bins) {
-            s.getData().add(new XYChart.Data<>(df.format(b.date), b.cases));
+        s.setName("Casos por intervalo de " + duracion(ancho));
+        for (int k = 0; k < c.size(); k++) {
+            s.getData().add(new XYChart.Data<>(df.format(c.inicioFecha(k)), c.casos(k)));
         }
         chartEpi.getData().add(s);
+        double ms = (System.nanoTime() - t0) / 1e6;
+        lblEpiInfo.setText(c.total + " casos · " + c.size() + " intervalos de " + duracion(ancho) + " · " + DF3.format(ms) + " ms");
+    }
+
+    private static String duracion(long seg) {
+        if (seg % CurvaEpidemica.DIA == 0) return (seg / CurvaEpidemica.DIA) + " d";
+        return (seg / CurvaEpidemica.HORA) + " h";
     }
 
     private void exportLineListCsv(BufferedWriter bw, List<EstadisticaService.LineListRow> rows) throws Exception {
@@ -257,15 +565,39 @@ public class EstadisticaController {
     }
 
     private void exportFoodCsv(BufferedWriter bw, List<EstadisticaService.FoodAttackRow> rows) throws Exception {
-        bw.write("alimento;a;b;c;d;AR_expuestos;AR_no_expuestos;RR;RR_L;RR_H;OR;OR_L;OR_H;p_fisher");
+        bw.write("alimento;a;b;c;d;AR_expuestos;AR_no_expuestos;RR;RR_L;RR_H;OR;OR_L;OR_H;p_fisher;p_mid;chi2_yates;p_chi2;" +
+                "RR_MH;RR_MH_L;RR_MH_H;OR_MH;OR_MH_L;OR_MH_H");
         bw.newLine();
         for (var r : rows) {
+            var mh = foodMH.get(r.alimentoKey);
             bw.write(escape(r.alimentoLabel) + ";" +
                     r.a + ";" + r.b + ";" + r.c + ";" + r.d + ";" +
                     fmtCsvRatio(r.arExpuestos) + ";" + fmtCsvRatio(r.arNoExpuestos) + ";" +
                     fmtCsv(r.rr) + ";" + fmtCsv(r.rrL) + ";" + fmtCsv(r.rrH) + ";" +
                     fmtCsv(r.or) + ";" + fmtCsv(r.orL) + ";" + fmtCsv(r.orH) + ";" +
-                    fmtCsv(r.pValueFisherTwoSided));
+                    fmtCsv(r.pValueFisherTwoSided) + ";" + fmtCsv(r.pValueMidP) + ";" +
+                    fmtCsvRatio(r.chiCuadradoYates) + ";" + fmtCsvRatio(r.pValueChiCuadrado) + ";" +
+                    (mh == null ? ";;;;;" :
+                            fmtCsvRatio(mh.rrMH) + ";" + fmtCsvRatio(mh.rrMHL) + ";" + fmtCsvRatio(mh.rrMHH) + ";" +
+                            fmtCsvRatio(mh.orMH) + ";" + fmtCsvRatio(mh.orMHL) + ";" + fmtCsvRatio(mh.orMHH)));
+            bw.newLine();
+        }
+    }
+
+    private void exportDefinicionesCsv(BufferedWriter bw, List<CasoDefinicionService.Resultado> rows) throws Exception {
+        bw.write("definicion;ambito;sintomas_todos;sintomas_alguno;minimo_sintomas;inicio_desde;inicio_hasta;laboratorio;casos;proporcion");
+        bw.newLine();
+        for (var r : rows) {
+            CasoDefinicion d = r.definicion;
+            bw.write(escape(d.getNombreDefinicion()) + ";" +
+                    ambito(d) + ";" +
+                    escape(nz(d.getSintomasTodos())) + ";" +
+                    escape(nz(d.getSintomasAlguno())) + ";" +
+                    d.getMinimoSintomas() + ";" +
+                    escape(nz(d.getInicioDesde())) + ";" +
+                    escape(nz(d.getInicioHasta())) + ";" +
+                    d.getCriterioLaboratorio() + ";" +
+                    r.numCasos + ";" + fmtCsvRatio(r.proporcion()));
             bw.newLine();
         }
     }
@@ -273,6 +605,7 @@ public class EstadisticaController {
     /* ===================== Utils ===================== */
 
     private static String nz(String s) { return s == null ? "" : s; }
+    private static String emptyToNull(String s) { return s == null || s.isBlank() ? null : s.trim(); }
 
     private static void info(String msg) {
         Alert a = new Alert(Alert.AlertType.INFORMATION, msg, ButtonType.OK);
@@ -303,4 +636,15 @@ public class EstadisticaController {
         return DF3.format(r); // si prefieres %, usa `DF3.format(r*100) + "%"`
     }
     private static String fmtCsvRatio(double r) { return fmtRatio(r); }
+
+    private static String fmtRango(double l, double h) {
+        if (Double.isNaN(l)) return "";
+        return fmtRatio(l) + "–" + fmtRatio(h);
+    }
+
+    private static String fmtIc(double v, double l, double h) {
+        String s = fmtRatio(v);
+        if (s.isEmpty()) return "";
+        return s + " (" + fmtRatio(l) + "–" + fmtRatio(h) + ")";
+    }
 }
@@ -4,17 +4,22 @@ import com.toxisafe.model.Brote;
 import com.toxisafe.model.PersonaExpuesta;
 import com.toxisafe.model.Usuario;
 import com.toxisafe.service.*;
+import com.toxisafe.util.Texto;
 import javafx.beans.binding.Bindings;
 import javafx.collections.FXCollections;
 import javafx.collections.transformation.FilteredList;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
+import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 
+import java.io.File;
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Locale;
@@ -36,7 +41,7 @@ public class ExpuestoController {
     @FXML private TableColumn<PersonaExpuesta, String> colEC; // estado coprocultivo
     @FXML private TableColumn<PersonaExpuesta, String> colEF; // estado frotis
 
-    @FXML private Button btnNuevo, btnEditar, btnEliminar, btnCerrar, btnIngestas, btnSintomas;
+    @FXML private Button btnNuevo, btnImportar, btnEditar, btnEliminar, btnCerrar, btnIngestas, btnSintomas;
 
     private IngestaService ingestaService;
     private AlimentoService alimentoService;
@@ -141,8 +146,13 @@ public class ExpuestoController {
         }
     }
 
+    // Filtro al dejar de escribir, no en cada pulsación
+    private final SugerenciasAsincronas<String> filtroDiferido =
+            new SugerenciasAsincronas<>(texto -> texto, texto -> refrescarFiltro(),
+                    e -> alertError("No se pudo aplicar el filtro: " + e.getMessage()), 150);
+
     private void configurarFiltro() {
-        txtFiltro.textProperty().addListener((obs, old, val) -> refrescarFiltro());
+        txtFiltro.textProperty().addListener((obs, old, val) -> filtroDiferido.pedir(val));
     }
 
     private void refrescarFiltro() {
@@ -165,10 +175,11 @@ public class ExpuestoController {
     }
 
     private void configurarBotonesPorPermisos() {
-        String rol = norm(currentUser.getRolUsuario());
+        String rol = Texto.rol(currentUser.getRolUsuario());
         boolean canManage = rol.equals("ADMIN") || rol.equals("EPIDEMIOLOGO") || rol.equals("MIR_SALUD_PUBLICA");
 
         btnNuevo.setDisable(false);
+        btnImportar.setDisable(false);
         btnEditar.setDisable(false);
         btnEliminar.setDisable(false);
 
@@ -180,6 +191,7 @@ public class ExpuestoController {
 
     private void disableAll() {
         btnNuevo.setDisable(true);
+        btnImportar.setDisable(true);
         btnEditar.setDisable(true);
         btnEliminar.setDisable(true);
     }
@@ -191,6 +203,72 @@ public class ExpuestoController {
         abrirDialogo(null);
     }
 
+    @FXML
+    private void handleImportar() {
+        FileChooser fc = new FileChooser();
+        fc.setTitle("Importar expuestos");
+        fc.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Excel o CSV (*.xlsx, *.csv)", "*.xlsx", "*.csv"),
+                new FileChooser.ExtensionFilter("Excel (*.xlsx)", "*.xlsx"),
+                new FileChooser.ExtensionFilter("CSV (*.csv)", "*.csv")
+        );
+        File f = fc.showOpenDialog(tabla.getScene().getWindow());
+        if (f == null) return;
+
+        ImportacionExpuestosService importacion = new ImportacionExpuestosService(personaExpuestaService);
+        Task<ImportacionExpuestosService.Resultado> tarea = new Task<>() {
+            @Override
+            protected ImportacionExpuestosService.Resultado call() throws Exception {
+                return importacion.importar(f.toPath(), brote.getIdBrote(), currentUser);
+            }
+        };
+        btnImportar.setDisable(true);
+        tabla.setPlaceholder(new Label("Importando " + f.getName() + "..."));
+        tarea.setOnSucceeded(ev -> {
+            btnImportar.setDisable(false);
+            tabla.setPlaceholder(new Label("Sin personas expuestas para este brote."));
+            cargarDatos();
+            refrescarFiltro();
+            mostrarResultadoImportacion(tarea.getValue(), f);
+        });
+        tarea.setOnFailed(ev -> {
+            btnImportar.setDisable(false);
+            tabla.setPlaceholder(new Label("Sin personas expuestas para este brote."));
+            Throwable ex = tarea.getException();
+            if (!(ex instanceof IllegalArgumentException || ex instanceof SecurityException
+                    || ex instanceof IllegalStateException)) ex.printStackTrace();
+            alertError("No se pudo importar: " + ex.getMessage());
+        });
+        Thread t = new Thread(tarea, "toxisafe-importar-expuestos");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void mostrarResultadoImportacion(ImportacionExpuestosService.Resultado r, File origen) {
+        String resumen = "Filas leídas: " + r.filasLeidas() + "\nImportadas: " + r.importadas()
+                + "\nCon errores: " + r.errores().size();
+        if (!r.tieneErrores()) { alertInfo(resumen); return; }
+
+        Alert a = new Alert(Alert.AlertType.WARNING, resumen + "\n\n¿Guardar el informe de errores?",
+                ButtonType.YES, ButtonType.NO);
+        a.setHeaderText("Importación con errores");
+        if (a.showAndWait().orElse(ButtonType.NO) != ButtonType.YES) return;
+
+        FileChooser fc = new FileChooser();
+        fc.setTitle("Guardar informe de errores");
+        fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV (*.csv)", "*.csv"));
+        String base = origen.getName().replaceFirst("\\.[^.]+$", "");
+        fc.setInitialFileName(base + "_errores.csv");
+        File destino = fc.showSaveDialog(tabla.getScene().getWindow());
+        if (destino == null) return;
+        try {
+            ImportacionExpuestosService.escribirInforme(r, destino.toPath());
+            alertInfo("Informe guardado en: " + destino.getAbsolutePath());
+        } catch (IOException e) {
+            alertError("No se pudo guardar el informe: " + e.getMessage());
+        }
+    }
+
     @FXML
     private void handleEditar() {
         PersonaExpuesta sel = tabla.getSelectionModel().getSelectedItem();
@@ -315,11 +393,4 @@ public class ExpuestoController {
         Alert a = new Alert(Alert.AlertType.ERROR, msg, ButtonType.OK);
         a.setHeaderText("Error"); a.showAndWait();
     }
-
-    private String norm(String s) {
-        if (s == null) return "";
-        String up = java.text.Normalizer.normalize(s, java.text.Normalizer.Form.NFD)
-                .replaceAll("\\p{M}", "");
-        return up.trim().toUpperCase(Locale.ROOT).replace(' ', '_');
-    }
 }
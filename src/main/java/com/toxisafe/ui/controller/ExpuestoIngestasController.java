@@ -7,6 +7,7 @@ import com.toxisafe.model.Usuario;
 import com.toxisafe.service.AlimentoService;
 import com.toxisafe.service.BroteService;
 import com.toxisafe.service.IngestaService;
+import com.toxisafe.util.Texto;
 import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
 import javafx.collections.FXCollections;
@@ -63,9 +64,19 @@ public class ExpuestoIngestasController {
     private boolean puedeEscribir = false;
 
     // control de reentradas
-    private volatile boolean updatingSuggestions = false;
+    private boolean updatingSuggestions = false;   // solo mientras se aplica el resultado (hilo FX)
     private volatile boolean internalComboChange = false;
 
+    private static final long ESPERA_SUGERENCIAS_MS = 120;
+
+    // Sugerencias del catálogo: antirrebote y cancela la consulta anterior. Sin caché: el índice
+    // del catálogo responde en microsegundos y así las altas de catálogo/alias se ven al momento
+    private final SugerenciasAsincronas<List<String>> sugerencias = new SugerenciasAsincronas<>(
+            texto -> alimentoService == null ? null : alimentoService.catalogoSugerencias(texto),
+            this::aplicarSugerenciasCatalogo,
+            e -> error("No se pudieron cargar las sugerencias del catálogo: " + e.getMessage()),
+            ESPERA_SUGERENCIAS_MS);
+
     /* ======================== Inyección de contexto ======================== */
 
     public void init(Usuario usuario,
@@ -112,15 +123,14 @@ public class ExpuestoIngestasController {
             Platform.runLater(() -> internalComboChange = false);
         });
 
-        // Carga inicial de sugerencias
-        Platform.runLater(() -> recargarSugerenciasCatalogo(""));
+        // Carga inicial de sugerencias (tras init(), que inyecta el servicio)
+        Platform.runLater(() -> sugerencias.pedir(""));
 
         // Listener del editor: solo si el usuario está escribiendo y no estamos en selección interna
         cmbCatalogo.getEditor().textProperty().addListener((obs, old, val) -> {
             if (updatingSuggestions || internalComboChange) return;
             if (!cmbCatalogo.getEditor().isFocused()) return; // evita disparar al rellenar por selección
-            String pref = (val == null) ? "" : val.trim();
-            recargarSugerenciasCatalogo(pref); // se ejecuta en background y actualiza en FX al final
+            sugerencias.pedir(val); // la consulta sale al dejar de escribir; solo se aplica la última
         });
 
         tvAlimentos.getSelectionModel().selectedItemProperty().addListener((o, a, b) -> refrescarBotones());
@@ -337,6 +347,7 @@ public class ExpuestoIngestasController {
             alimentoService.create(nuevo, currentUser);
 
             cargarAlimentosDeIngesta(sel.getIdIngesta());
+            sugerencias.cancelar(); // no reabrir el popup con una consulta ya en vuelo
 
             // Limpieza protegida para no disparar listeners del combo en medio de selección
             internalComboChange = true;
@@ -404,7 +415,7 @@ public class ExpuestoIngestasController {
     /* ======================== Permisos/Estado UI ======================== */
 
     private void refrescarEstadoYPermisos() {
-        String r = safe(currentUser.getRolUsuario());
+        String r = Texto.rol(currentUser.getRolUsuario());
         boolean isAdmin = r.equals("ADMIN");
         boolean isEpi   = r.equals("EPIDEMIOLOGO");
         boolean isMir   = r.equals("MIR_SALUD_PUBLICA");
@@ -469,13 +480,6 @@ public class ExpuestoIngestasController {
 
     private static String nullToEmpty(String s) { return s == null ? "" : s; }
 
-    private static String safe(String s) {
-        if (s == null) return "";
-        String up = java.text.Normalizer.normalize(s, java.text.Normalizer.Form.NFD)
-                .replaceAll("\\p{M}", "");
-        return up.trim().toUpperCase(java.util.Locale.ROOT).replace(' ', '_');
-    }
-
     private void info(String msg) {
         Alert a = new Alert(Alert.AlertType.INFORMATION, msg, ButtonType.OK);
         a.setHeaderText(null); a.showAndWait();
@@ -486,32 +490,18 @@ public class ExpuestoIngestasController {
     }
 
     /**
-     * Recarga de sugerencias: consulta en background y aplica el resultado en el hilo FX.
+     * Aplica en el hilo FX el resultado de la última consulta de sugerencias.
      * No toca selección ni editor; solo reemplaza el contenido de la lista fija.
      */
-    private void recargarSugerenciasCatalogo(String texto) {
-        final String pref = (texto == null) ? "" : texto.trim();
-        if (updatingSuggestions) return;
-
+    private void aplicarSugerenciasCatalogo(List<String> result) {
         updatingSuggestions = true;
-        new Thread(() -> {
-            List<String> sugs;
-            try {
-                sugs = alimentoService.catalogoSugerencias(pref);
-            } catch (Exception e) {
-                sugs = List.of();
+        try {
+            catalogoItems.setAll(result);
+            if (!result.isEmpty() && cmbCatalogo.isFocused() && !cmbCatalogo.isShowing()) {
+                cmbCatalogo.show();
             }
-            final List<String> result = sugs;
-            Platform.runLater(() -> {
-                try {
-                    catalogoItems.setAll(result);
-                    if (!result.isEmpty() && cmbCatalogo.isFocused() && !cmbCatalogo.isShowing()) {
-                        cmbCatalogo.show();
-                    }
-                } finally {
-                    updatingSuggestions = false;
-                }
-            });
-        }, "catalogo-suggest-loader").start();
+        } finally {
+            updatingSuggestions = false;
+        }
     }
 }
@@ -6,6 +6,7 @@ import com.toxisafe.model.Usuario;
 import com.toxisafe.service.BroteEncuestadorService;
 import com.toxisafe.service.EstadisticaService;
 import com.toxisafe.service.InformeService;
+import com.toxisafe.util.Texto;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -78,13 +79,12 @@ public class InformeController {
         lblEstadoBrote.setText(brote.getEstadoBrote());
 
         // Permisos: ADMIN/EPIDEMIOLOGO/MIR -> sí; ENCUESTADOR sólo si está asignado
-        String rol = safe(actor.getRolUsuario());
+        String rol = Texto.rol(actor.getRolUsuario());
         if (rol.equals("ADMIN") || rol.equals("EPIDEMIOLOGO") || rol.equals("MIR_SALUD_PUBLICA")) {
             puedeGestionar = true;
         } else if (rol.equals("ENCUESTADOR")) {
             try {
-                puedeGestionar = broteEncuestadorService.findByUsuarioId(actor.getIdUsuario())
-                        .stream().anyMatch(be -> brote.getIdBrote().equals(be.getIdBrote()));
+                puedeGestionar = broteEncuestadorService.estaAsignado(actor.getIdUsuario(), brote.getIdBrote());
             } catch (Exception e) {
                 puedeGestionar = false;
             }
@@ -295,13 +295,6 @@ public class InformeController {
         }
     }
 
-    private static String safe(String s) {
-        if (s == null) return "";
-        String up = java.text.Normalizer.normalize(s, java.text.Normalizer.Form.NFD)
-                .replaceAll("\\p{M}", "");
-        return up.trim().toUpperCase(Locale.ROOT).replace(' ', '_');
-    }
-
     private void info(String msg) {
         Alert a = new Alert(Alert.AlertType.INFORMATION, msg, ButtonType.OK);
         a.setHeaderText(null); a.showAndWait();
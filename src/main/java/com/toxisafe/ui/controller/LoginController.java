@@ -84,11 +84,11 @@ public class LoginController {
             com.toxisafe.ui.controller.MainController main = loader.getController();
             main.setContext(usuario, usuarioService);
 
-            java.sql.Connection conn = com.toxisafe.util.DBConnection.getConnection();
+            com.toxisafe.util.ConnectionPool pool = com.toxisafe.util.DBConnection.getPool();
 
-            com.toxisafe.dao.BroteDao bDao = new com.toxisafe.dao.impl.BroteDaoImpl(conn);
-            com.toxisafe.dao.BroteEncuestadorDao beDao = new com.toxisafe.dao.impl.BroteEncuestadorDaoImpl(conn);
-            com.toxisafe.dao.UsuarioDao uDao = new com.toxisafe.dao.impl.UsuarioDaoImpl(conn);
+            com.toxisafe.dao.BroteDao bDao = new com.toxisafe.dao.impl.BroteDaoImpl(pool);
+            com.toxisafe.dao.BroteEncuestadorDao beDao = new com.toxisafe.dao.impl.BroteEncuestadorDaoImpl(pool);
+            com.toxisafe.dao.UsuarioDao uDao = new com.toxisafe.dao.impl.UsuarioDaoImpl(pool);
 
             com.toxisafe.service.BroteService broteService =
                     new com.toxisafe.service.BroteService(bDao, beDao, uDao);
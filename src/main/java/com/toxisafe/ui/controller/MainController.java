@@ -6,28 +6,34 @@ import com.toxisafe.dao.PersonaExpuestaDao;
 import com.toxisafe.dao.impl.BroteDaoImpl;
 import com.toxisafe.dao.impl.PersonaExpuestaDaoImpl;
 import com.toxisafe.model.Brote;
+import com.toxisafe.model.Rol;
 import com.toxisafe.model.Usuario;
 import com.toxisafe.service.*;
+import com.toxisafe.util.ConnectionPool;
 import com.toxisafe.util.DBConnection;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
+import javafx.scene.control.ButtonType;
 import javafx.scene.control.Label;
+import javafx.scene.control.TextArea;
 import javafx.scene.layout.AnchorPane;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 
 
-import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Locale;
 
 public class MainController {
     @FXML private Label lblUsuario;
     @FXML private AnchorPane contentArea;
     @FXML private Button btnUsuarios;
+    @FXML private Button btnRevincular;
     // Servicios compartidos por el módulo
     private BroteService broteService;
     private BroteEncuestadorService broteEncuestadorService;
@@ -44,6 +50,7 @@ public class MainController {
     private SintomasGeneralesExpuestoService sintomasGeneralesExpuestoService;
     private InformeService informeService;
     private EstadisticaService estadisticaService;
+    private CasoDefinicionService casoDefinicionService;
 
 
 
@@ -56,26 +63,30 @@ public class MainController {
         boolean esAdmin = "ADMIN".equalsIgnoreCase(currentUser.getRolUsuario());
         btnUsuarios.setVisible(esAdmin);
         btnUsuarios.setManaged(esAdmin);
+        boolean esGlobal = Rol.de(currentUser).esGlobal();
+        btnRevincular.setVisible(esGlobal);
+        btnRevincular.setManaged(esGlobal);
 
         // Inicializa solo una vez
         if (this.broteService == null) {
-            Connection conn = DBConnection.getConnection();
+            ConnectionPool pool = DBConnection.getPool();
 
             // --- DAOs ---
-            com.toxisafe.dao.BroteDao broteDao = new com.toxisafe.dao.impl.BroteDaoImpl(conn);
-            com.toxisafe.dao.BroteEncuestadorDao broteEncDao = new com.toxisafe.dao.impl.BroteEncuestadorDaoImpl(conn);
-            com.toxisafe.dao.PersonaExpuestaDao personaExpDao = new com.toxisafe.dao.impl.PersonaExpuestaDaoImpl(conn);
-            com.toxisafe.dao.IngestaDao ingestaDao = new com.toxisafe.dao.impl.IngestaDaoImpl(conn);
-            com.toxisafe.dao.IngestaPersonaExpuestaDao linkDao = new com.toxisafe.dao.impl.IngestaPersonaExpuestaDaoImpl(conn);
-            com.toxisafe.dao.AlimentoDao alimentoDao = new com.toxisafe.dao.impl.AlimentoDaoImpl(conn);
-            com.toxisafe.dao.UsuarioDao usuarioDao = new com.toxisafe.dao.impl.UsuarioDaoImpl(conn);
-            com.toxisafe.dao.AlimentoCatalogoDao alimentoCatalogoDao = new com.toxisafe.dao.impl.AlimentoCatalogoDaoImpl(conn);
-            com.toxisafe.dao.AlimentoCatalogoAliasDao alimentoCatalogoAliasDao = new com.toxisafe.dao.impl.AlimentoCatalogoAliasDaoImpl(conn);
-            com.toxisafe.dao.GrupoSintomaDao grupoDao = new com.toxisafe.dao.impl.GrupoSintomaDaoImpl(conn);
-            com.toxisafe.dao.SintomaDao sintomaDao = new com.toxisafe.dao.impl.SintomaDaoImpl(conn);
-            com.toxisafe.dao.SintomasGeneralesExpuestoDao genDao = new com.toxisafe.dao.impl.SintomasGeneralesExpuestoDaoImpl(conn);
-            com.toxisafe.dao.ExposicionSintomaDao expDao = new com.toxisafe.dao.impl.ExposicionSintomaDaoImpl(conn);
-            com.toxisafe.dao.InformeDao informeDao = new com.toxisafe.dao.impl.InformeDaoImpl(conn);
+            com.toxisafe.dao.BroteDao broteDao = new com.toxisafe.dao.impl.BroteDaoImpl(pool);
+            com.toxisafe.dao.BroteEncuestadorDao broteEncDao = new com.toxisafe.dao.impl.BroteEncuestadorDaoImpl(pool);
+            com.toxisafe.dao.PersonaExpuestaDao personaExpDao = new com.toxisafe.dao.impl.PersonaExpuestaDaoImpl(pool);
+            com.toxisafe.dao.IngestaDao ingestaDao = new com.toxisafe.dao.impl.IngestaDaoImpl(pool);
+            com.toxisafe.dao.IngestaPersonaExpuestaDao linkDao = new com.toxisafe.dao.impl.IngestaPersonaExpuestaDaoImpl(pool);
+            com.toxisafe.dao.AlimentoDao alimentoDao = new com.toxisafe.dao.impl.AlimentoDaoImpl(pool);
+            com.toxisafe.dao.UsuarioDao usuarioDao = new com.toxisafe.dao.impl.UsuarioDaoImpl(pool);
+            com.toxisafe.dao.AlimentoCatalogoDao alimentoCatalogoDao = new com.toxisafe.dao.impl.AlimentoCatalogoDaoImpl(pool);
+            com.toxisafe.dao.AlimentoCatalogoAliasDao alimentoCatalogoAliasDao = new com.toxisafe.dao.impl.AlimentoCatalogoAliasDaoImpl(pool);
+            com.toxisafe.dao.GrupoSintomaDao grupoDao = new com.toxisafe.dao.impl.GrupoSintomaDaoImpl(pool);
+            com.toxisafe.dao.SintomaDao sintomaDao = new com.toxisafe.dao.impl.SintomaDaoImpl(pool);
+            com.toxisafe.dao.SintomasGeneralesExpuestoDao genDao = new com.toxisafe.dao.impl.SintomasGeneralesExpuestoDaoImpl(pool);
+            com.toxisafe.dao.ExposicionSintomaDao expDao = new com.toxisafe.dao.impl.ExposicionSintomaDaoImpl(pool);
+            com.toxisafe.dao.InformeDao informeDao = new com.toxisafe.dao.impl.InformeDaoImpl(pool);
+            com.toxisafe.dao.CasoDefinicionDao casoDefDao = new com.toxisafe.dao.impl.CasoDefinicionDaoImpl(pool);
 
             // --- Services base (ORDEN IMPORTANTE) ---
             this.broteEncuestadorService = new com.toxisafe.service.BroteEncuestadorService(broteEncDao, broteDao, usuarioDao);
@@ -145,6 +156,29 @@ public class MainController {
                     sintomaService
             );
 
+            this.casoDefinicionService = new com.toxisafe.service.CasoDefinicionService(
+                    casoDefDao,
+                    broteDao,
+                    sintomaDao,
+                    broteEncuestadorService
+            );
+
+            // Escrituras locales -> oyentes en proceso (invalida la caché de Estadística por brote).
+            // Estos services no escriben en la carpeta compartida: el emisor solo notifica.
+            com.toxisafe.sync.SyncEmitter local = com.toxisafe.sync.util.SyncEvents.notificando(null);
+            this.broteService.setSyncEmitter(local);
+            this.personaExpuestaService.setSyncEmitter(local);
+            this.ingestaService.setSyncEmitter(local);
+            this.alimentoService.setSyncEmitter(local);
+            this.sintomasGeneralesExpuestoService.setSyncEmitter(local);
+            this.broteEncuestadorService.setSyncEmitter(local);
+            this.informeService.setSyncEmitter(local);
+            com.toxisafe.sync.util.SyncEvents.addListener(this.estadisticaService);
+            com.toxisafe.sync.util.SyncEvents.addListener(this.broteEncuestadorService); // caché de asignaciones
+
+            // Índice del catálogo de alimentos en memoria: el autocompletado no toca la BD
+            this.alimentoService.recargarIndiceCatalogo();
+
             // Diagnóstico inequívoco (usa "this." para evitar sombras)
             System.out.println("[DI] this.broteEncuestadorService=" + (this.broteEncuestadorService != null));
             System.out.println("[DI] this.ingestaService=" + (this.ingestaService != null));
@@ -157,18 +191,19 @@ public class MainController {
     public void setBroteServices(BroteService broteService, BroteEncuestadorService broteEncuestadorService) {
         this.broteService = broteService;
         this.broteEncuestadorService = broteEncuestadorService;
+        if (broteEncuestadorService != null) com.toxisafe.sync.util.SyncEvents.addListener(broteEncuestadorService);
     }
 
     private void ensurePersonaExpuestaService() throws SQLException {
         if (personaExpuestaService == null) {
-            // Reutiliza la conexión singleton de DBConnection
-            Connection conn = DBConnection.getConnection();
+            // Reutiliza el pool de conexiones de DBConnection
+            ConnectionPool pool = DBConnection.getPool();
 
             // DAO de expuestos
-            PersonaExpuestaDao peDao = new PersonaExpuestaDaoImpl(conn);
+            PersonaExpuestaDao peDao = new PersonaExpuestaDaoImpl(pool);
 
             // Necesitamos un BroteDao para el service (no accedemos al del BroteService)
-            BroteDao bDao = new BroteDaoImpl(conn);
+            BroteDao bDao = new BroteDaoImpl(pool);
 
             // Usa el BroteEncuestadorService que ya tienes (para chequear asignaciones)
             personaExpuestaService = new PersonaExpuestaService(peDao, bDao, broteEncuestadorService);
@@ -244,6 +279,7 @@ public class MainController {
             controller.setIngestaServices(ingestaService, alimentoService, broteService);
             controller.setSintomasController(sintomaService, grupoSintomaService, sintomasGeneralesExpuestoService);
             controller.setAnalisis(informeService, estadisticaService);
+            controller.setDefinicionesCaso(casoDefinicionService);
             controller.setMainController(this);
 
             AnchorPane.setTopAnchor(view, 0.0);
@@ -285,6 +321,83 @@ public class MainController {
     }
 
 
+    /* =================== Revinculación con el catálogo =================== */
+
+    /** Primero una simulación (aplicar = false); con su informe a la vista, se confirma y se aplica. */
+    @FXML
+    private void revincularCatalogo() {
+        if (!Rol.de(currentUser).esGlobal()) {
+            new Alert(Alert.AlertType.WARNING, "Solo los perfiles globales pueden revincular el catálogo.").showAndWait();
+            return;
+        }
+        ejecutarRevinculacion(false);
+    }
+
+    private void ejecutarRevinculacion(boolean aplicar) {
+        Task<AlimentoService.InformeRevinculacion> tarea = new Task<>() {
+            @Override
+            protected AlimentoService.InformeRevinculacion call() throws Exception {
+                return alimentoService.revincularCatalogo(aplicar, currentUser);
+            }
+        };
+        btnRevincular.setDisable(true);
+        tarea.setOnSucceeded(ev -> {
+            btnRevincular.setDisable(false);
+            if (aplicar) {
+                new Alert(Alert.AlertType.INFORMATION,
+                        "Alimentos vinculados al catálogo: " + tarea.getValue().vinculadas).showAndWait();
+            } else {
+                confirmarRevinculacion(tarea.getValue());
+            }
+        });
+        tarea.setOnFailed(ev -> {
+            btnRevincular.setDisable(false);
+            Throwable ex = tarea.getException();
+            if (!(ex instanceof IllegalArgumentException || ex instanceof SecurityException
+                    || ex instanceof IllegalStateException)) ex.printStackTrace();
+            new Alert(Alert.AlertType.ERROR, "No se pudo revincular el catálogo: " + ex.getMessage()).showAndWait();
+        });
+        Thread t = new Thread(tarea, "toxisafe-revincular-catalogo");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void confirmarRevinculacion(AlimentoService.InformeRevinculacion inf) {
+        int vinculables = 0;
+        StringBuilder detalle = new StringBuilder();
+        for (AlimentoService.PropuestaVinculo p : inf.propuestas) {
+            var r = p.resolucion;
+            if (r.vinculable()) vinculables += p.filas - p.omitidasCerrado;
+            detalle.append(r.texto).append(" -> ")
+                    .append(r.nombreCanonico == null ? "(sin candidato)" : r.nombreCanonico)
+                    .append(String.format(Locale.ROOT, "  [%s, %.0f%%]  x%d", r.confianza, r.similitud * 100, p.filas));
+            if (p.omitidasCerrado > 0) detalle.append(" (").append(p.omitidasCerrado).append(" en brotes cerrados)");
+            detalle.append('\n');
+        }
+        String resumen = "Alimentos sin catálogo: " + inf.revisadas
+                + "\n  Coincidencia exacta: " + inf.exactas
+                + "\n  Coincidencia alta: " + inf.altas
+                + "\n  Para revisar: " + inf.paraRevisar
+                + "\n  Sin candidato: " + inf.sinCandidato
+                + "\n  En brotes cerrados (no se tocan): " + inf.omitidasCerrado;
+        if (vinculables == 0) {
+            Alert a = new Alert(Alert.AlertType.INFORMATION, resumen + "\n\nNo hay alimentos que vincular automáticamente.");
+            a.setHeaderText("Revinculación con el catálogo");
+            a.showAndWait();
+            return;
+        }
+
+        Alert conf = new Alert(Alert.AlertType.CONFIRMATION,
+                resumen + "\n\nSe vincularán " + vinculables + " alimentos (coincidencias exactas y altas). ¿Aplicar?",
+                ButtonType.OK, ButtonType.CANCEL);
+        conf.setHeaderText("Revinculación con el catálogo (simulación)");
+        TextArea txt = new TextArea(detalle.toString());
+        txt.setEditable(false);
+        txt.setPrefRowCount(14);
+        conf.getDialogPane().setExpandableContent(txt);
+        if (conf.showAndWait().orElse(ButtonType.CANCEL) == ButtonType.OK) ejecutarRevinculacion(true);
+    }
+
     @FXML private void showConfig() { loadViewSimple("/com/toxisafe/ui/view/config.fxml"); }
 
     @FXML
@@ -292,6 +405,10 @@ public class MainController {
         try {
             // 1) Opcional: limpia el estado de sesión si tienes algo así
             //SessionManager.getInstance().clear();
+            if (broteEncuestadorService != null) {
+                broteEncuestadorService.invalidarAutorizaciones();
+                com.toxisafe.sync.util.SyncEvents.removeListener(broteEncuestadorService);
+            }
 
             // 2) Carga el login
             javafx.stage.Stage stage =
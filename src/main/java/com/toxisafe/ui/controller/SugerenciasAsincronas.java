@@ -0,0 +1,92 @@
+package com.toxisafe.ui.controller;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Búsquedas "mientras se escribe" para combos y campos de filtro:
+ * - Antirrebote: la consulta sale {@code esperaMs} después de la última pulsación
+ * - Cada petición lleva un número de secuencia; una petición nueva cancela la pendiente y
+ *   solo se entrega (en el hilo FX) el resultado de la última, aunque otra termine después
+ * - Si la consulta falla, el error de la última petición va al controlador (hilo FX)
+ * - Un único hilo trabajador (daemon) compartido por todas las instancias: las consultas no
+ *   se acumulan en hilos sueltos
+ *
+ * Uso típico: {@code pedir(texto)} desde el listener del editor (hilo FX).
+ */
+public final class SugerenciasAsincronas<T> {
+
+    /** Consulta a ejecutar fuera del hilo FX. */
+    @FunctionalInterface
+    public interface Consulta<T> {
+        T buscar(String texto) throws Exception;
+    }
+
+    private static final ScheduledExecutorService TRABAJADOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "toxisafe-sugerencias");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Consulta<T> consulta;
+    private final Consumer<T> alRecibir;
+    private final Consumer<Exception> alFallar;
+    private final long esperaMs;
+
+    private final AtomicLong secuencia = new AtomicLong();
+    private ScheduledFuture<?> pendiente;          // solo se toca desde pedir()/cancelar()
+
+    /**
+     * @param consulta   se ejecuta en el hilo trabajador
+     * @param alRecibir  recibe el resultado de la última petición, en el hilo FX
+     * @param alFallar   recibe el error de la última petición, en el hilo FX
+     * @param esperaMs   antirrebote
+     */
+    public SugerenciasAsincronas(Consulta<T> consulta, Consumer<T> alRecibir, Consumer<Exception> alFallar,
+                                 long esperaMs) {
+        this.consulta = consulta;
+        this.alRecibir = alRecibir;
+        this.alFallar = alFallar;
+        this.esperaMs = esperaMs;
+    }
+
+    /** Pide resultados para el texto; sustituye a cualquier petición anterior aún no entregada. */
+    public synchronized void pedir(String texto) {
+        String clave = texto == null ? "" : texto.trim();
+        long seq = secuencia.incrementAndGet();
+        if (pendiente != null) pendiente.cancel(false);
+        pendiente = TRABAJADOR.schedule(() -> ejecutar(seq, clave), esperaMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Descarta la petición pendiente y cualquier resultado en curso. */
+    public synchronized void cancelar() {
+        secuencia.incrementAndGet();
+        if (pendiente != null) pendiente.cancel(false);
+        pendiente = null;
+    }
+
+    private void ejecutar(long seq, String clave) {
+        if (seq != secuencia.get()) return; // superada antes de empezar
+        T r;
+        try {
+            r = consulta.buscar(clave);
+        } catch (Exception e) {
+            entregar(seq, () -> alFallar.accept(e));
+            return;
+        }
+        if (r == null) return;
+        entregar(seq, () -> alRecibir.accept(r));
+    }
+
+    // Solo llega a la UI si nadie ha pedido otra cosa mientras tanto
+    private void entregar(long seq, Runnable alUi) {
+        if (seq != secuencia.get()) return;
+        Platform.runLater(() -> { if (seq == secuencia.get()) alUi.run(); });
+    }
+}
@@ -0,0 +1,234 @@
+package com.toxisafe.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pool de conexiones SQLite en modo WAL: una conexión escritora y N lectoras.
+ * - Con WAL se lee mientras otro hilo escribe: las pantallas no esperan a la sincronización
+ * - {@link #writer()} presta la única escritora (SQLite admite un escritor) en exclusiva y de
+ *   forma reentrante en el mismo hilo: una transacción abierta con ella engloba las escrituras
+ *   de los DAOs que se llamen dentro
+ * - {@link #reader()} presta una lectora (query_only); si el hilo ya tiene la escritora devuelve
+ *   esa, para ver sus propios cambios aún sin confirmar
+ * - Cerrar la Connection prestada la devuelve al pool (la conexión física sigue abierta)
+ * - prepareStatement(sql) reutiliza la sentencia ya compilada en esa conexión ({@link StatementCache}):
+ *   los DAOs siguen preparando y cerrando en cada llamada, sin que SQLite vuelva a analizar la SQL
+ */
+public final class ConnectionPool implements AutoCloseable {
+
+    public static final int LECTORES_DEFECTO =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    public static final int SENTENCIAS_DEFECTO = 128;     // por conexión; los DAOs usan ~115 SQL distintas
+
+    static final int BUSY_TIMEOUT_MS = 5_000;
+    static final int CACHE_KIB = 16_384;                 // por conexión
+    static final long MMAP_BYTES = 256L * 1024 * 1024;
+    private static final long ESPERA_MAX_MS = 30_000L;   // préstamo bloqueado más de esto = error
+
+    private final Connection escritora;
+    private final ReentrantLock cerrojoEscritora = new ReentrantLock();
+    private final BlockingQueue<Connection> lectoras;
+    private final List<Connection> todas = new ArrayList<>();
+    private final Map<Connection, StatementCache> caches = new IdentityHashMap<>(); // fija tras construir
+    private final ThreadLocal<Prestamo> lectoraDelHilo = new ThreadLocal<>();
+    private volatile boolean cerrado;
+
+    /** Lectora prestada al hilo actual (préstamos anidados comparten conexión). */
+    private static final class Prestamo {
+        final Connection fisica;
+        int usos;
+        Prestamo(Connection fisica) { this.fisica = fisica; }
+    }
+
+    private ConnectionPool(Connection escritora, List<Connection> lectoras, int sentencias) {
+        this.escritora = escritora;
+        this.lectoras = new ArrayBlockingQueue<>(Math.max(1, lectoras.size()), false, lectoras);
+        todas.add(escritora);
+        todas.addAll(lectoras);
+        if (sentencias > 0) for (Connection c : todas) caches.put(c, new StatementCache(c, sentencias));
+    }
+
+    public static ConnectionPool open(String url, int lectores) throws SQLException {
+        return open(url, lectores, SENTENCIAS_DEFECTO);
+    }
+
+    /**
+     * Abre la escritora (fija WAL) y {@code lectores} lectoras sobre la misma base de datos,
+     * con hasta {@code sentencias} PreparedStatement en caché por conexión (0 = sin caché).
+     */
+    public static ConnectionPool open(String url, int lectores, int sentencias) throws SQLException {
+        if (lectores < 1) throw new IllegalArgumentException("Se necesita al menos una conexión lectora");
+        List<Connection> abiertas = new ArrayList<>();
+        try {
+            Connection w = DriverManager.getConnection(url);
+            abiertas.add(w);
+            configurar(w, false);
+            List<Connection> rs = new ArrayList<>(lectores);
+            for (int i = 0; i < lectores; i++) {
+                Connection r = DriverManager.getConnection(url);
+                abiertas.add(r);
+                configurar(r, true);
+                rs.add(r);
+            }
+            return new ConnectionPool(w, rs, sentencias);
+        } catch (SQLException | RuntimeException e) {
+            for (Connection c : abiertas) {
+                try { c.close(); } catch (SQLException ignore) { }
+            }
+            throw e;
+        }
+    }
+
+    private static void configurar(Connection c, boolean lectora) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS);
+            // Persistente en el archivo; lo fija la escritora antes de abrir las lectoras
+            if (!lectora) st.execute("PRAGMA journal_mode = WAL");
+            st.execute("PRAGMA synchronous = NORMAL");      // en WAL no se corrompe; solo se pierde lo último ante un apagón
+            st.execute("PRAGMA foreign_keys = ON");
+            st.execute("PRAGMA cache_size = -" + CACHE_KIB);
+            st.execute("PRAGMA mmap_size = " + MMAP_BYTES);
+            st.execute("PRAGMA temp_store = MEMORY");
+            if (lectora) st.execute("PRAGMA query_only = ON"); // una escritura por la lectora falla en vez de competir
+        }
+    }
+
+    /** Conexión escritora en exclusiva para este hilo hasta cerrarla (reentrante). */
+    public Connection writer() throws SQLException {
+        comprobarAbierto();
+        try {
+            if (!cerrojoEscritora.tryLock(ESPERA_MAX_MS, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("La conexión escritora sigue ocupada tras " + ESPERA_MAX_MS + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido esperando la conexión escritora", e);
+        }
+        return prestada(escritora, caches.get(escritora), this::devolverEscritora);
+    }
+
+    /** Conexión de solo lectura (o la escritora, si este hilo ya la tiene). */
+    public Connection reader() throws SQLException {
+        comprobarAbierto();
+        if (cerrojoEscritora.isHeldByCurrentThread()) return writer();
+
+        Prestamo p = lectoraDelHilo.get();
+        if (p == null) {
+            Connection c;
+            try {
+                c = lectoras.poll(ESPERA_MAX_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrumpido esperando una conexión lectora", e);
+            }
+            if (c == null) throw new SQLTimeoutException("No hay conexiones lectoras libres tras " + ESPERA_MAX_MS + " ms");
+            p = new Prestamo(c);
+            lectoraDelHilo.set(p);
+        }
+        p.usos++;
+        Prestamo prestamo = p;
+        return prestada(p.fisica, caches.get(p.fisica), () -> devolverLectora(prestamo));
+    }
+
+    public boolean isClosed() {
+        return cerrado;
+    }
+
+    @Override
+    public void close() {
+        cerrado = true;
+        for (StatementCache sc : caches.values()) sc.cerrar();
+        for (Connection c : todas) {
+            try { c.close(); } catch (SQLException ignore) { }
+        }
+    }
+
+    /* ======================= Devolución ======================= */
+
+    private void devolverEscritora() {
+        try {
+            // Último préstamo del hilo: ninguna transacción debe quedar abierta para el siguiente
+            if (cerrojoEscritora.getHoldCount() == 1 && !escritora.isClosed() && !escritora.getAutoCommit()) {
+                System.err.println("[DB] Transacción sin cerrar al devolver la conexión escritora; se revierte");
+                escritora.rollback();
+                escritora.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            cerrojoEscritora.unlock();
+        }
+    }
+
+    private void devolverLectora(Prestamo p) {
+        if (--p.usos > 0) return;
+        lectoraDelHilo.remove();
+        lectoras.offer(p.fisica);
+    }
+
+    private void comprobarAbierto() throws SQLException {
+        if (cerrado) throw new SQLException("Pool de conexiones cerrado");
+    }
+
+    /* ======================= Conexión prestada ======================= */
+
+    /** Vista de la conexión física cuyo close() la devuelve al pool (una sola vez). */
+    private static Connection prestada(Connection fisica, StatementCache cache, Runnable devolver) {
+        InvocationHandler h = new InvocationHandler() {
+            private boolean devuelta;
+
+            @Override
+            public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+                switch (m.getName()) {
+                    case "close" -> {
+                        if (!devuelta) {
+                            devuelta = true;
+                            devolver.run();
+                        }
+                        return null;
+                    }
+                    case "isClosed" -> {
+                        return devuelta || fisica.isClosed();
+                    }
+                    case "unwrap" -> {
+                        if (((Class<?>) args[0]).isInstance(fisica)) return fisica;
+                    }
+                    case "equals" -> {
+                        return proxy == args[0];
+                    }
+                    case "hashCode" -> {
+                        return System.identityHashCode(proxy);
+                    }
+                    default -> { }
+                }
+                if (devuelta) throw new SQLException("Conexión ya devuelta al pool");
+                if (cache != null && m.getName().equals("prepareStatement") && args.length == 1) {
+                    return cache.preparar((String) args[0]);
+                }
+                try {
+                    return m.invoke(fisica, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(), new Class<?>[]{Connection.class}, h);
+    }
+}
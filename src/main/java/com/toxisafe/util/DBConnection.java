@@ -4,52 +4,46 @@ import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.stream.Collectors;
 
 /**
- * Gestiona la conexión SQLite y asegura que el esquema (schema.sql) se ejecute una vez.
+ * Gestiona el pool de conexiones SQLite (WAL, ver {@link ConnectionPool}) y asegura que el
+ * esquema (schema.sql) se ejecute una vez.
+ * Nº de conexiones lectoras configurable con -Dtoxisafe.db.lectores=N y tamaño de la caché de
+ * sentencias por conexión con -Dtoxisafe.db.sentencias=N (0 la desactiva).
  */
 public final class DBConnection {
 
     // Crea el archivo toxisafe.db en el directorio de trabajo
     private static final String URL = "jdbc:sqlite:toxisafe.db";
 
-    private static Connection singleton;
-    private static volatile boolean initialized = false;
+    private static ConnectionPool pool;
 
     private DBConnection() {}
 
-    public static synchronized Connection getConnection() throws SQLException {
-        if (singleton == null || singleton.isClosed()) {
-            singleton = DriverManager.getConnection(URL);
-
-            // ✅ Activar claves foráneas en SQLite
-            try (Statement stmt = singleton.createStatement()) {
-                stmt.execute("PRAGMA foreign_keys = ON");
-            }
+    public static synchronized ConnectionPool getPool() throws SQLException {
+        if (pool == null || pool.isClosed()) {
+            int lectores = Math.max(1, Integer.getInteger("toxisafe.db.lectores", ConnectionPool.LECTORES_DEFECTO));
+            int sentencias = Math.max(0, Integer.getInteger("toxisafe.db.sentencias", ConnectionPool.SENTENCIAS_DEFECTO));
+            pool = ConnectionPool.open(URL, lectores, sentencias);
+            applySchema(pool);
         }
-        ensureInitialized();
-        return singleton;
+        return pool;
     }
 
-    private static void ensureInitialized() {
-        if (initialized) return;
-        synchronized (DBConnection.class) {
-            if (initialized) return;
-            try (Statement st = singleton.createStatement()) {
-                String sql = readSchemaSQL();
-                // Ejecuta el schema completo (contiene múltiples CREATE TABLE IF NOT EXISTS)
-                st.executeUpdate(sql);
-                initialized = true;
-                System.out.println("[DB] Esquema aplicado correctamente.");
-                System.out.println("[DB] Ruta BD: " + new java.io.File("toxisafe.db").getAbsolutePath());
-            } catch (Exception e) {
-                System.err.println("[DB] Error aplicando schema.sql: " + e.getMessage());
-                e.printStackTrace();
-            }
+    private static void applySchema(ConnectionPool pool) {
+        try (Connection c = pool.writer();
+             Statement st = c.createStatement()) {
+            String sql = readSchemaSQL();
+            // Ejecuta el schema completo (contiene múltiples CREATE TABLE IF NOT EXISTS)
+            st.executeUpdate(sql);
+            System.out.println("[DB] Esquema aplicado correctamente.");
+            System.out.println("[DB] Ruta BD: " + new java.io.File("toxisafe.db").getAbsolutePath());
+        } catch (Exception e) {
+            System.err.println("[DB] Error aplicando schema.sql: " + e.getMessage());
+            e.printStackTrace();
         }
     }
 
@@ -66,9 +60,9 @@ public final class DBConnection {
     }
 
     public static synchronized void close() {
-        if (singleton != null) {
-            try { singleton.close(); } catch (java.sql.SQLException ignore) {}
-            singleton = null;
+        if (pool != null) {
+            pool.close();
+            pool = null;
         }
     }
 }
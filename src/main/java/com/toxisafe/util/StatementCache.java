@@ -0,0 +1,135 @@
+package com.toxisafe.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caché LRU de PreparedStatement de una conexión física, por texto SQL.
+ * - prepareStatement(sql) devuelve la sentencia ya compilada si existe; su close() la deja
+ *   lista para la siguiente (cierra el ResultSet pendiente y limpia parámetros y lote)
+ * - Si la misma SQL ya está en uso (préstamo reentrante) se prepara una aparte, sin cachear
+ * - Al superar la capacidad se cierra la menos usada recientemente
+ * Solo la usa el hilo que tiene prestada la conexión (ver {@link ConnectionPool}): sin sincronizar.
+ */
+final class StatementCache {
+
+    private final Connection fisica;
+    private final int capacidad;
+    private final LinkedHashMap<String, Entrada> sentencias;
+
+    /** Sentencia física cacheada y su estado de préstamo. */
+    private static final class Entrada {
+        final PreparedStatement ps;
+        boolean enUso;
+        boolean expulsada;
+        ResultSet abierto; // último executeQuery sin cerrar
+        Entrada(PreparedStatement ps) { this.ps = ps; }
+    }
+
+    StatementCache(Connection fisica, int capacidad) {
+        this.fisica = fisica;
+        this.capacidad = Math.max(1, capacidad);
+        this.sentencias = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    PreparedStatement preparar(String sql) throws SQLException {
+        Entrada e = sentencias.get(sql);
+        if (e != null && e.enUso) {
+            return fisica.prepareStatement(sql);
+        }
+        if (e == null) {
+            e = new Entrada(fisica.prepareStatement(sql));
+            sentencias.put(sql, e);
+            expulsarSobrantes();
+        }
+        e.enUso = true;
+        return prestada(e);
+    }
+
+    /** Cierra todas las sentencias (al cerrar la conexión). */
+    void cerrar() {
+        for (Entrada e : sentencias.values()) cerrarSilencioso(e.ps);
+        sentencias.clear();
+    }
+
+    private void expulsarSobrantes() {
+        Iterator<Map.Entry<String, Entrada>> it = sentencias.entrySet().iterator();
+        while (sentencias.size() > capacidad && it.hasNext()) {
+            Entrada e = it.next().getValue();
+            it.remove();
+            e.expulsada = true;
+            if (!e.enUso) cerrarSilencioso(e.ps); // en uso: se cierra al devolverla
+        }
+    }
+
+    private static void devolver(Entrada e) {
+        e.enUso = false;
+        if (e.expulsada) {
+            cerrarSilencioso(e.ps);
+            return;
+        }
+        try {
+            // Un ResultSet sin cerrar mantendría abierta la transacción de lectura
+            if (e.abierto != null && !e.abierto.isClosed()) e.abierto.close();
+            e.abierto = null;
+            e.ps.clearParameters();
+            e.ps.clearBatch();
+        } catch (SQLException ex) {
+            e.expulsada = true;
+            cerrarSilencioso(e.ps);
+        }
+    }
+
+    private static void cerrarSilencioso(PreparedStatement ps) {
+        try { ps.close(); } catch (SQLException ignore) { }
+    }
+
+    /** Vista de la sentencia cuyo close() la devuelve a la caché (una sola vez). */
+    private PreparedStatement prestada(Entrada e) {
+        InvocationHandler h = new InvocationHandler() {
+            private boolean devuelta;
+
+            @Override
+            public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+                switch (m.getName()) {
+                    case "close" -> {
+                        if (!devuelta) {
+                            devuelta = true;
+                            devolver(e);
+                        }
+                        return null;
+                    }
+                    case "isClosed" -> {
+                        return devuelta || e.ps.isClosed();
+                    }
+                    case "equals" -> {
+                        return proxy == args[0];
+                    }
+                    case "hashCode" -> {
+                        return System.identityHashCode(proxy);
+                    }
+                    default -> { }
+                }
+                if (devuelta) throw new SQLException("Sentencia ya devuelta a la caché");
+                try {
+                    Object r = m.invoke(e.ps, args);
+                    if (r instanceof ResultSet rs && m.getName().equals("executeQuery")) e.abierto = rs;
+                    return r;
+                } catch (InvocationTargetException ex) {
+                    throw ex.getCause();
+                }
+            }
+        };
+        return (PreparedStatement) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, h);
+    }
+}
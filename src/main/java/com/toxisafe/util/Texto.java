@@ -0,0 +1,163 @@
+package com.toxisafe.util;
+
+import java.text.Normalizer;
+import java.util.regex.Pattern;
+
+/**
+ * Normalización de texto compartida por servicios y controladores (antes, una copia por clase
+ * con {@code Normalizer.normalize(NFD)} + {@code replaceAll("\\p{M}")} en cada llamada).
+ * - Un solo recorrido: tildes de Latin-1 por tabla (á -> a, Ñ -> N...), mayúsculas/minúsculas,
+ *   recorte y espacios colapsados; solo se pasa por NFD si aparece un carácter fuera de Latin-1
+ * - Si el texto ya está normalizado se devuelve la misma instancia (sin copia)
+ * - Memo acotada por variante para los textos que se repiten (sexo, grupo, nombres de
+ *   síntoma o alimento en bucles por expuesto)
+ *
+ * Variantes:
+ * - {@link #clave}: minúsculas (búsquedas, nombres de catálogo)
+ * - {@link #codigo}: MAYÚSCULAS (valores codificados, claves de agrupación)
+ * - {@link #rol}: MAYÚSCULAS con '_' en lugar de espacios (roles de usuario)
+ * - {@link #compactar}: solo recorte y espacios colapsados (conserva mayúsculas y tildes)
+ *
+ * Todas devuelven "" para null.
+ */
+public final class Texto {
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+
+    // U+00C0..U+00FF sin diacrítico (según NFD); los que no se descomponen (Æ, Ø, ß...) se quedan igual
+    private static final char[] LATIN1 = new char[0x40];
+    static {
+        for (int i = 0; i < LATIN1.length; i++) {
+            char c = (char) (0xC0 + i);
+            String d = MARCAS.matcher(Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD)).replaceAll("");
+            LATIN1[i] = d.length() == 1 ? d.charAt(0) : c;
+        }
+    }
+
+    private static final int MINUSCULAS = 0, MAYUSCULAS = 1, TAL_CUAL = 2;
+
+    private static final Memo CLAVES = new Memo();
+    private static final Memo CODIGOS = new Memo();
+    private static final Memo ROLES = new Memo();
+
+    private Texto() { }
+
+    /** Minúsculas, sin tildes, recortado y con espacios colapsados: "  Tortilla  de Patata " -> "tortilla de patata". */
+    public static String clave(String s) {
+        if (s == null) return "";
+        String r = CLAVES.get(s);
+        if (r == null) CLAVES.put(s, r = normalizar(s, MINUSCULAS, true, ' '));
+        return r;
+    }
+
+    /** Mayúsculas, sin tildes, recortado y con espacios colapsados: "Vómitos" -> "VOMITOS". */
+    public static String codigo(String s) {
+        if (s == null) return "";
+        String r = CODIGOS.get(s);
+        if (r == null) CODIGOS.put(s, r = normalizar(s, MAYUSCULAS, true, ' '));
+        return r;
+    }
+
+    /** Rol de usuario: como {@link #codigo} pero con '_' entre palabras ("Epidemiólogo" -> "EPIDEMIOLOGO"). */
+    public static String rol(String s) {
+        if (s == null) return "";
+        String r = ROLES.get(s);
+        if (r == null) {
+            r = normalizar(s, MAYUSCULAS, true, '_');
+            if (r.equals("EPIDEMIOLOG@")) r = "EPIDEMIOLOGO"; // forma inclusiva que llega de algunos formularios
+            ROLES.put(s, r);
+        }
+        return r;
+    }
+
+    /** Recorta y colapsa espacios; mayúsculas y tildes se conservan. */
+    public static String compactar(String s) {
+        if (s == null) return "";
+        return normalizar(s, TAL_CUAL, false, ' ');
+    }
+
+    /* ===================== Núcleo ===================== */
+
+    private static String normalizar(String s, int caja, boolean sinTildes, char separador) {
+        String in = s;
+        if (sinTildes && necesitaNfd(in)) {
+            in = MARCAS.matcher(Normalizer.normalize(in, Normalizer.Form.NFD)).replaceAll("");
+        }
+        int n = in.length();
+        char[] out = new char[n];
+        int k = 0;
+        boolean cambiado = in != s;
+        boolean espacioPendiente = false;
+        for (int i = 0; i < n; i++) {
+            char c = in.charAt(i);
+            if (esEspacio(c)) {
+                if (k > 0) espacioPendiente = true; // los iniciales se descartan
+                continue;
+            }
+            if (espacioPendiente) {
+                // Rachas de más de un blanco ya cambian la longitud; aquí solo falta el caso \t -> ' ' o ' ' -> '_'
+                if (in.charAt(i - 1) != separador) cambiado = true;
+                out[k++] = separador;
+                espacioPendiente = false;
+            }
+            char d = c;
+            if (sinTildes) {
+                if (c >= 0xC0 && c <= 0xFF) d = LATIN1[c - 0xC0];
+                else if (c >= 0x0300 && c <= 0x036F) { cambiado = true; continue; } // marca suelta
+            }
+            if (caja == MINUSCULAS) d = d < 0x80 ? (d >= 'A' && d <= 'Z' ? (char) (d + 32) : d) : Character.toLowerCase(d);
+            else if (caja == MAYUSCULAS) d = d < 0x80 ? (d >= 'a' && d <= 'z' ? (char) (d - 32) : d) : Character.toUpperCase(d);
+            if (d != c) cambiado = true;
+            out[k++] = d;
+        }
+        if (k != n) cambiado = true; // espacios recortados o colapsados
+        return cambiado ? new String(out, 0, k) : s;
+    }
+
+    // Hay algo fuera de Latin-1 que no sea ya una marca suelta (Ā, ł, ǎ...): se descompone con NFD
+    private static boolean necesitaNfd(String s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c > 0xFF && (c < 0x0300 || c > 0x036F)) return true;
+        }
+        return false;
+    }
+
+    // Mismo conjunto que \s en las versiones anteriores (espacio, \t, \n, \u000B, \f, \r)
+    private static boolean esEspacio(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    /* ===================== Memo ===================== */
+
+    /**
+     * Caché de correspondencia directa (sin bloqueo): cada texto va a una ranura por su hash y
+     * una colisión simplemente sustituye la entrada. Las entradas son inmutables, así que una
+     * lectura concurrente ve una entrada completa o la anterior; en el peor caso se recalcula.
+     */
+    private static final class Memo {
+        private static final int RANURAS = 1024;          // potencia de 2
+        private static final int LONGITUD_MAXIMA = 64;    // textos más largos no se guardan
+
+        private static final class Par {
+            final String clave, valor;
+            Par(String clave, String valor) { this.clave = clave; this.valor = valor; }
+        }
+
+        private final Par[] tabla = new Par[RANURAS];
+
+        String get(String s) {
+            Par p = tabla[ranura(s)];
+            return p != null && p.clave.equals(s) ? p.valor : null;
+        }
+
+        void put(String s, String valor) {
+            if (s.length() <= LONGITUD_MAXIMA) tabla[ranura(s)] = new Par(s, valor);
+        }
+
+        private static int ranura(String s) {
+            int h = s.hashCode();
+            return (h ^ (h >>> 16)) & (RANURAS - 1);
+        }
+    }
+}
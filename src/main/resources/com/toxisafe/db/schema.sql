@@ -155,6 +155,23 @@ CREATE TABLE IF NOT EXISTS INFORME (
     );
 
 
+-- Definiciones de caso editables (id_brote NULL = plantilla disponible en todos los brotes)
+CREATE TABLE IF NOT EXISTS CASO_DEFINICION (
+       id_definicion         TEXT PRIMARY KEY,
+       id_brote              TEXT,
+       nombre_definicion     TEXT NOT NULL,
+       sintomas_todos        TEXT,     -- nombres de síntoma separados por ';' (deben estar todos)
+       sintomas_alguno       TEXT,     -- nombres de síntoma separados por ';' (al menos uno)
+       minimo_sintomas       INTEGER NOT NULL DEFAULT 0,
+       requiere_inicio       INTEGER NOT NULL DEFAULT 0,
+       inicio_desde          TEXT,     -- 'YYYY-MM-DD HH:MM:SS'
+       inicio_hasta          TEXT,     -- 'YYYY-MM-DD HH:MM:SS'
+       criterio_laboratorio  TEXT NOT NULL DEFAULT 'NO_APLICA'
+           CHECK (criterio_laboratorio IN ('NO_APLICA','REQUERIDO','SUFICIENTE')),
+       FOREIGN KEY (id_brote) REFERENCES BROTE(id_brote) ON DELETE CASCADE
+    );
+
+
 CREATE TABLE IF NOT EXISTS CAMBIOS_PROCESADOS (
         id_cambio            TEXT PRIMARY KEY,
         timestamp_procesado  TEXT NOT NULL,
@@ -167,6 +184,7 @@ CREATE INDEX IF NOT EXISTS idx_informe_brote ON INFORME(id_brote);
 CREATE INDEX IF NOT EXISTS idx_sintoma_grupo ON SINTOMA(id_grupo_sintomas);
 CREATE INDEX IF NOT EXISTS idx_exposicion_conjunto ON EXPOSICION_SINTOMA(id_sintomas_generales);
 CREATE INDEX IF NOT EXISTS idx_generales_expuesto ON SINTOMAS_GENERALES_EXPUESTO(id_expuesto);
+CREATE INDEX IF NOT EXISTS idx_casodef_brote ON CASO_DEFINICION(id_brote);
 
 
 